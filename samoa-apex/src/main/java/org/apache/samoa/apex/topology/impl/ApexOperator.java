@@ -21,6 +21,7 @@ package org.apache.samoa.apex.topology.impl;
  */
 
 import java.io.Serializable;
+import org.apache.samoa.core.BatchContentEvent;
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
 
@@ -54,7 +55,7 @@ public class ApexOperator extends BaseOperator implements Serializable {
   public DefaultInputPortSerializable<ContentEvent> inputPort0 = new DefaultInputPortSerializable<ContentEvent>() {
     @Override
     public void process(ContentEvent tuple) {
-      processor.process(tuple);
+      BatchContentEvent.process(processor, tuple);
     }
   };
   @SuppressWarnings("serial")
@@ -62,7 +63,7 @@ public class ApexOperator extends BaseOperator implements Serializable {
   public DefaultInputPortSerializable<ContentEvent> inputPort1 = new DefaultInputPortSerializable<ContentEvent>() {
     @Override
     public void process(ContentEvent tuple) {
-      processor.process(tuple);
+      BatchContentEvent.process(processor, tuple);
     }
   };
   @SuppressWarnings("serial")
@@ -70,7 +71,7 @@ public class ApexOperator extends BaseOperator implements Serializable {
   public DefaultInputPortSerializable<ContentEvent> inputPort2 = new DefaultInputPortSerializable<ContentEvent>() {
     @Override
     public void process(ContentEvent tuple) {
-      processor.process(tuple);
+      BatchContentEvent.process(processor, tuple);
     }
   };
   @SuppressWarnings("serial")
@@ -78,7 +79,7 @@ public class ApexOperator extends BaseOperator implements Serializable {
   public DefaultInputPortSerializable<ContentEvent> inputPort3 = new DefaultInputPortSerializable<ContentEvent>() {
     @Override
     public void process(ContentEvent tuple) {
-      processor.process(tuple);
+      BatchContentEvent.process(processor, tuple);
     }
   };
   @SuppressWarnings("serial")
@@ -86,7 +87,7 @@ public class ApexOperator extends BaseOperator implements Serializable {
   public DefaultInputPortSerializable<ContentEvent> inputPort4 = new DefaultInputPortSerializable<ContentEvent>() {
     @Override
     public void process(ContentEvent tuple) {
-      processor.process(tuple);
+      BatchContentEvent.process(processor, tuple);
     }
   };
 
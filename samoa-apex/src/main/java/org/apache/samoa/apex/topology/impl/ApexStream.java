@@ -42,7 +42,7 @@ public class ApexStream extends AbstractStream implements Serializable {
   }
 
   @Override
-  public void put(ContentEvent contentEvent) {
+  protected void send(ContentEvent contentEvent) {
     outputPort.emit(contentEvent);
   }
 
@@ -50,8 +50,4 @@ public class ApexStream extends AbstractStream implements Serializable {
   public String getStreamId() {
     return streamId;
   }
-
-  @Override
-  public void setBatchSize(int batchsize) {
-  }
 }
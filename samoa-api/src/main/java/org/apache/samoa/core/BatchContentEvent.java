@@ -0,0 +1,135 @@
+package org.apache.samoa.core;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Envelope for a batch of events sent on the same stream. It is created by the stream on the sending side (see
+ * {@link org.apache.samoa.topology.StreamBatcher}) and unpacked on the receiving side by {@link #process(Processor,
+ * ContentEvent)}, so the processors never see it.
+ * 
+ * The key of the batch is the key of its events when the stream is grouped by key, so that every engine routes the
+ * batch to the replica its events would have been routed to.
+ */
+public final class BatchContentEvent implements ContentEvent {
+
+  private static final long serialVersionUID = -4113287326441466123L;
+
+  private String key;
+  private ContentEvent[] events;
+  private int size;
+  private boolean isLast;
+  private final transient long creationTime;
+
+  public BatchContentEvent(String key, int capacity, long creationTime) {
+    this.key = key;
+    this.events = new ContentEvent[capacity];
+    this.creationTime = creationTime;
+  }
+
+  /**
+   * Add an event at the end of the batch.
+   * 
+   * @param event
+   *          the event
+   */
+  public void add(ContentEvent event) {
+    if (size == events.length)
+      events = Arrays.copyOf(events, size << 1);
+    if (key == null)
+      key = event.getKey();
+    events[size++] = event;
+    isLast |= event.isLastEvent();
+  }
+
+  /**
+   * Shrink the batch to its number of events, so that a partial batch is not serialized with empty slots.
+   */
+  public void trimToSize() {
+    if (size < events.length)
+      events = Arrays.copyOf(events, size);
+  }
+
+  public ContentEvent get(int index) {
+    if (index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    return events[index];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the time (System.nanoTime()) the batch was opened at, on the sending side
+   */
+  public long getCreationTime() {
+    return creationTime;
+  }
+
+  @Override
+  public String getKey() {
+    return key;
+  }
+
+  @Override
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  @Override
+  public boolean isLastEvent() {
+    return isLast;
+  }
+
+  /**
+   * Hand an event received by a PI to its processor, one event at a time if it is a batch. A
+   * {@link TickContentEvent} calls {@link TickingProcessor#onTick()} instead.
+   * 
+   * @param processor
+   *          the processor of the PI
+   * @param event
+   *          the event received by the PI
+   * @return the value returned by the processor for the last event
+   */
+  public static boolean process(Processor processor, ContentEvent event) {
+    if (!(event instanceof BatchContentEvent)) {
+      if (event == TickContentEvent.INSTANCE) {
+        if (processor instanceof TickingProcessor)
+          ((TickingProcessor) processor).onTick();
+        return false;
+      }
+      return processor.process(event);
+    }
+    BatchContentEvent batch = (BatchContentEvent) event;
+    boolean result = false;
+    for (int i = 0; i < batch.size; i++) {
+      result = processor.process(batch.events[i]);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchContentEvent [key=" + key + ", size=" + size + ", isLast=" + isLast + "]";
+  }
+}
@@ -0,0 +1,60 @@
+package org.apache.samoa.core;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Event delivered by the engines to the replicas of a PI to call {@link TickingProcessor#onTick()} on the thread of the
+ * replica. It is handled by {@link BatchContentEvent#process(Processor, ContentEvent)}, so the processors never see
+ * it.
+ */
+public final class TickContentEvent implements ContentEvent {
+
+  private static final long serialVersionUID = 5372839127004867231L;
+
+  public static final TickContentEvent INSTANCE = new TickContentEvent();
+
+  private TickContentEvent() {
+  }
+
+  @Override
+  public String getKey() {
+    return null;
+  }
+
+  @Override
+  public void setKey(String key) {
+    // ticks are not routed by key
+  }
+
+  @Override
+  public boolean isLastEvent() {
+    return false;
+  }
+
+  private Object readResolve() {
+    return INSTANCE;
+  }
+
+  @Override
+  public String toString() {
+    return "TickContentEvent";
+  }
+}
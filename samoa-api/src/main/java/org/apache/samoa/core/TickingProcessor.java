@@ -0,0 +1,45 @@
+package org.apache.samoa.core;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A Processor that needs to act on time even when it receives no event, e.g. to send a batch whose oldest event has
+ * waited long enough.
+ * 
+ * The engines that support it (simple, multithreaded and virtual threads) call {@link #onTick()} at least every
+ * {@link #getTickInterval()}, on the thread that processes the events of the replica, so the processor does not need
+ * to be thread-safe. The other engines never call it: the processor has to check the time when it receives an event
+ * as well.
+ */
+public interface TickingProcessor extends Processor {
+
+  /**
+   * Gets the maximum time between two ticks. It is read once, when the topology starts.
+   * 
+   * @return the interval in microseconds, 0 if the processor needs no tick
+   */
+  long getTickInterval();
+
+  /**
+   * Called periodically by the engine, between two events.
+   */
+  void onTick();
+}
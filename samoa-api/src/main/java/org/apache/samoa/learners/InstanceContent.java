@@ -46,6 +46,7 @@ final public class InstanceContent implements Serializable {
   private boolean isTraining;
   private boolean isTesting;
   private boolean isLast = false;
+  private boolean resultWithInstance = false;
 
   public InstanceContent() {
 
@@ -193,6 +194,26 @@ final public class InstanceContent implements Serializable {
     this.isLast = isLast;
   }
 
+  /**
+   * Checks if the prediction result of this instance has to carry a copy of the instance.
+   * 
+   * @return true if the result event ships the full instance, false if it only carries the label
+   */
+  public boolean isResultWithInstance() {
+    return resultWithInstance;
+  }
+
+  /**
+   * Set whether the prediction result of this instance has to carry a copy of the instance, e.g. for a downstream sink
+   * that needs the attribute values.
+   * 
+   * @param resultWithInstance
+   *          flag.
+   */
+  public void setResultWithInstance(boolean resultWithInstance) {
+    this.resultWithInstance = resultWithInstance;
+  }
+
   @Override
   public String toString() {
     return String
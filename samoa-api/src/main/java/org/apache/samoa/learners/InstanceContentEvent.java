@@ -195,6 +195,25 @@ final public class InstanceContentEvent implements ContentEvent {
   public void setLast(boolean isLast) {
     this.instanceContent.setLast(isLast);
   }
+
+  /**
+   * Checks if the prediction result of this instance has to carry a copy of the instance.
+   * 
+   * @return true if the result event ships the full instance
+   */
+  public boolean isResultWithInstance() {
+    return this.instanceContent.isResultWithInstance();
+  }
+
+  /**
+   * Set whether the prediction result of this instance has to carry a copy of the instance.
+   * 
+   * @param resultWithInstance
+   *          flag.
+   */
+  public void setResultWithInstance(boolean resultWithInstance) {
+    this.instanceContent.setResultWithInstance(resultWithInstance);
+  }
   /**
    * Gets the Instance Content.
    *
@@ -20,9 +20,17 @@ package org.apache.samoa.learners;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.SerializableInstance;
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
 import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
 
 /**
  * License
@@ -30,6 +38,11 @@ import org.apache.samoa.instances.Instance;
 
 /**
  * The Class ResultEvent.
+ * 
+ * By default the event only carries what the evaluators need: the true value and the weight of the instance, its
+ * number of classes and the votes. The instance itself is kept by reference for the PIs of the same process, and is
+ * only serialized when the event is created with {@code withInstance}, e.g. for a downstream PI that trains on it.
+ * Otherwise, {@link #getInstance()} returns a label-only instance on the receiving side.
  */
 final public class ResultContentEvent implements ContentEvent {
 
@@ -41,8 +54,14 @@ final public class ResultContentEvent implements ContentEvent {
   private int classifierIndex;
   private int evaluationIndex;
   private SerializableInstance instance;
+  private transient Instance localInstance;
+  private transient Instance labelInstance;
 
   private int classId;
+  private double trueValue;
+  private double weight;
+  private int numClasses;
+  private boolean hasLabel;
   private double[] classVotes;
 
   private final boolean isLast;
@@ -69,8 +88,36 @@ final public class ResultContentEvent implements ContentEvent {
    */
   public ResultContentEvent(long instanceIndex, Instance instance, int classId,
       double[] classVotes, boolean isLast) {
+    this(instanceIndex, instance, classId, classVotes, isLast, false);
+  }
+
+  /**
+   * Instantiates a new result event.
+   * 
+   * @param instanceIndex
+   *          the instance index
+   * @param instance
+   *          the instance
+   * @param classId
+   *          the class id
+   * @param classVotes
+   *          the class votes
+   * @param isLast
+   *          whether it is the last event
+   * @param withInstance
+   *          whether the full instance is serialized with the event
+   */
+  public ResultContentEvent(long instanceIndex, Instance instance, int classId,
+      double[] classVotes, boolean isLast, boolean withInstance) {
     if (instance != null) {
-      this.instance = new SerializableInstance(instance);
+      if (withInstance) {
+        this.instance = new SerializableInstance(instance);
+      }
+      this.localInstance = instance;
+      this.trueValue = instance.classValue();
+      this.weight = instance.weight();
+      this.numClasses = instance.numClasses();
+      this.hasLabel = true;
     }
     this.instanceIndex = instanceIndex;
     this.classId = classId;
@@ -83,8 +130,40 @@ final public class ResultContentEvent implements ContentEvent {
    * 
    * @return single instance of ResultEvent
    */
-  public SerializableInstance getInstance() {
-    return instance;
+  public Instance getInstance() {
+    if (instance != null)
+      return instance;
+    if (localInstance != null)
+      return localInstance;
+    if (labelInstance == null && hasLabel) {
+      labelInstance = newLabelInstance(trueValue, weight, numClasses);
+    }
+    return labelInstance;
+  }
+
+  /**
+   * @return true if the full instance is serialized with the event
+   */
+  public boolean hasInstance() {
+    return instance != null;
+  }
+
+  /**
+   * Gets the true value of the instance, i.e. its class value.
+   * 
+   * @return the true value
+   */
+  public double getTrueValue() {
+    return trueValue;
+  }
+
+  /**
+   * Gets the weight of the instance.
+   * 
+   * @return the weight
+   */
+  public double getWeight() {
+    return weight;
   }
 
   /**
@@ -95,6 +174,13 @@ final public class ResultContentEvent implements ContentEvent {
    */
   public void setInstance(SerializableInstance instance) {
     this.instance = instance;
+    this.localInstance = instance;
+    if (instance != null) {
+      this.trueValue = instance.classValue();
+      this.weight = instance.weight();
+      this.numClasses = instance.numClasses();
+      this.hasLabel = true;
+    }
   }
 
   /**
@@ -103,7 +189,7 @@ final public class ResultContentEvent implements ContentEvent {
    * @return the num classes
    */
   public int getNumClasses() { // To remove
-    return instance.numClasses();
+    return numClasses;
   }
 
   /**
@@ -210,4 +296,37 @@ final public class ResultContentEvent implements ContentEvent {
     return isLast;
   }
 
+  // headers of the label-only instances, by number of classes
+  private static final ConcurrentMap<Integer, Instances> labelHeaders = new ConcurrentHashMap<>();
+
+  /*
+   * Create an instance that only holds the class value, with a nominal class
+   * attribute (numeric for regression, i.e. 0 classes)
+   */
+  private static Instance newLabelInstance(double trueValue, double weight, int numClasses) {
+    Instances header = labelHeaders.get(numClasses);
+    if (header == null) {
+      Attribute classAttribute;
+      if (numClasses > 0) {
+        List<String> values = new ArrayList<>(numClasses);
+        for (int i = 0; i < numClasses; i++) {
+          values.add(Integer.toString(i));
+        }
+        classAttribute = new Attribute("class", values);
+      } else {
+        classAttribute = new Attribute("class");
+      }
+      List<Attribute> attributes = new ArrayList<>(1);
+      attributes.add(classAttribute);
+      header = new Instances("result", attributes, 0);
+      header.setClassIndex(0);
+      Instances previous = labelHeaders.putIfAbsent(numClasses, header);
+      if (previous != null) {
+        header = previous;
+      }
+    }
+    Instance inst = new DenseInstance(weight, new double[] { trueValue });
+    inst.setDataset(header);
+    return inst;
+  }
 }
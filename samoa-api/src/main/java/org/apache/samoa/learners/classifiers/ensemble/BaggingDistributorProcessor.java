@@ -79,6 +79,7 @@ public class BaggingDistributorProcessor implements Processor {
             false, true);
         instanceContentEvent.setClassifierIndex(i); //TODO probably not needed anymore
         instanceContentEvent.setEvaluationIndex(inEvent.getEvaluationIndex()); //TODO probably not needed anymore
+        instanceContentEvent.setResultWithInstance(resultWithInstance(inEvent));
         ensembleStreams[i].put(instanceContentEvent);
       }
     }
@@ -112,6 +113,17 @@ public class BaggingDistributorProcessor implements Processor {
     }
   }
 
+  /**
+   * Whether the predictions of the ensemble members for a test instance have to carry a copy of the instance.
+   * 
+   * @param inEvent
+   *          the test event
+   * @return true if the results have to ship the instance
+   */
+  protected boolean resultWithInstance(InstanceContentEvent inEvent) {
+    return inEvent.isResultWithInstance();
+  }
+
   @Override
   public void onCreate(int id) {
     // do nothing
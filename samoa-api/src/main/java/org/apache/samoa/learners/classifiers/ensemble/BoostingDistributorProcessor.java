@@ -32,4 +32,10 @@ public class BoostingDistributorProcessor extends BaggingDistributorProcessor {
     // Boosting is trained from the prediction combiner, not from the input
   }
 
+  @Override
+  protected boolean resultWithInstance(InstanceContentEvent inEvent) {
+    // The prediction combiner trains the ensemble on the instance of the results
+    return true;
+  }
+
 }
@@ -73,6 +73,7 @@ public class ShardingDistributorProcessor implements Processor {
             false, true);
         instanceContentEvent.setClassifierIndex(i); //TODO probably not needed anymore
         instanceContentEvent.setEvaluationIndex(inEvent.getEvaluationIndex()); //TODO probably not needed anymore
+        instanceContentEvent.setResultWithInstance(inEvent.isResultWithInstance());
         ensembleStreams[i].put(instanceContentEvent);
       }
     }
@@ -119,7 +119,7 @@ public class AMRDefaultRuleProcessor implements Processor {
 
   private ResultContentEvent newResultContentEvent(double[] prediction, InstanceContentEvent inEvent) {
     ResultContentEvent rce = new ResultContentEvent(inEvent.getInstanceIndex(), inEvent.getInstance(),
-        inEvent.getClassId(), prediction, inEvent.isLastEvent());
+        inEvent.getClassId(), prediction, inEvent.isLastEvent(), inEvent.isResultWithInstance());
     rce.setClassifierIndex(this.processorId);
     rce.setEvaluationIndex(inEvent.getEvaluationIndex());
     return rce;
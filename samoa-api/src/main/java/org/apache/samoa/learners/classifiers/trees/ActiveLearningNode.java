@@ -20,7 +20,10 @@ package org.apache.samoa.learners.classifiers.trees;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.samoa.instances.Instance;
@@ -44,18 +47,42 @@ final class ActiveLearningNode extends LearningNode {
 
   private final long id;
   private final int parallelismHint;
+  private final boolean attributeRanges;
+  private final int splitBufferSize;
   private int suggestionCtr;
   private int thrownAwayInstance;
+  private long droppedInstances;
+
+  // byte size of the statistics of the node in the local statistic PIs, as
+  // reported by all of them at the last split attempt, -1 if unknown
+  private long statisticsByteSize = -1;
+  private long pendingStatisticsByteSize;
+
+  // merit of the best split of each attribute reported in the current split
+  // attempt, NaN if not reported
+  private double[] attributeMerits;
+  // attributes whose values are no longer sent to the local statistic PIs
+  private boolean[] disabledAttributes;
+
+  // instances received while splitting, replayed once the split is resolved
+  private Instance[] pendingInstances;
+  private int numPendingInstances;
 
   private boolean isSplitting;
 
   ActiveLearningNode(double[] classObservation, int parallelismHint) {
+    this(classObservation, parallelismHint, false, 0);
+  }
+
+  ActiveLearningNode(double[] classObservation, int parallelismHint, boolean attributeRanges, int splitBufferSize) {
     super(classObservation);
     this.weightSeenAtLastSplitEvaluation = this.getWeightSeen();
     this.id = VerticalHoeffdingTree.LearningNodeIdGenerator.generate();
     this.attributeContentEventKeys = new HashMap<>();
     this.isSplitting = false;
     this.parallelismHint = parallelismHint;
+    this.attributeRanges = attributeRanges;
+    this.splitBufferSize = splitBufferSize;
   }
 
   long getId() {
@@ -74,49 +101,195 @@ final class ActiveLearningNode extends LearningNode {
 
   @Override
   void learnFromInstance(Instance inst, ModelAggregatorProcessor proc) {
-    // TODO: what statistics should we keep for unused instance?
-    if (isSplitting) { // currently throw all instance will splitting
-      this.thrownAwayInstance++;
+    if (isSplitting) {
+      // keep the instance until the split is resolved if the buffer is not
+      // full, otherwise throw it away
+      if (this.numPendingInstances < this.splitBufferSize) {
+        this.bufferInstance(inst);
+      } else {
+        this.thrownAwayInstance++;
+        this.droppedInstances++;
+      }
       return;
     }
     this.observedClassDistribution.addToValue((int) inst.classValue(),
         inst.weight());
     // done: parallelize by sending attributes one by one
-    // TODO: meanwhile, we can try to use the ThreadPool to execute it
-    // separately
-    // TODO: parallelize by sending in batch, i.e. split the attributes into
-    // chunk instead of send the attribute one by one
-    for (int i = 0; i < inst.numAttributes() - 1; i++) {
-      int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
-      Integer obsIndex = i;
-      String key = attributeContentEventKeys.get(obsIndex);
-
-      if (key == null) {
-        key = this.generateKey(i);
-        attributeContentEventKeys.put(obsIndex, key);
+    // done: parallelize by sending in batch, i.e. the values of each
+    // attribute are appended to a columnar batch that is sent once per
+    // InstancesContentEvent
+    // done: optionally group contiguous attributes in ranges, one per local
+    // statistic PI
+    if (this.attributeBatchContentEvent == null) {
+      this.attributeBatchContentEvent = this.newAttributeBatches(inst);
+    }
+    for (AttributeBatchContentEvent abce : this.attributeBatchContentEvent) {
+      abce.add(inst);
+    }
+  }
+
+  /*
+   * Create the batches of the attributes, either one per attribute or, with
+   * attribute-range partitioning, one per local statistic PI. The bounds and
+   * the key of a range only depend on its index, so that the observers of an
+   * attribute always live on the same PI. The disabled attributes are left
+   * out, so a range with disabled attributes is sent in several batches, one
+   * per run of enabled attributes, with the key of the range.
+   */
+  private AttributeBatchContentEvent[] newAttributeBatches(Instance inst) {
+    int numAttributes = inst.numAttributes() - 1;
+    int numRanges = this.attributeRanges ? Math.min(this.parallelismHint, numAttributes) : numAttributes;
+    List<AttributeBatchContentEvent> batches = new ArrayList<>(numRanges);
+    for (int r = 0; r < numRanges; r++) {
+      int from = (int) ((long) r * numAttributes / numRanges);
+      int to = (int) ((long) (r + 1) * numAttributes / numRanges);
+      int start = from;
+      while (start < to) {
+        if (this.isAttributeDisabled(start)) {
+          start++;
+          continue;
+        }
+        int end = start + 1;
+        while (end < to && !this.isAttributeDisabled(end)) {
+          end++;
+        }
+        boolean[] isNominal = new boolean[end - start];
+        for (int i = start; i < end; i++) {
+          isNominal[i - start] = inst.attribute(modelAttIndexToInstanceAttIndex(i, inst)).isNominal();
+        }
+        String key = this.attributeRanges ? getRangeKey(r) : this.getAttributeContentEventKey(start);
+        batches.add(new AttributeBatchContentEvent.Builder(this.id, start, key)
+            .isNominal(isNominal)
+            .build());
+        start = end;
       }
-      AttributeContentEvent ace = new AttributeContentEvent.Builder(
-          this.id, i, key)
-          .attrValue(inst.value(instAttIndex))
-          .classValue((int) inst.classValue())
-          .weight(inst.weight())
-          .isNominal(inst.attribute(instAttIndex).isNominal())
-          .build();
-      if (this.attributeBatchContentEvent == null) {
-        this.attributeBatchContentEvent = new AttributeBatchContentEvent[inst.numAttributes() - 1];
+    }
+    return batches.toArray(new AttributeBatchContentEvent[batches.size()]);
+  }
+
+  /*
+   * Key of an attribute range. The hash code of a one-character string is its
+   * character, so the ranges 0..p-1 go to distinct PIs on the engines that
+   * route a key by its hash code (plus a constant) modulo p: simple,
+   * multithreaded, virtual threads, and Storm's fields grouping. The engines
+   * that scramble the hash code (e.g. Flink's key groups, Samza's Kafka
+   * partitioner) spread the ranges at random, so a PI may get several ranges
+   * and another none: this only unbalances the load, not the results.
+   */
+  static String getRangeKey(int range) {
+    return String.valueOf((char) range);
+  }
+
+  private boolean isAttributeDisabled(int obsIndex) {
+    return this.disabledAttributes != null && obsIndex < this.disabledAttributes.length
+        && this.disabledAttributes[obsIndex];
+  }
+
+  /**
+   * Add the merits of the best split of some attributes, reported by a local statistic PI along with its suggestions.
+   * 
+   * @param attributes
+   *          indices of the attributes, null if the PI does not report them
+   * @param merits
+   *          merit of the best split of each attribute
+   */
+  void addAttributeMerits(int[] attributes, double[] merits) {
+    if (attributes == null)
+      return;
+    for (int i = 0; i < attributes.length; i++) {
+      int obsIndex = attributes[i];
+      if (this.attributeMerits == null || obsIndex >= this.attributeMerits.length) {
+        int oldLength = this.attributeMerits == null ? 0 : this.attributeMerits.length;
+        int newLength = Math.max(obsIndex + 1, oldLength << 1);
+        this.attributeMerits = this.attributeMerits == null ? new double[newLength] : Arrays.copyOf(
+            this.attributeMerits, newLength);
+        Arrays.fill(this.attributeMerits, oldLength, newLength, Double.NaN);
       }
-      if (this.attributeBatchContentEvent[i] == null) {
-        this.attributeBatchContentEvent[i] = new AttributeBatchContentEvent.Builder(
-            this.id, i, key)
-            // .attrValue(inst.value(instAttIndex))
-            // .classValue((int) inst.classValue())
-            // .weight(inst.weight()]
-            .isNominal(inst.attribute(instAttIndex).isNominal())
-            .build();
+      this.attributeMerits[obsIndex] = merits[i];
+    }
+  }
+
+  /**
+   * Find the enabled attributes whose best split has a merit below a threshold in the current split attempt.
+   * 
+   * @param meritThreshold
+   *          the threshold, i.e. the merit of the best split minus the Hoeffding bound
+   * @return the indices of the attributes
+   */
+  int[] getPoorAttributes(double meritThreshold) {
+    if (this.attributeMerits == null)
+      return new int[0];
+    int count = 0;
+    int[] poorAttributes = new int[this.attributeMerits.length];
+    for (int obsIndex = 0; obsIndex < this.attributeMerits.length; obsIndex++) {
+      // NaN, i.e. not reported, is never poor
+      if (this.attributeMerits[obsIndex] < meritThreshold && !this.isAttributeDisabled(obsIndex)) {
+        poorAttributes[count++] = obsIndex;
       }
-      this.attributeBatchContentEvent[i].add(ace);
-      // proc.sendToAttributeStream(ace);
     }
+    return Arrays.copyOf(poorAttributes, count);
+  }
+
+  /**
+   * Stop sending the values of some attributes to the local statistic PIs.
+   * 
+   * @param attributes
+   *          indices of the attributes
+   */
+  void disableAttributes(int[] attributes) {
+    for (int obsIndex : attributes) {
+      if (this.disabledAttributes == null || obsIndex >= this.disabledAttributes.length) {
+        this.disabledAttributes = this.disabledAttributes == null ? new boolean[obsIndex + 1] : Arrays.copyOf(
+            this.disabledAttributes, Math.max(obsIndex + 1, this.disabledAttributes.length << 1));
+      }
+      this.disabledAttributes[obsIndex] = true;
+    }
+  }
+
+  private void bufferInstance(Instance inst) {
+    if (this.pendingInstances == null) {
+      this.pendingInstances = new Instance[Math.min(16, this.splitBufferSize)];
+    } else if (this.numPendingInstances == this.pendingInstances.length) {
+      this.pendingInstances = Arrays.copyOf(this.pendingInstances,
+          Math.min(this.splitBufferSize, this.pendingInstances.length << 1));
+    }
+    this.pendingInstances[this.numPendingInstances++] = inst;
+  }
+
+  /**
+   * Remove the instances received while the node was splitting.
+   * 
+   * @return the buffered instances in arrival order, empty if there is none
+   */
+  Instance[] takePendingInstances() {
+    if (this.numPendingInstances == 0)
+      return new Instance[0];
+    Instance[] pending = Arrays.copyOf(this.pendingInstances, this.numPendingInstances);
+    this.pendingInstances = null;
+    this.numPendingInstances = 0;
+    return pending;
+  }
+
+  int getThrownAwayInstances() {
+    return this.thrownAwayInstance;
+  }
+
+  /**
+   * @return the number of instances thrown away by this node since its creation, because they arrived while the node
+   *         was splitting and the buffer was full
+   */
+  long getDroppedInstances() {
+    return this.droppedInstances;
+  }
+
+  private String getAttributeContentEventKey(int obsIndex) {
+    Integer key = obsIndex;
+    String eventKey = attributeContentEventKeys.get(key);
+    if (eventKey == null) {
+      eventKey = this.generateKey(obsIndex);
+      attributeContentEventKeys.put(key, eventKey);
+    }
+    return eventKey;
   }
 
   @Override
@@ -139,6 +312,10 @@ final class ActiveLearningNode extends LearningNode {
   void requestDistributedSuggestions(long splitId, ModelAggregatorProcessor modelAggrProc) {
     this.isSplitting = true;
     this.suggestionCtr = 0;
+    this.pendingStatisticsByteSize = 0;
+    if (this.attributeMerits != null) {
+      Arrays.fill(this.attributeMerits, Double.NaN);
+    }
     this.thrownAwayInstance = 0;
 
     ComputeContentEvent cce = new ComputeContentEvent(splitId, this.id,
@@ -170,13 +347,31 @@ final class ActiveLearningNode extends LearningNode {
     this.suggestionCtr++;
   }
 
+  /**
+   * Add the byte size of the statistics reported by a local statistic PI along with its suggestions. The size of the
+   * node is known once all the PIs have replied.
+   * 
+   * @param byteSize
+   *          the byte size of the statistics of the node in the PI
+   */
+  void addStatisticsByteSize(long byteSize) {
+    this.pendingStatisticsByteSize += byteSize;
+    if (this.isAllSuggestionsCollected()) {
+      this.statisticsByteSize = this.pendingStatisticsByteSize;
+    }
+  }
+
+  long getStatisticsByteSize() {
+    return this.statisticsByteSize;
+  }
+
   boolean isSplitting() {
     return this.isSplitting;
   }
 
   void endSplitting() {
     this.isSplitting = false;
-    logger.trace("wasted instance: {}", this.thrownAwayInstance);
+    logger.trace("wasted instance: {}, buffered instance: {}", this.thrownAwayInstance, this.numPendingInstances);
     this.thrownAwayInstance = 0;
     this.bestSuggestion = null;
     this.secondBestSuggestion = null;
@@ -0,0 +1,147 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+
+/**
+ * Batch size of the {@link FilterProcessor}, adapted to the load of the downstream PIs and bounded by the maximum
+ * latency of an instance in a batch.
+ * 
+ * A batch costs a fixed overhead plus a cost per instance. The controller tracks the fraction of the time the filter
+ * spends sending batches: the overhead of the engine, the processing of the downstream PIs in the local engine, or the
+ * time blocked on their full queues in the multi-threaded ones. Above {@link #HIGH_UTILIZATION} sending is a
+ * significant cost and the batch grows to amortize it, below {@link #LOW_UTILIZATION} it is negligible and the batch
+ * shrinks to reduce the latency.
+ * 
+ * With a maximum latency, the batch size is also capped by the number of instances expected to arrive within that
+ * latency, so a batch does not wait for instances at low input rates.
+ */
+final class AdaptiveBatchSize implements Serializable {
+
+  private static final long serialVersionUID = 3236405567735271367L;
+
+  static final double HIGH_UTILIZATION = 0.1;
+  static final double LOW_UTILIZATION = 0.02;
+
+  // Smoothing factor of the moving averages
+  private static final double ALPHA = 0.2;
+
+  private final int maxSize;
+  private final long maxLatencyNanos;
+  private final boolean adaptive;
+
+  private int size;
+  // Moving averages of the time between two instances and of the fraction of
+  // the time spent sending batches, negative until measured
+  private double arrivalInterval = -1;
+  private double utilization = -1;
+  private long lastArrival = -1;
+  private long lastSent = -1;
+
+  /**
+   * @param maxSize
+   *          the maximum (and initial) batch size
+   * @param maxLatencyNanos
+   *          the maximum time an instance waits in a batch, 0 for no bound
+   * @param adaptive
+   *          whether the batch size adapts to the load of the downstream PIs
+   */
+  AdaptiveBatchSize(int maxSize, long maxLatencyNanos, boolean adaptive) {
+    if (maxSize < 1)
+      throw new IllegalArgumentException("Batch size must be a positive integer.");
+    this.maxSize = maxSize;
+    this.maxLatencyNanos = maxLatencyNanos;
+    this.adaptive = adaptive;
+    this.size = maxSize;
+  }
+
+  /**
+   * @return the number of instances of the next batch
+   */
+  int size() {
+    return Math.max(1, Math.min(size, maxSize()));
+  }
+
+  /**
+   * @return the fraction of the time spent sending batches, negative before the second batch
+   */
+  double utilization() {
+    return utilization;
+  }
+
+  /**
+   * Record the arrival of an instance.
+   * 
+   * @param now
+   *          the current time (System.nanoTime())
+   */
+  void arrival(long now) {
+    if (lastArrival >= 0)
+      arrivalInterval = average(arrivalInterval, now - lastArrival);
+    lastArrival = now;
+  }
+
+  /**
+   * Record a batch that has been sent and update the batch size.
+   * 
+   * @param start
+   *          the time the sending started
+   * @param end
+   *          the time the sending ended
+   */
+  void sent(long start, long end) {
+    if (lastSent >= 0 && end > lastSent)
+      utilization = average(utilization, (double) (end - start) / (end - lastSent));
+    lastSent = end;
+
+    if (adaptive && utilization >= 0) {
+      int step = Math.max(1, size >> 2);
+      if (utilization > HIGH_UTILIZATION)
+        size += step;
+      else if (utilization < LOW_UTILIZATION)
+        size -= step;
+    }
+    size = Math.max(1, Math.min(size, maxSize()));
+  }
+
+  /**
+   * @param waitNanos
+   *          the time the oldest instance of the current batch has waited
+   * @return true if the batch has to be sent because of its latency
+   */
+  boolean expired(long waitNanos) {
+    return maxLatencyNanos > 0 && waitNanos >= maxLatencyNanos;
+  }
+
+  /*
+   * Maximum size, given the maximum latency and the arrival rate
+   */
+  private int maxSize() {
+    if (maxLatencyNanos <= 0 || arrivalInterval <= 0)
+      return maxSize;
+    return (int) Math.max(1, Math.min(maxSize, maxLatencyNanos / arrivalInterval));
+  }
+
+  private static double average(double average, double value) {
+    return average < 0 ? value : (1 - ALPHA) * average + ALPHA * value;
+  }
+}
@@ -20,13 +20,21 @@ package org.apache.samoa.learners.classifiers.trees;
  * #L%
  */
 
-import java.util.LinkedList;
-import java.util.List;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 
 import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.instances.Instance;
 
 /**
- * Attribute Content Event represents the instances that split vertically based on their attribute
+ * Attribute Batch Content Event represents the values of a contiguous range of attributes for a batch of instances that
+ * reached the same learning node. The values of each attribute, the class values and the weights are stored in
+ * primitive arrays, so that adding an instance and reading the batch do not create any object. The class values and
+ * weights are shared by all the attributes of the range.
+ * 
+ * By default a range contains a single attribute. With attribute-range partitioning, the model aggregator sends one
+ * range per local statistic PI, so that the number of events per batch does not depend on the number of attributes.
  * 
  * @author Arinto Murdopo
  * 
@@ -35,33 +43,90 @@ public final class AttributeBatchContentEvent implements ContentEvent {
 
   private static final long serialVersionUID = 6652815649846676832L;
 
+  private static final int INITIAL_CAPACITY = 16;
+
   private final long learningNodeId;
   private final int obsIndex;
-  private final List<ContentEvent> contentEventList;
   private final transient String key;
-  private final boolean isNominal;
+  private final boolean[] isNominal;
+
+  private double[][] values;
+  private int[] classes;
+  private double[] weights;
+  private int size;
 
   public AttributeBatchContentEvent() {
     learningNodeId = -1;
     obsIndex = -1;
-    contentEventList = new LinkedList<>();
     key = "";
-    isNominal = true;
+    isNominal = new boolean[] { true };
+    values = new double[1][INITIAL_CAPACITY];
+    classes = new int[INITIAL_CAPACITY];
+    weights = new double[INITIAL_CAPACITY];
   }
 
   public AttributeBatchContentEvent(Builder builder) {
     this.learningNodeId = builder.learningNodeId;
     this.obsIndex = builder.obsIndex;
-    this.contentEventList = new LinkedList<>();
-    if (builder.contentEvent != null) {
-      this.contentEventList.add(builder.contentEvent);
-    }
     this.isNominal = builder.isNominal;
     this.key = builder.key;
+    this.values = new double[builder.isNominal.length][builder.capacity];
+    this.classes = new int[builder.capacity];
+    this.weights = new double[builder.capacity];
+  }
+
+  /**
+   * Add the value of the attribute for one instance. Only valid when the range contains a single attribute.
+   * 
+   * @param attrVal
+   *          the value of the attribute
+   * @param classVal
+   *          the class value of the instance
+   * @param weight
+   *          the weight of the instance
+   */
+  public void add(double attrVal, int classVal, double weight) {
+    if (isNominal.length != 1)
+      throw new IllegalStateException("The batch contains a range of " + isNominal.length + " attributes.");
+    ensureCapacity();
+    values[0][size] = attrVal;
+    classes[size] = classVal;
+    weights[size] = weight;
+    size++;
   }
 
   public void add(ContentEvent contentEvent) {
-    this.contentEventList.add(contentEvent);
+    AttributeContentEvent ace = (AttributeContentEvent) contentEvent;
+    this.add(ace.getAttrVal(), ace.getClassVal(), ace.getWeight());
+  }
+
+  /**
+   * Add the values of the attributes of the range for one instance.
+   * 
+   * @param inst
+   *          the instance
+   */
+  public void add(Instance inst) {
+    ensureCapacity();
+    int classIndex = inst.classIndex();
+    for (int i = 0; i < isNominal.length; i++) {
+      int index = obsIndex + i;
+      values[i][size] = inst.value(classIndex > index ? index : index + 1);
+    }
+    classes[size] = (int) inst.classValue();
+    weights[size] = inst.weight();
+    size++;
+  }
+
+  private void ensureCapacity() {
+    if (size == classes.length) {
+      int capacity = Math.max(INITIAL_CAPACITY, size << 1);
+      for (int i = 0; i < values.length; i++) {
+        values[i] = Arrays.copyOf(values[i], capacity);
+      }
+      classes = Arrays.copyOf(classes, capacity);
+      weights = Arrays.copyOf(weights, capacity);
+    }
   }
 
   @Override
@@ -84,16 +149,78 @@ public final class AttributeBatchContentEvent implements ContentEvent {
     return this.learningNodeId;
   }
 
+  /**
+   * @return the index of the first attribute of the range
+   */
   int getObsIndex() {
     return this.obsIndex;
   }
 
-  public List<ContentEvent> getContentEventList() {
-    return this.contentEventList;
+  /**
+   * @return the number of attributes in the range
+   */
+  int getNumAttributes() {
+    return this.isNominal.length;
   }
 
   boolean isNominal() {
-    return this.isNominal;
+    return this.isNominal[0];
+  }
+
+  boolean isNominal(int offset) {
+    return this.isNominal[offset];
+  }
+
+  /**
+   * @return the number of instances in the batch
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * The arrays returned by {@link #getValues()}, {@link #getClasses()} and {@link #getWeights()} may be longer than the
+   * batch: only the first {@link #size()} entries are valid.
+   * 
+   * @return the values of the first attribute of the range
+   */
+  double[] getValues() {
+    return this.values[0];
+  }
+
+  /**
+   * @param offset
+   *          the position of the attribute in the range
+   * @return the values of the attribute
+   */
+  double[] getValues(int offset) {
+    return this.values[offset];
+  }
+
+  int[] getClasses() {
+    return this.classes;
+  }
+
+  double[] getWeights() {
+    return this.weights;
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    // do not ship the unused capacity of the arrays, without trimming them:
+    // the event may be serialized again
+    double[][] trimmedValues = new double[values.length][];
+    for (int i = 0; i < values.length; i++) {
+      trimmedValues[i] = Arrays.copyOf(values[i], size);
+    }
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("learningNodeId", learningNodeId);
+    fields.put("obsIndex", obsIndex);
+    fields.put("isNominal", isNominal);
+    fields.put("values", trimmedValues);
+    fields.put("classes", Arrays.copyOf(classes, size));
+    fields.put("weights", Arrays.copyOf(weights, size));
+    fields.put("size", size);
+    out.writeFields();
   }
 
   public static final class Builder {
@@ -103,8 +230,8 @@ public final class AttributeBatchContentEvent implements ContentEvent {
     private final int obsIndex;
     private final String key;
 
-    private ContentEvent contentEvent;
-    private boolean isNominal = false;
+    private boolean[] isNominal = { false };
+    private int capacity = INITIAL_CAPACITY;
 
     Builder(long id, int obsIndex, String key) {
       this.learningNodeId = id;
@@ -118,16 +245,25 @@ public final class AttributeBatchContentEvent implements ContentEvent {
       this.key = "";
     }
 
-    Builder contentEvent(ContentEvent contentEvent) {
-      this.contentEvent = contentEvent;
+    Builder isNominal(boolean val) {
+      this.isNominal = new boolean[] { val };
       return this;
     }
 
-    Builder isNominal(boolean val) {
+    /**
+     * Set the type of each attribute of the range, starting from obsIndex. The length of the array is the number of
+     * attributes in the range.
+     */
+    Builder isNominal(boolean[] val) {
       this.isNominal = val;
       return this;
     }
 
+    Builder capacity(int val) {
+      this.capacity = Math.max(1, val);
+      return this;
+    }
+
     AttributeBatchContentEvent build() {
       return new AttributeBatchContentEvent(this);
     }
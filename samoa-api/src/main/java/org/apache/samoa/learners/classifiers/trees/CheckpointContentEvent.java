@@ -0,0 +1,67 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+/**
+ * Control event sent by the model aggregator to the local statistic PIs when it takes a snapshot of the model, so that
+ * they take a snapshot of their statistics with the same id. After a restore, the model aggregator also sends the id
+ * of the snapshot it restored, which the local statistic PIs check against theirs.
+ * 
+ */
+public final class CheckpointContentEvent extends ControlContentEvent {
+
+  private static final long serialVersionUID = -4513364410385412190L;
+
+  private final long checkpointId;
+  private final boolean restored;
+
+  public CheckpointContentEvent() {
+    super(-1);
+    this.checkpointId = -1;
+    this.restored = false;
+  }
+
+  CheckpointContentEvent(long checkpointId) {
+    this(checkpointId, false);
+  }
+
+  CheckpointContentEvent(long checkpointId, boolean restored) {
+    super(-1);
+    this.checkpointId = checkpointId;
+    this.restored = restored;
+  }
+
+  @Override
+  LocStatControl getType() {
+    return LocStatControl.CHECKPOINT;
+  }
+
+  long getCheckpointId() {
+    return this.checkpointId;
+  }
+
+  /**
+   * @return true if the event announces the snapshot restored by the model aggregator (-1 for none), instead of asking
+   *         for a new one
+   */
+  boolean isRestored() {
+    return this.restored;
+  }
+}
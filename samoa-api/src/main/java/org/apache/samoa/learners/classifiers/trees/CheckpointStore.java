@@ -0,0 +1,387 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the snapshots of the state of a VHT processor in a local directory, one file per snapshot named
+ * &lt;name&gt;-&lt;id&gt;.ckpt. A file starts with a magic number, a format version, the id of the snapshot and the
+ * number of stores of the snapshot, followed by the deflated Java serialization of the state.
+ * 
+ * The state is serialized in memory by the caller, so that the snapshot is consistent: the serialization is the copy
+ * of the state, as the tree and the statistics are updated in place. The compression and the write run on a background
+ * thread shared by all the stores, so the caller never waits for the disk. A file is written under a temporary name and
+ * renamed once complete.
+ * 
+ * The stores of the model and of the local statistics that share a directory form one snapshot together. The store of
+ * the model records in its files how many stores the snapshot has (see {@link #setSnapshotStores(int)}), and a
+ * snapshot id is complete once that many stores have written it. Only a complete snapshot is restored, and a store
+ * deletes its older snapshots only once a newer one is complete, so a crash always leaves a complete snapshot.
+ * 
+ */
+final class CheckpointStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(CheckpointStore.class);
+
+  private static final int MAGIC = 0x56485443; // "VHTC"
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".ckpt";
+
+  private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "vht-checkpoint-writer");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private final File directory;
+  private final String name;
+  // the number of stores of the snapshots, 0 if unknown to this store
+  private int snapshotStores;
+
+  private Future<?> pendingWrite;
+  private volatile long lastWrittenId = -1;
+
+  CheckpointStore(String directory, String name) {
+    this.directory = new File(directory);
+    this.name = name;
+  }
+
+  /**
+   * Set the number of stores that write each snapshot, including this one. It is recorded in the files of this store,
+   * which coordinates the snapshots: a snapshot without such a file is never complete.
+   * 
+   * @param snapshotStores
+   *          the number of stores of the snapshots
+   */
+  void setSnapshotStores(int snapshotStores) {
+    this.snapshotStores = snapshotStores;
+  }
+
+  /**
+   * Take a snapshot of the state and write it in the background. The snapshot is skipped if the previous one is still
+   * being written.
+   * 
+   * @param id
+   *          the id of the snapshot, increasing
+   * @param state
+   *          the state, which is serialized before the method returns
+   * @return true if the snapshot was taken
+   */
+  boolean write(long id, Serializable state) {
+    return write(id, state, true);
+  }
+
+  /**
+   * Take a snapshot of the state and write it in the background.
+   * 
+   * @param id
+   *          the id of the snapshot, increasing
+   * @param state
+   *          the state, which is serialized before the method returns
+   * @param skipIfBusy
+   *          whether to skip the snapshot if the previous one is still being written, instead of queuing it behind. The
+   *          local statistics cannot skip the snapshots the model has taken, or the snapshot would never be complete.
+   * @return true if the snapshot was taken
+   */
+  boolean write(final long id, Serializable state, boolean skipIfBusy) {
+    // the writer thread writes the queued snapshots in order, and a snapshot
+    // is only restored once all its files are written
+    if (skipIfBusy && pendingWrite != null && !pendingWrite.isDone()) {
+      logger.warn("Snapshot {} of {} skipped, the previous one is still being written", id, name);
+      return false;
+    }
+    final byte[] bytes;
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(buffer);
+      out.writeObject(state);
+      out.close();
+      bytes = buffer.toByteArray();
+    } catch (IOException e) {
+      logger.error("Cannot serialize snapshot " + id + " of " + name, e);
+      return false;
+    }
+    final int stores = this.snapshotStores;
+    pendingWrite = writer.submit(new Runnable() {
+      @Override
+      public void run() {
+        writeFile(id, stores, bytes);
+      }
+    });
+    return true;
+  }
+
+  private void writeFile(long id, int stores, byte[] bytes) {
+    File tmp = new File(directory, name + SUFFIX + ".tmp");
+    File file = fileOf(id);
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs())
+        throw new IOException("Cannot create directory " + directory);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(id);
+        out.writeInt(stores);
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater(Deflater.BEST_SPEED));
+        deflater.write(bytes);
+        deflater.finish();
+      } finally {
+        out.close();
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      lastWrittenId = id;
+      // the snapshots older than the latest complete one are no longer needed
+      long completeId = latestCompleteId();
+      for (File old : listFiles()) {
+        long oldId = idOf(old);
+        if (oldId >= 0 && oldId < completeId) {
+          Files.deleteIfExists(old.toPath());
+        }
+      }
+      logger.debug("Snapshot {} of {} written ({} bytes serialized)", new Object[] { id, name, bytes.length });
+    } catch (IOException e) {
+      logger.error("Cannot write snapshot " + id + " of " + name, e);
+    }
+  }
+
+  /**
+   * Wait until the snapshots taken so far by all the stores are written.
+   */
+  static void awaitWrites() {
+    try {
+      writer.submit(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // the writes catch their own errors
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Read the most recent complete snapshot, i.e. the most recent one written by all the stores it was taken with, so
+   * that the model and the local statistics are restored from the same point of the stream. The snapshots of this
+   * store that are not part of a complete one are deleted, as they belong to a snapshot that was interrupted.
+   * 
+   * @return the state, or null if there is no complete snapshot
+   * @throws IllegalStateException
+   *           if the snapshot of this store cannot be read, as restoring an older one would not match the other stores
+   */
+  Object readLatest() {
+    long id = latestCompleteId();
+    if (id < 0) {
+      if (listFiles().length > 0)
+        logger.warn("No complete snapshot in {}, {} starts from scratch", directory, name);
+      return null;
+    }
+    File file = fileOf(id);
+    if (!file.isFile()) {
+      // this store did not exist when the snapshot was taken
+      throw new IllegalStateException("Snapshot " + id + " in " + directory + " has no " + name
+          + ", was it taken with a different parallelism?");
+    }
+    Object state;
+    try {
+      state = read(file, id);
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Cannot read snapshot " + id + " of " + name
+          + ", delete the snapshot to restore an older one", e);
+    }
+    for (File orphan : listFiles()) {
+      if (idOf(orphan) > id && !orphan.delete())
+        logger.warn("Cannot delete incomplete snapshot {}", orphan);
+    }
+    this.lastWrittenId = id;
+    logger.info("Restored snapshot {} of {}", id, name);
+    return state;
+  }
+
+  long getLastWrittenId() {
+    return lastWrittenId;
+  }
+
+  /**
+   * @return the highest snapshot id written by any store of the directory, complete or not, or -1 if there is none.
+   *         New snapshots are numbered after it, so that they cannot be mixed up with the files of an interrupted one.
+   */
+  long getHighestId() {
+    long highest = -1;
+    for (Map.Entry<String, Set<Long>> store : snapshotsByStore().entrySet()) {
+      for (long id : store.getValue()) {
+        highest = Math.max(highest, id);
+      }
+    }
+    return highest;
+  }
+
+  /*
+   * The most recent snapshot id written, with a valid header, by as many
+   * stores as its coordinating store recorded, or -1 if there is none
+   */
+  private long latestCompleteId() {
+    Map<String, Set<Long>> snapshots = snapshotsByStore();
+    Set<Long> ids = new HashSet<>();
+    for (Set<Long> storeIds : snapshots.values()) {
+      ids.addAll(storeIds);
+    }
+    long latest = -1;
+    for (long id : ids) {
+      if (id <= latest)
+        continue;
+      int expected = 0;
+      int written = 0;
+      for (Map.Entry<String, Set<Long>> store : snapshots.entrySet()) {
+        if (!store.getValue().contains(id))
+          continue;
+        int stores = readStores(new File(directory, store.getKey() + "-" + id + SUFFIX), id);
+        if (stores >= 0) {
+          written++;
+          expected = Math.max(expected, stores);
+        }
+      }
+      if (expected > 0 && written >= expected)
+        latest = id;
+    }
+    return latest;
+  }
+
+  /*
+   * The ids of the snapshots in the directory, by name of store
+   */
+  private Map<String, Set<Long>> snapshotsByStore() {
+    Map<String, Set<Long>> snapshots = new HashMap<>();
+    for (File file : listFiles()) {
+      String fileName = file.getName();
+      int dash = fileName.lastIndexOf('-');
+      if (!fileName.endsWith(SUFFIX) || dash <= 0)
+        continue;
+      long id = parseId(fileName.substring(dash + 1, fileName.length() - SUFFIX.length()));
+      if (id < 0)
+        continue;
+      String store = fileName.substring(0, dash);
+      Set<Long> ids = snapshots.get(store);
+      if (ids == null) {
+        ids = new HashSet<>();
+        snapshots.put(store, ids);
+      }
+      ids.add(id);
+    }
+    return snapshots;
+  }
+
+  private File[] listFiles() {
+    File[] files = directory.listFiles();
+    return files == null ? new File[0] : files;
+  }
+
+  /*
+   * The number of stores recorded in the header of the file, 0 if unknown,
+   * or -1 if the header is not valid
+   */
+  private static int readStores(File file, long id) {
+    try {
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      try {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != id)
+          return -1;
+        return in.readInt();
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  private static Object read(File file, long id) throws IOException, ClassNotFoundException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC)
+        throw new IOException("Not a snapshot: " + file);
+      int version = in.readInt();
+      if (version != VERSION)
+        throw new IOException("Unsupported snapshot version " + version + ": " + file);
+      if (in.readLong() != id)
+        throw new IOException("Snapshot id does not match the file name: " + file);
+      in.readInt();
+      return new ObjectInputStream(new InflaterInputStream(in)).readObject();
+    } finally {
+      in.close();
+    }
+  }
+
+  private File fileOf(long id) {
+    return new File(directory, name + "-" + id + SUFFIX);
+  }
+
+  private long idOf(File file) {
+    String fileName = file.getName();
+    String prefix = name + "-";
+    if (!fileName.startsWith(prefix) || !fileName.endsWith(SUFFIX))
+      return -1;
+    return parseId(fileName.substring(prefix.length(), fileName.length() - SUFFIX.length()));
+  }
+
+  private static long parseId(String id) {
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,371 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.InstanceConditionalTest;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+
+/**
+ * Read-optimized copy of the tree of the {@link ModelAggregatorProcessor}, used to predict the class of the test
+ * instances. The split nodes are laid out in parallel arrays (kind of test, attribute, value, offset and number of
+ * children) and the class distributions of all the nodes in a single array, one slot per node, so routing an instance
+ * neither allocates objects nor chases references across the heap.
+ * 
+ * The copy is kept up to date incrementally: replacing a child of a split node appends the new subtree and patches the
+ * entry of the parent, and the distribution of a leaf is copied to its slot each time it learns. The space of the
+ * replaced subtrees is reclaimed by compiling the whole tree again once it exceeds the space of the live one.
+ * 
+ * An entry of the children array is the index of a split node, the complement of the slot of a leaf or
+ * {@link #NO_CHILD}. As in {@link SplitNode#filterInstanceToLeaf}, an instance with a missing value for the test of a
+ * split node, or routed to a missing child, gets the votes of the split node.
+ */
+final class CompiledTree {
+
+  static final int NO_CHILD = Integer.MIN_VALUE;
+
+  private static final int NUMERIC = 0;
+  private static final int NOMINAL_BINARY = 1;
+  private static final int NOMINAL_MULTIWAY = 2;
+  // Any other test, evaluated by the test itself
+  private static final int GENERIC = 3;
+
+  private static final int INITIAL_CAPACITY = 16;
+  // Number of dead slots tolerated on top of the live ones before compiling
+  // the tree again
+  private static final int MIN_GARBAGE = 64;
+
+  // Split nodes
+  private int[] kind;
+  private int[] attribute;
+  private double[] value;
+  private boolean[] equalsPasses;
+  private int[] firstChild;
+  private int[] numChildren;
+  private int[] ownSlot;
+  private InstanceConditionalTest[] tests;
+  private SplitNode[] splitNodes;
+  private int numSplits;
+
+  private int[] children;
+  private int numEntries;
+
+  // Class distributions, width values per slot
+  private double[] votes;
+  private int[] numVotes;
+  private Node[] slotNodes;
+  private int width;
+  private int numSlots;
+  private int liveSlots;
+
+  // Index of each split node and entry of each leaf
+  private final Map<Node, Integer> entries = new IdentityHashMap<>();
+  private Node rootNode;
+  private int root = NO_CHILD;
+
+  CompiledTree(int numClasses) {
+    this.width = Math.max(1, numClasses);
+    this.kind = new int[INITIAL_CAPACITY];
+    this.attribute = new int[INITIAL_CAPACITY];
+    this.value = new double[INITIAL_CAPACITY];
+    this.equalsPasses = new boolean[INITIAL_CAPACITY];
+    this.firstChild = new int[INITIAL_CAPACITY];
+    this.numChildren = new int[INITIAL_CAPACITY];
+    this.ownSlot = new int[INITIAL_CAPACITY];
+    this.tests = new InstanceConditionalTest[INITIAL_CAPACITY];
+    this.splitNodes = new SplitNode[INITIAL_CAPACITY];
+    this.children = new int[INITIAL_CAPACITY];
+    this.votes = new double[INITIAL_CAPACITY * width];
+    this.numVotes = new int[INITIAL_CAPACITY];
+    this.slotNodes = new Node[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Compile the whole tree, discarding the current copy.
+   * 
+   * @param node
+   *          the root of the tree, or null if the tree is empty
+   */
+  void compile(Node node) {
+    Arrays.fill(tests, 0, numSplits, null);
+    Arrays.fill(splitNodes, 0, numSplits, null);
+    Arrays.fill(slotNodes, 0, numSlots, null);
+    this.entries.clear();
+    this.numSplits = 0;
+    this.numEntries = 0;
+    this.numSlots = 0;
+    this.liveSlots = 0;
+    this.rootNode = node;
+    this.root = node == null ? NO_CHILD : append(node);
+  }
+
+  /**
+   * Replace a child of a split node of the tree. The tree must have been already updated.
+   * 
+   * @param parent
+   *          the split node
+   * @param branch
+   *          the branch of the child
+   * @param child
+   *          the new child, or null
+   */
+  void setChild(SplitNode parent, int branch, Node child) {
+    Integer index = entries.get(parent);
+    if (index == null || index < 0) {
+      // not a split node of this copy
+      compile(rootNode);
+      return;
+    }
+    int n = index;
+    if (branch >= numChildren[n]) {
+      // move the children to a larger block
+      int first = newEntries(branch + 1);
+      System.arraycopy(children, firstChild[n], children, first, numChildren[n]);
+      Arrays.fill(children, first + numChildren[n], first + branch + 1, NO_CHILD);
+      firstChild[n] = first;
+      numChildren[n] = branch + 1;
+    }
+    int old = children[firstChild[n] + branch];
+    if (old != NO_CHILD) {
+      release(old);
+    }
+    int entry = child == null ? NO_CHILD : append(child);
+    children[firstChild[n] + branch] = entry;
+
+    if (numSlots - liveSlots > liveSlots + MIN_GARBAGE) {
+      compile(rootNode);
+    }
+  }
+
+  /**
+   * Copy the class distribution of a node, e.g. after a leaf has learnt from an instance. Nodes that are not in the tree
+   * are ignored.
+   * 
+   * @param node
+   *          the node
+   */
+  void update(Node node) {
+    Integer entry = entries.get(node);
+    if (entry != null) {
+      int e = entry;
+      setVotes(e < 0 ? ~e : ownSlot[e], node.observedClassDistribution.getArrayRef());
+    }
+  }
+
+  /**
+   * Class votes for an instance, i.e. the class distribution of the node that the instance reaches. The tree must not be
+   * empty.
+   * 
+   * @param inst
+   *          the instance
+   * @return a copy of the class distribution, as returned by {@link Node#getClassVotes}
+   */
+  double[] getVotes(Instance inst) {
+    int slot = slotFor(inst);
+    int offset = slot * width;
+    return Arrays.copyOfRange(votes, offset, offset + numVotes[slot]);
+  }
+
+  /**
+   * Route an instance to the slot of the class distribution that predicts it.
+   * 
+   * @param inst
+   *          the instance
+   * @return the slot, or -1 if the tree is empty
+   */
+  int slotFor(Instance inst) {
+    int entry = root;
+    if (entry == NO_CHILD) {
+      return -1;
+    }
+    while (entry >= 0) {
+      int branch = branchForInstance(entry, inst);
+      if (branch < 0 || branch >= numChildren[entry]) {
+        return ownSlot[entry];
+      }
+      int child = children[firstChild[entry] + branch];
+      if (child == NO_CHILD) {
+        return ownSlot[entry];
+      }
+      entry = child;
+    }
+    return ~entry;
+  }
+
+  private int branchForInstance(int n, Instance inst) {
+    int instAttIndex;
+    switch (kind[n]) {
+    case NUMERIC:
+      instAttIndex = attribute[n];
+      if (inst.isMissing(instAttIndex)) {
+        return -1;
+      }
+      double v = inst.value(instAttIndex);
+      if (v == value[n]) {
+        return equalsPasses[n] ? 0 : 1;
+      }
+      return v < value[n] ? 0 : 1;
+    case NOMINAL_BINARY:
+      instAttIndex = attribute[n] < inst.classIndex() ? attribute[n] : attribute[n] + 1;
+      return inst.isMissing(instAttIndex) ? -1 : ((int) inst.value(instAttIndex) == (int) value[n] ? 0 : 1);
+    case NOMINAL_MULTIWAY:
+      instAttIndex = attribute[n];
+      return inst.isMissing(instAttIndex) ? -1 : (int) inst.value(instAttIndex);
+    default:
+      return tests[n].branchForInstance(inst);
+    }
+  }
+
+  /*
+   * Append a subtree and return its entry
+   */
+  private int append(Node node) {
+    if (!(node instanceof SplitNode)) {
+      int entry = ~newSlot(node);
+      entries.put(node, entry);
+      return entry;
+    }
+    SplitNode split = (SplitNode) node;
+    int n = newSplit(split);
+    entries.put(split, n);
+    int count = split.numChildren();
+    int first = newEntries(count);
+    firstChild[n] = first;
+    numChildren[n] = count;
+    for (int i = 0; i < count; i++) {
+      Node child = split.getChild(i);
+      // the arrays may grow while appending the child
+      int entry = child == null ? NO_CHILD : append(child);
+      children[first + i] = entry;
+    }
+    return n;
+  }
+
+  private int newSplit(SplitNode split) {
+    if (numSplits == kind.length) {
+      int capacity = numSplits << 1;
+      kind = Arrays.copyOf(kind, capacity);
+      attribute = Arrays.copyOf(attribute, capacity);
+      value = Arrays.copyOf(value, capacity);
+      equalsPasses = Arrays.copyOf(equalsPasses, capacity);
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      numChildren = Arrays.copyOf(numChildren, capacity);
+      ownSlot = Arrays.copyOf(ownSlot, capacity);
+      tests = Arrays.copyOf(tests, capacity);
+      splitNodes = Arrays.copyOf(splitNodes, capacity);
+    }
+    int n = numSplits++;
+    InstanceConditionalTest test = split.splitTest;
+    tests[n] = test;
+    splitNodes[n] = split;
+    // exact classes only, as a subclass may route differently
+    if (test.getClass() == NumericAttributeBinaryTest.class) {
+      NumericAttributeBinaryTest numericTest = (NumericAttributeBinaryTest) test;
+      kind[n] = NUMERIC;
+      attribute[n] = numericTest.getAttIndex();
+      value[n] = numericTest.getSplitValue();
+      equalsPasses[n] = numericTest.isEqualsPassesTest();
+    } else if (test.getClass() == NominalAttributeBinaryTest.class) {
+      NominalAttributeBinaryTest nominalTest = (NominalAttributeBinaryTest) test;
+      kind[n] = NOMINAL_BINARY;
+      attribute[n] = nominalTest.getAttIndex();
+      value[n] = nominalTest.getAttValue();
+    } else if (test.getClass() == NominalAttributeMultiwayTest.class) {
+      kind[n] = NOMINAL_MULTIWAY;
+      attribute[n] = ((NominalAttributeMultiwayTest) test).getAttIndex();
+    } else {
+      kind[n] = GENERIC;
+    }
+    ownSlot[n] = newSlot(split);
+    return n;
+  }
+
+  private int newEntries(int count) {
+    if (numEntries + count > children.length) {
+      children = Arrays.copyOf(children, Math.max(children.length << 1, numEntries + count));
+    }
+    int first = numEntries;
+    numEntries += count;
+    return first;
+  }
+
+  private int newSlot(Node node) {
+    if (numSlots == slotNodes.length) {
+      int capacity = numSlots << 1;
+      votes = Arrays.copyOf(votes, capacity * width);
+      numVotes = Arrays.copyOf(numVotes, capacity);
+      slotNodes = Arrays.copyOf(slotNodes, capacity);
+    }
+    int slot = numSlots++;
+    liveSlots++;
+    slotNodes[slot] = node;
+    setVotes(slot, node.observedClassDistribution.getArrayRef());
+    return slot;
+  }
+
+  private void setVotes(int slot, double[] distribution) {
+    int length = distribution.length;
+    if (length > width) {
+      widen(length);
+    }
+    System.arraycopy(distribution, 0, votes, slot * width, length);
+    numVotes[slot] = length;
+  }
+
+  private void widen(int newWidth) {
+    double[] newVotes = new double[slotNodes.length * newWidth];
+    for (int slot = 0; slot < numSlots; slot++) {
+      System.arraycopy(votes, slot * width, newVotes, slot * newWidth, numVotes[slot]);
+    }
+    this.votes = newVotes;
+    this.width = newWidth;
+  }
+
+  /*
+   * Mark the slots of a replaced subtree as dead
+   */
+  private void release(int entry) {
+    if (entry < 0) {
+      int slot = ~entry;
+      entries.remove(slotNodes[slot]);
+      slotNodes[slot] = null;
+      liveSlots--;
+      return;
+    }
+    entries.remove(splitNodes[entry]);
+    splitNodes[entry] = null;
+    tests[entry] = null;
+    slotNodes[ownSlot[entry]] = null;
+    liveSlots--;
+    for (int i = 0; i < numChildren[entry]; i++) {
+      int child = children[firstChild[entry] + i];
+      if (child != NO_CHILD) {
+        release(child);
+      }
+    }
+  }
+}
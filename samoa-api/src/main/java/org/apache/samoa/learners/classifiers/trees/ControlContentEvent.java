@@ -67,6 +67,6 @@ public abstract class ControlContentEvent implements ContentEvent {
   abstract LocStatControl getType();
 
   static enum LocStatControl {
-    COMPUTE, DELETE
+    COMPUTE, DELETE, DISABLE_ATTRIBUTES, CHECKPOINT
   }
 }
@@ -0,0 +1,56 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Control event sent by the model aggregator to the local statistic PIs when some attributes of a learning node can no
+ * longer be chosen for its split. The PIs that own these attributes drop their observers, and the model aggregator stops
+ * sending their values.
+ * 
+ */
+public final class DisableAttributesContentEvent extends ControlContentEvent {
+
+  private static final long serialVersionUID = 1796408402960186462L;
+
+  private final int[] attributes;
+
+  public DisableAttributesContentEvent() {
+    super(-1);
+    this.attributes = new int[0];
+  }
+
+  DisableAttributesContentEvent(long id, int[] attributes) {
+    super(id);
+    this.attributes = attributes;
+  }
+
+  @Override
+  LocStatControl getType() {
+    return LocStatControl.DISABLE_ATTRIBUTES;
+  }
+
+  /**
+   * @return the indices of the disabled attributes, i.e. the indices of their observers
+   */
+  int[] getAttributes() {
+    return this.attributes;
+  }
+}
@@ -22,6 +22,7 @@ package org.apache.samoa.learners.classifiers.trees;
 
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickingProcessor;
 import org.apache.samoa.instances.Instance;
 import org.apache.samoa.instances.Instances;
 import org.apache.samoa.instances.InstancesHeader;
@@ -32,16 +33,25 @@ import org.apache.samoa.topology.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Filter Processor that stores and filters the instances before sending them to the Model Aggregator Processor.
  * 
+ * The instances are sent in batches. A batch is sent when it reaches the batch size, which can adapt to the load of the
+ * Model Aggregator (see {@link AdaptiveBatchSize}), when its oldest instance has waited for the maximum latency, or
+ * when the last instance arrives. The size and the wait time of the batches are available through the getters of the
+ * processor.
+ * 
+ * The latency is checked when an instance arrives and on every tick of the engine (see {@link TickingProcessor}), so a
+ * partial batch is sent even when the input stalls. An instance then waits at most the maximum latency plus the tick
+ * period of the engine. The engines that do not tick their processors (e.g. the distributed ones) only check it when
+ * an instance arrives: there the maximum latency is not a bound when the input stalls.
+ * 
  * @author Arinto Murdopo
  * 
  */
-public final class FilterProcessor implements Processor {
+public final class FilterProcessor implements TickingProcessor {
 
   private static final long serialVersionUID = -1685875718300564885L;
   private static final Logger logger = LoggerFactory.getLogger(FilterProcessor.class);
@@ -59,44 +69,165 @@ public final class FilterProcessor implements Processor {
     this.dataset = builder.dataset;
     this.batchSize = builder.batchSize;
     this.delay = builder.delay;
+    this.maxLatency = builder.maxLatency;
+    this.adaptiveBatchSize = builder.adaptiveBatchSize;
+    this.sizer = new AdaptiveBatchSize(batchSize, TimeUnit.MICROSECONDS.toNanos(maxLatency), adaptiveBatchSize);
+    this.timed = adaptiveBatchSize || maxLatency > 0 || delay > 0;
   }
 
   private int waitingInstances = 0;
 
+  // minimum time in milliseconds between two batches
   private int delay = 0;
 
   private int batchSize = 200;
 
-  private List<InstanceContentEvent> contentEventList = new LinkedList<InstanceContentEvent>();
+  // maximum time in microseconds an instance waits in a batch, 0 for no bound
+  private long maxLatency = 0;
+
+  private boolean adaptiveBatchSize = false;
+
+  private final AdaptiveBatchSize sizer;
+
+  // whether the batching needs the clock
+  private final boolean timed;
+
+  private InstancesContentEvent batch;
+  private long batchStart;
+  private long lastSent = -1;
+
+  // statistics of the batches sent
+  private long batchCount;
+  private long instanceCount;
+  private int lastBatchSize;
+  private long lastBatchWait;
+  private long totalBatchWait;
+  private long maxBatchWait;
 
   @Override
   public boolean process(ContentEvent event) {
     // Receive a new instance from source
     if (event instanceof InstanceContentEvent) {
       InstanceContentEvent instanceContentEvent = (InstanceContentEvent) event;
-      this.contentEventList.add(instanceContentEvent);
+      long now = timed ? System.nanoTime() : 0;
+      if (this.batch == null) {
+        this.batch = new InstancesContentEvent();
+        this.batchStart = now;
+      }
+      this.batch.add(instanceContentEvent.getInstanceContent());
       this.waitingInstances++;
-      if (this.waitingInstances == this.batchSize || instanceContentEvent.isLastEvent()) {
-        // Send Instances
-        InstancesContentEvent outputEvent = new InstancesContentEvent();
-        while (!this.contentEventList.isEmpty()) {
-          InstanceContentEvent ice = this.contentEventList.remove(0);
-          outputEvent.add(ice.getInstanceContent());
-        }
-        this.waitingInstances = 0;
-        this.outputStream.put(outputEvent);
-        if (this.delay > 0) {
-          try {
-            Thread.sleep(this.delay);
-          } catch (InterruptedException ex) {
-            Thread.currentThread().interrupt();
-          }
-        }
+      if (timed)
+        this.sizer.arrival(now);
+      if (instanceContentEvent.isLastEvent() || this.isReady(now)) {
+        this.sendBatch(now);
       }
     }
     return false;
   }
 
+  @Override
+  public long getTickInterval() {
+    long interval = this.maxLatency;
+    if (this.delay > 0 && (interval == 0 || TimeUnit.MILLISECONDS.toMicros(this.delay) < interval))
+      interval = TimeUnit.MILLISECONDS.toMicros(this.delay);
+    return interval;
+  }
+
+  @Override
+  public void onTick() {
+    if (this.batch == null)
+      return;
+    long now = System.nanoTime();
+    if (this.isReady(now))
+      this.sendBatch(now);
+  }
+
+  /*
+   * Whether the current batch is full or expired, and can be sent
+   */
+  private boolean isReady(long now) {
+    return (this.waitingInstances >= this.sizer.size() || this.sizer.expired(now - this.batchStart))
+        && !this.isDelayed(now);
+  }
+
+  /*
+   * Whether the minimum time between two batches has not elapsed yet
+   */
+  private boolean isDelayed(long now) {
+    return this.delay > 0 && this.lastSent >= 0 && now - this.lastSent < TimeUnit.MILLISECONDS.toNanos(this.delay);
+  }
+
+  private void sendBatch(long now) {
+    InstancesContentEvent outputEvent = this.batch;
+    int size = this.waitingInstances;
+    this.batch = null;
+    this.waitingInstances = 0;
+    this.outputStream.put(outputEvent);
+
+    this.batchCount++;
+    this.instanceCount += size;
+    this.lastBatchSize = size;
+    if (timed) {
+      long end = System.nanoTime();
+      this.lastBatchWait = now - this.batchStart;
+      this.totalBatchWait += this.lastBatchWait;
+      this.maxBatchWait = Math.max(this.maxBatchWait, this.lastBatchWait);
+      this.sizer.sent(now, end);
+      this.lastSent = end;
+    }
+    logger.trace("Sent a batch of {} instances after {} us, next batch size: {}", new Object[] { size,
+        TimeUnit.NANOSECONDS.toMicros(this.lastBatchWait), this.sizer.size() });
+  }
+
+  /**
+   * @return the size of the next batch
+   */
+  public int getBatchSize() {
+    return this.sizer.size();
+  }
+
+  /**
+   * @return the number of batches sent
+   */
+  public long getBatchCount() {
+    return this.batchCount;
+  }
+
+  /**
+   * @return the number of instances in the last batch sent
+   */
+  public int getLastBatchSize() {
+    return this.lastBatchSize;
+  }
+
+  /**
+   * @return the average number of instances in the batches sent
+   */
+  public double getMeanBatchSize() {
+    return this.batchCount == 0 ? 0 : (double) this.instanceCount / this.batchCount;
+  }
+
+  /**
+   * @return the time in microseconds the oldest instance of the last batch waited, 0 if the batching is not timed
+   */
+  public long getLastBatchWait() {
+    return TimeUnit.NANOSECONDS.toMicros(this.lastBatchWait);
+  }
+
+  /**
+   * @return the average time in microseconds the oldest instance of a batch waited
+   */
+  public double getMeanBatchWait() {
+    return this.batchCount == 0 ? 0 : this.totalBatchWait / 1000.0 / this.batchCount;
+  }
+
+  /**
+   * @return the maximum time in microseconds the oldest instance of a batch waited
+   */
+  public long getMaxBatchWait() {
+    return TimeUnit.NANOSECONDS.toMicros(this.maxBatchWait);
+  }
+
   @Override
   public void onCreate(int id) {
     this.processorId = id;
@@ -118,6 +249,12 @@ public final class FilterProcessor implements Processor {
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append(super.toString());
+
+    sb.append(" BatchSize: ").append(getBatchSize());
+    sb.append(", BatchCount: ").append(batchCount);
+    sb.append(", MeanBatchSize: ").append(getMeanBatchSize());
+    sb.append(", MeanBatchWait: ").append(getMeanBatchWait());
+    sb.append(", MaxBatchWait: ").append(getMaxBatchWait());
     return sb.toString();
   }
 
@@ -136,7 +273,7 @@ public final class FilterProcessor implements Processor {
    */
   private ResultContentEvent newResultContentEvent(double[] prediction, InstanceContentEvent inEvent) {
     ResultContentEvent rce = new ResultContentEvent(inEvent.getInstanceIndex(), inEvent.getInstance(),
-        inEvent.getClassId(), prediction, inEvent.isLastEvent());
+        inEvent.getClassId(), prediction, inEvent.isLastEvent(), inEvent.isResultWithInstance());
     rce.setClassifierIndex(this.processorId);
     rce.setEvaluationIndex(inEvent.getEvaluationIndex());
     return rce;
@@ -157,6 +294,10 @@ public final class FilterProcessor implements Processor {
 
     private int batchSize = 200;
 
+    private long maxLatency = 0;
+
+    private boolean adaptiveBatchSize = false;
+
     Builder(Instances dataset) {
       this.dataset = dataset;
     }
@@ -165,6 +306,8 @@ public final class FilterProcessor implements Processor {
       this.dataset = oldProcessor.dataset;
       this.delay = oldProcessor.delay;
       this.batchSize = oldProcessor.batchSize;
+      this.maxLatency = oldProcessor.maxLatency;
+      this.adaptiveBatchSize = oldProcessor.adaptiveBatchSize;
     }
 
     public Builder delay(int delay) {
@@ -177,6 +320,16 @@ public final class FilterProcessor implements Processor {
       return this;
     }
 
+    public Builder maxLatency(long val) {
+      this.maxLatency = val;
+      return this;
+    }
+
+    public Builder adaptiveBatchSize(boolean val) {
+      this.adaptiveBatchSize = val;
+      return this;
+    }
+
     FilterProcessor build() {
       return new FilterProcessor(this);
     }
@@ -37,17 +37,27 @@ public final class LocalResultContentEvent implements ContentEvent {
   private final AttributeSplitSuggestion bestSuggestion;
   private final AttributeSplitSuggestion secondBestSuggestion;
   private final long splitId;
+  private final long statisticsByteSize;
+  private int[] attributes;
+  private double[] merits;
 
   public LocalResultContentEvent() {
     bestSuggestion = null;
     secondBestSuggestion = null;
     splitId = -1;
+    statisticsByteSize = 0;
   }
 
   LocalResultContentEvent(long splitId, AttributeSplitSuggestion best, AttributeSplitSuggestion secondBest) {
+    this(splitId, best, secondBest, 0);
+  }
+
+  LocalResultContentEvent(long splitId, AttributeSplitSuggestion best, AttributeSplitSuggestion secondBest,
+      long statisticsByteSize) {
     this.splitId = splitId;
     this.bestSuggestion = best;
     this.secondBestSuggestion = secondBest;
+    this.statisticsByteSize = statisticsByteSize;
   }
 
   @Override
@@ -82,6 +92,42 @@ public final class LocalResultContentEvent implements ContentEvent {
     return this.splitId;
   }
 
+  /**
+   * Method to set the merits of the best split of each attribute of the local statistic PI.
+   * 
+   * @param attributes
+   *          indices of the attributes
+   * @param merits
+   *          merit of the best split of the attribute with the same index
+   */
+  void setAttributeMerits(int[] attributes, double[] merits) {
+    this.attributes = attributes;
+    this.merits = merits;
+  }
+
+  /**
+   * @return the indices of the attributes whose merits are reported, or null if they are not reported
+   */
+  int[] getAttributes() {
+    return this.attributes;
+  }
+
+  /**
+   * @return the merits of the attributes returned by {@link #getAttributes()}, or null if they are not reported
+   */
+  double[] getMerits() {
+    return this.merits;
+  }
+
+  /**
+   * Method to get the estimated byte size of the statistics of the learning node in the local statistic PI.
+   * 
+   * @return byte size, 0 if not measured
+   */
+  long getStatisticsByteSize() {
+    return this.statisticsByteSize;
+  }
+
   @Override
   public void setKey(String str) {
     // do nothing
@@ -20,11 +20,10 @@ package org.apache.samoa.learners.classifiers.trees;
  * #L%
  */
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
@@ -35,12 +34,10 @@ import org.apache.samoa.moa.classifiers.core.attributeclassobservers.NominalAttr
 import org.apache.samoa.moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
 import org.apache.samoa.moa.classifiers.core.splitcriteria.SplitCriterion;
 import org.apache.samoa.topology.Stream;
+import org.apache.samoa.utils.ByteSizeEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 /**
  * Local Statistic Processor contains the local statistic of a subset of the attributes.
  * 
@@ -57,7 +54,7 @@ public final class LocalStatisticsProcessor implements Processor {
 
   // Collection of AttributeObservers, for each ActiveLearningNode and
   // AttributeId
-  private Table<Long, Integer, AttributeClassObserver> localStats;
+  private LocalStatisticsStore localStats;
 
   private Stream computationResultStream;
 
@@ -65,6 +62,20 @@ public final class LocalStatisticsProcessor implements Processor {
   private final boolean binarySplit;
   private final AttributeClassObserver nominalClassObserver;
   private final AttributeClassObserver numericClassObserver;
+  private final int splitEvaluationParallelism;
+  private final boolean reportByteSize;
+  private final boolean reportMerits;
+  private final String checkpointDirectory;
+  private final boolean restore;
+
+  // the pools evaluating the split suggestions, one per parallelism, shared by all the
+  // processors of the JVM; their workers are daemon threads and exit when idle
+  private static final Map<Integer, ForkJoinPool> splitEvaluationPools = new HashMap<>();
+
+  private transient ForkJoinPool splitEvaluationPool;
+  private transient CheckpointStore checkpointStore;
+  // the id of the restored snapshot, -1 for none
+  private transient long restoredCheckpointId;
 
   // the two observer classes below are also needed to be setup from the Tree
   private LocalStatisticsProcessor(Builder builder) {
@@ -72,6 +83,11 @@ public final class LocalStatisticsProcessor implements Processor {
     this.binarySplit = builder.binarySplit;
     this.nominalClassObserver = builder.nominalClassObserver;
     this.numericClassObserver = builder.numericClassObserver;
+    this.splitEvaluationParallelism = builder.splitEvaluationParallelism;
+    this.reportByteSize = builder.reportByteSize;
+    this.reportMerits = builder.reportMerits;
+    this.checkpointDirectory = builder.checkpointDirectory;
+    this.restore = builder.restore;
   }
 
   @Override
@@ -79,22 +95,27 @@ public final class LocalStatisticsProcessor implements Processor {
     // process AttributeContentEvent by updating the subset of local statistics
     if (event instanceof AttributeBatchContentEvent) {
       AttributeBatchContentEvent abce = (AttributeBatchContentEvent) event;
-      List<ContentEvent> contentEventList = abce.getContentEventList();
-      for (ContentEvent contentEvent : contentEventList) {
-        AttributeContentEvent ace = (AttributeContentEvent) contentEvent;
-        Long learningNodeId = ace.getLearningNodeId();
-        Integer obsIndex = ace.getObsIndex();
-
-        AttributeClassObserver obs = localStats.get(
-            learningNodeId, obsIndex);
+      long learningNodeId = abce.getLearningNodeId();
+      int firstObsIndex = abce.getObsIndex();
+      int[] classes = abce.getClasses();
+      double[] weights = abce.getWeights();
+
+      // the batch covers a range of attributes, all the values of an
+      // attribute belong to the same observer
+      AttributeClassObserver[] observers = localStats.getOrCreate(
+          learningNodeId, firstObsIndex + abce.getNumAttributes());
+      for (int a = 0; a < abce.getNumAttributes(); a++) {
+        AttributeClassObserver obs = observers[firstObsIndex + a];
 
         if (obs == null) {
-          obs = ace.isNominal() ? newNominalClassObserver()
+          obs = abce.isNominal(a) ? newNominalClassObserver()
               : newNumericClassObserver();
-          localStats.put(ace.getLearningNodeId(), obsIndex, obs);
+          observers[firstObsIndex + a] = obs;
+        }
+        double[] values = abce.getValues(a);
+        for (int i = 0; i < abce.size(); i++) {
+          obs.observeAttributeClass(values[i], classes[i], weights[i]);
         }
-        obs.observeAttributeClass(ace.getAttrVal(), ace.getClassVal(),
-            ace.getWeight());
       }
 
       /*
@@ -114,55 +135,97 @@ public final class LocalStatisticsProcessor implements Processor {
       // process ComputeContentEvent by calculating the local statistic
       // and send back the calculation results via computation result stream.
       ComputeContentEvent cce = (ComputeContentEvent) event;
-      Long learningNodeId = cce.getLearningNodeId();
+      long learningNodeId = cce.getLearningNodeId();
       double[] preSplitDist = cce.getPreSplitDist();
 
-      Map<Integer, AttributeClassObserver> learningNodeRowMap = localStats
-          .row(learningNodeId);
-      List<AttributeSplitSuggestion> suggestions = new Vector<>();
-
-      for (Entry<Integer, AttributeClassObserver> entry : learningNodeRowMap.entrySet()) {
-        AttributeClassObserver obs = entry.getValue();
-        AttributeSplitSuggestion suggestion = obs
-            .getBestEvaluatedSplitSuggestion(splitCriterion,
-                preSplitDist, entry.getKey(), binarySplit);
-        if (suggestion != null) {
-          suggestions.add(suggestion);
-        }
+      AttributeClassObserver[] observers = localStats.get(learningNodeId);
+      double[] merits = (reportMerits && observers != null) ? new double[observers.length] : null;
+      TopSuggestions top;
+      if (observers == null) {
+        top = new TopSuggestions();
+      } else if (splitEvaluationPool == null) {
+        top = evaluateSplits(observers, 0, observers.length, preSplitDist, merits);
+      } else {
+        // fan out the evaluation of the observers over the pool
+        top = splitEvaluationPool.invoke(new SplitEvaluationTask(this, observers, 0, observers.length, preSplitDist,
+            merits));
       }
 
-      AttributeSplitSuggestion[] bestSuggestions = suggestions
-          .toArray(new AttributeSplitSuggestion[suggestions.size()]);
-
-      Arrays.sort(bestSuggestions);
-
-      AttributeSplitSuggestion bestSuggestion = null;
-      AttributeSplitSuggestion secondBestSuggestion = null;
-
-      if (bestSuggestions.length >= 1) {
-        bestSuggestion = bestSuggestions[bestSuggestions.length - 1];
-
-        if (bestSuggestions.length >= 2) {
-          secondBestSuggestion = bestSuggestions[bestSuggestions.length - 2];
-        }
+      // the model aggregator estimates the size of the model from the size of
+      // the statistics of its leaves
+      long byteSize = 0;
+      if (reportByteSize && observers != null) {
+        byteSize = new ByteSizeEstimator().sizeOf(observers);
       }
 
       // create the local result content event
       LocalResultContentEvent lcre =
-          new LocalResultContentEvent(cce.getSplitId(), bestSuggestion, secondBestSuggestion);
+          new LocalResultContentEvent(cce.getSplitId(), top.best, top.secondBest, byteSize);
+      if (merits != null) {
+        setAttributeMerits(lcre, merits);
+      }
       computationResultStream.put(lcre);
       logger.debug("Finish compute event");
     } else if (event instanceof DeleteContentEvent) {
       DeleteContentEvent dce = (DeleteContentEvent) event;
-      Long learningNodeId = dce.getLearningNodeId();
-      localStats.rowMap().remove(learningNodeId);
+      localStats.remove(dce.getLearningNodeId());
+    } else if (event instanceof DisableAttributesContentEvent) {
+      // drop the observers of the attributes that can no longer be chosen,
+      // their values are no longer sent
+      DisableAttributesContentEvent dace = (DisableAttributesContentEvent) event;
+      AttributeClassObserver[] observers = localStats.get(dace.getLearningNodeId());
+      if (observers != null) {
+        for (int obsIndex : dace.getAttributes()) {
+          if (obsIndex < observers.length) {
+            observers[obsIndex] = null;
+          }
+        }
+      }
+    } else if (event instanceof CheckpointContentEvent) {
+      CheckpointContentEvent cce = (CheckpointContentEvent) event;
+      if (cce.isRestored()) {
+        if (cce.getCheckpointId() != restoredCheckpointId) {
+          throw new IllegalStateException("The model was restored from snapshot " + cce.getCheckpointId()
+              + " but the local statistics from snapshot " + restoredCheckpointId);
+        }
+      } else if (checkpointStore != null) {
+        // the model has taken its snapshot, this one cannot be skipped
+        checkpointStore.write(cce.getCheckpointId(), localStats, false);
+      }
     }
     return false;
   }
 
   @Override
   public void onCreate(int id) {
-    this.localStats = HashBasedTable.create();
+    this.localStats = new LocalStatisticsStore();
+    this.restoredCheckpointId = -1;
+    if (this.checkpointDirectory != null) {
+      // the statistics are partitioned among the replicas, so a snapshot is
+      // only restored with the same parallelism
+      this.checkpointStore = new CheckpointStore(this.checkpointDirectory, "statistics-" + id);
+      if (this.restore) {
+        LocalStatisticsStore restored = (LocalStatisticsStore) this.checkpointStore.readLatest();
+        if (restored != null) {
+          this.localStats = restored;
+          this.restoredCheckpointId = this.checkpointStore.getLastWrittenId();
+        }
+      }
+    }
+    if (this.splitEvaluationParallelism > 1) {
+      this.splitEvaluationPool = getSplitEvaluationPool(this.splitEvaluationParallelism);
+    }
+  }
+
+  static ForkJoinPool getSplitEvaluationPool(int parallelism) {
+    synchronized (splitEvaluationPools) {
+      ForkJoinPool pool = splitEvaluationPools.get(parallelism);
+      if (pool == null) {
+        pool = new ForkJoinPool(parallelism);
+        splitEvaluationPools.put(parallelism, pool);
+      }
+      return pool;
+    }
   }
 
   @Override
@@ -184,6 +247,50 @@ public final class LocalStatisticsProcessor implements Processor {
     this.computationResultStream = computeStream;
   }
 
+  /*
+   * Evaluate the observers in [from, to) and keep the two best suggestions.
+   * The merit of the best suggestion of each observer is stored in merits if
+   * not null, NaN if the observer has no suggestion.
+   */
+  private TopSuggestions evaluateSplits(AttributeClassObserver[] observers, int from, int to, double[] preSplitDist,
+      double[] merits) {
+    TopSuggestions top = new TopSuggestions();
+    for (int obsIndex = from; obsIndex < to; obsIndex++) {
+      AttributeClassObserver obs = observers[obsIndex];
+      AttributeSplitSuggestion suggestion = null;
+      if (obs != null) {
+        suggestion = obs.getBestEvaluatedSplitSuggestion(splitCriterion, preSplitDist, obsIndex, binarySplit);
+        top.offer(suggestion);
+      }
+      if (merits != null) {
+        merits[obsIndex] = (suggestion == null || suggestion.splitTest == null) ? Double.NaN : suggestion.merit;
+      }
+    }
+    return top;
+  }
+
+  /*
+   * Attach the merits of the attributes that have a suggestion to the result
+   */
+  private static void setAttributeMerits(LocalResultContentEvent lcre, double[] merits) {
+    int count = 0;
+    for (int obsIndex = 0; obsIndex < merits.length; obsIndex++) {
+      if (!Double.isNaN(merits[obsIndex]))
+        count++;
+    }
+    int[] reportedAttributes = new int[count];
+    double[] reportedMerits = new double[count];
+    int i = 0;
+    for (int obsIndex = 0; obsIndex < merits.length; obsIndex++) {
+      if (!Double.isNaN(merits[obsIndex])) {
+        reportedAttributes[i] = obsIndex;
+        reportedMerits[i] = merits[obsIndex];
+        i++;
+      }
+    }
+    lcre.setAttributeMerits(reportedAttributes, reportedMerits);
+  }
+
   private AttributeClassObserver newNominalClassObserver() {
     return (AttributeClassObserver) this.nominalClassObserver.copy();
   }
@@ -192,6 +299,77 @@ public final class LocalStatisticsProcessor implements Processor {
     return (AttributeClassObserver) this.numericClassObserver.copy();
   }
 
+  /**
+   * The best and second best split suggestions seen so far. On equal merits the suggestion offered last wins, as it did
+   * when all the suggestions were sorted.
+   */
+  static final class TopSuggestions {
+    AttributeSplitSuggestion best;
+    AttributeSplitSuggestion secondBest;
+
+    void offer(AttributeSplitSuggestion suggestion) {
+      if (suggestion == null)
+        return;
+      if (best == null || suggestion.compareTo(best) >= 0) {
+        secondBest = best;
+        best = suggestion;
+      } else if (secondBest == null || suggestion.compareTo(secondBest) >= 0) {
+        secondBest = suggestion;
+      }
+    }
+
+    /*
+     * Merge the suggestions of observers that come after the ones of this
+     */
+    void offer(TopSuggestions next) {
+      offer(next.secondBest);
+      offer(next.best);
+    }
+  }
+
+  /**
+   * Fork-join task evaluating a range of observers of a learning node. Ranges larger than {@link #THRESHOLD} are split
+   * in two halves and the two best suggestions of each half are merged.
+   */
+  static final class SplitEvaluationTask extends RecursiveTask<TopSuggestions> {
+
+    private static final long serialVersionUID = -2207946407317046137L;
+
+    static final int THRESHOLD = 16;
+
+    private final LocalStatisticsProcessor processor;
+    private final AttributeClassObserver[] observers;
+    private final int from;
+    private final int to;
+    private final double[] preSplitDist;
+    // written by the tasks at disjoint indices
+    private final double[] merits;
+
+    SplitEvaluationTask(LocalStatisticsProcessor processor, AttributeClassObserver[] observers, int from, int to,
+        double[] preSplitDist, double[] merits) {
+      this.processor = processor;
+      this.observers = observers;
+      this.from = from;
+      this.to = to;
+      this.preSplitDist = preSplitDist;
+      this.merits = merits;
+    }
+
+    @Override
+    protected TopSuggestions compute() {
+      if (to - from <= THRESHOLD) {
+        return processor.evaluateSplits(observers, from, to, preSplitDist, merits);
+      }
+      int mid = (from + to) >>> 1;
+      SplitEvaluationTask left = new SplitEvaluationTask(processor, observers, from, mid, preSplitDist, merits);
+      left.fork();
+      TopSuggestions top = new SplitEvaluationTask(processor, observers, mid, to, preSplitDist, merits).compute();
+      TopSuggestions merged = left.join();
+      merged.offer(top);
+      return merged;
+    }
+  }
+
   /**
    * Builder class to replace constructors with many parameters
    * 
@@ -204,6 +382,11 @@ public final class LocalStatisticsProcessor implements Processor {
     private boolean binarySplit = false;
     private AttributeClassObserver nominalClassObserver = new NominalAttributeClassObserver();
     private AttributeClassObserver numericClassObserver = new GaussianNumericAttributeClassObserver();
+    private int splitEvaluationParallelism = 1;
+    private boolean reportByteSize = false;
+    private boolean reportMerits = false;
+    private String checkpointDirectory = null;
+    private boolean restore = false;
 
     Builder() {
 
@@ -212,6 +395,11 @@ public final class LocalStatisticsProcessor implements Processor {
     Builder(LocalStatisticsProcessor oldProcessor) {
       this.splitCriterion = oldProcessor.splitCriterion;
       this.binarySplit = oldProcessor.binarySplit;
+      this.splitEvaluationParallelism = oldProcessor.splitEvaluationParallelism;
+      this.reportByteSize = oldProcessor.reportByteSize;
+      this.reportMerits = oldProcessor.reportMerits;
+      this.checkpointDirectory = oldProcessor.checkpointDirectory;
+      this.restore = oldProcessor.restore;
     }
 
     Builder splitCriterion(SplitCriterion splitCriterion) {
@@ -234,6 +422,51 @@ public final class LocalStatisticsProcessor implements Processor {
       return this;
     }
 
+    /**
+     * Number of threads evaluating the split suggestions of a learning node. With 1, the default, the suggestions are
+     * evaluated by the thread of the processor. The threads are shared by all the processors of the JVM that use the
+     * same parallelism.
+     */
+    Builder splitEvaluationParallelism(int splitEvaluationParallelism) {
+      this.splitEvaluationParallelism = splitEvaluationParallelism;
+      return this;
+    }
+
+    /**
+     * Report the estimated byte size of the statistics of a learning node along with its split suggestions, so that the
+     * model aggregator can bound the size of the model.
+     */
+    Builder reportByteSize(boolean reportByteSize) {
+      this.reportByteSize = reportByteSize;
+      return this;
+    }
+
+    /**
+     * Report the merit of the best split of each attribute along with the split suggestions, so that the model
+     * aggregator can disable the attributes that can no longer be chosen.
+     */
+    Builder reportMerits(boolean reportMerits) {
+      this.reportMerits = reportMerits;
+      return this;
+    }
+
+    /**
+     * Local directory of the snapshots of the statistics, taken when the model aggregator takes a snapshot of the
+     * model. With null, the default, no snapshot is taken nor restored.
+     */
+    Builder checkpointDirectory(String checkpointDirectory) {
+      this.checkpointDirectory = checkpointDirectory;
+      return this;
+    }
+
+    /**
+     * Start from the latest snapshot in the checkpoint directory that is complete, if any.
+     */
+    Builder restore(boolean restore) {
+      this.restore = restore;
+      return this;
+    }
+
     LocalStatisticsProcessor build() {
       return new LocalStatisticsProcessor(this);
     }
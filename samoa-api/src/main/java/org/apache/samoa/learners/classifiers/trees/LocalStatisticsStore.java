@@ -0,0 +1,170 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+
+/**
+ * Store of the attribute observers of a local statistic PI, keyed by learning node and attribute index. Each learning
+ * node owns a dense array of observers indexed by attribute, and the arrays are kept in an open addressing hash table
+ * keyed by the primitive id of the learning node. Looking up an observer does not box nor create any object, and
+ * removing a learning node only clears its slot in the table.
+ * 
+ */
+final class LocalStatisticsStore implements Serializable {
+
+  private static final long serialVersionUID = 3146723590312738406L;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  // the array of observers of the learning node in the same slot, null for
+  // an empty slot
+  private long[] ids;
+  private AttributeClassObserver[][] observers;
+  private int size;
+
+  LocalStatisticsStore() {
+    this.ids = new long[INITIAL_CAPACITY];
+    this.observers = new AttributeClassObserver[INITIAL_CAPACITY][];
+  }
+
+  /**
+   * @param learningNodeId
+   *          the id of the learning node
+   * @return the observers of the learning node indexed by attribute, or null if the node has no observer. The array may
+   *         be longer than the number of attributes and contain null entries.
+   */
+  AttributeClassObserver[] get(long learningNodeId) {
+    int slot = this.find(learningNodeId);
+    return slot < 0 ? null : this.observers[slot];
+  }
+
+  AttributeClassObserver get(long learningNodeId, int obsIndex) {
+    AttributeClassObserver[] row = this.get(learningNodeId);
+    return (row == null || obsIndex >= row.length) ? null : row[obsIndex];
+  }
+
+  /**
+   * Get the observers of a learning node, creating or growing its array so that it holds at least the given number of
+   * attributes. The returned array can be written directly, but it is replaced when it grows.
+   * 
+   * @param learningNodeId
+   *          the id of the learning node
+   * @param numAttributes
+   *          the minimum length of the array
+   * @return the observers of the learning node indexed by attribute
+   */
+  AttributeClassObserver[] getOrCreate(long learningNodeId, int numAttributes) {
+    int slot = this.find(learningNodeId);
+    if (slot < 0) {
+      if ((this.size + 1) << 1 > this.ids.length) {
+        this.rehash(this.ids.length << 1);
+        slot = this.find(learningNodeId);
+      }
+      slot = -slot - 1;
+      this.ids[slot] = learningNodeId;
+      this.observers[slot] = new AttributeClassObserver[numAttributes];
+      this.size++;
+    } else if (this.observers[slot].length < numAttributes) {
+      this.observers[slot] = Arrays.copyOf(this.observers[slot],
+          Math.max(numAttributes, this.observers[slot].length << 1));
+    }
+    return this.observers[slot];
+  }
+
+  void put(long learningNodeId, int obsIndex, AttributeClassObserver obs) {
+    this.getOrCreate(learningNodeId, obsIndex + 1)[obsIndex] = obs;
+  }
+
+  /**
+   * Remove all the observers of a learning node.
+   * 
+   * @param learningNodeId
+   *          the id of the learning node
+   */
+  void remove(long learningNodeId) {
+    int slot = this.find(learningNodeId);
+    if (slot < 0)
+      return;
+    // shift back the following entries of the probe sequence, so that no
+    // tombstone is needed
+    int mask = this.ids.length - 1;
+    int free = slot;
+    int next = (free + 1) & mask;
+    while (this.observers[next] != null) {
+      int home = hash(this.ids[next]) & mask;
+      // move the entry if its home slot is not in (free, next]
+      if (((next - home) & mask) >= ((next - free) & mask)) {
+        this.ids[free] = this.ids[next];
+        this.observers[free] = this.observers[next];
+        free = next;
+      }
+      next = (next + 1) & mask;
+    }
+    this.observers[free] = null;
+    this.size--;
+  }
+
+  /**
+   * @return the number of learning nodes in the store
+   */
+  int size() {
+    return this.size;
+  }
+
+  /*
+   * Returns the slot of the learning node, or (-insertion point - 1) if it is
+   * not in the table
+   */
+  private int find(long learningNodeId) {
+    int mask = this.ids.length - 1;
+    int slot = hash(learningNodeId) & mask;
+    while (this.observers[slot] != null) {
+      if (this.ids[slot] == learningNodeId)
+        return slot;
+      slot = (slot + 1) & mask;
+    }
+    return -slot - 1;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldIds = this.ids;
+    AttributeClassObserver[][] oldObservers = this.observers;
+    this.ids = new long[capacity];
+    this.observers = new AttributeClassObserver[capacity][];
+    for (int i = 0; i < oldIds.length; i++) {
+      if (oldObservers[i] != null) {
+        int slot = -this.find(oldIds[i]) - 1;
+        this.ids[slot] = oldIds[i];
+        this.observers[slot] = oldObservers[i];
+      }
+    }
+  }
+
+  private static int hash(long id) {
+    // learning node ids are sequential, spread them over the table
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
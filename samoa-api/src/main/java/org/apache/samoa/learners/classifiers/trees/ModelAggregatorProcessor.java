@@ -23,17 +23,15 @@ package org.apache.samoa.learners.classifiers.trees;
 import static org.apache.samoa.moa.core.Utils.maxIndex;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.samoa.core.ContentEvent;
@@ -49,6 +47,8 @@ import org.apache.samoa.moa.classifiers.core.driftdetection.ChangeDetector;
 import org.apache.samoa.moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
 import org.apache.samoa.moa.classifiers.core.splitcriteria.SplitCriterion;
 import org.apache.samoa.topology.Stream;
+import org.apache.samoa.utils.ByteSizeEstimator;
+import org.apache.samoa.utils.HashedTimerWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +69,9 @@ public final class ModelAggregatorProcessor implements Processor {
   private static final long serialVersionUID = -1685875718300564886L;
   private static final Logger logger = LoggerFactory.getLogger(ModelAggregatorProcessor.class);
 
+  // number of slots of the wheel of the split time-outs
+  private static final int TIME_OUT_SLOTS = 64;
+
   private int processorId;
 
   private Node treeRoot;
@@ -83,21 +86,53 @@ public final class ModelAggregatorProcessor implements Processor {
   // to support concurrent split
   private long splitId;
   private ConcurrentMap<Long, SplittingNodeInfo> splittingNodes;
-  private BlockingQueue<Long> timedOutSplittingNodes;
+  // time-outs of the split attempts, keyed by split ID
+  private transient HashedTimerWheel splitTimeOuts;
+  private transient HashedTimerWheel.ExpiryHandler splitTimeOutHandler;
 
   // available streams
   private Stream resultStream;
   private Stream attributeStream;
   private Stream controlStream;
 
-  private transient ScheduledExecutorService executor;
-
   private final SplitCriterion splitCriterion;
   private final double splitConfidence;
   private final double tieThreshold;
   private final int gracePeriod;
   private final int parallelismHint;
   private final long timeOut;
+  private final boolean attributeRanges;
+  private final int splitBufferSize;
+  private final boolean compiledPrediction;
+  private final long maxByteSize;
+  private final long memoryEstimatePeriod;
+  private final boolean removePoorAtts;
+  private final boolean immediateTesting;
+  private final String checkpointDirectory;
+  private final long checkpointPeriod;
+  private final boolean restore;
+
+  private long droppedInstances;
+  private long disabledAttributes;
+
+  // estimates of the memory used by the model, including the statistics of the
+  // active leaves in the local statistic PIs
+  private double activeLeafByteSizeEstimate;
+  private double inactiveLeafByteSizeEstimate;
+  private double byteSizeEstimateOverheadFraction = 1.0;
+  private long modelByteSize;
+  private long instancesSinceEstimate;
+
+  // read-optimized copy of the tree for the test instances, null if disabled
+  private transient CompiledTree compiledTree;
+
+  // snapshots of the model, null if disabled
+  private transient CheckpointStore checkpointStore;
+  private long checkpointId;
+  private long instancesSinceCheckpoint;
+  // the id of the restored snapshot (-1 for none) until it is sent to the local
+  // statistic PIs, which check it against theirs
+  private transient Long restoredCheckpointId;
 
   // private constructor based on Builder pattern
   private ModelAggregatorProcessor(Builder builder) {
@@ -108,6 +143,17 @@ public final class ModelAggregatorProcessor implements Processor {
     this.gracePeriod = builder.gracePeriod;
     this.parallelismHint = builder.parallelismHint;
     this.timeOut = builder.timeOut;
+    this.attributeRanges = builder.attributeRanges;
+    this.splitBufferSize = builder.splitBufferSize;
+    this.compiledPrediction = builder.compiledPrediction;
+    this.maxByteSize = builder.maxByteSize;
+    this.memoryEstimatePeriod = builder.memoryEstimatePeriod;
+    this.removePoorAtts = builder.removePoorAtts;
+    this.immediateTesting = builder.immediateTesting;
+    this.checkpointDirectory = builder.checkpointDirectory;
+    this.checkpointPeriod = builder.checkpointPeriod;
+    this.restore = builder.restore;
+    this.pendingBatches = new InstancesContentEvent[builder.stalenessWindow];
     this.changeDetector = builder.changeDetector;
 
     InstancesHeader ih = new InstancesHeader(dataset);
@@ -117,47 +163,29 @@ public final class ModelAggregatorProcessor implements Processor {
   @Override
   public boolean process(ContentEvent event) {
 
-    // Poll the blocking queue shared between ModelAggregator and the time-out
-    // threads
-    Long timedOutSplitId = timedOutSplittingNodes.poll();
-    if (timedOutSplitId != null) { // time out has been reached!
-      SplittingNodeInfo splittingNode = splittingNodes.get(timedOutSplitId);
-      if (splittingNode != null) {
-        this.splittingNodes.remove(timedOutSplitId);
-        this.continueAttemptToSplit(splittingNode.activeLearningNode, splittingNode.foundNode);
-
-      }
+    if (this.restoredCheckpointId != null) {
+      this.sendToControlStream(new CheckpointContentEvent(this.restoredCheckpointId, true));
+      this.restoredCheckpointId = null;
+    }
 
+    // Continue the split attempts whose time out has been reached
+    if (this.splitTimeOuts.size() > 0) {
+      this.splitTimeOuts.advance(System.nanoTime(), this.splitTimeOutHandler);
     }
 
     // Receive a new instance from source
     if (event instanceof InstancesContentEvent) {
       InstancesContentEvent instancesEvent = (InstancesContentEvent) event;
       this.processInstanceContentEvent(instancesEvent);
-      // Send information to local-statistic PI
-      // for each of the nodes
-      if (this.foundNodeSet != null) {
-        for (FoundNode foundNode : this.foundNodeSet) {
-          ActiveLearningNode leafNode = (ActiveLearningNode) foundNode.getNode();
-          AttributeBatchContentEvent[] abce = leafNode.getAttributeBatchContentEvent();
-          if (abce != null) {
-            for (int i = 0; i < this.dataset.numAttributes() - 1; i++) {
-              this.sendToAttributeStream(abce[i]);
-            }
-          }
-          leafNode.setAttributeBatchContentEvent(null);
-          // this.sendToControlStream(event); //split information
-          // See if we can ask for splits
-          if (!leafNode.isSplitting()) {
-            double weightSeen = leafNode.getWeightSeen();
-            // check whether it is the time for splitting
-            if (weightSeen - leafNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriod) {
-              attemptToSplit(leafNode, foundNode);
-            }
-          }
-        }
+      this.sendAttributeBatches();
+      if (this.maxByteSize > 0 && this.instancesSinceEstimate >= this.memoryEstimatePeriod) {
+        this.estimateModelByteSizes();
+        this.enforceTrackerLimit();
+      }
+      if (this.checkpointStore != null && this.checkpointPeriod > 0
+          && this.instancesSinceCheckpoint >= this.checkpointPeriod) {
+        this.checkpoint();
       }
-      this.foundNodeSet = null;
     } else if (event instanceof LocalResultContentEvent) {
       LocalResultContentEvent lrce = (LocalResultContentEvent) event;
       Long lrceSplitId = lrce.getSplitId();
@@ -165,23 +193,95 @@ public final class ModelAggregatorProcessor implements Processor {
 
       if (splittingNodeInfo != null) { // if null, that means
         // activeLearningNode has been
-        // removed by timeout thread
+        // removed on time out
         ActiveLearningNode activeLearningNode = splittingNodeInfo.activeLearningNode;
 
         activeLearningNode.addDistributedSuggestions(lrce.getBestSuggestion(), lrce.getSecondBestSuggestion());
+        activeLearningNode.addStatisticsByteSize(lrce.getStatisticsByteSize());
+        activeLearningNode.addAttributeMerits(lrce.getAttributes(), lrce.getMerits());
 
         if (activeLearningNode.isAllSuggestionsCollected()) {
-          splittingNodeInfo.scheduledFuture.cancel(false);
+          // its time-out expires later on without effect
           this.splittingNodes.remove(lrceSplitId);
           this.continueAttemptToSplit(activeLearningNode, splittingNodeInfo.foundNode);
         }
       }
+      // send the attributes of the instances replayed by the split attempt,
+      // unless the result arrived while the batches were being sent
+      this.sendAttributeBatches();
     }
     return false;
   }
 
   protected Set<FoundNode> foundNodeSet;
 
+  // whether sendAttributeBatches() is running, i.e. the local statistic PIs
+  // answer synchronously to the split attempts it makes (e.g. in the local
+  // engine)
+  private transient boolean sendingAttributeBatches;
+
+  /*
+   * Send the attribute batches of the leaves that learnt since the last call to
+   * the local statistic PIs, and ask for splits when their grace period is over
+   */
+  private void sendAttributeBatches() {
+    if (this.sendingAttributeBatches) {
+      // the leaves found meanwhile are sent by the running call
+      return;
+    }
+    this.sendingAttributeBatches = true;
+    try {
+      while (this.foundNodeSet != null) {
+        // the split attempts may train on the instances buffered by the leaves,
+        // which adds leaves to a new set
+        Set<FoundNode> foundNodes = this.foundNodeSet;
+        this.foundNodeSet = null;
+        for (FoundNode foundNode : foundNodes) {
+          sendAttributeBatch(foundNode);
+        }
+      }
+    } finally {
+      this.sendingAttributeBatches = false;
+    }
+  }
+
+  private void sendAttributeBatch(FoundNode foundNode) {
+    ActiveLearningNode leafNode = (ActiveLearningNode) foundNode.getNode();
+    if (!isInTree(foundNode)) {
+      // the leaf has been split or deactivated since it learnt, its statistics
+      // have been deleted from the local statistic PIs
+      leafNode.setAttributeBatchContentEvent(null);
+      return;
+    }
+    AttributeBatchContentEvent[] abce = leafNode.getAttributeBatchContentEvent();
+    if (abce != null) {
+      // one event per attribute, or per attribute range
+      for (int i = 0; i < abce.length; i++) {
+        this.sendToAttributeStream(abce[i]);
+      }
+    }
+    leafNode.setAttributeBatchContentEvent(null);
+    // this.sendToControlStream(event); //split information
+    // See if we can ask for splits
+    if (!leafNode.isSplitting()) {
+      double weightSeen = leafNode.getWeightSeen();
+      // check whether it is the time for splitting
+      if (weightSeen - leafNode.getWeightSeenAtLastSplitEvaluation() >= this.gracePeriod) {
+        attemptToSplit(leafNode, foundNode);
+      }
+    }
+  }
+
+  /*
+   * Whether the leaf of a FoundNode is still where it was found
+   */
+  private boolean isInTree(FoundNode foundNode) {
+    SplitNode parent = foundNode.getParent();
+    if (parent == null)
+      return this.treeRoot == foundNode.getNode();
+    return parent.getChild(foundNode.getParentBranch()) == foundNode.getNode();
+  }
+
   @Override
   public void onCreate(int id) {
     this.processorId = id;
@@ -192,11 +292,43 @@ public final class ModelAggregatorProcessor implements Processor {
     this.growthAllowed = true;
 
     this.splittingNodes = new ConcurrentHashMap<>();
-    this.timedOutSplittingNodes = new LinkedBlockingQueue<>();
     this.splitId = 0;
 
-    // Executor for scheduling time-out threads
-    this.executor = Executors.newScheduledThreadPool(8);
+    // The wheel covers the time-out in one turn, and is advanced when events
+    // are processed
+    long timeOutNanos = TimeUnit.SECONDS.toNanos(this.timeOut);
+    this.splitTimeOuts = new HashedTimerWheel(Math.max(timeOutNanos / TIME_OUT_SLOTS, TimeUnit.MILLISECONDS.toNanos(1)),
+        TIME_OUT_SLOTS, System.nanoTime());
+    this.splitTimeOutHandler = new HashedTimerWheel.ExpiryHandler() {
+      @Override
+      public void expired(long timedOutSplitId) {
+        SplittingNodeInfo splittingNode = splittingNodes.remove(timedOutSplitId);
+        if (splittingNode != null) { // time out has been reached!
+          logger.debug("Time out is reached for split {}", timedOutSplitId);
+          continueAttemptToSplit(splittingNode.activeLearningNode, splittingNode.foundNode);
+        }
+      }
+    };
+
+    if (this.checkpointDirectory != null) {
+      this.checkpointStore = new CheckpointStore(this.checkpointDirectory, "model-" + id);
+      // a snapshot is made of the model and of one store per local statistics PI
+      this.checkpointStore.setSnapshotStores(1 + this.parallelismHint);
+      if (this.restore) {
+        ModelState state = (ModelState) this.checkpointStore.readLatest();
+        if (state != null) {
+          this.restoreState(state);
+        }
+        this.restoredCheckpointId = this.checkpointStore.getLastWrittenId();
+      }
+      // after the snapshots of an earlier run, complete or not
+      this.checkpointId = this.checkpointStore.getHighestId() + 1;
+    }
+
+    if (this.compiledPrediction) {
+      this.compiledTree = new CompiledTree(this.dataset.numClasses());
+      this.compiledTree.compile(this.treeRoot);
+    }
   }
 
   @Override
@@ -219,6 +351,9 @@ public final class ModelAggregatorProcessor implements Processor {
     sb.append("InactiveLeafNodeCount: ").append(inactiveLeafNodeCount);
     sb.append("DecisionNodeCount: ").append(decisionNodeCount);
     sb.append("Growth allowed: ").append(growthAllowed);
+    sb.append("DroppedInstances: ").append(droppedInstances);
+    sb.append("ModelByteSize: ").append(modelByteSize);
+    sb.append("DisabledAttributes: ").append(disabledAttributes);
     return sb.toString();
   }
 
@@ -253,42 +388,63 @@ public final class ModelAggregatorProcessor implements Processor {
    */
   private ResultContentEvent newResultContentEvent(double[] prediction, InstanceContent inEvent) {
     ResultContentEvent rce = new ResultContentEvent(inEvent.getInstanceIndex(), inEvent.getInstance(),
-        inEvent.getClassId(), prediction, inEvent.isLastEvent());
+        inEvent.getClassId(), prediction, inEvent.isLastEvent(), inEvent.isResultWithInstance());
     rce.setClassifierIndex(this.processorId);
     rce.setEvaluationIndex(inEvent.getEvaluationIndex());
     return rce;
   }
 
-  private List<InstancesContentEvent> contentEventList = new LinkedList<>();
+  // ring buffer of the batches held back, at most stalenessWindow
+  private final InstancesContentEvent[] pendingBatches;
+  private int pendingHead;
+  private int pendingSize;
+  private long numBatches;
 
   /**
-   * Helper method to process the InstanceContentEvent
+   * Helper method to process the InstanceContentEvent. Apart from the first one, a batch is only processed once
+   * stalenessWindow newer batches have been received, which gives time to the local statistic PIs to answer the split
+   * attempts. With immediateTesting, its test instances are predicted when it is received.
    * 
    * @param instContentEvent
    */
   private void processInstanceContentEvent(InstancesContentEvent instContentEvent) {
     this.numBatches++;
-    this.contentEventList.add(instContentEvent);
-    if (this.numBatches == 1 || this.numBatches > 4) {
-      this.processInstances(this.contentEventList.remove(0));
+    if (this.numBatches == 1 || this.pendingBatches.length == 0) {
+      this.processInstances(instContentEvent, true, true);
+      return;
+    }
+
+    if (this.immediateTesting) {
+      this.processInstances(instContentEvent, true, false);
+    }
+    if (this.pendingSize == this.pendingBatches.length) {
+      // the oldest batch leaves the window
+      InstancesContentEvent oldest = this.pendingBatches[this.pendingHead];
+      this.pendingBatches[this.pendingHead] = instContentEvent;
+      this.pendingHead = (this.pendingHead + 1) % this.pendingBatches.length;
+      this.processInstances(oldest, !this.immediateTesting, true);
+    } else {
+      this.pendingBatches[(this.pendingHead + this.pendingSize) % this.pendingBatches.length] = instContentEvent;
+      this.pendingSize++;
     }
 
     if (instContentEvent.isLastEvent()) {
       // drain remaining instances
-      while (!contentEventList.isEmpty()) {
-        processInstances(contentEventList.remove(0));
+      while (this.pendingSize > 0) {
+        InstancesContentEvent oldest = this.pendingBatches[this.pendingHead];
+        this.pendingBatches[this.pendingHead] = null;
+        this.pendingHead = (this.pendingHead + 1) % this.pendingBatches.length;
+        this.pendingSize--;
+        this.processInstances(oldest, !this.immediateTesting, true);
       }
     }
-
   }
 
-  private int numBatches = 0;
-
-  private void processInstances(InstancesContentEvent instContentEvent) {
+  private void processInstances(InstancesContentEvent instContentEvent, boolean test, boolean train) {
     for (InstanceContent instContent : instContentEvent.getList()) {
       Instance inst = instContent.getInstance();
-      boolean isTesting = instContent.isTesting();
-      boolean isTraining = instContent.isTraining();
+      boolean isTesting = test && instContent.isTesting();
+      boolean isTraining = train && instContent.isTraining();
       inst.setDataset(this.dataset);
       // Check the instance whether it is used for testing or training
       // boolean testAndTrain = isTraining; //Train after testing
@@ -299,6 +455,8 @@ public final class ModelAggregatorProcessor implements Processor {
       }
 
       if (isTraining) {
+        this.instancesSinceEstimate++;
+        this.instancesSinceCheckpoint++;
         trainOnInstanceImpl(inst);
         if (this.changeDetector != null) {
           if (prediction == null) {
@@ -323,7 +481,7 @@ public final class ModelAggregatorProcessor implements Processor {
   }
 
   private void resetLearning() {
-    this.treeRoot = null;
+    this.setRoot(null);
     // Remove nodes
     FoundNode[] learningNodes = findNodes();
     for (FoundNode learningNode : learningNodes) {
@@ -369,7 +527,9 @@ public final class ModelAggregatorProcessor implements Processor {
   private double[] getVotesForInstance(Instance inst, boolean isTraining) {
     double[] ret;
     FoundNode foundNode = null;
-    if (this.treeRoot != null) {
+    if (this.compiledTree != null && this.treeRoot != null && !isTraining) {
+      ret = this.compiledTree.getVotes(inst);
+    } else if (this.treeRoot != null) {
       foundNode = this.treeRoot.filterInstanceToLeaf(inst, null, -1);
       Node leafNode = foundNode.getNode();
       if (leafNode == null) {
@@ -386,7 +546,7 @@ public final class ModelAggregatorProcessor implements Processor {
     // Training after testing to speed up the process
     if (isTraining) {
       if (this.treeRoot == null) {
-        this.treeRoot = newLearningNode(this.parallelismHint);
+        this.setRoot(newLearningNode(this.parallelismHint));
         this.activeLeafNodeCount = 1;
         foundNode = this.treeRoot.filterInstanceToLeaf(inst, null, -1);
       }
@@ -403,7 +563,7 @@ public final class ModelAggregatorProcessor implements Processor {
    */
   private void trainOnInstanceImpl(Instance inst) {
     if (this.treeRoot == null) {
-      this.treeRoot = newLearningNode(this.parallelismHint);
+      this.setRoot(newLearningNode(this.parallelismHint));
       this.activeLeafNodeCount = 1;
 
     }
@@ -417,18 +577,24 @@ public final class ModelAggregatorProcessor implements Processor {
 
     if (leafNode == null) {
       leafNode = newLearningNode(this.parallelismHint);
-      foundNode.getParent().setChild(foundNode.getParentBranch(), leafNode);
+      this.replaceNode(foundNode.getParent(), foundNode.getParentBranch(), leafNode);
       activeLeafNodeCount++;
     }
 
     if (leafNode instanceof LearningNode) {
       LearningNode learningNode = (LearningNode) leafNode;
       learningNode.learnFromInstance(inst, this);
+      if (this.compiledTree != null) {
+        this.compiledTree.update(learningNode);
+      }
     }
-    if (this.foundNodeSet == null) {
-      this.foundNodeSet = new HashSet<>();
+    // only the active leaves send their attributes to the local statistic PIs
+    if (leafNode instanceof ActiveLearningNode) {
+      if (this.foundNodeSet == null) {
+        this.foundNodeSet = new HashSet<>();
+      }
+      this.foundNodeSet.add(foundNode);
     }
-    this.foundNodeSet.add(foundNode);
   }
 
   /**
@@ -444,16 +610,15 @@ public final class ModelAggregatorProcessor implements Processor {
       // Increment the split ID
       this.splitId++;
 
-      // Schedule time-out thread
-      ScheduledFuture<?> timeOutHandler = this.executor.schedule(new AggregationTimeOutHandler(this.splitId,
-              this.timedOutSplittingNodes), this.timeOut, TimeUnit.SECONDS);
+      // Schedule the time-out
+      this.splitTimeOuts.schedule(this.splitId, TimeUnit.SECONDS.toNanos(this.timeOut), System.nanoTime());
 
       // Keep track of the splitting node information, so that we can continue the
       // split
       // once we receive all local statistic calculation from Local Statistic PI
       // this.splittingNodes.put(Long.valueOf(this.splitId), new
       // SplittingNodeInfo(activeLearningNode, foundNode, null));
-      this.splittingNodes.put(this.splitId, new SplittingNodeInfo(activeLearningNode, foundNode, timeOutHandler));
+      this.splittingNodes.put(this.splitId, new SplittingNodeInfo(activeLearningNode, foundNode));
 
       // Inform Local Statistic PI to perform local statistic calculation
       activeLearningNode.requestDistributedSuggestions(this.splitId, this);
@@ -487,6 +652,7 @@ public final class ModelAggregatorProcessor implements Processor {
     }
 
     boolean shouldSplit = false;
+    int[] poorAttributes = null;
 
     if (secondBestSuggestion == null) {
       shouldSplit = (bestSuggestion != null);
@@ -498,7 +664,10 @@ public final class ModelAggregatorProcessor implements Processor {
       if ((bestSuggestion.merit - secondBestSuggestion.merit > hoeffdingBound) || (hoeffdingBound < tieThreshold)) {
         shouldSplit = true;
       }
-      // TODO: add poor attributes removal
+      if (this.removePoorAtts) {
+        // the attributes whose best split cannot beat the best one anymore
+        poorAttributes = activeLearningNode.getPoorAttributes(bestSuggestion.merit - hoeffdingBound);
+      }
     }
 
     SplitNode parent = foundNode.getParent();
@@ -519,18 +688,218 @@ public final class ModelAggregatorProcessor implements Processor {
         this.decisionNodeCount++;
         this.activeLeafNodeCount += bestSuggestion.numSplits();
 
-        if (parent == null) {
-          this.treeRoot = newSplit;
-        } else {
-          parent.setChild(parentBranch, newSplit);
-        }
+        this.replaceNode(parent, parentBranch, newSplit);
+        // the statistics of the split leaf are no longer needed
+        this.sendToControlStream(new DeleteContentEvent(activeLearningNode.getId()));
+        poorAttributes = null;
       }
-      // TODO: add check on the model's memory size
+    }
+
+    if (poorAttributes != null && poorAttributes.length > 0) {
+      // stop sending their values and drop their observers
+      activeLearningNode.disableAttributes(poorAttributes);
+      this.sendToControlStream(new DisableAttributesContentEvent(activeLearningNode.getId(), poorAttributes));
+      this.disabledAttributes += poorAttributes.length;
     }
 
     // housekeeping
+    this.droppedInstances += activeLearningNode.getThrownAwayInstances();
     activeLearningNode.endSplitting();
     activeLearningNode.setWeightSeenAtLastSplitEvaluation(activeLearningNode.getWeightSeen());
+
+    // replay the instances received while splitting, they reach the new
+    // children if the node has been split
+    Instance[] pendingInstances = activeLearningNode.takePendingInstances();
+    if (pendingInstances.length > 0) {
+      // their attributes are sent by the caller, once it is done with the
+      // leaves it may be iterating over
+      for (Instance inst : pendingInstances) {
+        this.trainOnInstanceImpl(inst);
+      }
+    }
+  }
+
+  /**
+   * @return the number of training instances thrown away because they reached a splitting leaf whose buffer was full
+   */
+  public long getDroppedInstances() {
+    return this.droppedInstances;
+  }
+
+  /**
+   * @return the number of attributes disabled in the leaves of the tree since its creation
+   */
+  long getDisabledAttributes() {
+    return this.disabledAttributes;
+  }
+
+  /*
+   * Take a snapshot of the model and ask the local statistic PIs to take a
+   * snapshot of their statistics with the same id. The batches in the
+   * staleness window are not part of the snapshot.
+   */
+  private void checkpoint() {
+    this.instancesSinceCheckpoint = 0;
+    ModelState state = new ModelState();
+    state.treeRoot = this.treeRoot;
+    state.activeLeafNodeCount = this.activeLeafNodeCount;
+    state.inactiveLeafNodeCount = this.inactiveLeafNodeCount;
+    state.decisionNodeCount = this.decisionNodeCount;
+    state.growthAllowed = this.growthAllowed;
+    state.droppedInstances = this.droppedInstances;
+    state.disabledAttributes = this.disabledAttributes;
+    state.activeLeafByteSizeEstimate = this.activeLeafByteSizeEstimate;
+    state.inactiveLeafByteSizeEstimate = this.inactiveLeafByteSizeEstimate;
+    state.byteSizeEstimateOverheadFraction = this.byteSizeEstimateOverheadFraction;
+    state.modelByteSize = this.modelByteSize;
+    state.nextLearningNodeId = VerticalHoeffdingTree.LearningNodeIdGenerator.peek();
+    if (this.checkpointStore.write(this.checkpointId, state)) {
+      this.sendToControlStream(new CheckpointContentEvent(this.checkpointId));
+      this.checkpointId++;
+    }
+  }
+
+  private void restoreState(ModelState state) {
+    this.activeLeafNodeCount = state.activeLeafNodeCount;
+    this.inactiveLeafNodeCount = state.inactiveLeafNodeCount;
+    this.decisionNodeCount = state.decisionNodeCount;
+    this.growthAllowed = state.growthAllowed;
+    this.droppedInstances = state.droppedInstances;
+    this.disabledAttributes = state.disabledAttributes;
+    this.activeLeafByteSizeEstimate = state.activeLeafByteSizeEstimate;
+    this.inactiveLeafByteSizeEstimate = state.inactiveLeafByteSizeEstimate;
+    this.byteSizeEstimateOverheadFraction = state.byteSizeEstimateOverheadFraction;
+    this.modelByteSize = state.modelByteSize;
+    // the new learning nodes must not reuse the ids of the restored ones
+    VerticalHoeffdingTree.LearningNodeIdGenerator.advanceTo(state.nextLearningNodeId);
+    this.setRoot(state.treeRoot);
+    // the split attempts in progress are lost with the local statistics
+    // answers, they start over after the grace period
+    for (FoundNode foundNode : findLearningNodes()) {
+      Node node = foundNode.getNode();
+      if (node instanceof ActiveLearningNode && ((ActiveLearningNode) node).isSplitting()) {
+        ((ActiveLearningNode) node).endSplitting();
+      }
+    }
+  }
+
+  int getActiveLeafNodeCount() {
+    return this.activeLeafNodeCount;
+  }
+
+  int getInactiveLeafNodeCount() {
+    return this.inactiveLeafNodeCount;
+  }
+
+  /**
+   * @return the estimated byte size of the model at the last estimate, including the statistics of the active leaves in
+   *         the local statistic PIs
+   */
+  long getModelByteSize() {
+    return this.modelByteSize;
+  }
+
+  /**
+   * Helper method to estimate the byte size of the leaves and of the whole model. The size of an active leaf includes
+   * the size of its statistics in the local statistic PIs, as reported at its last split attempt. Leaves that never
+   * attempted a split are assumed to have statistics as large as the average.
+   */
+  private void estimateModelByteSizes() {
+    ByteSizeEstimator estimator = new ByteSizeEstimator().exclude(this.dataset);
+    long activeSize = 0;
+    long inactiveSize = 0;
+    long statisticsSize = 0;
+    int numActive = 0;
+    int numInactive = 0;
+    int numMeasured = 0;
+    for (FoundNode foundNode : findLearningNodes()) {
+      Node node = foundNode.getNode();
+      if (node instanceof ActiveLearningNode) {
+        activeSize += estimator.sizeOf(node);
+        numActive++;
+        long nodeStatisticsSize = ((ActiveLearningNode) node).getStatisticsByteSize();
+        if (nodeStatisticsSize >= 0) {
+          statisticsSize += nodeStatisticsSize;
+          numMeasured++;
+        }
+      } else {
+        inactiveSize += estimator.sizeOf(node);
+        numInactive++;
+      }
+    }
+    double statisticsEstimate = numMeasured > 0 ? (double) statisticsSize / numMeasured : 0.0;
+    if (numActive > 0) {
+      this.activeLeafByteSizeEstimate = (double) activeSize / numActive + statisticsEstimate;
+    }
+    if (numInactive > 0) {
+      this.inactiveLeafByteSizeEstimate = (double) inactiveSize / numInactive;
+    }
+    // the leaves have been counted already, this adds the split nodes
+    long splitNodesSize = estimator.sizeOf(this.treeRoot);
+    this.modelByteSize = activeSize + inactiveSize + splitNodesSize + statisticsSize
+        + (long) (statisticsEstimate * (numActive - numMeasured));
+    double estimatedSize = numActive * this.activeLeafByteSizeEstimate + numInactive
+        * this.inactiveLeafByteSizeEstimate;
+    this.byteSizeEstimateOverheadFraction = estimatedSize > 0 ? this.modelByteSize / estimatedSize : 1.0;
+    this.instancesSinceEstimate = 0;
+    logger.debug("Model byte size: {}, active leaf: {}, inactive leaf: {}", new Object[] { this.modelByteSize,
+        this.activeLeafByteSizeEstimate, this.inactiveLeafByteSizeEstimate });
+  }
+
+  /**
+   * Helper method to keep the model within its maximum byte size. As in MOA's Hoeffding tree, the leaves are sorted by
+   * promise and only the most promising ones that fit in the memory are kept active: the others are deactivated and
+   * their statistics deleted from the local statistic PIs. Inactive leaves are activated again when there is room for
+   * them. Leaves waiting for the result of a split attempt are left as they are.
+   */
+  private void enforceTrackerLimit() {
+    if ((this.inactiveLeafNodeCount > 0)
+        || ((this.activeLeafNodeCount * this.activeLeafByteSizeEstimate + this.inactiveLeafNodeCount
+            * this.inactiveLeafByteSizeEstimate)
+            * this.byteSizeEstimateOverheadFraction > this.maxByteSize)) {
+      FoundNode[] learningNodes = findLearningNodes();
+      Arrays.sort(learningNodes, new Comparator<FoundNode>() {
+        @Override
+        public int compare(FoundNode fn1, FoundNode fn2) {
+          return Double.compare(fn1.getNode().calculatePromise(), fn2.getNode().calculatePromise());
+        }
+      });
+      int maxActive = 0;
+      while (maxActive < learningNodes.length) {
+        maxActive++;
+        if ((maxActive * this.activeLeafByteSizeEstimate + (learningNodes.length - maxActive)
+            * this.inactiveLeafByteSizeEstimate)
+            * this.byteSizeEstimateOverheadFraction > this.maxByteSize) {
+          maxActive--;
+          break;
+        }
+      }
+      int cutoff = learningNodes.length - maxActive;
+      for (int i = 0; i < cutoff; i++) {
+        Node node = learningNodes[i].getNode();
+        if (node instanceof ActiveLearningNode && !((ActiveLearningNode) node).isSplitting()) {
+          deactivateLearningNode((ActiveLearningNode) node, learningNodes[i].getParent(),
+              learningNodes[i].getParentBranch());
+        }
+      }
+      for (int i = cutoff; i < learningNodes.length; i++) {
+        Node node = learningNodes[i].getNode();
+        if (node instanceof InactiveLearningNode) {
+          activateLearningNode((InactiveLearningNode) node, learningNodes[i].getParent(),
+              learningNodes[i].getParentBranch());
+        }
+      }
+    }
+  }
+
+  private FoundNode[] findLearningNodes() {
+    List<FoundNode> learningNodes = new ArrayList<>();
+    for (FoundNode foundNode : findNodes()) {
+      if (foundNode.getNode() instanceof LearningNode) {
+        learningNodes.add(foundNode);
+      }
+    }
+    return learningNodes.toArray(new FoundNode[learningNodes.size()]);
   }
 
   /**
@@ -545,16 +914,56 @@ public final class ModelAggregatorProcessor implements Processor {
    */
   private void deactivateLearningNode(ActiveLearningNode toDeactivate, SplitNode parent, int parentBranch) {
     Node newLeaf = new InactiveLearningNode(toDeactivate.getObservedClassDistribution());
-    if (parent == null) {
-      this.treeRoot = newLeaf;
-    } else {
-      parent.setChild(parentBranch, newLeaf);
-    }
+    this.replaceNode(parent, parentBranch, newLeaf);
+    // free the statistics of the node in the local statistic PIs
+    this.sendToControlStream(new DeleteContentEvent(toDeactivate.getId()));
 
     this.activeLeafNodeCount--;
     this.inactiveLeafNodeCount++;
   }
 
+  /**
+   * Helper method to activate learning node
+   * 
+   * @param toActivate
+   *          Inactive Learning Node that will be activated
+   * @param parent
+   *          Parent of the soon-to-be-activated Inactive LearningNode
+   * @param parentBranch
+   *          the branch index of the node in the parent node
+   */
+  private void activateLearningNode(InactiveLearningNode toActivate, SplitNode parent, int parentBranch) {
+    Node newLeaf = newLearningNode(toActivate.getObservedClassDistribution(), this.parallelismHint);
+    this.replaceNode(parent, parentBranch, newLeaf);
+
+    this.activeLeafNodeCount++;
+    this.inactiveLeafNodeCount--;
+  }
+
+  /*
+   * Set the root of the tree, keeping the compiled copy up to date
+   */
+  private void setRoot(Node root) {
+    this.treeRoot = root;
+    if (this.compiledTree != null) {
+      this.compiledTree.compile(root);
+    }
+  }
+
+  /*
+   * Replace a node of the tree, keeping the compiled copy up to date
+   */
+  private void replaceNode(SplitNode parent, int parentBranch, Node node) {
+    if (parent == null) {
+      this.setRoot(node);
+    } else {
+      parent.setChild(parentBranch, node);
+      if (this.compiledTree != null) {
+        this.compiledTree.setChild(parent, parentBranch, node);
+      }
+    }
+  }
+
   private LearningNode newLearningNode(int parallelismHint) {
     return newLearningNode(new double[0], parallelismHint);
   }
@@ -562,7 +971,8 @@ public final class ModelAggregatorProcessor implements Processor {
   private LearningNode newLearningNode(double[] initialClassObservations, int parallelismHint) {
     // for VHT optimization, we need to dynamically instantiate the appropriate
     // ActiveLearningNode
-    return new ActiveLearningNode(initialClassObservations, parallelismHint);
+    return new ActiveLearningNode(initialClassObservations, parallelismHint, this.attributeRanges,
+        this.splitBufferSize);
   }
 
   /**
@@ -586,33 +996,24 @@ public final class ModelAggregatorProcessor implements Processor {
   }
 
   /**
-   * AggregationTimeOutHandler is a class to support time-out feature while waiting for local computation results from
-   * the local statistic PIs.
-   * 
-   * @author Arinto Murdopo
-   * 
+   * The part of the state of the model aggregator that is kept in its snapshots.
    */
-  static class AggregationTimeOutHandler implements Runnable {
-
-    private static final Logger logger = LoggerFactory.getLogger(AggregationTimeOutHandler.class);
-    private final Long splitId;
-    private final BlockingQueue<Long> toBeSplittedNodes;
-
-    AggregationTimeOutHandler(Long splitId, BlockingQueue<Long> toBeSplittedNodes) {
-      this.splitId = splitId;
-      this.toBeSplittedNodes = toBeSplittedNodes;
-    }
-
-    @Override
-    public void run() {
-      logger.debug("Time out is reached. AggregationTimeOutHandler is started.");
-      try {
-        toBeSplittedNodes.put(splitId);
-      } catch (InterruptedException e) {
-        logger.warn("Interrupted while trying to put the ID into the queue");
-      }
-      logger.debug("AggregationTimeOutHandler is finished.");
-    }
+  static class ModelState implements Serializable {
+
+    private static final long serialVersionUID = 4185726093146519582L;
+
+    private Node treeRoot;
+    private int activeLeafNodeCount;
+    private int inactiveLeafNodeCount;
+    private int decisionNodeCount;
+    private boolean growthAllowed;
+    private long droppedInstances;
+    private long disabledAttributes;
+    private double activeLeafByteSizeEstimate;
+    private double inactiveLeafByteSizeEstimate;
+    private double byteSizeEstimateOverheadFraction;
+    private long modelByteSize;
+    private long nextLearningNodeId;
   }
 
   /**
@@ -625,12 +1026,10 @@ public final class ModelAggregatorProcessor implements Processor {
 
     private final ActiveLearningNode activeLearningNode;
     private final FoundNode foundNode;
-    private final transient ScheduledFuture<?> scheduledFuture;
 
-    SplittingNodeInfo(ActiveLearningNode activeLearningNode, FoundNode foundNode, ScheduledFuture<?> scheduledFuture) {
+    SplittingNodeInfo(ActiveLearningNode activeLearningNode, FoundNode foundNode) {
       this.activeLearningNode = activeLearningNode;
       this.foundNode = foundNode;
-      this.scheduledFuture = scheduledFuture;
     }
   }
 
@@ -662,6 +1061,17 @@ public final class ModelAggregatorProcessor implements Processor {
     private int gracePeriod = 200;
     private int parallelismHint = 1;
     private long timeOut = 30;
+    private boolean attributeRanges = false;
+    private int splitBufferSize = 0;
+    private boolean compiledPrediction = false;
+    private long maxByteSize = 0;
+    private long memoryEstimatePeriod = 1000000;
+    private boolean removePoorAtts = false;
+    private int stalenessWindow = 3;
+    private boolean immediateTesting = false;
+    private String checkpointDirectory = null;
+    private long checkpointPeriod = 0;
+    private boolean restore = false;
     private ChangeDetector changeDetector = null;
 
     Builder(Instances dataset) {
@@ -676,6 +1086,17 @@ public final class ModelAggregatorProcessor implements Processor {
       this.gracePeriod = oldProcessor.gracePeriod;
       this.parallelismHint = oldProcessor.parallelismHint;
       this.timeOut = oldProcessor.timeOut;
+      this.attributeRanges = oldProcessor.attributeRanges;
+      this.splitBufferSize = oldProcessor.splitBufferSize;
+      this.compiledPrediction = oldProcessor.compiledPrediction;
+      this.maxByteSize = oldProcessor.maxByteSize;
+      this.memoryEstimatePeriod = oldProcessor.memoryEstimatePeriod;
+      this.removePoorAtts = oldProcessor.removePoorAtts;
+      this.stalenessWindow = oldProcessor.pendingBatches.length;
+      this.immediateTesting = oldProcessor.immediateTesting;
+      this.checkpointDirectory = oldProcessor.checkpointDirectory;
+      this.checkpointPeriod = oldProcessor.checkpointPeriod;
+      this.restore = oldProcessor.restore;
     }
 
     Builder splitCriterion(SplitCriterion splitCriterion) {
@@ -708,6 +1129,92 @@ public final class ModelAggregatorProcessor implements Processor {
       return this;
     }
 
+    Builder attributeRanges(boolean attributeRanges) {
+      this.attributeRanges = attributeRanges;
+      return this;
+    }
+
+    Builder splitBufferSize(int splitBufferSize) {
+      this.splitBufferSize = splitBufferSize;
+      return this;
+    }
+
+    Builder compiledPrediction(boolean compiledPrediction) {
+      this.compiledPrediction = compiledPrediction;
+      return this;
+    }
+
+    /**
+     * Maximum byte size of the model, including the statistics in the local statistic PIs. With 0, the default, the
+     * model is not bounded.
+     */
+    Builder maxByteSize(long maxByteSize) {
+      this.maxByteSize = maxByteSize;
+      return this;
+    }
+
+    /**
+     * Number of training instances between two estimates of the byte size of the model.
+     */
+    Builder memoryEstimatePeriod(long memoryEstimatePeriod) {
+      this.memoryEstimatePeriod = memoryEstimatePeriod;
+      return this;
+    }
+
+    /**
+     * Disable the attributes of a leaf whose best split is worse than the best split of the leaf by more than the
+     * Hoeffding bound. The local statistic PIs must report the merits of the attributes.
+     */
+    Builder removePoorAtts(boolean removePoorAtts) {
+      this.removePoorAtts = removePoorAtts;
+      return this;
+    }
+
+    /**
+     * Number of batches of instances received before the oldest one is processed. A larger window leaves more time to
+     * the local statistic PIs to answer the split attempts, at the cost of a model that is staler. With 0, the batches
+     * are processed as soon as they are received.
+     */
+    Builder stalenessWindow(int stalenessWindow) {
+      if (stalenessWindow < 0)
+        throw new IllegalArgumentException("The staleness window cannot be negative.");
+      this.stalenessWindow = stalenessWindow;
+      return this;
+    }
+
+    /**
+     * Predict the test instances as soon as their batch is received, instead of when the batch leaves the staleness
+     * window.
+     */
+    Builder immediateTesting(boolean immediateTesting) {
+      this.immediateTesting = immediateTesting;
+      return this;
+    }
+
+    /**
+     * Local directory of the snapshots of the model. With null, the default, no snapshot is taken nor restored.
+     */
+    Builder checkpointDirectory(String checkpointDirectory) {
+      this.checkpointDirectory = checkpointDirectory;
+      return this;
+    }
+
+    /**
+     * Number of training instances between two snapshots of the model. With 0, the default, no snapshot is taken.
+     */
+    Builder checkpointPeriod(long checkpointPeriod) {
+      this.checkpointPeriod = checkpointPeriod;
+      return this;
+    }
+
+    /**
+     * Start from the latest snapshot in the checkpoint directory that is complete, if any.
+     */
+    Builder restore(boolean restore) {
+      this.restore = restore;
+      return this;
+    }
+
     Builder changeDetector(ChangeDetector changeDetector) {
       this.changeDetector = changeDetector;
       return this;
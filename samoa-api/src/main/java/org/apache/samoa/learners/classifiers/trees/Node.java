@@ -98,6 +98,20 @@ abstract class Node implements java.io.Serializable {
     // TODO: implement method to gracefully define the tree
   }
 
-  // TODO: calculate promise for limiting the model based on the memory size
-  // double calculatePromise();
+  /**
+   * Method to estimate how much the accuracy of the tree would improve by growing from this node, used to choose the
+   * leaves to deactivate when the model exceeds its memory limit.
+   * 
+   * @return The weight of the instances that the node misclassifies
+   */
+  double calculatePromise() {
+    double[] dist = this.observedClassDistribution.getArrayRef();
+    double total = 0.0;
+    double max = 0.0;
+    for (double weight : dist) {
+      total += weight;
+      max = Math.max(max, weight);
+    }
+    return total > 0.0 ? total - max : 0.0;
+  }
 }
@@ -20,7 +20,10 @@ package org.apache.samoa.learners.classifiers.trees;
  * #L%
  */
 
+import java.io.File;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.samoa.core.Processor;
 import org.apache.samoa.instances.Instances;
@@ -39,6 +42,7 @@ import com.github.javacliparser.Configurable;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
 import com.google.common.collect.ImmutableSet;
 
 /**
@@ -93,17 +97,97 @@ public final class VerticalHoeffdingTree implements ClassificationLearner, Adapt
       "The duration to wait all distributed computation results from local statistics PI",
       30, 1, Integer.MAX_VALUE);
 
+  public IntOption splitEvaluationThreadsOption = new IntOption(
+      "splitEvaluationThreads",
+      'e',
+      "The number of threads evaluating the split suggestions of a leaf, shared by the local statistics PIs of a JVM",
+      1, 1, Integer.MAX_VALUE);
+
+  public IntOption splitBufferSizeOption = new IntOption(
+      "splitBufferSize",
+      'u',
+      "The number of instances a splitting leaf keeps and replays once the split is resolved, the others are discarded",
+      0, 0, Integer.MAX_VALUE);
+
+  public IntOption batchSizeOption = new IntOption(
+      "batchSize",
+      'i',
+      "The (maximum) number of instances the filter PI sends to the model aggregator at once",
+      200, 1, Integer.MAX_VALUE);
+
+  public IntOption batchLatencyOption = new IntOption(
+      "batchLatency",
+      'l',
+      "The maximum time in microseconds an instance waits in the filter PI before being sent, 0 for no bound",
+      0, 0, Integer.MAX_VALUE);
+
+  public IntOption stalenessWindowOption = new IntOption(
+      "stalenessWindow",
+      'w',
+      "The number of batches the model aggregator receives before it processes the oldest one, 0 to process them at once",
+      3, 0, Integer.MAX_VALUE);
+
+  public FlagOption immediateTestingOption = new FlagOption("immediateTesting", 'j',
+      "Predict the test instances as soon as they are received, without waiting for the staleness window.");
+
+  public FlagOption adaptiveBatchSizeOption = new FlagOption("adaptiveBatchSize", 'a',
+      "Adapt the batch size of the filter PI to the load of the model aggregator.");
+
   public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
       "Only allow binary splits.");
 
+  public FlagOption attributeRangesOption = new FlagOption("attributeRanges", 'r',
+      "Send the attributes to the local statistics PIs in contiguous ranges, one event per PI per batch"
+          + " on the engines that route a key by its hash code (local, threads, vthreads, storm).");
+
+  public IntOption maxByteSizeOption = new IntOption("maxByteSize", 'm',
+      "Maximum memory consumed by the tree, including the statistics in the local statistics PIs (0 for no limit).",
+      0, 0, Integer.MAX_VALUE);
+
+  public IntOption memoryEstimatePeriodOption = new IntOption("memoryEstimatePeriod", 'f',
+      "How many instances between memory consumption checks.", 1000000, 1, Integer.MAX_VALUE);
+
+  public FlagOption removePoorAttsOption = new FlagOption("removePoorAtts", 'q',
+      "Disable poor attributes, i.e. stop sending their values to the local statistics PIs.");
+
+  public FlagOption compiledPredictionOption = new FlagOption("compiledPrediction", 'k',
+      "Predict the test instances with a copy of the tree flattened into arrays.");
+
+  public StringOption checkpointDirectoryOption = new StringOption("checkpointDirectory", 'z',
+      "Local directory of the snapshots of the model and of the local statistics, in a subdirectory vht-<n> for the "
+          + "n-th VHT of the task (none if empty).", "");
+
+  public IntOption checkpointPeriodOption = new IntOption("checkpointPeriod", 'y',
+      "How many training instances between two snapshots of the model, 0 for no snapshot.", 0, 0, Integer.MAX_VALUE);
+
+  public FlagOption restoreOption = new FlagOption("restore", 'x',
+      "Start from the latest snapshot written by the model and all the local statistics in the checkpoint directory.");
+
+  // the number of VHTs initialized in each topology, so that the members of
+  // an ensemble keep their snapshots in distinct subdirectories
+  private static final Map<TopologyBuilder, Integer> learnersByTopology = new WeakHashMap<>();
+
   private Stream resultStream;
 
   private FilterProcessor filterProc;
 
   @Override
   public void init(TopologyBuilder topologyBuilder, Instances dataset, int parallelism) {
+    String checkpointDirectory = null;
+    if (!checkpointDirectoryOption.getValue().isEmpty()) {
+      // the replicas of the model aggregator would take snapshots of the same
+      // local statistics
+      if (parallelism > 1)
+        throw new IllegalArgumentException("Snapshots need a single model aggregator, the VHT has a parallelism of "
+            + parallelism);
+      checkpointDirectory = new File(checkpointDirectoryOption.getValue(), "vht-" + nextLearnerIndex(topologyBuilder))
+          .getPath();
+    }
 
     this.filterProc = new FilterProcessor.Builder(dataset)
+        .batchSize(batchSizeOption.getValue())
+        .maxLatency(batchLatencyOption.getValue())
+        .adaptiveBatchSize(adaptiveBatchSizeOption.isSet())
         .build();
     topologyBuilder.addProcessor(filterProc, parallelism);
 
@@ -117,6 +201,17 @@ public final class VerticalHoeffdingTree implements ClassificationLearner, Adapt
         .gracePeriod(gracePeriodOption.getValue())
         .parallelismHint(parallelismHintOption.getValue())
         .timeOut(timeOutOption.getValue())
+        .attributeRanges(attributeRangesOption.isSet())
+        .splitBufferSize(splitBufferSizeOption.getValue())
+        .compiledPrediction(compiledPredictionOption.isSet())
+        .maxByteSize(maxByteSizeOption.getValue())
+        .memoryEstimatePeriod(memoryEstimatePeriodOption.getValue())
+        .removePoorAtts(removePoorAttsOption.isSet())
+        .stalenessWindow(stalenessWindowOption.getValue())
+        .immediateTesting(immediateTestingOption.isSet())
+        .checkpointDirectory(checkpointDirectory)
+        .checkpointPeriod(checkpointPeriodOption.getValue())
+        .restore(restoreOption.isSet())
         .changeDetector(this.getChangeDetector())
         .build();
 
@@ -136,6 +231,11 @@ public final class VerticalHoeffdingTree implements ClassificationLearner, Adapt
     LocalStatisticsProcessor locStatProc = new LocalStatisticsProcessor.Builder()
         .splitCriterion((SplitCriterion) this.splitCriterionOption.getValue())
         .binarySplit(binarySplitsOption.isSet())
+        .splitEvaluationParallelism(splitEvaluationThreadsOption.getValue())
+        .reportByteSize(maxByteSizeOption.getValue() > 0)
+        .reportMerits(removePoorAttsOption.isSet())
+        .checkpointDirectory(checkpointDirectory)
+        .restore(restoreOption.isSet())
         .nominalClassObserver((AttributeClassObserver) this.nominalEstimatorOption.getValue())
         .numericClassObserver((AttributeClassObserver) this.numericEstimatorOption.getValue())
         .build();
@@ -172,6 +272,15 @@ public final class VerticalHoeffdingTree implements ClassificationLearner, Adapt
     this.changeDetector = cd;
   }
   
+  private static int nextLearnerIndex(TopologyBuilder topologyBuilder) {
+    synchronized (learnersByTopology) {
+      Integer index = learnersByTopology.get(topologyBuilder);
+      int next = index == null ? 0 : index + 1;
+      learnersByTopology.put(topologyBuilder, next);
+      return next;
+    }
+  }
+
   static class LearningNodeIdGenerator {
 
     // TODO: add code to warn user of when value reaches Long.MAX_VALUES
@@ -180,5 +289,17 @@ public final class VerticalHoeffdingTree implements ClassificationLearner, Adapt
     static synchronized long generate() {
       return id++;
     }
+
+    static synchronized long peek() {
+      return id;
+    }
+
+    /*
+     * Make sure the next ids are at least the given one, e.g. after restoring
+     * a model
+     */
+    static synchronized void advanceTo(long nextId) {
+      id = Math.max(id, nextId);
+    }
   }
 }
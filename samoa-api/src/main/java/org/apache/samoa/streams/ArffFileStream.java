@@ -21,15 +21,19 @@ package org.apache.samoa.streams;
  */
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
+import org.apache.samoa.instances.FastArffLoader;
 import org.apache.samoa.instances.Instances;
 import org.apache.samoa.moa.core.InstanceExample;
 import org.apache.samoa.moa.core.ObjectRepository;
 import org.apache.samoa.moa.tasks.TaskMonitor;
+import org.apache.samoa.streams.fs.LocalFileStreamSource;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 
 /**
@@ -41,12 +45,23 @@ public class ArffFileStream extends FileStream {
   public FileOption arffFileOption = new FileOption("arffFile", 'f',
       "ARFF File(s) to load.", null, null, false);
 
+  public FlagOption tokenizerOption = new FlagOption("tokenizer", 'l',
+      "Read the file with a StreamTokenizer (slower), instead of scanning its bytes as UTF-8.");
+
+  public IntOption parsingThreadsOption = new IntOption("parsingThreads", 't',
+      "Number of threads that parse chunks of a memory-mapped local file, 1 to parse it on the stream's thread.",
+      1, 1, Integer.MAX_VALUE);
+
+  public FlagOption unorderedOption = new FlagOption("unordered", 'u',
+      "Emit the instances of the chunks parsed by the threads as soon as they are parsed, instead of in file order.");
+
   /*public IntOption classIndexOption = new IntOption("classIndex", 'c',
       "Class index of data. 0 for none or -1 for last attribute in file.",
       -1, -1, Integer.MAX_VALUE);*/
 
   protected InstanceExample lastInstanceRead;
   private transient BufferedReader fileReader;
+  private transient ParallelArffReader parallelReader;
 
   @Override
   public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
@@ -72,19 +87,32 @@ public class ArffFileStream extends FileStream {
 
   @Override
   protected boolean getNextFileStream() {
-    if (this.fileReader != null)
-      try {
-        this.fileReader.close();
-      } catch (IOException ioe) {
-        ioe.printStackTrace();
-      }
+    this.closeFile();
 
     this.inputStream = this.fileSource.getNextInputStream();
     if (inputStream == null)
       return false;
 
-    this.fileReader = new BufferedReader(new InputStreamReader(this.inputStream));
-    this.instances = new Instances(this.fileReader, 1, -1);
+    if (this.tokenizerOption.isSet()) {
+      this.fileReader = new BufferedReader(new InputStreamReader(this.inputStream));
+      this.instances = new Instances(this.fileReader, 1, -1);
+    } else {
+      FastArffLoader loader = new FastArffLoader(this.inputStream, -1);
+      String filePath = (this.fileSource instanceof LocalFileStreamSource) ?
+          ((LocalFileStreamSource) this.fileSource).getCurrentFilePath() : null;
+      if (this.parsingThreadsOption.getValue() > 1 && filePath != null) {
+        try {
+          this.parallelReader = new ParallelArffReader(new File(filePath), loader.getDataOffset(),
+              loader.getStructure(), this.parsingThreadsOption.getValue(), ParallelArffReader.DEFAULT_CHUNK_SIZE,
+              !this.unorderedOption.isSet());
+        } catch (IOException ioe) {
+          throw new RuntimeException("ArffFileStream failed to open file " + filePath, ioe);
+        }
+        this.instances = new Instances(this.parallelReader);
+      } else {
+        this.instances = new Instances(loader);
+      }
+    }
     if (this.classIndexOption.getValue() < 0) {
       this.instances.setClassIndex(this.instances.numAttributes() - 1);
     } else if (this.classIndexOption.getValue() > 0) {
@@ -96,22 +124,31 @@ public class ArffFileStream extends FileStream {
 
   @Override
   protected boolean readNextInstanceFromFile() {
+    if (this.instances.readInstance()) {
+      this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
+      this.instances.delete(); // keep instances clean
+      return true;
+    }
+    this.closeFile();
+    return false;
+  }
+
+  private void closeFile() {
+    if (this.parallelReader != null) {
+      this.parallelReader.close();
+      this.parallelReader = null;
+    }
     try {
-      if (this.instances.readInstance(this.fileReader)) {
-        this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
-        this.instances.delete(); // keep instances clean
-        return true;
-      }
       if (this.fileReader != null) {
         this.fileReader.close();
-        this.fileReader = null;
+      } else if (this.inputStream != null) {
+        this.inputStream.close();
       }
-      return false;
     } catch (IOException ioe) {
-      throw new RuntimeException(
-          "ArffFileStream failed to read instance from stream.", ioe);
+      ioe.printStackTrace();
     }
-
+    this.fileReader = null;
+    this.inputStream = null;
   }
 
   @Override
@@ -0,0 +1,104 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+import org.apache.samoa.instances.BinaryInstanceLoader;
+import org.apache.samoa.instances.Instances;
+import org.apache.samoa.moa.core.InstanceExample;
+import org.apache.samoa.moa.core.ObjectRepository;
+import org.apache.samoa.moa.tasks.TaskMonitor;
+
+import com.github.javacliparser.FileOption;
+
+/**
+ * InstanceStream for the binary instance files written by WriteArffFile -b. The rows are copied from the file into the
+ * instances without any parsing, so reading them is much faster than parsing an ARFF or Avro file.
+ * 
+ * @see BinaryInstanceLoader
+ */
+public class BinaryFileStream extends FileStream {
+
+  private static final long serialVersionUID = -2634879210385761293L;
+
+  public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+      "Binary instance file(s) to load.", null, null, false);
+
+  protected InstanceExample lastInstanceRead;
+
+  @Override
+  public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+    super.prepareForUseImpl(monitor, repository);
+    String filePath = this.binaryFileOption.getFile().getAbsolutePath();
+    this.fileSource.init(filePath, null);
+    this.lastInstanceRead = null;
+  }
+
+  @Override
+  protected boolean getNextFileStream() {
+    this.closeFile();
+
+    this.inputStream = this.fileSource.getNextInputStream();
+    if (inputStream == null)
+      return false;
+
+    this.instances = new Instances(new BinaryInstanceLoader(this.inputStream));
+    if (this.classIndexOption.getValue() < 0) {
+      this.instances.setClassIndex(this.instances.numAttributes() - 1);
+    } else if (this.classIndexOption.getValue() > 0) {
+      this.instances.setClassIndex(this.classIndexOption.getValue() - 1);
+    }
+    return true;
+  }
+
+  @Override
+  protected boolean readNextInstanceFromFile() {
+    if (this.instances.readInstance()) {
+      this.lastInstanceRead = new InstanceExample(this.instances.instance(0));
+      this.instances.delete(); // keep instances clean
+      return true;
+    }
+    this.closeFile();
+    return false;
+  }
+
+  private void closeFile() {
+    if (this.inputStream != null) {
+      try {
+        this.inputStream.close();
+      } catch (IOException ioe) {
+        ioe.printStackTrace();
+      }
+      this.inputStream = null;
+    }
+  }
+
+  @Override
+  protected InstanceExample getLastInstanceRead() {
+    return this.lastInstanceRead;
+  }
+
+  @Override
+  public void getDescription(StringBuilder sb, int indent) {
+    sb.append("Stream of the instances of binary instance files");
+  }
+}
@@ -31,6 +31,8 @@ import org.apache.samoa.moa.core.ObjectRepository;
 import org.apache.samoa.moa.options.AbstractOptionHandler;
 import org.apache.samoa.moa.tasks.TaskMonitor;
 import org.apache.samoa.streams.fs.FileStreamSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -39,6 +41,9 @@ import java.util.Arrays;
 /**
  * InstanceStream for files (Abstract class: subclass this class for different file formats)
  * 
+ * With the readAhead option, the files are read and parsed by a background thread into a bounded buffer, so that
+ * waiting for the file source (e.g. HDFS) and parsing overlap with the processing of the instances.
+ * 
  * @author Casey
  */
 public abstract class FileStream extends AbstractOptionHandler implements InstanceStream {
@@ -46,6 +51,7 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
     *
     */
   private static final long serialVersionUID = 3028905554604259130L;
+  private static final Logger logger = LoggerFactory.getLogger(FileStream.class);
 
   public ClassOption sourceTypeOption = new ClassOption("sourceType",
       's', "Source Type (HDFS, local FS)", FileStreamSource.class,
@@ -58,6 +64,10 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
   public ListOption classWeightsOption = new ListOption("classWeights", 'w',
           "Class weights in order of class index.", floatOption, new FloatOption[0], ':');
 
+  public IntOption readAheadOption = new IntOption("readAhead", 'r',
+      "Number of instances read and parsed ahead by a background thread, 0 to read them on demand.",
+      0, 0, Integer.MAX_VALUE);
+
   protected transient FileStreamSource fileSource;
   //protected transient Reader fileReader;
   protected transient InputStream inputStream;
@@ -67,6 +77,11 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
   protected boolean hitEndOfStream;
   private boolean hasStarted;
 
+  // Instances read ahead by readAheadThread, null when reading on demand
+  private transient ReadAheadBuffer<InstanceExample> readAheadBuffer;
+  private transient Thread readAheadThread;
+  private transient InstanceExample readAheadInstance;
+
   /*
    * Constructors
    */
@@ -103,10 +118,11 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
 
   @Override
   public InstanceExample nextInstance() {
-    if (this.getLastInstanceRead() == null) {
+    // after a restart, the last instance read is the one of the previous pass
+    if (!hasStarted || this.lastInstanceRead() == null) {
       readNextInstanceFromStream();
     }
-    InstanceExample prevInstance = this.getLastInstanceRead();
+    InstanceExample prevInstance = this.lastInstanceRead();
     if (classWeights != null && classWeights.length > 0) {
       int i = (int) prevInstance.instance.classValue();
       double w = 1.0;
@@ -125,6 +141,8 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
 
   @Override
   public void restart() {
+    stopReadAhead();
+    hitEndOfStream = false;
     reset();
     hasStarted = false;
   }
@@ -148,17 +166,108 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
     if (!hasStarted) {
       this.reset();
       hasStarted = true;
+      if (readAheadOption.getValue() > 0)
+        startReadAhead(readAheadOption.getValue());
     }
 
+    if (readAheadBuffer != null)
+      return takeReadAheadInstance();
+    if (readNextInstanceFromFiles())
+      return true;
+    this.hitEndOfStream = true;
+    return false;
+  }
+
+  /*
+   * Read the next instance, moving on to the next files at the end of the
+   * current one
+   */
+  private boolean readNextInstanceFromFiles() {
     while (true) {
       if (readNextInstanceFromFile())
         return true;
 
-      if (!getNextFileStream()) {
-        this.hitEndOfStream = true;
+      if (!getNextFileStream())
         return false;
+    }
+  }
+
+  /*
+   * Start a thread that reads the instances of the files, from the current
+   * one, into a buffer of the given capacity. The files must not be accessed
+   * by the stream's thread until the read-ahead is stopped.
+   */
+  private void startReadAhead(int capacity) {
+    final ReadAheadBuffer<InstanceExample> buffer = new ReadAheadBuffer<InstanceExample>(capacity);
+    this.readAheadBuffer = buffer;
+    this.readAheadThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Throwable error = null;
+        try {
+          while (readNextInstanceFromFiles()) {
+            if (!buffer.put(getLastInstanceRead()))
+              return;
+          }
+        } catch (InterruptedException e) {
+          return;
+        } catch (Throwable t) {
+          error = t;
+        } finally {
+          buffer.finish(error);
+        }
       }
+    }, "read-ahead-" + getClass().getSimpleName());
+    this.readAheadThread.setDaemon(true);
+    this.readAheadThread.start();
+  }
+
+  private boolean takeReadAheadInstance() {
+    InstanceExample instance = null;
+    try {
+      instance = readAheadBuffer.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
+    if (instance == null) {
+      logger.debug("End of {}: {}", getClass().getSimpleName(), readAheadBuffer);
+      this.hitEndOfStream = true;
+      return false;
+    }
+    this.readAheadInstance = instance;
+    return true;
+  }
+
+  /*
+   * Stop the read-ahead thread, once it is done with the instance it is
+   * reading, and drop the instances it has buffered
+   */
+  private void stopReadAhead() {
+    if (readAheadBuffer == null)
+      return;
+    readAheadBuffer.close();
+    try {
+      readAheadThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.readAheadBuffer = null;
+    this.readAheadThread = null;
+    this.readAheadInstance = null;
+  }
+
+  private InstanceExample lastInstanceRead() {
+    return readAheadBuffer != null ? readAheadInstance : getLastInstanceRead();
+  }
+
+  /**
+   * Get the buffer of the instances read ahead, whose occupancy and stall times tell whether the stream is bound by
+   * reading the files or by processing the instances.
+   * 
+   * @return the buffer, or null if the instances are read on demand or the stream has not started yet
+   */
+  public ReadAheadBuffer<InstanceExample> getReadAheadBuffer() {
+    return readAheadBuffer;
   }
 
   /**
@@ -172,6 +281,7 @@ public abstract class FileStream extends AbstractOptionHandler implements Instan
 
   @Override
   public void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+    stopReadAhead();
     this.fileSource = sourceTypeOption.getValue();
     this.classWeights = Arrays.copyOf(classWeightsOption.getList(), classWeightsOption.getList().length, FloatOption[].class);
     this.hasStarted = false;
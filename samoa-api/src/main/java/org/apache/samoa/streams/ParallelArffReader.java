@@ -0,0 +1,278 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.samoa.instances.FastArffLoader;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.InstanceInformation;
+import org.apache.samoa.instances.Loader;
+
+/**
+ * Loader of the data section of a local ARFF file that parses it with several threads. The file is split into chunks
+ * of whole lines, each chunk is memory-mapped and parsed by a {@link FastArffLoader} on a thread of a pool, and the
+ * instances are returned either in the order of the file or chunk by chunk as soon as the chunks are parsed.
+ * 
+ * At most two chunks per thread are parsed ahead of the one being read, so the memory used does not depend on the size
+ * of the file.
+ * 
+ */
+class ParallelArffReader implements Loader {
+
+  private static final long serialVersionUID = 3094768261850637612L;
+
+  static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final AtomicInteger poolNumber = new AtomicInteger();
+
+  private final InstanceInformation instanceInformation;
+  private final int chunkSize;
+  private final boolean ordered;
+  private final int maxPendingChunks;
+
+  private transient FileChannel channel;
+  private transient long fileSize;
+  private transient long nextChunkStart;
+  private transient ExecutorService executor;
+  // chunks being parsed, in the order of the file
+  private transient ArrayDeque<Future<Instance[]>> pendingChunks;
+  // chunks being parsed, in the order they are done
+  private transient CompletionService<Instance[]> completedChunks;
+  private transient int numPendingChunks;
+
+  private transient Instance[] chunk;
+  private transient int chunkPosition;
+
+  /**
+   * Instantiates a new reader.
+   * 
+   * @param file
+   *          the ARFF file
+   * @param dataOffset
+   *          the offset of the data section, at the beginning of a line or after the @data keyword
+   * @param instanceInformation
+   *          the structure of the file
+   * @param numThreads
+   *          the number of threads that parse the chunks
+   * @param chunkSize
+   *          the size of the chunks in bytes, extended to the end of their last line
+   * @param ordered
+   *          whether the instances are returned in the order of the file
+   * @throws IOException
+   *           if the file cannot be opened
+   */
+  ParallelArffReader(File file, long dataOffset, InstanceInformation instanceInformation, int numThreads,
+      int chunkSize, boolean ordered) throws IOException {
+    if (numThreads < 1)
+      throw new IllegalArgumentException("Number of threads must be a positive integer.");
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be a positive integer.");
+    this.instanceInformation = instanceInformation;
+    this.chunkSize = chunkSize;
+    this.ordered = ordered;
+    this.maxPendingChunks = 2 * numThreads;
+
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.fileSize = this.channel.size();
+    this.nextChunkStart = dataOffset;
+    final String prefix = "arff-parser-" + poolNumber.incrementAndGet() + "-";
+    this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+      private final AtomicInteger threadNumber = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.pendingChunks = new ArrayDeque<Future<Instance[]>>();
+    this.completedChunks = new ExecutorCompletionService<Instance[]>(this.executor);
+  }
+
+  @Override
+  public InstanceInformation getStructure() {
+    return this.instanceInformation;
+  }
+
+  /**
+   * Reads the next instance.
+   * 
+   * @return the instance, or null once all the chunks are read
+   */
+  @Override
+  public Instance readInstance() {
+    while (this.chunk == null || this.chunkPosition == this.chunk.length) {
+      this.chunk = this.nextChunk();
+      this.chunkPosition = 0;
+      if (this.chunk == null)
+        return null;
+    }
+    Instance instance = this.chunk[this.chunkPosition];
+    this.chunk[this.chunkPosition++] = null;
+    return instance;
+  }
+
+  /**
+   * Stops the threads and closes the file.
+   */
+  void close() {
+    this.executor.shutdownNow();
+    try {
+      this.channel.close();
+    } catch (IOException ioe) {
+      ioe.printStackTrace();
+    }
+  }
+
+  private Instance[] nextChunk() {
+    this.submitChunks();
+    if (this.numPendingChunks == 0)
+      return null;
+    Future<Instance[]> future;
+    try {
+      future = this.ordered ? this.pendingChunks.poll() : this.completedChunks.take();
+      this.numPendingChunks--;
+      Instance[] instances = future.get();
+      // the next chunk starts parsing while this one is read
+      this.submitChunks();
+      return instances;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for a chunk of the ARFF file.", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Failed parsing a chunk of the ARFF file.", e.getCause());
+    }
+  }
+
+  private void submitChunks() {
+    try {
+      while (this.numPendingChunks < this.maxPendingChunks && this.nextChunkStart < this.fileSize) {
+        long start = this.nextChunkStart;
+        long end = this.chunkEnd(start);
+        Callable<Instance[]> parser = new ChunkParser(start, end);
+        if (this.ordered)
+          this.pendingChunks.add(this.executor.submit(parser));
+        else
+          this.completedChunks.submit(parser);
+        this.numPendingChunks++;
+        this.nextChunkStart = end;
+      }
+    } catch (IOException ioe) {
+      throw new RuntimeException("Failed reading the ARFF file.", ioe);
+    }
+  }
+
+  /*
+   * The end of the chunk that starts at start: the first end of line after
+   * chunkSize bytes, or the end of the file
+   */
+  private long chunkEnd(long start) throws IOException {
+    long position = start + this.chunkSize;
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    while (position < this.fileSize) {
+      buffer.clear();
+      int n = this.channel.read(buffer, position);
+      if (n <= 0)
+        break;
+      for (int i = 0; i < n; i++) {
+        if (buffer.get(i) == '\n')
+          return position + i + 1;
+      }
+      position += n;
+    }
+    return this.fileSize;
+  }
+
+  private class ChunkParser implements Callable<Instance[]> {
+    private final long start;
+    private final long end;
+
+    ChunkParser(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public Instance[] call() throws IOException {
+      if (this.end - this.start > Integer.MAX_VALUE)
+        throw new IOException("Line longer than " + Integer.MAX_VALUE + " bytes at offset " + this.start);
+      ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, this.start, this.end - this.start);
+      Loader loader = new FastArffLoader(new ByteBufferInputStream(bytes), instanceInformation, UTF8, BUFFER_SIZE);
+      List<Instance> instances = new ArrayList<Instance>();
+      Instance instance;
+      while ((instance = loader.readInstance()) != null) {
+        instances.add(instance);
+      }
+      return instances.toArray(new Instance[instances.size()]);
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer bytes;
+
+    ByteBufferInputStream(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public int read() {
+      return this.bytes.hasRemaining() ? this.bytes.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0)
+        return 0;
+      if (!this.bytes.hasRemaining())
+        return -1;
+      int n = Math.min(len, this.bytes.remaining());
+      this.bytes.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return this.bytes.remaining();
+    }
+  }
+}
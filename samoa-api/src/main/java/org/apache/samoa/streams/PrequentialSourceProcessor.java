@@ -65,6 +65,7 @@ public final class PrequentialSourceProcessor implements EntranceProcessor {
   private int delay = 0;
   private int batchSize = 1;
   private boolean finished = false;
+  private boolean resultWithInstance = false;
 
   @Override
   public boolean process(ContentEvent event) {
@@ -93,12 +94,14 @@ public final class PrequentialSourceProcessor implements EntranceProcessor {
     if (hasReachedEndOfStream()) {
       contentEvent = new InstanceContentEvent(-1, firstInstance, false, true);
       contentEvent.setLast(true);
+      contentEvent.setResultWithInstance(resultWithInstance);
       // set finished status _after_ tagging last event
       finished = true;
     }
     else if (hasNext()) {
       numInstanceSent++;
       contentEvent = new InstanceContentEvent(numInstanceSent, nextInstance(), true, true);
+      contentEvent.setResultWithInstance(resultWithInstance);
 
       // first call to this method will trigger the timer
       if (schedule == null && delay > 0) {
@@ -131,6 +134,7 @@ public final class PrequentialSourceProcessor implements EntranceProcessor {
     if (originProcessor.getStreamSource() != null) {
       newProcessor.setStreamSource(originProcessor.getStreamSource().getStream());
     }
+    newProcessor.setResultWithInstance(originProcessor.isResultWithInstance());
     return newProcessor;
   }
 
@@ -215,6 +219,14 @@ public final class PrequentialSourceProcessor implements EntranceProcessor {
     this.batchSize = batch;
   }
 
+  public void setResultWithInstance(boolean resultWithInstance) {
+    this.resultWithInstance = resultWithInstance;
+  }
+
+  public boolean isResultWithInstance() {
+    return this.resultWithInstance;
+  }
+
   private class DelayTimeoutHandler implements Runnable {
 
     private PrequentialSourceProcessor processor;
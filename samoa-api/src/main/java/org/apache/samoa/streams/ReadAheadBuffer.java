@@ -0,0 +1,279 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer between the thread that reads ahead the instances of a {@link FileStream} and the thread that
+ * consumes them. The producer blocks while the buffer is full and the consumer while it is empty; the time each side
+ * spends blocked and the occupancy of the buffer seen by the consumer are recorded, so that it can be told whether the
+ * stream is bound by reading and parsing the files or by processing the instances.
+ * 
+ * The producer ends the stream with {@link #finish(Throwable)}, and either side can stop the other with
+ * {@link #close()}.
+ * 
+ * @param <T>
+ *          the type of the elements
+ */
+public class ReadAheadBuffer<T> {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  private final Object[] slots;
+  private int head;
+  private int size;
+  private boolean finished;
+  private boolean closed;
+  private Throwable error;
+
+  private long taken;
+  private long occupancySum;
+  private long consumerStalls;
+  private long consumerStallNanos;
+  private long producerStalls;
+  private long producerStallNanos;
+
+  public ReadAheadBuffer(int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Read-ahead capacity must be a positive integer.");
+    this.slots = new Object[capacity];
+  }
+
+  /**
+   * Add an element, blocking while the buffer is full.
+   * 
+   * @param element
+   *          the element
+   * @return false if the buffer was closed, in which case the producer should stop
+   * @throws InterruptedException
+   *           if the producer is interrupted while waiting
+   */
+  public boolean put(T element) throws InterruptedException {
+    lock.lock();
+    try {
+      if (size == slots.length && !closed) {
+        producerStalls++;
+        long start = System.nanoTime();
+        try {
+          while (size == slots.length && !closed)
+            notFull.await();
+        } finally {
+          producerStallNanos += System.nanoTime() - start;
+        }
+      }
+      if (closed)
+        return false;
+      slots[(head + size) % slots.length] = element;
+      if (size++ == 0)
+        notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Mark the end of the elements. Once the buffered elements are taken, {@link #take()} returns null or, if the
+   * producer failed, throws a RuntimeException caused by its error.
+   * 
+   * @param error
+   *          the error that stopped the producer, or null at the end of the stream
+   */
+  public void finish(Throwable error) {
+    lock.lock();
+    try {
+      this.finished = true;
+      this.error = error;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the next element, blocking while the buffer is empty.
+   * 
+   * @return the next element, or null at the end of the stream or if the buffer was closed
+   * @throws InterruptedException
+   *           if the consumer is interrupted while waiting
+   */
+  @SuppressWarnings("unchecked")
+  public T take() throws InterruptedException {
+    lock.lock();
+    try {
+      if (size == 0 && !finished && !closed) {
+        consumerStalls++;
+        long start = System.nanoTime();
+        try {
+          while (size == 0 && !finished && !closed)
+            notEmpty.await();
+        } finally {
+          consumerStallNanos += System.nanoTime() - start;
+        }
+      }
+      if (size == 0 || closed) {
+        if (error != null)
+          throw new RuntimeException("Failed to read ahead the instances of the stream.", error);
+        return null;
+      }
+      occupancySum += size;
+      taken++;
+      T element = (T) slots[head];
+      slots[head] = null;
+      head = (head + 1) % slots.length;
+      if (size-- == slots.length)
+        notFull.signal();
+      return element;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Drop the buffered elements and wake up both sides: the producer stops adding elements and the consumer gets null.
+   */
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      for (int i = 0; i < size; i++) {
+        slots[(head + i) % slots.length] = null;
+      }
+      size = 0;
+      notEmpty.signalAll();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+   * @return the number of elements currently buffered
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of elements taken by the consumer
+   */
+  public long getTaken() {
+    lock.lock();
+    try {
+      return taken;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the average number of elements buffered when the consumer takes one, including the one it takes. Close to
+   *         the capacity when the producer keeps ahead of the consumer, close to 1 when the consumer waits for it.
+   */
+  public double getAverageOccupancy() {
+    lock.lock();
+    try {
+      return taken == 0 ? 0 : (double) occupancySum / taken;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of times the consumer found the buffer empty
+   */
+  public long getConsumerStalls() {
+    lock.lock();
+    try {
+      return consumerStalls;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param unit
+   *          the unit of the result
+   * @return the total time the consumer waited for the producer
+   */
+  public long getConsumerStallTime(TimeUnit unit) {
+    lock.lock();
+    try {
+      return unit.convert(consumerStallNanos, TimeUnit.NANOSECONDS);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of times the producer found the buffer full
+   */
+  public long getProducerStalls() {
+    lock.lock();
+    try {
+      return producerStalls;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param unit
+   *          the unit of the result
+   * @return the total time the producer waited for the consumer
+   */
+  public long getProducerStallTime(TimeUnit unit) {
+    lock.lock();
+    try {
+      return unit.convert(producerStallNanos, TimeUnit.NANOSECONDS);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      return String.format("ReadAheadBuffer[size=%d/%d, taken=%d, avgOccupancy=%.1f, "
+          + "consumerStalls=%d (%d ms), producerStalls=%d (%d ms)]", size, slots.length, taken,
+          taken == 0 ? 0.0 : (double) occupancySum / taken, consumerStalls,
+          TimeUnit.NANOSECONDS.toMillis(consumerStallNanos), producerStalls,
+          TimeUnit.NANOSECONDS.toMillis(producerStallNanos));
+    } finally {
+      lock.unlock();
+    }
+  }
+}
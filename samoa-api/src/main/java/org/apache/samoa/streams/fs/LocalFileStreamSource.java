@@ -102,6 +102,17 @@ public class LocalFileStreamSource implements FileStreamSource {
     return fileStream;
   }
 
+  /**
+   * Retrieve the path of the current file, i.e. of the last InputStream returned by getNextInputStream.
+   * 
+   * @return path of the current file, null if there was no invocation of getNextInputStream
+   */
+  public String getCurrentFilePath() {
+    if (this.filePaths == null || this.currentIndex < 0 || this.currentIndex >= this.filePaths.size())
+      return null;
+    return this.filePaths.get(this.currentIndex);
+  }
+
   protected int getFilePathListSize() {
     if (filePaths != null)
       return filePaths.size();
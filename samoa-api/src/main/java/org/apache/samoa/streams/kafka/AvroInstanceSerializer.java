@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.samoa.streams.kafka;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.samoa.instances.AvroInstanceCodec;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.apache.samoa.instances.InstancesHeader;
+import org.apache.samoa.learners.InstanceContentEvent;
+
+/**
+ * Serializer of instances as Avro binary records, one record per message, with one field per attribute as in the files
+ * read by {@link org.apache.samoa.instances.AvroBinaryLoader}. It uses an {@link AvroInstanceCodec}, and reuses its
+ * records, encoder and decoder between messages.
+ *
+ * Only the instance is serialized: the deserialized events are numbered in the order they are received, and are used
+ * both for training and testing.
+ */
+public class AvroInstanceSerializer implements KafkaDeserializer<InstanceContentEvent>,
+        KafkaSerializer<InstanceContentEvent>, Serializable {
+
+    private static final long serialVersionUID = 5083412794652380731L;
+
+    // Schema is not serializable
+    private final String schemaString;
+    private final int classAttribute;
+
+    private transient AvroInstanceCodec codec;
+    private transient Instances header;
+    private transient AvroInstanceCodec.RecordReader reader;
+    private transient AvroInstanceCodec.RecordWriter writer;
+    private transient BinaryDecoder decoder;
+    private transient BinaryEncoder encoder;
+    private transient ByteArrayOutputStream out;
+    private transient GenericRecord readRecord;
+    private transient GenericRecord writeRecord;
+    private transient long numDeserialized;
+
+    /**
+     * Class constructor
+     * @param schema Schema of the records
+     * @param classAttribute Class attribute, starting from 1, -1 for the last one, 0 for none
+     */
+    public AvroInstanceSerializer(Schema schema, int classAttribute) {
+        this.schemaString = schema.toString();
+        this.classAttribute = classAttribute;
+    }
+
+    /**
+     * Header of the deserialized instances
+     * @return Header
+     */
+    public InstancesHeader getHeader() {
+        this.initialize();
+        return new InstancesHeader(this.header);
+    }
+
+    @Override
+    public InstanceContentEvent deserialize(byte[] message) {
+        this.initialize();
+        try {
+            this.decoder = DecoderFactory.get().binaryDecoder(message, this.decoder);
+            this.readRecord = this.reader.read(this.readRecord, this.decoder);
+            Instance instance = this.codec.decode(this.readRecord);
+            instance.setDataset(this.header);
+            return new InstanceContentEvent(this.numDeserialized++, instance, true, true);
+        } catch (IOException ex) {
+            Logger.getLogger(AvroInstanceSerializer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    @Override
+    public byte[] serialize(InstanceContentEvent message) {
+        this.initialize();
+        try {
+            this.out.reset();
+            this.encoder = EncoderFactory.get().binaryEncoder(this.out, this.encoder);
+            this.writeRecord = this.codec.encode(message.getInstance(), this.writeRecord);
+            this.writer.write(this.writeRecord, this.encoder);
+            this.encoder.flush();
+            return this.out.toByteArray();
+        } catch (IOException ex) {
+            Logger.getLogger(AvroInstanceSerializer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        return null;
+    }
+
+    private void initialize() {
+        if (this.codec != null) {
+            return;
+        }
+        Schema schema = new Schema.Parser().parse(this.schemaString);
+        this.header = new Instances(schema.getName(), AvroInstanceCodec.attributes(schema), 0);
+        if (this.classAttribute < 0) {
+            this.header.setClassIndex(this.header.numAttributes() - 1);
+        } else if (this.classAttribute > 0) {
+            this.header.setClassIndex(this.classAttribute - 1);
+        }
+        this.codec = new AvroInstanceCodec(schema, this.header, AvroInstanceCodec.isSparse(schema));
+        this.reader = new AvroInstanceCodec.RecordReader(schema);
+        this.writer = new AvroInstanceCodec.RecordWriter(schema);
+        this.out = new ByteArrayOutputStream();
+    }
+}
@@ -45,6 +45,7 @@ import org.slf4j.LoggerFactory;
 import com.github.javacliparser.ClassOption;
 import com.github.javacliparser.Configurable;
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
 
@@ -110,6 +111,19 @@ public class PrequentialEvaluation implements Task, Configurable {
   public IntOption batchDelayOption = new IntOption("delayBatchSize", 'b',
       "The delay batch size: delay of x milliseconds after each batch ", 1, 1, Integer.MAX_VALUE);
 
+  // Default=false: the results only carry the true label and weight of the
+  // instance, which is all the evaluator needs
+  public FlagOption resultWithInstanceOption = new FlagOption("resultWithInstance", 'o',
+      "Ship a copy of the full instance with each prediction result.");
+
+  // Default=1: no batching of the events between the PIs
+  public IntOption eventBatchSizeOption = new IntOption("eventBatchSize", 'z',
+      "Number of events sent together on the source and result streams.", 1, 1, Integer.MAX_VALUE);
+
+  public IntOption eventBatchTimeoutOption = new IntOption("eventBatchTimeout", 'y',
+      "Maximum time in microseconds an event waits for its batch to be sent (0 for no limit).", 0, 0,
+      Integer.MAX_VALUE);
+
   protected PrequentialSourceProcessor preqSource;
 
   // private PrequentialSourceTopologyStarter preqStarter;
@@ -156,6 +170,7 @@ public class PrequentialEvaluation implements Task, Configurable {
     preqSource.setMaxNumInstances(instanceLimitOption.getValue());
     preqSource.setSourceDelay(sourceDelayOption.getValue());
     preqSource.setDelayBatchSize(batchDelayOption.getValue());
+    preqSource.setResultWithInstance(resultWithInstanceOption.isSet());
     builder.addEntranceProcessor(preqSource);
     logger.debug("Successfully instantiating PrequentialSourceProcessor");
 
@@ -165,6 +180,8 @@ public class PrequentialEvaluation implements Task, Configurable {
     // sourcePiOutputStream = builder.createStream(sourcePi);
 
     sourcePiOutputStream = builder.createStream(preqSource);
+    sourcePiOutputStream.setBatchSize(eventBatchSizeOption.getValue());
+    sourcePiOutputStream.setBatchTimeout(eventBatchTimeoutOption.getValue());
     // preqStarter.setInputStream(sourcePiOutputStream);
 
     // instantiate classifier and connect it to sourcePiOutputStream
@@ -187,6 +204,8 @@ public class PrequentialEvaluation implements Task, Configurable {
     builder.addProcessor(evaluator);
     for (Stream evaluatorPiInputStream : classifier.getResultStreams()) {
       builder.connectInputShuffleStream(evaluatorPiInputStream, evaluator);
+      evaluatorPiInputStream.setBatchSize(eventBatchSizeOption.getValue());
+      evaluatorPiInputStream.setBatchTimeout(eventBatchTimeoutOption.getValue());
     }
 
     logger.debug("Successfully instantiating EvaluatorProcessor");
@@ -21,6 +21,7 @@ package org.apache.samoa.tasks;
  */
 
 import com.github.javacliparser.*;
+import org.apache.samoa.instances.BinaryInstanceWriter;
 import org.apache.samoa.moa.options.AbstractOptionHandler;
 import org.apache.samoa.streams.InstanceStream;
 import org.apache.samoa.streams.clustering.RandomRBFGeneratorEvents;
@@ -33,7 +34,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.Writer;
 
@@ -60,6 +63,9 @@ public class WriteArffFile implements Task, Configurable {
     public FlagOption suppressHeaderOption = new FlagOption("suppressHeader",
             'h', "Suppress header from output.");
 
+    public FlagOption binaryOption = new FlagOption("binary", 'b',
+            "Write the instances in the binary format read by BinaryFileStream instead of ARFF.");
+
 
     public void getDescription(StringBuilder sb) {
         sb.append("Writing a stream to an ARFF File");
@@ -89,6 +95,24 @@ public class WriteArffFile implements Task, Configurable {
         Stream sourcePiOutputStream = builder.createStream(preqSource);
 
         File destFile = this.arffFileOption.getFile();
+        if (destFile != null && this.binaryOption.isSet()) {
+            try {
+                BinaryInstanceWriter w = new BinaryInstanceWriter(new BufferedOutputStream(
+                        new FileOutputStream(destFile)), stream.getHeader());
+                int numWritten = 0;
+                while ((numWritten < this.maxInstancesOption.getValue())
+                        && stream.hasMoreInstances()) {
+                    w.write(stream.nextInstance().getData());
+                    numWritten++;
+                }
+                w.close();
+            } catch (Exception ex) {
+                throw new RuntimeException(
+                        "Failed writing to file " + destFile, ex);
+            }
+            this.topology = builder.build();
+            return;
+        }
         if (destFile != null) {
             try {
                 Writer w = new BufferedWriter(new FileWriter(destFile));
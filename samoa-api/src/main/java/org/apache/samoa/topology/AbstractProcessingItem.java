@@ -133,6 +133,12 @@ public abstract class AbstractProcessingItem implements ProcessingItem {
    */
   protected abstract ProcessingItem addInputStream(Stream inputStream, PartitioningScheme scheme);
 
+  private ProcessingItem connectInputStream(Stream inputStream, PartitioningScheme scheme) {
+    if (inputStream instanceof AbstractStream)
+      ((AbstractStream) inputStream).addDestinationScheme(scheme);
+    return this.addInputStream(inputStream, scheme);
+  }
+
   /**
    * Add an input stream to this ProcessingItem with SHUFFLE scheme
    * 
@@ -141,7 +147,7 @@ public abstract class AbstractProcessingItem implements ProcessingItem {
    * @return this ProcessingItem
    */
   public ProcessingItem connectInputShuffleStream(Stream inputStream) {
-    return this.addInputStream(inputStream, PartitioningScheme.SHUFFLE);
+    return this.connectInputStream(inputStream, PartitioningScheme.SHUFFLE);
   }
 
   /**
@@ -152,7 +158,7 @@ public abstract class AbstractProcessingItem implements ProcessingItem {
    * @return this ProcessingItem
    */
   public ProcessingItem connectInputKeyStream(Stream inputStream) {
-    return this.addInputStream(inputStream, PartitioningScheme.GROUP_BY_KEY);
+    return this.connectInputStream(inputStream, PartitioningScheme.GROUP_BY_KEY);
   }
 
   /**
@@ -163,6 +169,6 @@ public abstract class AbstractProcessingItem implements ProcessingItem {
    * @return this ProcessingItem
    */
   public ProcessingItem connectInputAllStream(Stream inputStream) {
-    return this.addInputStream(inputStream, PartitioningScheme.BROADCAST);
+    return this.connectInputStream(inputStream, PartitioningScheme.BROADCAST);
   }
 }
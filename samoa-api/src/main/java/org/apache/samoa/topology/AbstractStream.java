@@ -21,12 +21,17 @@ package org.apache.samoa.topology;
  */
 
 import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.utils.PartitioningScheme;
 
 /**
  * Abstract Stream
  * 
  * Helper for implementation of Stream. It has basic information for a Stream: streamID and source ProcessingItem.
- * Subclass of this class needs to implement {@link #put(ContentEvent)}.
+ * Subclass of this class needs to implement {@link #send(ContentEvent)}.
+ * 
+ * When the batch size is greater than 1, the events put on the stream are sent in batches (see {@link StreamBatcher}).
+ * The receiving PI has to hand the events it receives to its processor with
+ * {@link org.apache.samoa.core.BatchContentEvent#process(org.apache.samoa.core.Processor, ContentEvent)}.
  * 
  * @author Anh Thu Vu
  * 
@@ -36,6 +41,10 @@ public abstract class AbstractStream implements Stream {
   private String streamID;
   private IProcessingItem sourcePi;
   private int batchSize;
+  private long batchTimeout;
+  private boolean groupByKey;
+  // Created on first use, i.e. after the stream is deployed
+  private transient StreamBatcher batcher;
 
   /*
    * Constructor
@@ -63,11 +72,67 @@ public abstract class AbstractStream implements Stream {
    */
   @Override
   /**
-   * Send a ContentEvent
+   * Send a ContentEvent, or add it to the current batch
    * @param event
    * 			the ContentEvent to be sent
    */
-  public abstract void put(ContentEvent event);
+  public void put(ContentEvent event) {
+    if (batchSize <= 1) {
+      send(event);
+      return;
+    }
+    if (batcher == null)
+      createBatcher();
+    batcher.put(event);
+  }
+
+  private synchronized void createBatcher() {
+    if (batcher == null) {
+      batcher = new StreamBatcher(batchSize, batchTimeout, groupByKey, new StreamBatcher.Sender() {
+        @Override
+        public void send(ContentEvent event) {
+          AbstractStream.this.send(event);
+        }
+      });
+    }
+  }
+
+  /**
+   * Send a ContentEvent (possibly a batch) to the destinations of this stream
+   * 
+   * @param event
+   *          the ContentEvent to be sent
+   */
+  protected abstract void send(ContentEvent event);
+
+  /**
+   * Send the events waiting in the open batches, if any.
+   */
+  public void flush() {
+    if (batcher != null)
+      batcher.flush();
+  }
+
+  /**
+   * Send the open batches whose first event has waited for the batch timeout, if any. The engines that tick their
+   * processing items call it on the ticks of the source of the stream.
+   */
+  public void flushExpired() {
+    if (batcher != null)
+      batcher.flushExpired();
+  }
+
+  /**
+   * Record the partitioning scheme of a destination of this stream. The events are batched per key when a destination
+   * groups them by key.
+   * 
+   * @param scheme
+   *          the partitioning scheme
+   */
+  public void addDestinationScheme(PartitioningScheme scheme) {
+    if (scheme == PartitioningScheme.GROUP_BY_KEY)
+      this.groupByKey = true;
+  }
 
   /*
    * Stream name
@@ -115,4 +180,24 @@ public abstract class AbstractStream implements Stream {
   public int getBatchSize() {
     return this.batchSize;
   }
+
+  /**
+   * Set the maximum time an event waits in a batch
+   * 
+   * @param timeoutMicros
+   *          the timeout in microseconds, 0 for no limit
+   */
+  @Override
+  public void setBatchTimeout(long timeoutMicros) {
+    this.batchTimeout = timeoutMicros;
+  }
+
+  /**
+   * Get the maximum time an event waits in a batch
+   * 
+   * @return the timeout in microseconds, 0 for no limit
+   */
+  public long getBatchTimeout() {
+    return this.batchTimeout;
+  }
 }
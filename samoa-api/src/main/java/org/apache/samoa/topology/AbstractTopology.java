@@ -20,9 +20,14 @@ package org.apache.samoa.topology;
  * #L%
  */
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickingProcessor;
+
 /**
  * Topology abstract class.
  * 
@@ -31,6 +36,11 @@ import java.util.Set;
  */
 public abstract class AbstractTopology implements Topology {
 
+  /**
+   * Lower bound of the interval between two ticks, in microseconds
+   */
+  public static final long MIN_TICK_INTERVAL = 1000;
+
   private String topoName;
   private Set<Stream> streams;
   private Set<IProcessingItem> processingItems;
@@ -130,4 +140,61 @@ public abstract class AbstractTopology implements Topology {
   public Set<Stream> getStreams() {
     return this.streams;
   }
+
+  /**
+   * Gets the output streams of a processing item that batch their events with a timeout. The engines that tick the
+   * processing item flush their expired batches on its ticks (see {@link AbstractStream#flushExpired()}).
+   * 
+   * @param procItem
+   *          Processing item.
+   * @return the list of streams
+   */
+  public List<AbstractStream> getTimedStreams(IProcessingItem procItem) {
+    List<AbstractStream> timedStreams = new ArrayList<>();
+    for (Stream stream : this.streams) {
+      if (stream instanceof AbstractStream) {
+        AbstractStream abstractStream = (AbstractStream) stream;
+        if (abstractStream.getSourceProcessingItem() == procItem && abstractStream.getBatchSize() > 1
+            && abstractStream.getBatchTimeout() > 0)
+          timedStreams.add(abstractStream);
+      }
+    }
+    return timedStreams;
+  }
+
+  /**
+   * Gets the maximum time between two ticks required by a processing item: by its processor (see
+   * {@link TickingProcessor}) and by the batch timeout of its output streams
+   * 
+   * @param procItem
+   *          Processing item.
+   * @return the interval in microseconds, 0 if the processing item needs no tick
+   */
+  public long getTickInterval(IProcessingItem procItem) {
+    long interval = 0;
+    Processor processor = procItem.getProcessor();
+    if (processor instanceof TickingProcessor)
+      interval = Math.max(0, ((TickingProcessor) processor).getTickInterval());
+    for (AbstractStream stream : getTimedStreams(procItem)) {
+      if (interval == 0 || stream.getBatchTimeout() < interval)
+        interval = stream.getBatchTimeout();
+    }
+    return interval;
+  }
+
+  /**
+   * Gets the period at which the engine ticks the processing items of the topology: half of the smallest interval
+   * they require, so that a deadline is missed by at most half of it, and no less than {@link #MIN_TICK_INTERVAL}.
+   * 
+   * @return the period in microseconds, 0 if no processing item needs ticks
+   */
+  public long getTickInterval() {
+    long interval = 0;
+    for (IProcessingItem procItem : this.processingItems) {
+      long piInterval = getTickInterval(procItem);
+      if (piInterval > 0 && (interval == 0 || piInterval < interval))
+        interval = piInterval;
+    }
+    return interval == 0 ? 0 : Math.max(MIN_TICK_INTERVAL, interval / 2);
+  }
 }
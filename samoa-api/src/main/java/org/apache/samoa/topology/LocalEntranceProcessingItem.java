@@ -20,6 +20,8 @@ package org.apache.samoa.topology;
  * #L%
  */
 
+import java.util.concurrent.TimeUnit;
+
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.EntranceProcessor;
 
@@ -30,10 +32,40 @@ import org.apache.samoa.core.EntranceProcessor;
  * 
  */
 public class LocalEntranceProcessingItem extends AbstractEntranceProcessingItem {
+  // Task run every tickIntervalNanos between two events, null if none
+  private Runnable ticker;
+  private long tickIntervalNanos;
+  private long nextTick;
+
   public LocalEntranceProcessingItem(EntranceProcessor processor) {
     super(processor);
   }
 
+  /**
+   * Set a task to run periodically between two events, e.g. to tick the PIs of a single-threaded engine. As it runs on
+   * the thread that sends the events, it is delayed while the processor is blocked in
+   * {@link EntranceProcessor#nextEvent()}.
+   * 
+   * @param ticker
+   *          the task
+   * @param tickIntervalMicros
+   *          the interval between two runs of the task, in microseconds
+   */
+  public void setTicker(Runnable ticker, long tickIntervalMicros) {
+    this.ticker = ticker;
+    this.tickIntervalNanos = TimeUnit.MICROSECONDS.toNanos(tickIntervalMicros);
+    this.nextTick = System.nanoTime() + this.tickIntervalNanos;
+  }
+
+  /**
+   * Get the interval between two runs of the ticker
+   * 
+   * @return the interval in nanoseconds, 0 if there is no ticker
+   */
+  protected long getTickIntervalNanos() {
+    return this.ticker == null ? 0 : this.tickIntervalNanos;
+  }
+
   /**
    * If there are available events, first event in the queue will be sent out on the output stream.
    * 
@@ -68,14 +100,29 @@ public class LocalEntranceProcessingItem extends AbstractEntranceProcessingItem
           break;
         }
       }
+      if (this.ticker != null)
+        this.tick();
+    }
+  }
+
+  private void tick() {
+    long now = System.nanoTime();
+    if (now - this.nextTick >= 0) {
+      this.nextTick = now + this.tickIntervalNanos;
+      this.ticker.run();
     }
   }
 
   /**
    * Method to wait for an amount of time when there are no available events. Implementation of EntranceProcessingItem
-   * should override this method to implement non-blocking wait or to adjust the amount of time.
+   * should override this method to implement non-blocking wait or to adjust the amount of time. The wait should not
+   * exceed {@link #getTickIntervalNanos()} when there is a ticker.
    */
   protected void waitForNewEvents() throws Exception {
-    Thread.sleep(100);
+    long tickIntervalNanos = getTickIntervalNanos();
+    if (tickIntervalNanos > 0)
+      TimeUnit.NANOSECONDS.sleep(Math.min(tickIntervalNanos, TimeUnit.MILLISECONDS.toNanos(100)));
+    else
+      Thread.sleep(100);
   }
 }
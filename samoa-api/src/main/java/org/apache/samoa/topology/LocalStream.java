@@ -0,0 +1,126 @@
+package org.apache.samoa.topology;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.utils.StreamDestination;
+
+/**
+ * Implementation of Stream for the multithreaded engines (Multithreads, Virtual threads). It routes the events to the
+ * replicas of its destinations according to their partitioning scheme, and the engine delivers them with
+ * {@link #deliver(IProcessingItem, ContentEvent, int)}.
+ * 
+ * The shuffle counter is shared by all the producer threads. It is advanced atomically so that put() does not need to
+ * be synchronized.
+ */
+public abstract class LocalStream extends AbstractStream {
+
+  private List<StreamDestination> destinations;
+  private final AtomicInteger counter = new AtomicInteger();
+  private int maxCounter = 1;
+
+  public LocalStream(IProcessingItem sourcePi) {
+    super(sourcePi);
+    this.destinations = new LinkedList<StreamDestination>();
+  }
+
+  public void addDestination(StreamDestination destination) {
+    destinations.add(destination);
+    maxCounter *= destination.getParallelism();
+  }
+
+  public List<StreamDestination> getDestinations() {
+    return this.destinations;
+  }
+
+  private int getNextCounter() {
+    int next = counter.getAndIncrement() & Integer.MAX_VALUE;
+    if (maxCounter > 0)
+      next %= maxCounter;
+    return next + 1;
+  }
+
+  @Override
+  protected void send(ContentEvent event) {
+    this.put(event, this.getNextCounter());
+  }
+
+  private void put(ContentEvent event, int counter) {
+    IProcessingItem pi;
+    int parallelism;
+    for (StreamDestination destination : destinations) {
+      pi = destination.getProcessingItem();
+      parallelism = destination.getParallelism();
+      switch (destination.getPartitioningScheme()) {
+      case SHUFFLE:
+        deliver(pi, event, counter % parallelism);
+        break;
+      case GROUP_BY_KEY:
+        deliver(pi, event, getPIIndexForKey(event.getKey(), parallelism));
+        break;
+      case BROADCAST:
+        for (int p = 0; p < parallelism; p++) {
+          deliver(pi, event, p);
+        }
+        break;
+      }
+    }
+  }
+
+  /**
+   * Deliver an event to a replica of a destination PI
+   * 
+   * @param pi
+   *          the destination PI
+   * @param event
+   *          the event
+   * @param index
+   *          the index of the replica
+   */
+  protected abstract void deliver(IProcessingItem pi, ContentEvent event, int index);
+
+  /**
+   * Get the index of the replica an event is routed to when its destination groups the events by key
+   * 
+   * @param key
+   *          the key of the event
+   * @param parallelism
+   *          the number of replicas of the destination
+   * @return the index of the replica
+   */
+  public static int getPIIndexForKey(String key, int parallelism) {
+    // If key is null, return a default index: 0
+    if (key == null)
+      return 0;
+
+    // String caches its hash code, so events that share a key
+    // instance do not recompute it
+    int index = key.hashCode() % parallelism;
+    if (index < 0) {
+      index += parallelism;
+    }
+    return index;
+  }
+}
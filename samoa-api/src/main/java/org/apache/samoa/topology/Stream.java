@@ -58,4 +58,14 @@ public interface Stream {
    *          the suggested size for batching messages on this stream
    */
   public void setBatchSize(int batchsize);
+
+  /**
+   * Set batch timeout
+   * 
+   * @param timeoutMicros
+   *          the maximum time in microseconds an event waits in a batch on this stream, 0 for no limit. It is
+   *          best-effort on the engines that do not tick their processing items, where it is only checked when an
+   *          event is put on the stream
+   */
+  public void setBatchTimeout(long timeoutMicros);
 }
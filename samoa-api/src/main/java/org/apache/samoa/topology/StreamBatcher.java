@@ -0,0 +1,196 @@
+package org.apache.samoa.topology;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.samoa.core.BatchContentEvent;
+import org.apache.samoa.core.ContentEvent;
+
+/**
+ * Accumulates the events put on a stream into {@link BatchContentEvent}s, so that the per-message overhead of the
+ * engine is paid once per batch. A batch is sent when it holds {@code batchSize} events, when its first event has
+ * waited for {@code timeoutMicros}, or when a last event is put, in which case all the open batches are sent.
+ * 
+ * The timeout is checked whenever an event is put and by {@link #flushExpired()}, which the engines that tick their
+ * processing items call on the ticks of the source of the stream (see
+ * {@link AbstractTopology#getTimedStreams(IProcessingItem)}). On the other engines the timeout is best-effort: the
+ * last batch of a quiet stream, or of a key that stops receiving events, waits for the next event put on the stream.
+ * 
+ * When a destination of the stream groups the events by key, there is one open batch per key, so that the batches
+ * are routed like their events. Otherwise there is a single open batch.
+ * 
+ * The batcher is thread-safe, as the replicas of a PI share their output streams in the multi-threaded engines. The
+ * batches are sent outside of the lock.
+ */
+public final class StreamBatcher {
+
+  /**
+   * Sends a batch on the underlying stream.
+   */
+  public interface Sender {
+    void send(ContentEvent event);
+  }
+
+  // Batches grow from this capacity up to the batch size
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int batchSize;
+  private final long timeoutNanos;
+  private final boolean groupByKey;
+  private final Sender sender;
+
+  // Open batches, oldest first
+  private final LinkedHashMap<String, BatchContentEvent> batches = new LinkedHashMap<>();
+
+  /**
+   * @param batchSize
+   *          the maximum number of events in a batch
+   * @param timeoutMicros
+   *          the maximum time an event waits in a batch, 0 for no limit
+   * @param groupByKey
+   *          whether a batch only holds events with the same key
+   * @param sender
+   *          the sender of the batches
+   */
+  public StreamBatcher(int batchSize, long timeoutMicros, boolean groupByKey, Sender sender) {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("Batch size must be a positive integer.");
+    this.batchSize = batchSize;
+    this.timeoutNanos = TimeUnit.MICROSECONDS.toNanos(timeoutMicros);
+    this.groupByKey = groupByKey;
+    this.sender = sender;
+  }
+
+  /**
+   * Add an event to its batch, and send the batches that are complete.
+   * 
+   * @param event
+   *          the event
+   */
+  public void put(ContentEvent event) {
+    long now = timeoutNanos > 0 ? System.nanoTime() : 0;
+    BatchContentEvent full = null;
+    List<BatchContentEvent> ready = null;
+    synchronized (this) {
+      String key = groupByKey ? event.getKey() : null;
+      BatchContentEvent batch = batches.get(key);
+      if (batch == null) {
+        batch = new BatchContentEvent(key, Math.min(batchSize, INITIAL_CAPACITY), now);
+        batches.put(key, batch);
+      }
+      batch.add(event);
+      if (event.isLastEvent()) {
+        // The batch holding the last event is sent after all the others
+        batches.remove(key);
+        ready = takeAll();
+        full = batch;
+      } else {
+        if (batch.size() >= batchSize) {
+          batches.remove(key);
+          full = batch;
+        }
+        if (timeoutNanos > 0)
+          ready = takeExpired(now);
+      }
+    }
+    if (ready != null) {
+      for (BatchContentEvent batch : ready)
+        send(batch);
+    }
+    if (full != null)
+      send(full);
+  }
+
+  /**
+   * Send the open batches whose first event has waited for the timeout.
+   */
+  public void flushExpired() {
+    if (timeoutNanos <= 0)
+      return;
+    long now = System.nanoTime();
+    List<BatchContentEvent> ready;
+    synchronized (this) {
+      ready = takeExpired(now);
+    }
+    if (ready != null) {
+      for (BatchContentEvent batch : ready)
+        send(batch);
+    }
+  }
+
+  /**
+   * Send all the open batches.
+   */
+  public void flush() {
+    List<BatchContentEvent> ready;
+    synchronized (this) {
+      ready = takeAll();
+    }
+    for (BatchContentEvent batch : ready)
+      send(batch);
+  }
+
+  /**
+   * @return the number of events waiting in the open batches
+   */
+  public synchronized int pendingEvents() {
+    int pending = 0;
+    for (BatchContentEvent batch : batches.values())
+      pending += batch.size();
+    return pending;
+  }
+
+  private List<BatchContentEvent> takeAll() {
+    List<BatchContentEvent> all = new ArrayList<>(batches.values());
+    batches.clear();
+    return all;
+  }
+
+  private List<BatchContentEvent> takeExpired(long now) {
+    List<BatchContentEvent> expired = null;
+    Iterator<BatchContentEvent> it = batches.values().iterator();
+    while (it.hasNext()) {
+      BatchContentEvent batch = it.next();
+      if (now - batch.getCreationTime() < timeoutNanos)
+        break;
+      if (expired == null)
+        expired = new ArrayList<>();
+      expired.add(batch);
+      it.remove();
+    }
+    return expired;
+  }
+
+  private void send(BatchContentEvent batch) {
+    if (batch.size() == 1) {
+      // Not worth an envelope
+      sender.send(batch.get(0));
+    } else {
+      batch.trimToSize();
+      sender.send(batch);
+    }
+  }
+}
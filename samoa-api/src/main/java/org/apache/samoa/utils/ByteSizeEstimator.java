@@ -0,0 +1,202 @@
+package org.apache.samoa.utils;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Estimates the memory retained by a graph of objects, e.g. the statistics of a learner, by walking their fields with
+ * reflection. It assumes the layout of a 64-bit JVM with compressed references: 12 bytes of object header, 16 bytes of
+ * array header, 4 bytes per reference and sizes rounded up to 8 bytes. Field packing is ignored, so the estimate is
+ * approximate, but it needs no instrumentation agent (see {@link org.apache.samoa.moa.AbstractMOAObject}).
+ * 
+ * The fields of classes that cannot be accessed (e.g. the JDK classes on a modular runtime) are not walked: the content
+ * of collections, maps and strings is estimated through their public interface, and any other such object counts for
+ * its own fields only. Classes and enum constants are shared and not counted.
+ * 
+ * An object is counted once per estimator, so the sizes of several roots that share objects can be added up. Objects
+ * that must not be counted at all, e.g. a header shared by all the instances, can be excluded beforehand.
+ * 
+ */
+public final class ByteSizeEstimator {
+
+  private static final int OBJECT_HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+  private static final int MAP_ENTRY = 32;
+  private static final int ALIGNMENT = 8;
+
+  private static final ConcurrentMap<Class<?>, ClassLayout> layouts = new ConcurrentHashMap<>();
+
+  private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+  private final Deque<Object> pending = new ArrayDeque<>();
+
+  /**
+   * Do not count an object, nor the objects only reachable through it.
+   * 
+   * @param obj
+   *          the object to exclude
+   * @return this estimator
+   */
+  public ByteSizeEstimator exclude(Object obj) {
+    if (obj != null) {
+      visited.put(obj, Boolean.TRUE);
+    }
+    return this;
+  }
+
+  /**
+   * Estimate the size of an object and of the objects reachable from it that have not been counted yet.
+   * 
+   * @param root
+   *          the object
+   * @return the estimated size in bytes
+   */
+  public long sizeOf(Object root) {
+    long size = 0;
+    push(root);
+    while (!pending.isEmpty()) {
+      size += visit(pending.pop());
+    }
+    return size;
+  }
+
+  private void push(Object obj) {
+    if (obj != null && !(obj instanceof Class) && !(obj instanceof Enum) && visited.put(obj, Boolean.TRUE) == null) {
+      pending.push(obj);
+    }
+  }
+
+  private long visit(Object obj) {
+    Class<?> type = obj.getClass();
+    if (type.isArray()) {
+      Class<?> componentType = type.getComponentType();
+      int length = Array.getLength(obj);
+      if (!componentType.isPrimitive()) {
+        for (Object element : (Object[]) obj) {
+          push(element);
+        }
+      }
+      return align(ARRAY_HEADER + (long) length * fieldSize(componentType));
+    }
+
+    ClassLayout layout = layout(type);
+    for (Field field : layout.references) {
+      try {
+        push(field.get(obj));
+      } catch (IllegalAccessException e) {
+        // made accessible when the layout was computed
+        throw new IllegalStateException(e);
+      }
+    }
+    long size = layout.size;
+    if (!layout.accessible) {
+      if (obj instanceof String) {
+        size += align(ARRAY_HEADER + ((String) obj).length());
+      } else if (obj instanceof Collection) {
+        Collection<?> collection = (Collection<?>) obj;
+        size += align(ARRAY_HEADER + (long) collection.size() * REFERENCE);
+        for (Object element : collection) {
+          push(element);
+        }
+      } else if (obj instanceof Map) {
+        Map<?, ?> map = (Map<?, ?>) obj;
+        size += align(ARRAY_HEADER + (long) map.size() * REFERENCE) + (long) map.size() * MAP_ENTRY;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          push(entry.getKey());
+          push(entry.getValue());
+        }
+      }
+    }
+    return size;
+  }
+
+  private static ClassLayout layout(Class<?> type) {
+    ClassLayout layout = layouts.get(type);
+    if (layout == null) {
+      layout = new ClassLayout(type);
+      layouts.putIfAbsent(type, layout);
+    }
+    return layout;
+  }
+
+  private static int fieldSize(Class<?> type) {
+    if (type == long.class || type == double.class)
+      return 8;
+    if (type == int.class || type == float.class)
+      return 4;
+    if (type == short.class || type == char.class)
+      return 2;
+    if (type == byte.class || type == boolean.class)
+      return 1;
+    return REFERENCE;
+  }
+
+  private static long align(long size) {
+    return (size + ALIGNMENT - 1) & -ALIGNMENT;
+  }
+
+  /*
+   * Size of the instances of a class and its reference fields
+   */
+  private static final class ClassLayout {
+    final long size;
+    final Field[] references;
+    // false if some of the reference fields cannot be walked
+    final boolean accessible;
+
+    ClassLayout(Class<?> type) {
+      long fieldsSize = 0;
+      boolean allAccessible = true;
+      List<Field> fields = new ArrayList<>();
+      for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+        for (Field field : c.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers()))
+            continue;
+          fieldsSize += fieldSize(field.getType());
+          if (field.getType().isPrimitive())
+            continue;
+          try {
+            field.setAccessible(true);
+            fields.add(field);
+          } catch (RuntimeException e) {
+            // not open to this module
+            allAccessible = false;
+          }
+        }
+      }
+      this.size = align(OBJECT_HEADER + fieldsSize);
+      this.references = fields.toArray(new Field[fields.size()]);
+      this.accessible = allAccessible;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package org.apache.samoa.utils;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * Hashed timer wheel for timeouts identified by a long, e.g. the split attempts of the Vertical Hoeffding Tree. Time is
+ * divided into ticks and a timeout is stored in the slot of the tick it expires at, modulo the number of slots, so
+ * scheduling costs O(1) and advancing the wheel only looks at the slots of the ticks that elapsed.
+ * 
+ * The wheel has no thread of its own: it is advanced by its owner, e.g. on every event, with the current time. It is
+ * not thread-safe. Timeouts cannot be cancelled; the owner ignores the expired ids it is no longer waiting for.
+ * 
+ */
+public final class HashedTimerWheel {
+
+  /**
+   * Receives the expired timeouts.
+   */
+  public interface ExpiryHandler {
+    void expired(long id);
+  }
+
+  private static final int INITIAL_SLOT_CAPACITY = 4;
+
+  private final long tickNanos;
+  private final long[][] ids;
+  private final long[][] deadlines;
+  private final int[] counts;
+  private final int mask;
+
+  private long currentTick;
+  private int size;
+  private long[] expiredIds = new long[INITIAL_SLOT_CAPACITY];
+
+  /**
+   * @param tickNanos
+   *          the duration of a tick in nanoseconds, i.e. the resolution of the timeouts
+   * @param numSlots
+   *          the number of slots, rounded up to a power of two
+   * @param nowNanos
+   *          the current time in nanoseconds, as returned by {@link System#nanoTime()}
+   */
+  public HashedTimerWheel(long tickNanos, int numSlots, long nowNanos) {
+    if (tickNanos < 1)
+      throw new IllegalArgumentException("The duration of a tick must be positive.");
+    if (numSlots < 1 || numSlots > 1 << 30)
+      throw new IllegalArgumentException("Invalid number of slots: " + numSlots);
+    int slots = Integer.highestOneBit(numSlots);
+    if (slots < numSlots)
+      slots <<= 1;
+    this.tickNanos = tickNanos;
+    this.ids = new long[slots][];
+    this.deadlines = new long[slots][];
+    this.counts = new int[slots];
+    this.mask = slots - 1;
+    this.currentTick = nowNanos / tickNanos;
+  }
+
+  /**
+   * Schedule a timeout.
+   * 
+   * @param id
+   *          the id passed to the handler on expiry
+   * @param delayNanos
+   *          the delay in nanoseconds, rounded up to a whole tick
+   * @param nowNanos
+   *          the current time in nanoseconds
+   */
+  public void schedule(long id, long delayNanos, long nowNanos) {
+    long deadline = Math.max(nowNanos / tickNanos + (Math.max(delayNanos, 0) + tickNanos - 1) / tickNanos,
+        currentTick + 1);
+    int slot = (int) (deadline & mask);
+    int count = counts[slot];
+    if (ids[slot] == null) {
+      ids[slot] = new long[INITIAL_SLOT_CAPACITY];
+      deadlines[slot] = new long[INITIAL_SLOT_CAPACITY];
+    } else if (count == ids[slot].length) {
+      ids[slot] = Arrays.copyOf(ids[slot], count << 1);
+      deadlines[slot] = Arrays.copyOf(deadlines[slot], count << 1);
+    }
+    ids[slot][count] = id;
+    deadlines[slot][count] = deadline;
+    counts[slot] = count + 1;
+    size++;
+  }
+
+  /**
+   * Move the wheel to the current time and pass the ids of the timeouts that expired to the handler, in no particular
+   * order. Returns immediately when no tick elapsed since the last call.
+   * 
+   * @param nowNanos
+   *          the current time in nanoseconds
+   * @param handler
+   *          the handler of the expired timeouts
+   * @return the number of expired timeouts
+   */
+  public int advance(long nowNanos, ExpiryHandler handler) {
+    long nowTick = nowNanos / tickNanos;
+    if (nowTick <= currentTick)
+      return 0;
+    // after a whole turn every slot has been visited once
+    long ticks = Math.min(nowTick - currentTick, mask + 1);
+    int expired = 0;
+    for (long tick = nowTick - ticks + 1; tick <= nowTick && size > 0; tick++) {
+      expired = expireSlot((int) (tick & mask), nowTick, expired);
+    }
+    currentTick = nowTick;
+    // the handler may schedule new timeouts, so it runs once the wheel is
+    // consistent
+    for (int i = 0; i < expired; i++) {
+      handler.expired(expiredIds[i]);
+    }
+    return expired;
+  }
+
+  /*
+   * Remove the expired timeouts of a slot and append their ids to expiredIds
+   * from the given position. Returns the new number of expired ids.
+   */
+  private int expireSlot(int slot, long nowTick, int expired) {
+    long[] slotIds = ids[slot];
+    long[] slotDeadlines = deadlines[slot];
+    int count = counts[slot];
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (slotDeadlines[i] <= nowTick) {
+        if (expired == expiredIds.length)
+          expiredIds = Arrays.copyOf(expiredIds, expired << 1);
+        expiredIds[expired++] = slotIds[i];
+      } else {
+        slotIds[kept] = slotIds[i];
+        slotDeadlines[kept] = slotDeadlines[i];
+        kept++;
+      }
+    }
+    size -= count - kept;
+    counts[slot] = kept;
+    return expired;
+  }
+
+  /**
+   * @return the number of timeouts that have not expired yet
+   */
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,97 @@
+package org.apache.samoa.learners;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultContentEventTest {
+
+  private Instance instance;
+
+  @Before
+  public void setUp() {
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+    Instances dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(1);
+    instance = new DenseInstance(2.0, new double[] { 0.5, 2 });
+    instance.setDataset(dataset);
+  }
+
+  @Test
+  public void testInstanceIsNotCopiedLocally() {
+    ResultContentEvent event = new ResultContentEvent(1, instance, 0, new double[] { 1, 0, 0 }, false);
+    assertFalse(event.hasInstance());
+    assertSame(instance, event.getInstance());
+    assertEquals(3, event.getNumClasses());
+  }
+
+  @Test
+  public void testLabelOnlyAfterSerialization() throws Exception {
+    ResultContentEvent event = roundTrip(new ResultContentEvent(1, instance, 0, new double[] { 1, 0, 0 }, false));
+    assertFalse(event.hasInstance());
+    Instance label = event.getInstance();
+    assertEquals(2.0, label.classValue(), 0.0);
+    assertEquals(2.0, label.weight(), 0.0);
+    assertEquals(3, label.numClasses());
+    assertEquals(3, event.getNumClasses());
+  }
+
+  @Test
+  public void testFullInstanceAfterSerialization() throws Exception {
+    ResultContentEvent event = roundTrip(new ResultContentEvent(1, instance, 0, new double[] { 1, 0, 0 }, false,
+        true));
+    assertTrue(event.hasInstance());
+    Instance copy = event.getInstance();
+    assertEquals(2, copy.numAttributes());
+    assertEquals(0.5, copy.value(0), 0.0);
+    assertEquals(2.0, copy.classValue(), 0.0);
+  }
+
+  private static ResultContentEvent roundTrip(ResultContentEvent event) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(event);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (ResultContentEvent) in.readObject();
+    }
+  }
+}
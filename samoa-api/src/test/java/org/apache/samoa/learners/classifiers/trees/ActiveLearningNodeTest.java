@@ -0,0 +1,119 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.apache.samoa.topology.AbstractStream;
+import org.apache.samoa.topology.LocalStream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActiveLearningNodeTest {
+
+  private Instances dataset;
+  private ModelAggregatorProcessor modelAggrProc;
+
+  @Before
+  public void setUp() {
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("y"));
+    attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+    dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(2);
+
+    modelAggrProc = new ModelAggregatorProcessor.Builder(dataset).build();
+    modelAggrProc.setControlStream(new NullStream());
+  }
+
+  @Test
+  public void testBufferWhileSplitting() {
+    ActiveLearningNode node = new ActiveLearningNode(new double[0], 1, false, 3);
+    node.learnFromInstance(newInstance(0), modelAggrProc);
+    node.requestDistributedSuggestions(1, modelAggrProc);
+
+    Instance[] expected = new Instance[5];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = newInstance(i % 2);
+      node.learnFromInstance(expected[i], modelAggrProc);
+    }
+    assertEquals("The class distribution changed while splitting.", 1.0, node.getWeightSeen(), 0.0);
+    assertEquals(2, node.getThrownAwayInstances());
+    assertEquals(2, node.getDroppedInstances());
+
+    node.endSplitting();
+    Instance[] pending = node.takePendingInstances();
+    assertArrayEquals(Arrays.copyOf(expected, 3), pending);
+    assertEquals(0, node.takePendingInstances().length);
+    assertEquals("The dropped count is per node, not per split.", 2, node.getDroppedInstances());
+  }
+
+  @Test
+  public void testDiscardWithoutBuffer() {
+    ActiveLearningNode node = new ActiveLearningNode(new double[0], 1);
+    node.requestDistributedSuggestions(1, modelAggrProc);
+    node.learnFromInstance(newInstance(0), modelAggrProc);
+    node.endSplitting();
+    assertEquals(0, node.takePendingInstances().length);
+    assertEquals(1, node.getDroppedInstances());
+  }
+
+  @Test
+  public void testRangeKeysRoutedToDistinctPIs() {
+    for (int parallelism = 1; parallelism <= 1024; parallelism++) {
+      Set<Integer> localPIs = new HashSet<>();
+      Set<Integer> stormTasks = new HashSet<>();
+      for (int range = 0; range < parallelism; range++) {
+        String key = ActiveLearningNode.getRangeKey(range);
+        localPIs.add(LocalStream.getPIIndexForKey(key, parallelism));
+        // Storm's fields grouping hashes the list of the grouping values
+        int hash = Arrays.asList(key).hashCode();
+        stormTasks.add(((hash % parallelism) + parallelism) % parallelism);
+      }
+      assertEquals("Ranges share a PI with parallelism " + parallelism, parallelism, localPIs.size());
+      assertEquals("Ranges share a task with parallelism " + parallelism, parallelism, stormTasks.size());
+    }
+  }
+
+  private Instance newInstance(int classValue) {
+    Instance inst = new DenseInstance(1.0, new double[] { 0.5, 1.5, classValue });
+    inst.setDataset(dataset);
+    return inst;
+  }
+
+  private static class NullStream extends AbstractStream {
+    @Override
+    protected void send(ContentEvent event) {
+    }
+  }
+}
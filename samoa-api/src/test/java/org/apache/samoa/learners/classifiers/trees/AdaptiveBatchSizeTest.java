@@ -0,0 +1,106 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveBatchSizeTest {
+
+  private long now;
+
+  @Test
+  public void testFixedSize() {
+    AdaptiveBatchSize sizer = new AdaptiveBatchSize(200, 0, false);
+    simulate(sizer, 1_000, 0, 900, 10);
+    assertEquals(200, sizer.size());
+    assertFalse(sizer.expired(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testShrinksWhenSendingIsCheap() {
+    AdaptiveBatchSize sizer = new AdaptiveBatchSize(200, 0, true);
+    simulate(sizer, 1_000, 1, 0, 100);
+    assertTrue(sizer.utilization() < AdaptiveBatchSize.LOW_UTILIZATION);
+    assertEquals(1, sizer.size());
+  }
+
+  @Test
+  public void testGrowsWhenDownstreamIsSlow() {
+    AdaptiveBatchSize sizer = new AdaptiveBatchSize(200, 0, true);
+    simulate(sizer, 1_000, 1, 0, 100);
+    assertEquals(1, sizer.size());
+    // sending takes as long as the arrival of the instances
+    simulate(sizer, 1_000, 0, 1_000, 100);
+    assertEquals(200, sizer.size());
+  }
+
+  @Test
+  public void testAmortizesOverhead() {
+    AdaptiveBatchSize sizer = new AdaptiveBatchSize(200, 0, true);
+    // a fixed cost of half an interval per batch
+    simulate(sizer, 1_000, 500, 0, 200);
+    double utilization = 500.0 / (sizer.size() * 1_000 + 500);
+    assertTrue("Batch size " + sizer.size(), utilization >= AdaptiveBatchSize.LOW_UTILIZATION / 2);
+    assertTrue("Batch size " + sizer.size(), utilization <= AdaptiveBatchSize.HIGH_UTILIZATION * 2);
+  }
+
+  @Test
+  public void testCappedByLatency() {
+    long latency = TimeUnit.MILLISECONDS.toNanos(1);
+    AdaptiveBatchSize sizer = new AdaptiveBatchSize(200, latency, false);
+    assertEquals(200, sizer.size());
+    // an instance every 100 us: 10 instances per ms
+    for (int i = 0; i < 10; i++) {
+      sizer.arrival(i * 100_000L);
+    }
+    assertEquals(10, sizer.size());
+    assertFalse(sizer.expired(latency - 1));
+    assertTrue(sizer.expired(latency));
+
+    // an instance every 10 ms: no batching
+    for (int i = 0; i < 100; i++) {
+      sizer.arrival(1_000_000L + i * 10_000_000L);
+    }
+    assertEquals(1, sizer.size());
+  }
+
+  /*
+   * Send batches of the current size, one instance per interval, each batch
+   * taking a fixed time plus a time per instance to send
+   */
+  private void simulate(AdaptiveBatchSize sizer, long interval, long fixedSend, long perInstanceSend,
+      int batches) {
+    for (int b = 0; b < batches; b++) {
+      int size = sizer.size();
+      for (int i = 0; i < size; i++) {
+        now += interval;
+        sizer.arrival(now);
+      }
+      long sendNanos = fixedSend + size * perInstanceSend;
+      sizer.sent(now, now + sendNanos);
+      now += sendNanos;
+    }
+  }
+}
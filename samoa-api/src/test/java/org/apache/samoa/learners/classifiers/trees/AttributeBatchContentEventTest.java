@@ -0,0 +1,154 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AttributeBatchContentEventTest {
+
+  private Instances dataset;
+
+  @Before
+  public void setUp() {
+    // the class is not the last attribute, so that the range skips it
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+    attributes.add(new Attribute("color", Arrays.asList("red", "green", "blue")));
+    attributes.add(new Attribute("y"));
+    dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(1);
+  }
+
+  @Test
+  public void testAddGrowsArrays() {
+    AttributeBatchContentEvent event = new AttributeBatchContentEvent.Builder(7L, 2, "key").isNominal(true)
+        .capacity(2).build();
+    int numValues = 40;
+    for (int i = 0; i < numValues; i++) {
+      event.add(i * 0.5, i % 3, i + 1.0);
+    }
+    assertEquals(numValues, event.size());
+    assertEquals(7L, event.getLearningNodeId());
+    assertEquals(2, event.getObsIndex());
+    assertEquals("key", event.getKey());
+    assertEquals(1, event.getNumAttributes());
+    assertTrue(event.isNominal());
+    for (int i = 0; i < numValues; i++) {
+      assertEquals(i * 0.5, event.getValues()[i], 0.0);
+      assertEquals(i % 3, event.getClasses()[i]);
+      assertEquals(i + 1.0, event.getWeights()[i], 0.0);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAddSingleValueToRange() {
+    AttributeBatchContentEvent event = new AttributeBatchContentEvent.Builder(7L, 0, "key").isNominal(
+        new boolean[] { false, true }).build();
+    event.add(0.5, 1, 1.0);
+  }
+
+  @Test
+  public void testAddInstanceToRange() {
+    // the attributes 1 and 2 of the range are color and y, after the class
+    AttributeBatchContentEvent event = new AttributeBatchContentEvent.Builder(7L, 1, "key").isNominal(
+        new boolean[] { true, false }).capacity(1).build();
+    int numInstances = 20;
+    for (int i = 0; i < numInstances; i++) {
+      event.add(newInstance(i * 0.1, i % 3, (i + 1) % 3, i * 2.0, i + 0.5));
+    }
+    assertEquals(numInstances, event.size());
+    assertEquals(2, event.getNumAttributes());
+    assertTrue(event.isNominal(0));
+    assertFalse(event.isNominal(1));
+    for (int i = 0; i < numInstances; i++) {
+      assertEquals((i + 1) % 3, event.getValues(0)[i], 0.0);
+      assertEquals(i * 2.0, event.getValues(1)[i], 0.0);
+      assertEquals(i % 3, event.getClasses()[i]);
+      assertEquals(i + 0.5, event.getWeights()[i], 0.0);
+    }
+  }
+
+  @Test
+  public void testSerializationTrimsCopyOnly() throws Exception {
+    AttributeBatchContentEvent event = new AttributeBatchContentEvent.Builder(7L, 1, "key").isNominal(
+        new boolean[] { true, false }).capacity(16).build();
+    for (int i = 0; i < 3; i++) {
+      event.add(newInstance(0.0, i, i, i * 2.0, 1.0));
+    }
+    AttributeBatchContentEvent first = roundTrip(event);
+    AttributeBatchContentEvent second = roundTrip(event);
+
+    assertEquals("Serialization trimmed the event.", 16, event.getClasses().length);
+    assertEquals("Serialization trimmed the event.", 16, event.getValues(1).length);
+    for (AttributeBatchContentEvent copy : Arrays.asList(first, second)) {
+      assertEquals(3, copy.size());
+      assertEquals(7L, copy.getLearningNodeId());
+      assertEquals(1, copy.getObsIndex());
+      assertEquals(2, copy.getNumAttributes());
+      assertTrue(copy.isNominal(0));
+      assertEquals("Unused capacity was serialized.", 3, copy.getClasses().length);
+      assertEquals("Unused capacity was serialized.", 3, copy.getWeights().length);
+      for (int i = 0; i < 3; i++) {
+        assertEquals(i, copy.getValues(0)[i], 0.0);
+        assertEquals(i * 2.0, copy.getValues(1)[i], 0.0);
+        assertEquals(i, copy.getClasses()[i]);
+        assertEquals(1.0, copy.getWeights()[i], 0.0);
+      }
+    }
+
+    // the trimmed copy grows again
+    first.add(newInstance(0.0, 2, 1, 8.0, 1.0));
+    assertEquals(4, first.size());
+    assertEquals(8.0, first.getValues(1)[3], 0.0);
+  }
+
+  private Instance newInstance(double x, int classValue, int color, double y, double weight) {
+    Instance inst = new DenseInstance(weight, new double[] { x, classValue, color, y });
+    inst.setDataset(dataset);
+    return inst;
+  }
+
+  private static AttributeBatchContentEvent roundTrip(AttributeBatchContentEvent event) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(event);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (AttributeBatchContentEvent) in.readObject();
+    }
+  }
+}
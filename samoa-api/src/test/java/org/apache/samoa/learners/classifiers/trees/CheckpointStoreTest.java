@@ -0,0 +1,178 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckpointStoreTest {
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("checkpoints-").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testWriteAndRead() {
+    LocalStatisticsStore stats = new LocalStatisticsStore();
+    AttributeClassObserver obs = new GaussianNumericAttributeClassObserver();
+    obs.observeAttributeClass(1.5, 1, 2.0);
+    stats.put(42, 3, obs);
+
+    CheckpointStore store = new CheckpointStore(directory.getPath(), "statistics-1");
+    store.setSnapshotStores(1);
+    assertTrue(store.write(0, stats));
+    CheckpointStore.awaitWrites();
+
+    LocalStatisticsStore restored = (LocalStatisticsStore) new CheckpointStore(directory.getPath(), "statistics-1")
+        .readLatest();
+    assertEquals(1, restored.size());
+    assertNotNull(restored.get(42, 3));
+    assertNull(new CheckpointStore(new File(directory, "empty").getPath(), "statistics-1").readLatest());
+  }
+
+  @Test
+  public void testKeepLatest() {
+    CheckpointStore store = new CheckpointStore(directory.getPath(), "model-1");
+    store.setSnapshotStores(1);
+    for (long id = 0; id < 3; id++) {
+      store.write(id, Long.valueOf(id));
+      CheckpointStore.awaitWrites();
+    }
+    assertEquals(Arrays.asList("model-1-2.ckpt"), Arrays.asList(directory.list()));
+
+    CheckpointStore restored = new CheckpointStore(directory.getPath(), "model-1");
+    assertEquals(2L, restored.readLatest());
+    assertEquals(2L, restored.getLastWrittenId());
+  }
+
+  @Test
+  public void testSkipDamagedSnapshot() throws IOException {
+    CheckpointStore store = new CheckpointStore(directory.getPath(), "model-1");
+    store.setSnapshotStores(1);
+    store.write(5, "five");
+    CheckpointStore.awaitWrites();
+    Files.write(new File(directory, "model-1-6.ckpt").toPath(), new byte[] { 1, 2, 3 });
+
+    assertEquals("five", new CheckpointStore(directory.getPath(), "model-1").readLatest());
+  }
+
+  @Test
+  public void testRestoreCompleteSnapshot() {
+    CheckpointStore model = new CheckpointStore(directory.getPath(), "model-1");
+    model.setSnapshotStores(2);
+    CheckpointStore statistics = new CheckpointStore(directory.getPath(), "statistics-1");
+    model.write(0, "model 0");
+    statistics.write(0, "statistics 0");
+    CheckpointStore.awaitWrites();
+    // interrupted before the statistics of snapshot 1 are written
+    model.write(1, "model 1");
+    CheckpointStore.awaitWrites();
+    assertTrue("The last complete snapshot was deleted.", new File(directory, "model-1-0.ckpt").isFile());
+
+    CheckpointStore restoredModel = new CheckpointStore(directory.getPath(), "model-1");
+    restoredModel.setSnapshotStores(2);
+    assertEquals(1, restoredModel.getHighestId());
+    assertEquals("model 0", restoredModel.readLatest());
+    assertEquals("statistics 0", new CheckpointStore(directory.getPath(), "statistics-1").readLatest());
+    assertFalse("The incomplete snapshot was kept.", new File(directory, "model-1-1.ckpt").exists());
+
+    // the older snapshots are deleted once a newer one is complete
+    restoredModel.write(2, "model 2");
+    CheckpointStore.awaitWrites();
+    assertTrue(new File(directory, "model-1-0.ckpt").isFile());
+    statistics.write(2, "statistics 2");
+    CheckpointStore.awaitWrites();
+    assertEquals(Arrays.asList("statistics-1-2.ckpt"), Arrays.asList(directory.list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith("statistics-");
+      }
+    })));
+  }
+
+  @Test
+  public void testFirstSnapshotIncomplete() {
+    CheckpointStore model = new CheckpointStore(directory.getPath(), "model-1");
+    model.setSnapshotStores(3);
+    model.write(0, "model 0");
+    new CheckpointStore(directory.getPath(), "statistics-1").write(0, "statistics 0");
+    CheckpointStore.awaitWrites();
+    // interrupted before statistics-2 existed
+    assertNull(new CheckpointStore(directory.getPath(), "model-1").readLatest());
+    assertNull(new CheckpointStore(directory.getPath(), "statistics-2").readLatest());
+
+    new CheckpointStore(directory.getPath(), "statistics-2").write(0, "statistics 0");
+    CheckpointStore.awaitWrites();
+    assertEquals("model 0", new CheckpointStore(directory.getPath(), "model-1").readLatest());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testMissingStore() {
+    CheckpointStore model = new CheckpointStore(directory.getPath(), "model-1");
+    model.setSnapshotStores(2);
+    model.write(0, "model 0");
+    new CheckpointStore(directory.getPath(), "statistics-1").write(0, "statistics 0");
+    CheckpointStore.awaitWrites();
+    // a replica that did not exist when the snapshot was taken
+    new CheckpointStore(directory.getPath(), "statistics-2").readLatest();
+  }
+
+  @Test
+  public void testRestoredIdMismatch() {
+    CheckpointStore model = new CheckpointStore(directory.getPath(), "model-1");
+    model.setSnapshotStores(2);
+    model.write(3, "model 3");
+    new CheckpointStore(directory.getPath(), "statistics-1").write(3, new LocalStatisticsStore());
+    CheckpointStore.awaitWrites();
+    LocalStatisticsProcessor processor = new LocalStatisticsProcessor.Builder()
+        .checkpointDirectory(directory.getPath()).restore(true).build();
+    processor.onCreate(1);
+    processor.process(new CheckpointContentEvent(3, true));
+    try {
+      processor.process(new CheckpointContentEvent(2, true));
+      fail("The local statistics accepted a model restored from another snapshot.");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+}
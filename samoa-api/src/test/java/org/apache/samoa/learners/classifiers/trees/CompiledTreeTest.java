@@ -0,0 +1,174 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
+import org.apache.samoa.moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledTreeTest {
+
+  private Instances dataset;
+  private Random random;
+
+  private SplitNode root;
+  private SplitNode nominalSplit;
+  private SplitNode multiwaySplit;
+  private SplitNode genericSplit;
+  private CompiledTree compiledTree;
+
+  @Before
+  public void setUp() {
+    // the class is not the last attribute, as the nominal binary test skips it
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("class", Arrays.asList("a", "b", "c")));
+    attributes.add(new Attribute("color", Arrays.asList("red", "green", "blue")));
+    attributes.add(new Attribute("y"));
+    dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(1);
+    random = new Random(42);
+
+    root = new SplitNode(new NumericAttributeBinaryTest(0, 0.5, true), new double[] { 1, 2, 3 });
+    nominalSplit = new SplitNode(new NominalAttributeBinaryTest(1, 1), new double[] { 4, 5 });
+    multiwaySplit = new SplitNode(new NominalAttributeMultiwayTest(2), new double[] { 6, 0, 7 });
+    // a subclass is evaluated by the test itself
+    genericSplit = new SplitNode(new NumericAttributeBinaryTest(3, 0.0, false) {
+      private static final long serialVersionUID = 1L;
+    }, new double[] { 8, 9, 10 });
+    root.setChild(0, nominalSplit);
+    root.setChild(1, multiwaySplit);
+    nominalSplit.setChild(0, newLeaf(11, 12, 13));
+    nominalSplit.setChild(1, newLeaf(14));
+    multiwaySplit.setChild(0, genericSplit);
+    multiwaySplit.setChild(1, null);
+    genericSplit.setChild(0, newLeaf(15, 16, 17));
+    genericSplit.setChild(1, newLeaf(18, 19, 20));
+
+    compiledTree = new CompiledTree(dataset.numClasses());
+    compiledTree.compile(root);
+  }
+
+  @Test
+  public void testSameVotesAsTree() {
+    assertSameVotes();
+  }
+
+  @Test
+  public void testEmptyTree() {
+    compiledTree.compile(null);
+    assertEquals(-1, compiledTree.slotFor(newInstance()));
+  }
+
+  @Test
+  public void testUpdateVotes() {
+    for (int i = 0; i < 100; i++) {
+      Instance inst = newInstance();
+      FoundNode found = root.filterInstanceToLeaf(inst, null, -1);
+      if (found.getNode() instanceof LearningNode) {
+        ((LearningNode) found.getNode()).learnFromInstance(inst, null);
+        compiledTree.update(found.getNode());
+      }
+    }
+    assertSameVotes();
+  }
+
+  @Test
+  public void testSetChild() {
+    // a missing child, a child beyond the current ones and a split of a leaf
+    setChild(multiwaySplit, 1, newLeaf(21, 22));
+    setChild(multiwaySplit, 2, newLeaf(23));
+    SplitNode split = new SplitNode(new NumericAttributeBinaryTest(3, 0.3, false), new double[] { 24, 25, 26 });
+    split.setChild(0, newLeaf(27, 28, 29));
+    split.setChild(1, newLeaf(30, 31, 32));
+    setChild(nominalSplit, 1, split);
+    assertSameVotes();
+
+    // a replaced leaf no longer receives updates
+    Node oldLeaf = genericSplit.getChild(0);
+    setChild(genericSplit, 0, newLeaf(33));
+    ((LearningNode) oldLeaf).learnFromInstance(newInstance(), null);
+    compiledTree.update(oldLeaf);
+    assertSameVotes();
+
+    setChild(root, 0, null);
+    assertSameVotes();
+  }
+
+  @Test
+  public void testReplaceManyTimes() {
+    // enough replacements to compile the tree again a few times
+    for (int i = 0; i < 1000; i++) {
+      setChild(nominalSplit, i % 2, newLeaf(i, i + 1));
+    }
+    assertSameVotes();
+  }
+
+  @Test
+  public void testWiderDistribution() {
+    compiledTree = new CompiledTree(1);
+    compiledTree.compile(root);
+    assertSameVotes();
+  }
+
+  private void setChild(SplitNode parent, int branch, Node child) {
+    parent.setChild(branch, child);
+    compiledTree.setChild(parent, branch, child);
+  }
+
+  private void assertSameVotes() {
+    for (int i = 0; i < 1000; i++) {
+      Instance inst = newInstance();
+      FoundNode found = root.filterInstanceToLeaf(inst, null, -1);
+      Node node = found.getNode() != null ? found.getNode() : found.getParent();
+      assertArrayEquals("Votes differ for " + inst, node.getClassVotes(inst, null), compiledTree.getVotes(inst), 0.0);
+    }
+  }
+
+  private Instance newInstance() {
+    double[] values = new double[dataset.numAttributes()];
+    // the split values and missing values are included
+    values[0] = random.nextInt(10) == 0 ? 0.5 : random.nextDouble();
+    values[1] = random.nextInt(3);
+    values[2] = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(3);
+    values[3] = random.nextInt(10) == 0 ? Double.NaN : random.nextGaussian();
+    Instance inst = new DenseInstance(1.0, values);
+    inst.setDataset(dataset);
+    return inst;
+  }
+
+  private static LearningNode newLeaf(double... classObservations) {
+    return new InactiveLearningNode(classObservations);
+  }
+}
@@ -0,0 +1,127 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.samoa.core.BatchContentEvent;
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.TickContentEvent;
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.apache.samoa.learners.InstanceContentEvent;
+import org.apache.samoa.learners.InstancesContentEvent;
+import org.apache.samoa.topology.AbstractStream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FilterProcessorTest {
+
+  private Instances dataset;
+  private RecordingStream stream;
+
+  @Before
+  public void setUp() {
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+    dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(1);
+    stream = new RecordingStream();
+  }
+
+  @Test
+  public void testFixedBatchSize() {
+    FilterProcessor filter = newFilter(new FilterProcessor.Builder(dataset).batchSize(3));
+    for (int i = 1; i <= 7; i++) {
+      filter.process(newEvent(i, i == 7));
+    }
+    assertEquals(Arrays.asList(3, 3, 1), stream.sizes);
+    assertEquals(3, filter.getBatchCount());
+    assertEquals(1, filter.getLastBatchSize());
+    assertEquals(7.0 / 3, filter.getMeanBatchSize(), 1e-9);
+    assertTrue(stream.events.get(2).isLastEvent());
+  }
+
+  @Test
+  public void testMaxLatency() throws InterruptedException {
+    FilterProcessor filter = newFilter(new FilterProcessor.Builder(dataset).batchSize(1000).maxLatency(1_000));
+    filter.process(newEvent(1, false));
+    Thread.sleep(5);
+    filter.process(newEvent(2, false));
+    assertEquals(Arrays.asList(2), stream.sizes);
+    assertTrue(filter.getLastBatchWait() >= 1_000);
+    assertEquals(filter.getLastBatchWait(), filter.getMaxBatchWait());
+  }
+
+  @Test
+  public void testTickSendsExpiredBatch() throws InterruptedException {
+    FilterProcessor filter = newFilter(new FilterProcessor.Builder(dataset).batchSize(1000).maxLatency(1_000));
+    filter.onTick();
+    filter.process(newEvent(1, false));
+    BatchContentEvent.process(filter, TickContentEvent.INSTANCE);
+    assertTrue("Batch was sent before its latency expired.", stream.sizes.isEmpty());
+    Thread.sleep(5);
+    // no other instance arrives
+    BatchContentEvent.process(filter, TickContentEvent.INSTANCE);
+    assertEquals(Arrays.asList(1), stream.sizes);
+    assertTrue(filter.getLastBatchWait() >= 1_000);
+  }
+
+  @Test
+  public void testTickInterval() {
+    assertEquals(0, new FilterProcessor.Builder(dataset).build().getTickInterval());
+    assertEquals(2_000, new FilterProcessor.Builder(dataset).maxLatency(2_000).build().getTickInterval());
+    assertEquals(1_000, new FilterProcessor.Builder(dataset).maxLatency(2_000).delay(1).build().getTickInterval());
+  }
+
+  private FilterProcessor newFilter(FilterProcessor.Builder builder) {
+    FilterProcessor filter = builder.build();
+    filter.setOutputStream(stream);
+    filter.onCreate(1);
+    return filter;
+  }
+
+  private InstanceContentEvent newEvent(long index, boolean isLast) {
+    Instance inst = new DenseInstance(1.0, new double[] { index, index % 2 });
+    inst.setDataset(dataset);
+    InstanceContentEvent event = new InstanceContentEvent(index, inst, true, true);
+    event.setLast(isLast);
+    return event;
+  }
+
+  private static class RecordingStream extends AbstractStream {
+    final List<ContentEvent> events = new ArrayList<>();
+    final List<Integer> sizes = new ArrayList<>();
+
+    @Override
+    protected void send(ContentEvent event) {
+      events.add(event);
+      sizes.add(((InstancesContentEvent) event).getList().size());
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.GaussianNumericAttributeClassObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+
+/**
+ * JMH benchmark comparing {@link LocalStatisticsProcessor#process(org.apache.samoa.core.ContentEvent)} of attribute
+ * batches, backed by {@link LocalStatisticsStore}, with the previous lookup of the observers in a Guava table. The
+ * batches are small so that the benchmark is dominated by the lookup of the observers rather than by the observers
+ * themselves.
+ * 
+ * Run {@link #main(String[])} from the test classpath.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocalStatisticsProcessorBenchmark {
+
+  private static final int NUM_BATCHES = 4096;
+
+  @Param({ "10", "1000" })
+  public int numAttributes;
+
+  @Param({ "1", "100" })
+  public int numLeaves;
+
+  @Param({ "1", "10" })
+  public int batchSize;
+
+  private LocalStatisticsProcessor processor;
+  private TableStatistics tableStatistics;
+  private AttributeBatchContentEvent[] batches;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    processor = new LocalStatisticsProcessor.Builder().build();
+    processor.onCreate(0);
+    tableStatistics = new TableStatistics();
+
+    Random random = new Random(1);
+    batches = new AttributeBatchContentEvent[NUM_BATCHES];
+    for (int b = 0; b < NUM_BATCHES; b++) {
+      AttributeBatchContentEvent batch = new AttributeBatchContentEvent.Builder(random.nextInt(numLeaves),
+          random.nextInt(numAttributes), "").build();
+      for (int i = 0; i < batchSize; i++) {
+        batch.add(random.nextGaussian(), random.nextInt(2), 1.0);
+      }
+      batches[b] = batch;
+    }
+    // create all the observers before measuring
+    for (AttributeBatchContentEvent batch : batches) {
+      processor.process(batch);
+      tableStatistics.process(batch);
+    }
+  }
+
+  @Benchmark
+  public void processStore() {
+    processor.process(batches[next++ & (NUM_BATCHES - 1)]);
+  }
+
+  @Benchmark
+  public void processTable() {
+    tableStatistics.process(batches[next++ & (NUM_BATCHES - 1)]);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(LocalStatisticsProcessorBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+
+  /*
+   * Copy of the processing of single attribute batches before the Guava table
+   * was replaced by LocalStatisticsStore
+   */
+  private static class TableStatistics {
+    private final Table<Long, Integer, AttributeClassObserver> localStats = HashBasedTable.create();
+    private final AttributeClassObserver numericClassObserver = new GaussianNumericAttributeClassObserver();
+
+    void process(AttributeBatchContentEvent abce) {
+      Long learningNodeId = abce.getLearningNodeId();
+      Integer obsIndex = abce.getObsIndex();
+
+      AttributeClassObserver obs = localStats.get(learningNodeId, obsIndex);
+      if (obs == null) {
+        obs = (AttributeClassObserver) numericClassObserver.copy();
+        localStats.put(learningNodeId, obsIndex, obs);
+      }
+      double[] values = abce.getValues();
+      int[] classes = abce.getClasses();
+      double[] weights = abce.getWeights();
+      for (int i = 0; i < abce.size(); i++) {
+        obs.observeAttributeClass(values[i], classes[i], weights[i]);
+      }
+    }
+  }
+}
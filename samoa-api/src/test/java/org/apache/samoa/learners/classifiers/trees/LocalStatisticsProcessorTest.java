@@ -0,0 +1,116 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.moa.classifiers.core.AttributeSplitSuggestion;
+import org.apache.samoa.topology.AbstractStream;
+import org.junit.Test;
+
+public class LocalStatisticsProcessorTest {
+
+  private static final int NUM_ATTRIBUTES = 500;
+
+  @Test
+  public void testParallelSplitEvaluation() {
+    LocalResultContentEvent sequential = computeSuggestions(1);
+    LocalResultContentEvent parallel = computeSuggestions(4);
+
+    assertNotNull(sequential.getBestSuggestion());
+    assertNotNull(sequential.getSecondBestSuggestion());
+    assertSameSuggestion(sequential.getBestSuggestion(), parallel.getBestSuggestion());
+    assertSameSuggestion(sequential.getSecondBestSuggestion(), parallel.getSecondBestSuggestion());
+  }
+
+  @Test
+  public void testSplitEvaluationPoolIsShared() {
+    assertSame(LocalStatisticsProcessor.getSplitEvaluationPool(4), LocalStatisticsProcessor.getSplitEvaluationPool(4));
+    assertEquals(2, LocalStatisticsProcessor.getSplitEvaluationPool(2).getParallelism());
+  }
+
+  @Test
+  public void testTopSuggestionsMatchesSort() {
+    Random random = new Random(1);
+    for (int run = 0; run < 100; run++) {
+      // few distinct merits to have ties
+      AttributeSplitSuggestion[] suggestions = new AttributeSplitSuggestion[1 + random.nextInt(20)];
+      LocalStatisticsProcessor.TopSuggestions top = new LocalStatisticsProcessor.TopSuggestions();
+      for (int i = 0; i < suggestions.length; i++) {
+        suggestions[i] = new AttributeSplitSuggestion(null, new double[0][], random.nextInt(4));
+        top.offer(suggestions[i]);
+      }
+      Arrays.sort(suggestions);
+      assertSame(suggestions[suggestions.length - 1], top.best);
+      assertSame(suggestions.length > 1 ? suggestions[suggestions.length - 2] : null, top.secondBest);
+    }
+  }
+
+  private static void assertSameSuggestion(AttributeSplitSuggestion expected, AttributeSplitSuggestion actual) {
+    assertEquals(expected.merit, actual.merit, 0.0);
+    assertArrayEquals(expected.splitTest.getAttsTestDependsOn(), actual.splitTest.getAttsTestDependsOn());
+  }
+
+  private static LocalResultContentEvent computeSuggestions(int parallelism) {
+    LocalStatisticsProcessor processor = new LocalStatisticsProcessor.Builder()
+        .splitEvaluationParallelism(parallelism)
+        .build();
+    RecordingStream stream = new RecordingStream();
+    processor.setComputationResultStream(stream);
+    processor.onCreate(1);
+
+    // the class depends on a few attributes only
+    Random random = new Random(1);
+    double[][] values = new double[NUM_ATTRIBUTES][200];
+    int[] classes = new int[200];
+    double[] classDist = new double[2];
+    for (int i = 0; i < classes.length; i++) {
+      for (int a = 0; a < NUM_ATTRIBUTES; a++) {
+        values[a][i] = random.nextGaussian();
+      }
+      classes[i] = values[7][i] + 0.5 * values[123][i] > 0 ? 1 : 0;
+      classDist[classes[i]]++;
+    }
+    for (int a = 0; a < NUM_ATTRIBUTES; a++) {
+      AttributeBatchContentEvent batch = new AttributeBatchContentEvent.Builder(0, a, "").build();
+      for (int i = 0; i < classes.length; i++) {
+        batch.add(values[a][i], classes[i], 1.0);
+      }
+      processor.process(batch);
+    }
+    processor.process(new ComputeContentEvent(0, 0, classDist));
+    assertNotNull("No local result was sent.", stream.last);
+    return (LocalResultContentEvent) stream.last;
+  }
+
+  private static class RecordingStream extends AbstractStream {
+    ContentEvent last;
+
+    @Override
+    protected void send(ContentEvent event) {
+      last = event;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import org.apache.samoa.moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserver;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalStatisticsStoreTest {
+
+  private LocalStatisticsStore store;
+
+  @Before
+  public void setUp() {
+    store = new LocalStatisticsStore();
+  }
+
+  @Test
+  public void testPutAndGet() {
+    AttributeClassObserver obs = new NominalAttributeClassObserver();
+    store.put(42L, 3, obs);
+    assertSame(obs, store.get(42L, 3));
+    assertNull(store.get(42L, 2));
+    assertNull(store.get(42L, 100));
+    assertNull(store.get(43L, 3));
+    assertEquals(1, store.size());
+  }
+
+  @Test
+  public void testGetOrCreateGrowsRow() {
+    AttributeClassObserver obs = new NominalAttributeClassObserver();
+    store.getOrCreate(7L, 2)[1] = obs;
+    AttributeClassObserver[] row = store.getOrCreate(7L, 10);
+    assertTrue(row.length >= 10);
+    assertSame(obs, row[1]);
+    assertSame(row, store.get(7L));
+  }
+
+  @Test
+  public void testRemove() {
+    store.put(1L, 0, new NominalAttributeClassObserver());
+    store.remove(1L);
+    assertNull(store.get(1L));
+    assertEquals(0, store.size());
+    // removing an unknown learning node is a no-op
+    store.remove(2L);
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testRandomOperations() {
+    Map<Long, AttributeClassObserver> expected = new HashMap<>();
+    Random random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      long id = random.nextInt(2_000);
+      if (random.nextInt(3) == 0) {
+        store.remove(id);
+        expected.remove(id);
+      } else {
+        AttributeClassObserver obs = new NominalAttributeClassObserver();
+        store.put(id, 0, obs);
+        expected.put(id, obs);
+      }
+    }
+    assertEquals(expected.size(), store.size());
+    for (long id = 0; id < 2_000; id++) {
+      assertSame("Wrong observer for learning node " + id, expected.get(id), store.get(id, 0));
+    }
+  }
+}
@@ -0,0 +1,346 @@
+package org.apache.samoa.learners.classifiers.trees;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.instances.Attribute;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.instances.Instances;
+import org.apache.samoa.learners.InstanceContent;
+import org.apache.samoa.learners.InstancesContentEvent;
+import org.apache.samoa.learners.ResultContentEvent;
+import org.apache.samoa.topology.AbstractStream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelAggregatorProcessorTest {
+
+  private static final int NUM_INSTANCES = 20000;
+  private static final int BATCH_SIZE = 100;
+
+  private Instances dataset;
+  private Deque<Delivery> queue;
+  private int deletes;
+  private long[] attributeValues;
+  private List<Long> results;
+  private List<double[]> votes;
+  // deliver the events as soon as they are sent, as the local engine does
+  private boolean synchronous;
+  private Set<Long> deletedLeaves;
+  private int batchesOfDeletedLeaves;
+
+  @Before
+  public void setUp() {
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("noisyX"));
+    attributes.add(new Attribute("y"));
+    attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+    dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(3);
+    queue = new ArrayDeque<>();
+    deletes = 0;
+    attributeValues = new long[3];
+    results = new ArrayList<>();
+    votes = new ArrayList<>();
+    synchronous = false;
+    deletedLeaves = new HashSet<>();
+    batchesOfDeletedLeaves = 0;
+  }
+
+  @Test
+  public void testUnbounded() {
+    ModelAggregatorProcessor modelAggrProc = train(0);
+    assertTrue("The tree did not grow.", modelAggrProc.getActiveLeafNodeCount() > 2);
+    assertEquals(0, modelAggrProc.getInactiveLeafNodeCount());
+    assertEquals("The model size is only estimated with a limit.", 0, modelAggrProc.getModelByteSize());
+    // one per split
+    assertEquals(modelAggrProc.getActiveLeafNodeCount() - 1, deletes);
+  }
+
+  @Test
+  public void testDeactivateLeaves() {
+    long unboundedSize = train(Long.MAX_VALUE).getModelByteSize();
+    assertTrue(unboundedSize > 0);
+
+    setUp();
+    ModelAggregatorProcessor modelAggrProc = train(unboundedSize / 2);
+    assertTrue("No leaf was deactivated.", modelAggrProc.getInactiveLeafNodeCount() > 0);
+    assertTrue("All the leaves were deactivated.", modelAggrProc.getActiveLeafNodeCount() > 0);
+    assertTrue(modelAggrProc.getModelByteSize() < unboundedSize);
+    // the statistics of the deactivated leaves are deleted too
+    assertTrue(deletes >= modelAggrProc.getInactiveLeafNodeCount());
+  }
+
+  @Test
+  public void testDeactivateLeavesWithSynchronousResults() {
+    long unboundedSize = train(Long.MAX_VALUE).getModelByteSize();
+
+    setUp();
+    synchronous = true;
+    ModelAggregatorProcessor modelAggrProc = train(unboundedSize / 2);
+    assertTrue("No leaf was deactivated.", modelAggrProc.getInactiveLeafNodeCount() > 0);
+    assertEquals("Attributes were sent for leaves whose statistics were deleted.", 0, batchesOfDeletedLeaves);
+    int active = 0;
+    int inactive = 0;
+    for (FoundNode foundNode : modelAggrProc.findNodes()) {
+      if (foundNode.getNode() instanceof ActiveLearningNode)
+        active++;
+      else if (foundNode.getNode() instanceof InactiveLearningNode)
+        inactive++;
+    }
+    assertEquals(active, modelAggrProc.getActiveLeafNodeCount());
+    assertEquals(inactive, modelAggrProc.getInactiveLeafNodeCount());
+  }
+
+  @Test
+  public void testDeactivateAllLeaves() {
+    ModelAggregatorProcessor modelAggrProc = train(1);
+    assertEquals(0, modelAggrProc.getActiveLeafNodeCount());
+    assertTrue(modelAggrProc.getInactiveLeafNodeCount() > 0);
+  }
+
+  @Test
+  public void testRemovePoorAttributes() {
+    ModelAggregatorProcessor modelAggrProc = train(new ModelAggregatorProcessor.Builder(dataset).gracePeriod(50)
+        .removePoorAtts(true), new LocalStatisticsProcessor.Builder().reportMerits(true));
+    assertTrue("No attribute was disabled.", modelAggrProc.getDisabledAttributes() > 0);
+    // y is disabled in the leaves where it is poor, while x and noisyX are too
+    // close to each other to be split on or disabled
+    assertTrue(attributeValues[2] < attributeValues[0]);
+    assertEquals(attributeValues[0], attributeValues[1]);
+  }
+
+  @Test
+  public void testKeepAttributesByDefault() {
+    train(new ModelAggregatorProcessor.Builder(dataset).gracePeriod(50), new LocalStatisticsProcessor.Builder());
+    assertEquals(attributeValues[0], attributeValues[2]);
+  }
+
+  @Test
+  public void testStalenessWindow() {
+    ModelAggregatorProcessor modelAggrProc = create(new ModelAggregatorProcessor.Builder(dataset).stalenessWindow(2));
+    // the first batch is processed at once
+    modelAggrProc.process(newBatch(0, false));
+    assertEquals(Arrays.asList(0L), results);
+    modelAggrProc.process(newBatch(1, false));
+    modelAggrProc.process(newBatch(2, false));
+    assertEquals(1, results.size());
+    modelAggrProc.process(newBatch(3, false));
+    assertEquals(Arrays.asList(0L, 1L), results);
+    // the last batch drains the window
+    modelAggrProc.process(newBatch(4, true));
+    assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), results);
+  }
+
+  @Test
+  public void testImmediateTesting() {
+    ModelAggregatorProcessor modelAggrProc = create(new ModelAggregatorProcessor.Builder(dataset).stalenessWindow(2)
+        .immediateTesting(true));
+    for (int i = 0; i < 4; i++) {
+      modelAggrProc.process(newBatch(i, false));
+      assertEquals(i + 1, results.size());
+    }
+    modelAggrProc.process(newBatch(4, true));
+    // every instance is predicted once
+    assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), results);
+  }
+
+  @Test
+  public void testNoStalenessWindow() {
+    ModelAggregatorProcessor modelAggrProc = create(new ModelAggregatorProcessor.Builder(dataset).stalenessWindow(0));
+    for (int i = 0; i < 3; i++) {
+      modelAggrProc.process(newBatch(i, false));
+      assertEquals(i + 1, results.size());
+    }
+  }
+
+  @Test
+  public void testCheckpointAndRestore() throws IOException {
+    File directory = Files.createTempDirectory("vht-").toFile();
+    ModelAggregatorProcessor modelAggrProc = train(new ModelAggregatorProcessor.Builder(dataset).gracePeriod(50)
+        .stalenessWindow(0).checkpointDirectory(directory.getPath()).checkpointPeriod(NUM_INSTANCES / 2),
+        new LocalStatisticsProcessor.Builder().checkpointDirectory(directory.getPath()), NUM_INSTANCES);
+    CheckpointStore.awaitWrites();
+    assertTrue(new File(directory, "model-1-1.ckpt").isFile());
+    assertTrue(new File(directory, "statistics-1-1.ckpt").isFile());
+    // the statistics were written last and completed snapshot 1, the model
+    // deletes snapshot 0 at its next write
+    assertFalse(new File(directory, "statistics-1-0.ckpt").exists());
+
+    setUp();
+    ModelAggregatorProcessor restored = train(new ModelAggregatorProcessor.Builder(dataset).gracePeriod(50)
+        .stalenessWindow(0).checkpointDirectory(directory.getPath()).restore(true),
+        new LocalStatisticsProcessor.Builder().checkpointDirectory(directory.getPath()).restore(true), 0);
+    assertEquals(modelAggrProc.getActiveLeafNodeCount(), restored.getActiveLeafNodeCount());
+    assertTrue(restored.getActiveLeafNodeCount() > 2);
+
+    // both models predict the same
+    Random random = new Random(11);
+    for (int i = 0; i < 10; i++) {
+      Instance inst = new DenseInstance(1.0, new double[] { random.nextDouble(), random.nextDouble(),
+          random.nextDouble(), 0 });
+      inst.setDataset(dataset);
+      InstancesContentEvent batch = new InstancesContentEvent();
+      batch.add(new InstanceContent(i, inst, false, true));
+      modelAggrProc.process(batch);
+      restored.process(batch);
+    }
+    assertEquals(20, votes.size());
+    for (int i = 0; i < votes.size(); i += 2) {
+      assertArrayEquals(votes.get(i), votes.get(i + 1), 0);
+    }
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private ModelAggregatorProcessor create(ModelAggregatorProcessor.Builder builder) {
+    ModelAggregatorProcessor modelAggrProc = builder.build();
+    modelAggrProc.setResultStream(new QueueStream(null));
+    modelAggrProc.setAttributeStream(new QueueStream(null));
+    modelAggrProc.setControlStream(new QueueStream(null));
+    modelAggrProc.onCreate(1);
+    return modelAggrProc;
+  }
+
+  /*
+   * A batch with a single instance to test and train on
+   */
+  private InstancesContentEvent newBatch(long index, boolean last) {
+    Instance inst = new DenseInstance(1.0, new double[] { 0.5, 0.5, 0.5, 0 });
+    inst.setDataset(dataset);
+    InstanceContent instContent = new InstanceContent(index, inst, true, true);
+    instContent.setLast(last);
+    InstancesContentEvent batch = new InstancesContentEvent();
+    batch.add(instContent);
+    return batch;
+  }
+
+  private ModelAggregatorProcessor train(long maxByteSize) {
+    return train(new ModelAggregatorProcessor.Builder(dataset).gracePeriod(50).tieThreshold(0.2)
+        .maxByteSize(maxByteSize),
+        new LocalStatisticsProcessor.Builder().reportByteSize(maxByteSize > 0));
+  }
+
+  /*
+   * Train a VHT with a single local statistic PI, delivering the events
+   * between the PIs in the order they are sent
+   */
+  private ModelAggregatorProcessor train(ModelAggregatorProcessor.Builder builder,
+      LocalStatisticsProcessor.Builder locStatBuilder) {
+    return train(builder, locStatBuilder, NUM_INSTANCES);
+  }
+
+  private ModelAggregatorProcessor train(ModelAggregatorProcessor.Builder builder,
+      LocalStatisticsProcessor.Builder locStatBuilder, int numInstances) {
+    ModelAggregatorProcessor modelAggrProc = builder.memoryEstimatePeriod(1000).build();
+    LocalStatisticsProcessor locStatProc = locStatBuilder.build();
+
+    modelAggrProc.setResultStream(new QueueStream(null));
+    modelAggrProc.setAttributeStream(new QueueStream(locStatProc));
+    modelAggrProc.setControlStream(new QueueStream(locStatProc));
+    locStatProc.setComputationResultStream(new QueueStream(modelAggrProc));
+    modelAggrProc.onCreate(1);
+    locStatProc.onCreate(1);
+
+    Random random = new Random(7);
+    for (int i = 0; i < numInstances; i += BATCH_SIZE) {
+      InstancesContentEvent batch = new InstancesContentEvent();
+      for (int j = i; j < i + BATCH_SIZE; j++) {
+        double x = random.nextDouble();
+        double noisyX = x + random.nextGaussian() * 0.01;
+        double y = random.nextDouble();
+        // stripes along x, so that the tree keeps splitting
+        Instance inst = new DenseInstance(1.0, new double[] { x, noisyX, y, (int) (x * 8) % 2 });
+        inst.setDataset(dataset);
+        batch.add(new InstanceContent(j, inst, true, false));
+      }
+      queue.add(new Delivery(modelAggrProc, batch));
+      while (!queue.isEmpty()) {
+        Delivery delivery = queue.poll();
+        delivery.processor.process(delivery.event);
+      }
+      // a snapshot is skipped if the previous one is still being written,
+      // which depends on the speed of the writer
+      CheckpointStore.awaitWrites();
+    }
+    return modelAggrProc;
+  }
+
+  private static class Delivery {
+    final Processor processor;
+    final ContentEvent event;
+
+    Delivery(Processor processor, ContentEvent event) {
+      this.processor = processor;
+      this.event = event;
+    }
+  }
+
+  private class QueueStream extends AbstractStream {
+    private final Processor destination;
+
+    QueueStream(Processor destination) {
+      this.destination = destination;
+    }
+
+    @Override
+    protected void send(ContentEvent event) {
+      if (event instanceof ResultContentEvent) {
+        results.add(((ResultContentEvent) event).getInstanceIndex());
+        votes.add(((ResultContentEvent) event).getClassVotes());
+      } else if (event instanceof DeleteContentEvent) {
+        deletes++;
+        deletedLeaves.add(((DeleteContentEvent) event).getLearningNodeId());
+      } else if (event instanceof AttributeBatchContentEvent) {
+        AttributeBatchContentEvent batch = (AttributeBatchContentEvent) event;
+        if (deletedLeaves.contains(batch.getLearningNodeId()))
+          batchesOfDeletedLeaves++;
+        for (int i = 0; i < batch.getNumAttributes(); i++) {
+          attributeValues[batch.getObsIndex() + i] += batch.size();
+        }
+      }
+      if (destination != null && synchronous) {
+        destination.process(event);
+      } else if (destination != null) {
+        queue.add(new Delivery(destination, event));
+      }
+    }
+  }
+}
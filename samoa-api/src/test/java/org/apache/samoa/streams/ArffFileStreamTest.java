@@ -0,0 +1,116 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.streams.fs.LocalFileStreamSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArffFileStreamTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int NUM_INSTANCES = 3000;
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    Random random = new Random(1);
+    StringBuilder sb = new StringBuilder("@relation test\n"
+        + "@attribute id numeric\n"
+        + "@attribute x numeric\n"
+        + "@attribute class {a,b}\n"
+        + "@data\n");
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      sb.append(i).append(',').append(random.nextGaussian()).append(',').append(random.nextBoolean() ? "a" : "b");
+      sb.append('\n');
+    }
+    file = Files.createTempFile("stream-", ".arff").toFile();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(sb.toString().getBytes(UTF8));
+    } finally {
+      out.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testReadAhead() {
+    List<Instance> expected = readAll(newStream(0));
+    assertEquals(NUM_INSTANCES, expected.size());
+
+    // a buffer smaller than the file, so that the reading thread blocks
+    ArffFileStream stream = newStream(16);
+    List<Instance> actual = readAll(stream);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).toDoubleArray().length, actual.get(i).toDoubleArray().length);
+      for (int j = 0; j < expected.get(i).numAttributes(); j++) {
+        assertEquals(expected.get(i).value(j), actual.get(i).value(j), 0);
+      }
+    }
+    assertEquals(NUM_INSTANCES, stream.getReadAheadBuffer().getTaken());
+
+    // the instances are read again from the beginning after a restart
+    stream.restart();
+    assertTrue(stream.hasMoreInstances());
+    assertEquals(0, stream.nextInstance().getData().value(0), 0);
+    assertEquals(1, stream.nextInstance().getData().value(0), 0);
+    stream.restart();
+    assertEquals(NUM_INSTANCES, readAll(stream).size());
+  }
+
+  private ArffFileStream newStream(int readAhead) {
+    ArffFileStream stream = new ArffFileStream();
+    stream.readAheadOption.setValue(readAhead);
+    stream.fileSource = new LocalFileStreamSource();
+    stream.fileSource.init(file.getAbsolutePath(), "arff");
+    stream.restart();
+    return stream;
+  }
+
+  private static List<Instance> readAll(ArffFileStream stream) {
+    List<Instance> instances = new ArrayList<Instance>();
+    while (stream.hasMoreInstances()) {
+      instances.add(stream.nextInstance().getData());
+    }
+    return instances;
+  }
+}
@@ -0,0 +1,123 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.samoa.instances.ArffLoader;
+import org.apache.samoa.instances.FastArffLoader;
+import org.apache.samoa.instances.Loader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing {@link FastArffLoader} with the StreamTokenizer-based {@link ArffLoader} on a generated ARFF
+ * file with numeric and nominal attributes. The file is kept in memory so that the benchmark measures the parsing
+ * rather than the disk.
+ * 
+ * Run {@link #main(String[])} from the test classpath.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArffLoaderBenchmark {
+
+  private static final int NUM_INSTANCES = 10000;
+
+  @Param({ "10", "100" })
+  public int numAttributes;
+
+  @Param({ "0", "50" })
+  public int nominalPercentage;
+
+  private byte[] arff;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(1);
+    StringBuilder sb = new StringBuilder("@relation generated\n\n");
+    boolean[] nominal = new boolean[numAttributes];
+    for (int i = 0; i < numAttributes; i++) {
+      nominal[i] = random.nextInt(100) < nominalPercentage;
+      sb.append("@attribute att").append(i).append(nominal[i] ? " {red,green,blue,yellow}\n" : " numeric\n");
+    }
+    sb.append("@attribute class {c0,c1}\n\n@data\n");
+    String[] colors = { "red", "green", "blue", "yellow" };
+    for (int n = 0; n < NUM_INSTANCES; n++) {
+      for (int i = 0; i < numAttributes; i++) {
+        if (nominal[i])
+          sb.append(colors[random.nextInt(colors.length)]);
+        else
+          sb.append(random.nextGaussian() * 100);
+        sb.append(',');
+      }
+      sb.append('c').append(random.nextInt(2)).append('\n');
+    }
+    arff = sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int fastArffLoader() {
+    return readAll(new FastArffLoader(new ByteArrayInputStream(arff), -1));
+  }
+
+  @Benchmark
+  public int arffLoader() {
+    return readAll(new ArffLoader(new InputStreamReader(new ByteArrayInputStream(arff), StandardCharsets.UTF_8), 1,
+        -1));
+  }
+
+  private static int readAll(Loader loader) {
+    int count = 0;
+    while (loader.readInstance() != null) {
+      count++;
+    }
+    return count;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+        .include(ArffLoaderBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,154 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.samoa.instances.FastArffLoader;
+import org.apache.samoa.instances.Instance;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelArffReaderTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  private static final int NUM_INSTANCES = 5000;
+
+  private File file;
+  private byte[] data;
+  private FastArffLoader header;
+
+  @Before
+  public void setUp() throws IOException {
+    Random random = new Random(1);
+    StringBuilder sb = new StringBuilder("% generated\n"
+        + "@relation test\n"
+        + "@attribute id numeric\n"
+        + "@attribute x numeric\n"
+        + "@attribute color {red,'light blue',green}\n"
+        + "@attribute class {a,b}\n"
+        + "@data");
+    String[] colors = { "red", "'light blue'", "green", "?" };
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      sb.append(random.nextBoolean() ? "\n" : "\r\n");
+      if (random.nextInt(20) == 0)
+        sb.append("% comment\n");
+      if (random.nextInt(10) == 0) {
+        sb.append("{0 ").append(i).append(",3 b}");
+      } else {
+        sb.append(i).append(',').append(random.nextGaussian()).append(',');
+        sb.append(colors[random.nextInt(colors.length)]).append(',').append(random.nextBoolean() ? "a" : "b");
+      }
+    }
+    data = sb.toString().getBytes(UTF8);
+    file = Files.createTempFile("parallel-", ".arff").toFile();
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(data);
+    } finally {
+      out.close();
+    }
+    header = new FastArffLoader(new ByteArrayInputStream(data), -1);
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testOrdered() throws IOException {
+    // small chunks, so that there are many more chunks than threads
+    ParallelArffReader reader = newReader(3, 1000, true);
+    FastArffLoader expectedLoader = new FastArffLoader(new ByteArrayInputStream(data), -1);
+    try {
+      Instance expected;
+      while ((expected = expectedLoader.readInstance()) != null) {
+        assertInstanceEquals(expected, reader.readInstance());
+      }
+      assertNull(reader.readInstance());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testUnordered() throws IOException {
+    ParallelArffReader reader = newReader(4, 1000, false);
+    Instance[] expected = new Instance[NUM_INSTANCES];
+    FastArffLoader expectedLoader = new FastArffLoader(new ByteArrayInputStream(data), -1);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      expected[i] = expectedLoader.readInstance();
+    }
+    boolean[] seen = new boolean[NUM_INSTANCES];
+    try {
+      Instance actual;
+      int count = 0;
+      while ((actual = reader.readInstance()) != null) {
+        int id = (int) actual.value(0);
+        assertFalse("Instance " + id + " read twice.", seen[id]);
+        seen[id] = true;
+        assertInstanceEquals(expected[id], actual);
+        count++;
+      }
+      assertEquals(NUM_INSTANCES, count);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testChunkLargerThanFile() throws IOException {
+    ParallelArffReader reader = newReader(2, ParallelArffReader.DEFAULT_CHUNK_SIZE, true);
+    try {
+      int count = 0;
+      while (reader.readInstance() != null) {
+        count++;
+      }
+      assertEquals(NUM_INSTANCES, count);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private ParallelArffReader newReader(int numThreads, int chunkSize, boolean ordered) throws IOException {
+    return new ParallelArffReader(file, header.getDataOffset(), header.getStructure(), numThreads, chunkSize, ordered);
+  }
+
+  private static void assertInstanceEquals(Instance expected, Instance actual) {
+    assertNotNull(actual);
+    assertEquals(expected.numValues(), actual.numValues());
+    for (int i = 0; i < expected.numValues(); i++) {
+      assertEquals(expected.index(i), actual.index(i));
+      assertEquals(expected.valueSparse(i), actual.valueSparse(i), 0);
+    }
+  }
+}
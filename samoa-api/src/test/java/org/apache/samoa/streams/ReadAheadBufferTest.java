@@ -0,0 +1,118 @@
+package org.apache.samoa.streams;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReadAheadBufferTest {
+
+  @Test
+  public void testOrderAndWrapAround() throws InterruptedException {
+    ReadAheadBuffer<Integer> buffer = new ReadAheadBuffer<Integer>(3);
+    int next = 0;
+    for (int i = 0; i < 10; i++) {
+      assertTrue(buffer.put(i));
+      if (i % 2 == 1) {
+        assertEquals(Integer.valueOf(next++), buffer.take());
+        assertEquals(Integer.valueOf(next++), buffer.take());
+      }
+    }
+    assertEquals(0, buffer.size());
+    assertEquals(10, buffer.getTaken());
+    assertEquals(1.5, buffer.getAverageOccupancy(), 1e-9);
+    buffer.finish(null);
+    assertNull(buffer.take());
+  }
+
+  @Test
+  public void testBlockingProducer() throws InterruptedException {
+    final int count = 10000;
+    final ReadAheadBuffer<Integer> buffer = new ReadAheadBuffer<Integer>(4);
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (int i = 0; i < count; i++) {
+            buffer.put(i);
+          }
+          buffer.finish(null);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    producer.start();
+    for (int i = 0; i < count; i++) {
+      assertEquals(Integer.valueOf(i), buffer.take());
+    }
+    assertNull(buffer.take());
+    producer.join();
+    assertEquals(count, buffer.getTaken());
+    assertTrue(buffer.getAverageOccupancy() >= 1);
+    assertTrue(buffer.getConsumerStallTime(TimeUnit.NANOSECONDS) >= 0);
+  }
+
+  @Test
+  public void testProducerError() throws InterruptedException {
+    ReadAheadBuffer<Integer> buffer = new ReadAheadBuffer<Integer>(2);
+    buffer.put(1);
+    IllegalStateException error = new IllegalStateException();
+    buffer.finish(error);
+    // the elements read before the error are still taken
+    assertEquals(Integer.valueOf(1), buffer.take());
+    try {
+      buffer.take();
+      fail("The error of the producer was not rethrown.");
+    } catch (RuntimeException e) {
+      assertSame(error, e.getCause());
+    }
+  }
+
+  @Test
+  public void testCloseReleasesProducer() throws InterruptedException {
+    final ReadAheadBuffer<Integer> buffer = new ReadAheadBuffer<Integer>(1);
+    final boolean[] result = { true };
+    buffer.put(0);
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          result[0] = buffer.put(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    producer.start();
+    while (buffer.getProducerStalls() == 0) {
+      Thread.sleep(1);
+    }
+    buffer.close();
+    producer.join();
+    assertFalse(result[0]);
+    assertEquals(0, buffer.size());
+    assertNull(buffer.take());
+  }
+}
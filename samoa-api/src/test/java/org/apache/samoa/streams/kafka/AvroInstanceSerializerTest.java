@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.samoa.streams.kafka;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.apache.avro.Schema;
+import org.apache.samoa.instances.DenseInstance;
+import org.apache.samoa.instances.Instance;
+import org.apache.samoa.learners.InstanceContentEvent;
+import org.junit.Test;
+
+/**
+ *
+ * Tests of the Avro serializer of instances
+ */
+public class AvroInstanceSerializerTest {
+
+    private static final Schema SCHEMA = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"test\",\"fields\":["
+            + "{\"name\":\"x\",\"type\":\"double\"},"
+            + "{\"name\":\"n\",\"type\":\"int\"},"
+            + "{\"name\":\"class\",\"type\":{\"type\":\"enum\",\"name\":\"Class\",\"symbols\":[\"a\",\"b\",\"c\"]}}]}");
+
+    @Test
+    public void testRoundTrip() {
+        AvroInstanceSerializer serializer = new AvroInstanceSerializer(SCHEMA, -1);
+        AvroInstanceSerializer deserializer = new AvroInstanceSerializer(SCHEMA, -1);
+        for (int i = 0; i < 10; i++) {
+            Instance instance = new DenseInstance(1.0, new double[]{i * 0.5, i, i % 3});
+            byte[] message = serializer.serialize(new InstanceContentEvent(i, instance, true, false));
+
+            InstanceContentEvent event = deserializer.deserialize(message);
+            assertEquals(i, event.getInstanceIndex());
+            Instance actual = event.getInstance();
+            assertEquals(3, actual.numAttributes());
+            assertEquals(i * 0.5, actual.value(0), 0);
+            assertEquals(i, actual.value(1), 0);
+            assertEquals(i % 3, actual.classValue(), 0);
+            assertEquals("class", actual.classAttribute().name());
+        }
+    }
+
+    @Test
+    public void testSerializable() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(new AvroInstanceSerializer(SCHEMA, 2));
+        oos.close();
+        AvroInstanceSerializer copy = (AvroInstanceSerializer) new ObjectInputStream(
+                new ByteArrayInputStream(out.toByteArray())).readObject();
+        assertEquals(1, copy.getHeader().classIndex());
+        assertEquals(3, copy.getHeader().numAttributes());
+    }
+}
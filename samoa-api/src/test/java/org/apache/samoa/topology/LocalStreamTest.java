@@ -0,0 +1,115 @@
+package org.apache.samoa.topology;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.utils.PartitioningScheme;
+import org.apache.samoa.utils.StreamDestination;
+import org.junit.Test;
+
+public class LocalStreamTest {
+
+  private final int parallelism = 3;
+
+  @Test
+  public void testShuffle() {
+    RecordingStream stream = newStream(PartitioningScheme.SHUFFLE);
+    for (int i = 0; i < 2 * parallelism; i++) {
+      stream.put(new TestEvent(null));
+    }
+    for (int i = 0; i < 2 * parallelism; i++) {
+      assertEquals("Events are not spread round-robin.", (i + 1) % parallelism, stream.indices.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void testGroupByKey() {
+    RecordingStream stream = newStream(PartitioningScheme.GROUP_BY_KEY);
+    String[] keys = { "a", "b", "a", "-1", null };
+    for (String key : keys) {
+      stream.put(new TestEvent(key));
+    }
+    for (int i = 0; i < keys.length; i++) {
+      assertEquals(LocalStream.getPIIndexForKey(keys[i], parallelism), stream.indices.get(i).intValue());
+    }
+    assertEquals("Events with the same key are routed to different PIs.", stream.indices.get(0),
+        stream.indices.get(2));
+    assertEquals("Null key is not routed to the default PI.", 0, stream.indices.get(4).intValue());
+  }
+
+  @Test
+  public void testBroadcast() {
+    RecordingStream stream = newStream(PartitioningScheme.BROADCAST);
+    stream.put(new TestEvent("a"));
+    assertEquals(parallelism, stream.indices.size());
+    for (int p = 0; p < parallelism; p++) {
+      assertEquals(p, stream.indices.get(p).intValue());
+    }
+  }
+
+  private RecordingStream newStream(PartitioningScheme scheme) {
+    RecordingStream stream = new RecordingStream();
+    stream.addDestination(new StreamDestination(null, parallelism, scheme));
+    return stream;
+  }
+
+  private static class RecordingStream extends LocalStream {
+    final List<Integer> indices = new ArrayList<>();
+
+    RecordingStream() {
+      super(null);
+    }
+
+    @Override
+    protected void deliver(IProcessingItem pi, ContentEvent event, int index) {
+      indices.add(index);
+    }
+  }
+
+  private static class TestEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private String key;
+
+    TestEvent(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+}
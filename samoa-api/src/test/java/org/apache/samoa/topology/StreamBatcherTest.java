@@ -0,0 +1,190 @@
+package org.apache.samoa.topology;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.samoa.core.BatchContentEvent;
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamBatcherTest {
+
+  private List<ContentEvent> sent;
+  private StreamBatcher.Sender sender;
+
+  @Before
+  public void setUp() {
+    sent = new ArrayList<>();
+    sender = new StreamBatcher.Sender() {
+      @Override
+      public void send(ContentEvent event) {
+        sent.add(event);
+      }
+    };
+  }
+
+  @Test
+  public void testBatchSentWhenFull() {
+    StreamBatcher batcher = new StreamBatcher(3, 0, false, sender);
+    for (int i = 0; i < 7; i++) {
+      batcher.put(new TestEvent(Integer.toString(i), false));
+    }
+    assertEquals(2, sent.size());
+    assertEquals("0,1,2", keys(sent.get(0)));
+    assertEquals("3,4,5", keys(sent.get(1)));
+    assertEquals(1, batcher.pendingEvents());
+
+    batcher.flush();
+    // a batch of one event is sent as is
+    assertEquals(3, sent.size());
+    assertFalse(sent.get(2) instanceof BatchContentEvent);
+    assertEquals(0, batcher.pendingEvents());
+  }
+
+  @Test
+  public void testBatchPerKey() {
+    StreamBatcher batcher = new StreamBatcher(2, 0, true, sender);
+    batcher.put(new TestEvent("a", false));
+    batcher.put(new TestEvent("b", false));
+    batcher.put(new TestEvent("a", false));
+    assertEquals(1, sent.size());
+    assertEquals("a", sent.get(0).getKey());
+    assertEquals("a,a", keys(sent.get(0)));
+    assertEquals(1, batcher.pendingEvents());
+  }
+
+  @Test
+  public void testLastEventFlushesAllBatches() {
+    StreamBatcher batcher = new StreamBatcher(10, 0, true, sender);
+    batcher.put(new TestEvent("a", false));
+    batcher.put(new TestEvent("b", false));
+    batcher.put(new TestEvent("a", false));
+    batcher.put(new TestEvent("a", true));
+    assertEquals(2, sent.size());
+    assertEquals("b", keys(sent.get(0)));
+    // the batch with the last event is sent last
+    assertEquals("a,a,a", keys(sent.get(1)));
+    assertTrue(sent.get(1).isLastEvent());
+    assertEquals(0, batcher.pendingEvents());
+  }
+
+  @Test
+  public void testExpiredBatchSentOnPut() throws InterruptedException {
+    StreamBatcher batcher = new StreamBatcher(100, 1_000, true, sender);
+    batcher.put(new TestEvent("a", false));
+    Thread.sleep(5);
+    batcher.put(new TestEvent("b", false));
+    assertEquals(1, sent.size());
+    assertEquals("a", keys(sent.get(0)));
+    assertEquals(1, batcher.pendingEvents());
+  }
+
+  @Test
+  public void testFlushExpired() throws InterruptedException {
+    StreamBatcher batcher = new StreamBatcher(100, 1_000, true, sender);
+    batcher.put(new TestEvent("a", false));
+    batcher.flushExpired();
+    assertTrue(sent.isEmpty());
+    Thread.sleep(5);
+    // no other event is put on the stream
+    batcher.flushExpired();
+    assertEquals(1, sent.size());
+    assertEquals("a", sent.get(0).getKey());
+    assertEquals(0, batcher.pendingEvents());
+  }
+
+  @Test
+  public void testProcessUnpacksBatch() {
+    StreamBatcher batcher = new StreamBatcher(3, 0, false, sender);
+    for (int i = 0; i < 3; i++) {
+      batcher.put(new TestEvent(Integer.toString(i), false));
+    }
+    final List<String> processed = new ArrayList<>();
+    Processor processor = new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        processed.add(event.getKey());
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor p) {
+        return p;
+      }
+    };
+    BatchContentEvent.process(processor, sent.get(0));
+    BatchContentEvent.process(processor, new TestEvent("3", false));
+    assertEquals("[0, 1, 2, 3]", processed.toString());
+  }
+
+  private static String keys(ContentEvent event) {
+    if (!(event instanceof BatchContentEvent))
+      return event.getKey();
+    BatchContentEvent batch = (BatchContentEvent) event;
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < batch.size(); i++) {
+      if (i > 0)
+        sb.append(',');
+      sb.append(batch.get(i).getKey());
+    }
+    return sb.toString();
+  }
+
+  private static class TestEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private String key;
+    private final boolean isLast;
+
+    TestEvent(String key, boolean isLast) {
+      this.key = key;
+      this.isLast = isLast;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return isLast;
+    }
+  }
+}
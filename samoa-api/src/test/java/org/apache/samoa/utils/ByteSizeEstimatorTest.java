@@ -0,0 +1,81 @@
+package org.apache.samoa.utils;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ByteSizeEstimatorTest {
+
+  @Test
+  public void testArrays() {
+    assertEquals(16 + 80, new ByteSizeEstimator().sizeOf(new double[10]));
+    assertEquals(16 + 8, new ByteSizeEstimator().sizeOf(new byte[3]));
+    // 3 references rounded up, plus the referenced array
+    assertEquals(16 + 16 + 16 + 8, new ByteSizeEstimator().sizeOf(new Object[] { new int[1], null, null }));
+  }
+
+  @Test
+  public void testObjects() {
+    // header, long, int and reference rounded up, plus the array
+    assertEquals(32 + 24, new ByteSizeEstimator().sizeOf(new Holder(new double[1])));
+  }
+
+  @Test
+  public void testSharedObjectsCountedOnce() {
+    double[] shared = new double[100];
+    ByteSizeEstimator estimator = new ByteSizeEstimator();
+    long first = estimator.sizeOf(new Holder(shared));
+    assertEquals(32, estimator.sizeOf(new Holder(shared)));
+    assertEquals(first, new ByteSizeEstimator().sizeOf(new Holder[] { new Holder(shared), new Holder(shared) }) - 16
+        - 8 - 32);
+  }
+
+  @Test
+  public void testExclude() {
+    double[] shared = new double[100];
+    assertEquals(32, new ByteSizeEstimator().exclude(shared).sizeOf(new Holder(shared)));
+  }
+
+  @Test
+  public void testCollections() {
+    List<Object> list = new ArrayList<>();
+    long empty = new ByteSizeEstimator().sizeOf(list);
+    for (int i = 0; i < 100; i++) {
+      list.add(new double[10]);
+    }
+    assertTrue(new ByteSizeEstimator().sizeOf(list) >= empty + 100 * 96);
+  }
+
+  private static class Holder {
+    final long count = 0;
+    final int index = 0;
+    final Object value;
+
+    Holder(Object value) {
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package org.apache.samoa.utils;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HashedTimerWheelTest {
+
+  private final List<Long> expired = new ArrayList<>();
+
+  private final HashedTimerWheel.ExpiryHandler handler = new HashedTimerWheel.ExpiryHandler() {
+    @Override
+    public void expired(long id) {
+      expired.add(id);
+    }
+  };
+
+  @Test
+  public void testExpiry() {
+    HashedTimerWheel wheel = new HashedTimerWheel(10, 8, 1000);
+    wheel.schedule(1, 30, 1000);
+    wheel.schedule(2, 50, 1000);
+    assertEquals(2, wheel.size());
+    assertEquals(0, wheel.advance(1025, handler));
+    assertEquals(1, wheel.advance(1030, handler));
+    assertEquals(1L, (long) expired.get(0));
+    assertEquals(0, wheel.advance(1030, handler));
+    assertEquals(1, wheel.advance(1059, handler));
+    assertEquals(2L, (long) expired.get(1));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testTimeOutsBeyondOneTurn() {
+    HashedTimerWheel wheel = new HashedTimerWheel(10, 4, 0);
+    // same slot, different turns
+    wheel.schedule(1, 20, 0);
+    wheel.schedule(2, 60, 0);
+    wheel.schedule(3, 100, 0);
+    assertEquals(1, wheel.advance(40, handler));
+    assertEquals(1, wheel.advance(80, handler));
+    // a jump of several turns visits every slot once
+    wheel.schedule(4, 10, 80);
+    assertEquals(2, wheel.advance(1000, handler));
+    assertEquals(4, expired.size());
+    assertTrue(expired.containsAll(Arrays.asList(1L, 2L, 3L, 4L)));
+  }
+
+  @Test
+  public void testScheduleFromHandler() {
+    final HashedTimerWheel wheel = new HashedTimerWheel(10, 4, 0);
+    wheel.schedule(1, 10, 0);
+    HashedTimerWheel.ExpiryHandler rescheduling = new HashedTimerWheel.ExpiryHandler() {
+      @Override
+      public void expired(long id) {
+        expired.add(id);
+        wheel.schedule(id + 1, 0, 10);
+      }
+    };
+    assertEquals(1, wheel.advance(10, rescheduling));
+    // scheduled with no delay, but expires on the next tick
+    assertEquals(1, wheel.size());
+    assertEquals(1, wheel.advance(20, handler));
+    assertEquals(2L, (long) expired.get(1));
+  }
+
+  @Test
+  public void testManyTimeOutsInOneSlot() {
+    HashedTimerWheel wheel = new HashedTimerWheel(1, 2, 0);
+    for (int i = 0; i < 100; i++) {
+      wheel.schedule(i, 1 + (i % 2) * 2, 0);
+    }
+    assertEquals(50, wheel.advance(1, handler));
+    assertEquals(0, wheel.advance(2, handler));
+    assertEquals(50, wheel.advance(3, handler));
+    assertEquals(0, wheel.size());
+  }
+}
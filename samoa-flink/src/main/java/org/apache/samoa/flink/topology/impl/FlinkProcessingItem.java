@@ -30,6 +30,7 @@ import org.apache.flink.streaming.api.operators.AbstractUdfStreamOperator;
 import org.apache.flink.streaming.api.operators.OneInputStreamOperator;
 import org.apache.flink.streaming.api.watermark.Watermark;
 import org.apache.flink.streaming.runtime.streamrecord.StreamRecord;
+import org.apache.samoa.core.BatchContentEvent;
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
 import org.apache.samoa.flink.helpers.Utils;
@@ -159,18 +160,21 @@ public class FlinkProcessingItem extends AbstractUdfStreamOperator<SamoaType, Fl
 	@Override
 	public ProcessingItem connectInputShuffleStream(Stream inputStream) {
 		inputStreams.add(new Tuple3<>((FlinkStream) inputStream, PartitioningScheme.SHUFFLE, ((FlinkStream) inputStream).getSourcePiId()));
+		((FlinkStream) inputStream).addDestinationScheme(PartitioningScheme.SHUFFLE);
 		return this;
 	}
 
 	@Override
 	public ProcessingItem connectInputKeyStream(Stream inputStream) {
 		inputStreams.add(new Tuple3<>((FlinkStream) inputStream, PartitioningScheme.GROUP_BY_KEY, ((FlinkStream) inputStream).getSourcePiId()));
+		((FlinkStream) inputStream).addDestinationScheme(PartitioningScheme.GROUP_BY_KEY);
 		return this;
 	}
 
 	@Override
 	public ProcessingItem connectInputAllStream(Stream inputStream) {
 		inputStreams.add(new Tuple3<>((FlinkStream) inputStream, PartitioningScheme.BROADCAST, ((FlinkStream) inputStream).getSourcePiId()));
+		((FlinkStream) inputStream).addDestinationScheme(PartitioningScheme.BROADCAST);
 		return this;
 	}
 
@@ -225,7 +229,7 @@ public class FlinkProcessingItem extends AbstractUdfStreamOperator<SamoaType, Fl
 		}
 
 		public void processEvent(ContentEvent event) {
-			proc.process(event);
+			BatchContentEvent.process(proc, event);
 		}
 	}
 
@@ -72,7 +72,7 @@ public class FlinkStream extends AbstractStream implements FlinkComponent, Seria
 	}
 
 	@Override
-	public void put(ContentEvent event) {
+	protected void send(ContentEvent event) {
 		((FlinkProcessingItem) sourceComponent).putToStream(event, this);
 	}
 
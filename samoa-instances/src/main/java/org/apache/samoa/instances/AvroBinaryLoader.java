@@ -24,7 +24,6 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.avro.file.DataFileStream;
-import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,6 +36,9 @@ public class AvroBinaryLoader extends AvroLoader {
   /** Avro Binary reader for an input stream **/
   protected DataFileStream<GenericRecord> dataFileStream = null;
 
+  /** Record reused for each row, as the values are copied into the Instances **/
+  protected transient GenericRecord record = null;
+
   public AvroBinaryLoader(InputStream inputStream, int classAttribute) {
     super(classAttribute);
     initializeSchema(inputStream);
@@ -49,7 +51,7 @@ public class AvroBinaryLoader extends AvroLoader {
   public void initializeSchema(InputStream inputStream)
   {
     try {
-      this.datumReader = new GenericDatumReader<GenericRecord>();
+      this.datumReader = new AvroInstanceCodec.RecordReader();
       this.dataFileStream = new DataFileStream<GenericRecord>(inputStream, datumReader);
       this.schema = dataFileStream.getSchema();
 
@@ -78,7 +80,7 @@ public class AvroBinaryLoader extends AvroLoader {
 
     try {
       if (dataFileStream.hasNext()) {
-        record = (GenericRecord) dataFileStream.next();
+        record = this.record = dataFileStream.next(this.record);
       }
     } catch (Exception ioException) {
       logger.error(AVRO_LOADER_INSTANCE_READ_ERROR + " : {}", ioException);
@@ -0,0 +1,398 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericEnumSymbol;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+
+/**
+ * Converts Avro records to SAMOA instances and back. The position of the field and the type of each attribute are
+ * resolved once from the schema, and the values of the nominal attributes are looked up by the ordinal of the enum
+ * symbols read by a {@link RecordReader}, instead of by their names.
+ *
+ * A codec keeps buffers between calls, so it must not be shared between threads.
+ */
+public class AvroInstanceCodec {
+
+  private final Schema schema;
+  private final InstanceInformation instanceInformation;
+  private final boolean sparse;
+  private final int numAttributes;
+
+  // the position of the field of each attribute
+  private final int[] positions;
+  // the numeric type of the field of each numeric attribute, null for the nominal ones
+  private final Schema.Type[] numericTypes;
+  private final boolean[] nullable;
+  // the enum schema of each nominal attribute, and the value of its symbols
+  private final Schema[] enumSchemas;
+  private final double[][] symbolValues;
+  private final Symbol[][] symbols;
+
+  private int[] sparseIndices;
+  private double[] sparseValues;
+
+  /**
+   * Instantiates a new codec.
+   *
+   * @param schema the schema of the records
+   * @param instanceInformation the structure of the instances, with the attributes of {@link #attributes(Schema)}
+   * @param sparse whether the records hold sparse instances, see {@link #isSparse(Schema)}
+   */
+  public AvroInstanceCodec(Schema schema, InstanceInformation instanceInformation, boolean sparse) {
+    this.schema = schema;
+    this.instanceInformation = instanceInformation;
+    this.sparse = sparse;
+    this.numAttributes = instanceInformation.numAttributes();
+    this.positions = new int[this.numAttributes];
+    this.numericTypes = new Schema.Type[this.numAttributes];
+    this.nullable = new boolean[this.numAttributes];
+    this.enumSchemas = new Schema[this.numAttributes];
+    this.symbolValues = new double[this.numAttributes][];
+    this.symbols = new Symbol[this.numAttributes][];
+    for (int i = 0; i < this.numAttributes; i++) {
+      Attribute attribute = instanceInformation.attribute(i);
+      Field field = schema.getField(attribute.name());
+      if (field == null) {
+        throw new IllegalArgumentException("No field in the Avro schema for attribute " + attribute.name());
+      }
+      this.positions[i] = field.pos();
+      for (Schema branch : branches(field.schema())) {
+        if (branch.getType() == Schema.Type.NULL) {
+          this.nullable[i] = true;
+        } else if (branch.getType() == Schema.Type.ENUM && attribute.isNominal() && this.enumSchemas[i] == null) {
+          this.enumSchemas[i] = branch;
+        } else if (isNumeric(branch.getType()) && !attribute.isNominal() && this.numericTypes[i] == null) {
+          this.numericTypes[i] = branch.getType();
+        }
+      }
+      if (this.enumSchemas[i] != null) {
+        List<String> labels = this.enumSchemas[i].getEnumSymbols();
+        this.symbolValues[i] = new double[labels.size()];
+        this.symbols[i] = new Symbol[labels.size()];
+        for (int j = 0; j < labels.size(); j++) {
+          String label = labels.get(j);
+          this.symbolValues[i][j] = "?".equals(label) ? Double.NaN : attribute.indexOfValue(label);
+          this.symbols[i][j] = new Symbol(this.enumSchemas[i], label, j);
+        }
+      }
+    }
+    this.sparseIndices = new int[16];
+    this.sparseValues = new double[16];
+  }
+
+  /**
+   * Instantiates a new codec.
+   *
+   * @param schema the schema of the records
+   * @param header the header of the instances, with the attributes of {@link #attributes(Schema)}
+   * @param sparse whether the records hold sparse instances, see {@link #isSparse(Schema)}
+   */
+  public AvroInstanceCodec(Schema schema, Instances header, boolean sparse) {
+    this(schema, header.instanceInformation, sparse);
+  }
+
+  /**
+   * Gets the attributes of the records of a schema: a nominal attribute for each enum field, a numeric attribute for
+   * each numeric field, in the order of the fields. The other fields are ignored.
+   *
+   * @param schema the schema of the records
+   * @return the attributes
+   */
+  public static List<Attribute> attributes(Schema schema) {
+    List<Attribute> attributes = new ArrayList<Attribute>();
+    /** By Definition, the returned list is in the order of their positions. **/
+    for (Field field : schema.getFields()) {
+      Schema attributeSchema = field.schema();
+
+      /** Currently SAMOA supports only NOMINAL & Numeric Types. **/
+      if (attributeSchema.getType() == Schema.Type.ENUM) {
+        attributes.add(new Attribute(field.name(), attributeSchema.getEnumSymbols()));
+      } else {
+        for (Schema branch : branches(attributeSchema)) {
+          if (isNumeric(branch.getType())) {
+            attributes.add(new Attribute(field.name()));
+            break;
+          }
+        }
+      }
+    }
+    return attributes;
+  }
+
+  /**
+   * Checks if the records of a schema hold sparse instances, i.e. if any field is nullable.
+   *
+   * @param schema the schema of the records
+   * @return true if the instances are sparse
+   */
+  public static boolean isSparse(Schema schema) {
+    for (Field field : schema.getFields()) {
+      if (field.schema().getType() == Schema.Type.UNION) {
+        for (Schema branch : field.schema().getTypes()) {
+          if (branch.getType() == Schema.Type.NULL) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the structure of the instances.
+   *
+   * @return the structure
+   */
+  public InstanceInformation getStructure() {
+    return this.instanceInformation;
+  }
+
+  /**
+   * Converts a record to an instance. The missing nominal values are NaN. In sparse instances, the null fields and the
+   * numbers that are not finite are left out.
+   *
+   * @param record the record, with the schema of the codec
+   * @return the instance, or null if there are no attributes
+   */
+  public Instance decode(GenericRecord record) {
+    if (this.numAttributes == 0) {
+      return null;
+    }
+    if (this.sparse) {
+      return this.decodeSparse(record);
+    }
+    double[] values = new double[this.numAttributes];
+    for (int i = 0; i < this.numAttributes; i++) {
+      Object value = record.get(this.positions[i]);
+      values[i] = (this.enumSchemas[i] != null) ? this.nominalValue(i, value) : this.numericValue(i, value);
+    }
+    return new DenseInstance(1.0, values);
+  }
+
+  private Instance decodeSparse(GenericRecord record) {
+    int numValues = 0;
+    for (int i = 0; i < this.numAttributes; i++) {
+      Object value = record.get(this.positions[i]);
+      if (value == null) {
+        continue;
+      }
+      double attributeValue;
+      if (this.enumSchemas[i] != null) {
+        attributeValue = this.nominalValue(i, value);
+      } else {
+        attributeValue = this.numericValue(i, value);
+        if (Double.isNaN(attributeValue) || Double.isInfinite(attributeValue)) {
+          continue;
+        }
+      }
+      if (numValues == this.sparseIndices.length) {
+        this.sparseIndices = Arrays.copyOf(this.sparseIndices, numValues << 1);
+        this.sparseValues = Arrays.copyOf(this.sparseValues, numValues << 1);
+      }
+      this.sparseIndices[numValues] = i;
+      this.sparseValues[numValues] = attributeValue;
+      numValues++;
+    }
+    return new SparseInstance(1.0, Arrays.copyOf(this.sparseValues, numValues),
+        Arrays.copyOf(this.sparseIndices, numValues), this.numAttributes);
+  }
+
+  private double numericValue(int attribute, Object value) {
+    if (!(value instanceof Number)) {
+      throw new RuntimeException(AvroLoader.AVRO_LOADER_INVALID_TYPE_ERROR + " for Numeric Type : "
+          + this.instanceInformation.attribute(attribute).name());
+    }
+    return ((Number) value).doubleValue();
+  }
+
+  private double nominalValue(int attribute, Object value) {
+    if (value instanceof Symbol && ((Symbol) value).getSchema() == this.enumSchemas[attribute]) {
+      return this.symbolValues[attribute][((Symbol) value).ordinal];
+    }
+    if (!(value instanceof GenericEnumSymbol)) {
+      throw new RuntimeException(AvroLoader.AVRO_LOADER_INVALID_TYPE_ERROR + " for Nominal Type : "
+          + this.instanceInformation.attribute(attribute).name());
+    }
+    // a symbol of another schema, or not read by a RecordReader
+    String stringValue = value.toString();
+    if ("?".equals(stringValue)) {
+      return Double.NaN;
+    }
+    return this.instanceInformation.attribute(attribute).indexOfValue(stringValue);
+  }
+
+  /**
+   * Converts an instance to a record. The numbers are converted to the type of their field. The missing values, and
+   * the zeros of the nullable numeric fields, are written as null if the field is nullable; otherwise the missing
+   * nominal values are written as the symbol "?". The fields of a new record that are not attributes get their default
+   * value.
+   *
+   * @param instance the instance, with the attributes of the codec
+   * @param reuse a record to fill, or null to create a new one
+   * @return the record
+   */
+  public GenericRecord encode(Instance instance, GenericRecord reuse) {
+    GenericRecord record = reuse;
+    if (record == null) {
+      record = new GenericData.Record(this.schema);
+      for (Field field : this.schema.getFields()) {
+        if (field.defaultValue() != null) {
+          record.put(field.pos(), GenericData.get().getDefaultValue(field));
+        }
+      }
+    }
+    for (int i = 0; i < this.numAttributes; i++) {
+      double value = instance.value(i);
+      Object fieldValue;
+      if (this.enumSchemas[i] != null) {
+        fieldValue = this.symbol(i, value);
+      } else if (this.nullable[i] && (Double.isNaN(value) || value == 0)) {
+        fieldValue = null;
+      } else {
+        fieldValue = numericFieldValue(this.numericTypes[i], value);
+      }
+      record.put(this.positions[i], fieldValue);
+    }
+    return record;
+  }
+
+  private Object symbol(int attribute, double value) {
+    Symbol[] attributeSymbols = this.symbols[attribute];
+    if (!Double.isNaN(value)) {
+      int index = (int) value;
+      if (index >= 0 && index < attributeSymbols.length && this.symbolValues[attribute][index] == index) {
+        return attributeSymbols[index];
+      }
+      String label = this.instanceInformation.attribute(attribute).value(index);
+      int ordinal = this.enumSchemas[attribute].getEnumOrdinal(label);
+      return attributeSymbols[ordinal];
+    }
+    if (this.nullable[attribute]) {
+      return null;
+    }
+    if (this.enumSchemas[attribute].hasEnumSymbol("?")) {
+      return attributeSymbols[this.enumSchemas[attribute].getEnumOrdinal("?")];
+    }
+    throw new IllegalArgumentException("Missing value of attribute " + this.instanceInformation.attribute(attribute)
+        .name() + " with no null or ? in the Avro schema");
+  }
+
+  private static Object numericFieldValue(Schema.Type type, double value) {
+    switch (type) {
+    case INT:
+      return (int) value;
+    case LONG:
+      return (long) value;
+    case FLOAT:
+      return (float) value;
+    default:
+      return value;
+    }
+  }
+
+  private static boolean isNumeric(Schema.Type type) {
+    return type == Schema.Type.DOUBLE || type == Schema.Type.FLOAT || type == Schema.Type.LONG
+        || type == Schema.Type.INT;
+  }
+
+  private static List<Schema> branches(Schema schema) {
+    return (schema.getType() == Schema.Type.UNION) ? schema.getTypes() : Arrays.asList(schema);
+  }
+
+  /**
+   * Enum symbol that knows its ordinal.
+   */
+  static class Symbol extends GenericData.EnumSymbol {
+
+    final int ordinal;
+
+    Symbol(Schema schema, String symbol, int ordinal) {
+      super(schema, symbol);
+      this.ordinal = ordinal;
+    }
+  }
+
+  /**
+   * Datum reader of generic records that returns the same {@link Symbol} object for each value of an enum, instead of
+   * creating a new symbol for each record. Records can be reused, e.g. with
+   * {@link org.apache.avro.file.DataFileStream#next(Object)}.
+   */
+  public static class RecordReader extends GenericDatumReader<GenericRecord> {
+
+    private final Map<Schema, Symbol[]> symbols = new IdentityHashMap<Schema, Symbol[]>();
+
+    public RecordReader() {
+    }
+
+    public RecordReader(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    protected Object readEnum(Schema expected, Decoder in) throws IOException {
+      Symbol[] enumSymbols = this.symbols.get(expected);
+      if (enumSymbols == null) {
+        List<String> labels = expected.getEnumSymbols();
+        enumSymbols = new Symbol[labels.size()];
+        for (int i = 0; i < enumSymbols.length; i++) {
+          enumSymbols[i] = new Symbol(expected, labels.get(i), i);
+        }
+        this.symbols.put(expected, enumSymbols);
+      }
+      return enumSymbols[in.readEnum()];
+    }
+  }
+
+  /**
+   * Datum writer of generic records that writes the {@link Symbol}s by their ordinal, instead of looking them up by
+   * name in the schema.
+   */
+  public static class RecordWriter extends GenericDatumWriter<GenericRecord> {
+
+    public RecordWriter(Schema schema) {
+      super(schema);
+    }
+
+    @Override
+    protected void writeEnum(Schema schema, Object datum, Encoder out) throws IOException {
+      if (datum instanceof Symbol && ((Symbol) datum).getSchema() == schema) {
+        out.writeEnum(((Symbol) datum).ordinal);
+      } else {
+        super.writeEnum(schema, datum, out);
+      }
+    }
+  }
+}
@@ -27,10 +27,9 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 
 import org.apache.avro.Schema;
-import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.JsonDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +41,10 @@ public class AvroJsonLoader extends AvroLoader {
   /** The Character reader for JSON read */
   protected Reader reader = null;
 
+  /** JSON decoder and record reused for each line **/
+  protected transient JsonDecoder decoder = null;
+  protected transient GenericRecord record = null;
+
   public AvroJsonLoader(InputStream inputStream, int classAttribute) {
     super(classAttribute);
     initializeSchema(inputStream);
@@ -58,7 +61,7 @@ public class AvroJsonLoader extends AvroLoader {
       this.reader = new BufferedReader(new InputStreamReader(inputStream));
       schemaString = ((BufferedReader) this.reader).readLine();
       this.schema = new Schema.Parser().parse(schemaString);
-      this.datumReader = new GenericDatumReader<GenericRecord>(schema);
+      this.datumReader = new AvroInstanceCodec.RecordReader(schema);
       this.instanceInformation = getHeader();
       this.isSparseData = isSparseData();
 
@@ -81,7 +84,6 @@ public class AvroJsonLoader extends AvroLoader {
   public Instance readInstance() {
 
     String line = null;
-    Decoder decoder = null;
     GenericRecord record = null;
 
     try {
@@ -89,8 +91,11 @@ public class AvroJsonLoader extends AvroLoader {
         if (line == null || line.trim().length() <= 0)
           continue;
 
-        decoder = DecoderFactory.get().jsonDecoder(schema, line);
-        record = datumReader.read(null, decoder);
+        if (decoder == null)
+          decoder = DecoderFactory.get().jsonDecoder(schema, line);
+        else
+          decoder.configure(line);
+        record = this.record = datumReader.read(this.record, decoder);
         break;
       }
     } catch (IOException ioException) {
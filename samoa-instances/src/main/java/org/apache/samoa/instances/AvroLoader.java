@@ -21,13 +21,9 @@ package org.apache.samoa.instances;
  */
 
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.avro.Schema;
-import org.apache.avro.Schema.Field;
-import org.apache.avro.SchemaBuilder;
-import org.apache.avro.generic.GenericData.EnumSymbol;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
 
@@ -49,6 +45,9 @@ public abstract class AvroLoader implements Loader {
 
   protected int classAttribute;
 
+  /** Converts the records to Instances, with the positions and types of the fields resolved once */
+  protected transient AvroInstanceCodec codec;
+
   /** Datum Reader for Avro Data */
   public DatumReader<GenericRecord> datumReader = null;
 
@@ -70,65 +69,7 @@ public abstract class AvroLoader implements Loader {
    */
   protected Instance readInstanceDense(GenericRecord record)
   {
-    Instance instance = new DenseInstance(this.instanceInformation.numAttributes() + 1);
-    int numAttribute = 0;
-
-    for (Attribute attribute : attributes) {
-      Object value = record.get(attribute.name);
-
-      boolean isNumeric = attributes.get(numAttribute).isNumeric();
-      boolean isNominal = attributes.get(numAttribute).isNominal();
-
-      if (isNumeric)
-      {
-        if (value instanceof Double)
-          this.setDenseValue(instance, numAttribute, (double) value);
-        else if (value instanceof Long)
-          this.setDenseValue(instance, numAttribute, (long) value);
-        else if (value instanceof Integer)
-          this.setDenseValue(instance, numAttribute, (int) value);
-        else
-          throw new RuntimeException("Invalid data type in the Avro data for Numeric Type : " + attribute.name);
-      }
-      else if (isNominal)
-      {
-        double valueAttribute;
-
-        if (!(value instanceof EnumSymbol))
-          throw new RuntimeException("Invalid data type in the Avro data for Nominal Type : " + attribute.name);
-
-        EnumSymbol enumSymbolalue = (EnumSymbol) value;
-
-        String stringValue = enumSymbolalue.toString();
-
-        if (("?".equals(stringValue)) || (stringValue == null)) {
-          valueAttribute = Double.NaN;
-        } else {
-          valueAttribute = this.instanceInformation.attribute(numAttribute).indexOfValue(stringValue);
-        }
-
-        this.setDenseValue(instance, numAttribute, valueAttribute);
-      }
-      numAttribute++;
-    }
-
-    return (numAttribute > 0) ? instance : null;
-
-  }
-
-  /**
-   * Sets a Dense Value in the corresponding attribute index
-   * 
-   * @param instance
-   *          is the Instance where values will be set
-   * @param numAttribute
-   *          is the index of the attribute
-   * @param valueAttribute
-   *          is the value of the attribute for this Instance
-   */
-
-  private void setDenseValue(Instance instance, int numAttribute, double valueAttribute) {
-    instance.setValue(numAttribute, valueAttribute);
+    return this.getCodec().decode(record);
   }
 
   /**
@@ -137,95 +78,18 @@ public abstract class AvroLoader implements Loader {
    * @return Instance
    */
   protected Instance readInstanceSparse(GenericRecord record) {
-
-    Instance instance = new SparseInstance(1.0, null);
-    int numAttribute = -1;
-    ArrayList<Double> attributeValues = new ArrayList<Double>();
-    List<Integer> indexValues = new ArrayList<Integer>();
-
-    for (Attribute attribute : attributes) {
-      numAttribute++;
-      Object value = record.get(attribute.name);
-
-      boolean isNumeric = attributes.get(numAttribute).isNumeric();
-      boolean isNominal = attributes.get(numAttribute).isNominal();
-
-      /** If value is empty/null iterate to the next attribute. **/
-      if (value == null)
-        continue;
-
-      if (isNumeric)
-      {
-        if (value instanceof Double) {
-          Double v = (double) value;
-          //if (Double.isFinite(v))
-          if (!Double.isNaN(v) && !Double.isInfinite(v))
-            this.setSparseValue(instance, indexValues, attributeValues, numAttribute, (double) value);
-        }
-        else if (value instanceof Long)
-          this.setSparseValue(instance, indexValues, attributeValues, numAttribute, (long) value);
-        else if (value instanceof Integer)
-          this.setSparseValue(instance, indexValues, attributeValues, numAttribute, (int) value);
-        else
-          throw new RuntimeException(AVRO_LOADER_INVALID_TYPE_ERROR + " : " + attribute.name);
-      }
-      else if (isNominal)
-      {
-        double valueAttribute;
-
-        if (!(value instanceof EnumSymbol))
-          throw new RuntimeException(AVRO_LOADER_INVALID_TYPE_ERROR + " : " + attribute.name);
-
-        EnumSymbol enumSymbolalue = (EnumSymbol) value;
-
-        String stringValue = enumSymbolalue.toString();
-
-        if (("?".equals(stringValue)) || (stringValue == null)) {
-          valueAttribute = Double.NaN;
-        } else {
-          valueAttribute = this.instanceInformation.attribute(numAttribute).indexOfValue(stringValue);
-        }
-
-        this.setSparseValue(instance, indexValues, attributeValues, numAttribute, valueAttribute);
-      }
-    }
-
-    int[] arrayIndexValues = new int[attributeValues.size()];
-    double[] arrayAttributeValues = new double[attributeValues.size()];
-
-    for (int i = 0; i < arrayIndexValues.length; i++) {
-      arrayIndexValues[i] = indexValues.get(i).intValue();
-      arrayAttributeValues[i] = attributeValues.get(i).doubleValue();
-    }
-
-    instance.addSparseValues(arrayIndexValues, arrayAttributeValues, this.instanceInformation.numAttributes());
-    return instance;
-
+    return this.getCodec().decode(record);
   }
 
   /**
-   * Sets a Sparse Value in the corresponding attribute index
+   * Gets the codec that converts the records to instances, created from the schema and the meta data on first use
    * 
-   * @param instance
-   *          is the Instance where values will be set
-   * @param indexValues
-   *          is the list of Index values
-   * @param attributeValues
-   *          is the list of Attribute values
-   * @param numAttribute
-   *          is the index of the attribute
-   * @param valueAttribute
-   *          is the value of the attribute for this Instance
+   * @return AvroInstanceCodec
    */
-  private void setSparseValue(Instance instance, List<Integer> indexValues, List<Double> attributeValues,
-      int numAttribute, double valueAttribute) {
-
-    if (this.instanceInformation.classIndex() == numAttribute) {
-      instance.setClassValue(valueAttribute);
-    } else {
-      indexValues.add(numAttribute);
-      attributeValues.add(valueAttribute);
-    }
+  protected AvroInstanceCodec getCodec() {
+    if (this.codec == null)
+      this.codec = new AvroInstanceCodec(this.schema, this.instanceInformation, this.isSparseData);
+    return this.codec;
   }
 
   /**
@@ -234,44 +98,8 @@ public abstract class AvroLoader implements Loader {
    * @return
    */
   protected InstanceInformation getHeader() {
-
-    String relation = schema.getName();
-    attributes = new ArrayList<Attribute>();
-
-    /** By Definition, the returned list is in the order of their positions. **/
-    List<Schema.Field> fields = schema.getFields();
-
-    for (Field field : fields) {
-      Schema attributeSchema = field.schema();
-
-      /** Currently SAMOA supports only NOMINAL & Numeric Types. **/
-      if (attributeSchema.getType() == Schema.Type.ENUM)
-      {
-        List<String> attributeLabels = attributeSchema.getEnumSymbols();
-        attributes.add(new Attribute(field.name(), attributeLabels));
-      }
-      else if (isNumeric(field))
-        attributes.add(new Attribute(field.name()));
-    }
-    return new InstanceInformation(relation, attributes);
-  }
-
-  private boolean isNumeric(Field field) {
-    if (field.schema().getType() == Schema.Type.DOUBLE
-        || field.schema().getType() == Schema.Type.FLOAT
-        || field.schema().getType() == Schema.Type.LONG
-        || field.schema().getType() == Schema.Type.INT)
-      return true;
-    if (field.schema().getType() == Schema.Type.UNION) {
-      for (Schema schema: field.schema().getTypes()) {
-        if (schema.getType() == Schema.Type.DOUBLE
-            || schema.getType() == Schema.Type.FLOAT
-            || schema.getType() == Schema.Type.LONG
-            || schema.getType() == Schema.Type.INT)
-          return true;
-      }
-    }
-    return false;
+    attributes = AvroInstanceCodec.attributes(schema);
+    return new InstanceInformation(schema.getName(), attributes);
   }
 
   /**
@@ -281,22 +109,8 @@ public abstract class AvroLoader implements Loader {
    */
   protected boolean isSparseData()
   {
-    List<Schema.Field> fields = schema.getFields();
-    for (Field field : fields) {
-      Schema attributeSchema = field.schema();
-
-      /** If even one attribute has a null union (nullable attribute) consider it as sparse data **/
-      if (attributeSchema.getType() == Schema.Type.UNION)
-      {
-        List<Schema> unionTypes = attributeSchema.getTypes();
-        for (Schema unionSchema : unionTypes) {
-          if (unionSchema.getType() == Schema.Type.NULL)
-            return true;
-        }
-      }
-
-    }
-    return false;
+    /** If even one attribute has a null union (nullable attribute) consider it as sparse data **/
+    return AvroInstanceCodec.isSparse(schema);
   }
 
   @Override
@@ -0,0 +1,246 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loader of the binary instance files written by {@link BinaryInstanceWriter}. The file starts with the structure of
+ * the instances and goes on with one row per instance:
+ *
+ * <pre>
+ * header: magic (int), version (int), relation (string), class index (int), number of attributes (int),
+ *         then per attribute: type (byte), name (string), and for nominal attributes the number of labels (int)
+ *         and the labels (strings), for date attributes the format (string)
+ * dense row: 0 (byte), weight (double), one double per attribute
+ * sparse row: 1 (byte), weight (double), number of values (int), indices (ints), values (doubles)
+ * string: length (int), UTF-8 bytes
+ * </pre>
+ *
+ * All the numbers are little-endian. The rows are read from a direct buffer with bulk copies into the arrays of the
+ * instances, without any parsing.
+ */
+public class BinaryInstanceLoader implements Loader {
+
+  private static final long serialVersionUID = 7519863047702135844L;
+
+  static final int MAGIC = 0x494D4153; // "SAMI"
+  static final int VERSION = 1;
+
+  static final byte NUMERIC = 0;
+  static final byte NOMINAL = 1;
+  static final byte DATE = 2;
+
+  static final byte DENSE_ROW = 0;
+  static final byte SPARSE_ROW = 1;
+
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  /**
+   * The instance information.
+   */
+  protected InstanceInformation instanceInformation;
+
+  private transient ReadableByteChannel channel;
+  private transient ByteBuffer buffer;
+  private transient boolean endOfStream;
+  private transient int numAttributes;
+
+  /**
+   * Instantiates a new loader.
+   *
+   * @param in the stream of the file
+   */
+  public BinaryInstanceLoader(InputStream in) {
+    this(in instanceof FileInputStream ? ((FileInputStream) in).getChannel() : Channels.newChannel(in),
+        DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Instantiates a new loader.
+   *
+   * @param channel the channel of the file
+   * @param bufferSize the initial size of the buffer, which grows to hold the largest row
+   */
+  public BinaryInstanceLoader(ReadableByteChannel channel, int bufferSize) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64)).order(BYTE_ORDER);
+    this.buffer.flip();
+    this.instanceInformation = this.readHeader();
+    this.numAttributes = this.instanceInformation.numAttributes();
+  }
+
+  /**
+   * Gets the structure.
+   *
+   * @return the structure
+   */
+  @Override
+  public InstanceInformation getStructure() {
+    return this.instanceInformation;
+  }
+
+  /**
+   * Reads an instance, dense or sparse.
+   *
+   * @return the instance, or null at the end of the file
+   */
+  @Override
+  public Instance readInstance() {
+    if (!this.ensure(1)) {
+      return null;
+    }
+    byte type = this.buffer.get();
+    if (type == DENSE_ROW) {
+      if (!this.ensure(8 + 8 * this.numAttributes)) {
+        return this.truncated();
+      }
+      double weight = this.buffer.getDouble();
+      double[] values = new double[this.numAttributes];
+      this.getDoubles(values);
+      return new DenseInstance(weight, values);
+    } else if (type == SPARSE_ROW) {
+      if (!this.ensure(12)) {
+        return this.truncated();
+      }
+      double weight = this.buffer.getDouble();
+      int numValues = this.buffer.getInt();
+      if (numValues < 0 || numValues > this.numAttributes || !this.ensure(12 * numValues)) {
+        return this.truncated();
+      }
+      int[] indices = new int[numValues];
+      this.buffer.asIntBuffer().get(indices);
+      this.buffer.position(this.buffer.position() + 4 * numValues);
+      double[] values = new double[numValues];
+      this.getDoubles(values);
+      return new SparseInstance(weight, values, indices, this.numAttributes);
+    }
+    throw new IllegalArgumentException("Invalid type of row: " + type);
+  }
+
+  private void getDoubles(double[] values) {
+    this.buffer.asDoubleBuffer().get(values);
+    this.buffer.position(this.buffer.position() + 8 * values.length);
+  }
+
+  private Instance truncated() {
+    Logger.getLogger(BinaryInstanceLoader.class.getName()).log(Level.WARNING, "Truncated binary instance file");
+    this.endOfStream = true;
+    this.buffer.position(this.buffer.limit());
+    return null;
+  }
+
+  private InstanceInformation readHeader() {
+    if (!this.ensure(8) || this.buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not a binary instance file");
+    }
+    int version = this.buffer.getInt();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported version of binary instance file: " + version);
+    }
+    String relation = this.readString();
+    int classIndex = this.readInt();
+    int numAttributes = this.readInt();
+    List<Attribute> attributes = new ArrayList<Attribute>(numAttributes);
+    for (int i = 0; i < numAttributes; i++) {
+      if (!this.ensure(1)) {
+        throw new IllegalArgumentException("Truncated header of binary instance file");
+      }
+      byte type = this.buffer.get();
+      String name = this.readString();
+      if (type == NOMINAL) {
+        int numLabels = this.readInt();
+        List<String> labels = new ArrayList<String>(numLabels);
+        for (int j = 0; j < numLabels; j++) {
+          labels.add(this.readString());
+        }
+        attributes.add(new Attribute(name, labels));
+      } else if (type == DATE) {
+        attributes.add(new Attribute(name, this.readString()));
+      } else {
+        attributes.add(new Attribute(name));
+      }
+    }
+    InstanceInformation instanceInformation = new InstanceInformation(relation, attributes);
+    instanceInformation.setClassIndex(classIndex);
+    return instanceInformation;
+  }
+
+  private int readInt() {
+    if (!this.ensure(4)) {
+      throw new IllegalArgumentException("Truncated header of binary instance file");
+    }
+    return this.buffer.getInt();
+  }
+
+  private String readString() {
+    int length = this.readInt();
+    if (length < 0 || !this.ensure(length)) {
+      throw new IllegalArgumentException("Truncated header of binary instance file");
+    }
+    byte[] bytes = new byte[length];
+    this.buffer.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  /*
+   * Makes sure that the buffer holds at least the given number of bytes,
+   * reading them from the channel. Returns false at the end of the file.
+   */
+  private boolean ensure(int bytes) {
+    if (this.buffer.remaining() >= bytes) {
+      return true;
+    }
+    if (this.buffer.capacity() < bytes) {
+      ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(bytes, this.buffer.capacity() << 1)).order(BYTE_ORDER);
+      larger.put(this.buffer);
+      larger.flip();
+      this.buffer = larger;
+    }
+    this.buffer.compact();
+    try {
+      while (this.buffer.position() < bytes && !this.endOfStream) {
+        if (this.channel.read(this.buffer) < 0) {
+          this.endOfStream = true;
+        }
+      }
+    } catch (IOException ex) {
+      Logger.getLogger(BinaryInstanceLoader.class.getName()).log(Level.SEVERE, null, ex);
+      this.endOfStream = true;
+    }
+    this.buffer.flip();
+    return this.buffer.remaining() >= bytes;
+  }
+}
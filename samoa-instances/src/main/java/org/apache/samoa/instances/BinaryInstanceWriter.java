@@ -0,0 +1,179 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.samoa.instances.BinaryInstanceLoader.BYTE_ORDER;
+import static org.apache.samoa.instances.BinaryInstanceLoader.DATE;
+import static org.apache.samoa.instances.BinaryInstanceLoader.DENSE_ROW;
+import static org.apache.samoa.instances.BinaryInstanceLoader.MAGIC;
+import static org.apache.samoa.instances.BinaryInstanceLoader.NOMINAL;
+import static org.apache.samoa.instances.BinaryInstanceLoader.NUMERIC;
+import static org.apache.samoa.instances.BinaryInstanceLoader.SPARSE_ROW;
+import static org.apache.samoa.instances.BinaryInstanceLoader.UTF8;
+import static org.apache.samoa.instances.BinaryInstanceLoader.VERSION;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writer of binary instance files, read by {@link BinaryInstanceLoader}, which describes the format. The instances with
+ * sparse data are written as sparse rows, the others as dense rows.
+ */
+public class BinaryInstanceWriter implements Closeable, Flushable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final WritableByteChannel channel;
+  private final int numAttributes;
+  private ByteBuffer buffer;
+
+  /**
+   * Instantiates a new writer, and writes the header of the file.
+   *
+   * @param out the stream of the file
+   * @param instanceInformation the structure of the instances
+   * @throws IOException if the header cannot be written
+   */
+  public BinaryInstanceWriter(OutputStream out, InstanceInformation instanceInformation) throws IOException {
+    this.channel = Channels.newChannel(out);
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+    this.numAttributes = instanceInformation.numAttributes();
+    this.writeHeader(instanceInformation);
+  }
+
+  /**
+   * Instantiates a new writer, and writes the header of the file.
+   *
+   * @param out the stream of the file
+   * @param header the header of the instances
+   * @throws IOException if the header cannot be written
+   */
+  public BinaryInstanceWriter(OutputStream out, Instances header) throws IOException {
+    this(out, header.instanceInformation);
+  }
+
+  /**
+   * Writes an instance.
+   *
+   * @param instance the instance, with the attributes of the header
+   * @throws IOException if the instance cannot be written
+   */
+  public void write(Instance instance) throws IOException {
+    if (instance.numAttributes() != this.numAttributes) {
+      throw new IllegalArgumentException("Instance with " + instance.numAttributes() + " attributes instead of "
+          + this.numAttributes);
+    }
+    if (instance instanceof InstanceImpl && ((InstanceImpl) instance).instanceData instanceof SparseInstanceData) {
+      int numValues = instance.numValues();
+      this.ensure(13 + 12 * numValues);
+      this.buffer.put(SPARSE_ROW);
+      this.buffer.putDouble(instance.weight());
+      this.buffer.putInt(numValues);
+      for (int i = 0; i < numValues; i++) {
+        this.buffer.putInt(instance.index(i));
+      }
+      for (int i = 0; i < numValues; i++) {
+        this.buffer.putDouble(instance.valueSparse(i));
+      }
+    } else {
+      this.ensure(9 + 8 * this.numAttributes);
+      this.buffer.put(DENSE_ROW);
+      this.buffer.putDouble(instance.weight());
+      for (int i = 0; i < this.numAttributes; i++) {
+        this.buffer.putDouble(instance.value(i));
+      }
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.flush();
+    this.channel.close();
+  }
+
+  private void writeHeader(InstanceInformation instanceInformation) throws IOException {
+    this.writeInt(MAGIC);
+    this.writeInt(VERSION);
+    this.writeString(instanceInformation.getRelationName());
+    this.writeInt(instanceInformation.classIndex());
+    this.writeInt(this.numAttributes);
+    for (int i = 0; i < this.numAttributes; i++) {
+      Attribute attribute = instanceInformation.attribute(i);
+      if (attribute.isNominal()) {
+        this.ensure(1);
+        this.buffer.put(NOMINAL);
+        this.writeString(attribute.name());
+        this.writeInt(attribute.numValues());
+        for (int j = 0; j < attribute.numValues(); j++) {
+          this.writeString(attribute.value(j));
+        }
+      } else if (attribute.isDate()) {
+        this.ensure(1);
+        this.buffer.put(DATE);
+        this.writeString(attribute.name());
+        this.writeString(attribute.m_DateFormat.toPattern());
+      } else {
+        this.ensure(1);
+        this.buffer.put(NUMERIC);
+        this.writeString(attribute.name());
+      }
+    }
+  }
+
+  private void writeInt(int value) throws IOException {
+    this.ensure(4);
+    this.buffer.putInt(value);
+  }
+
+  private void writeString(String value) throws IOException {
+    byte[] bytes = (value == null ? "" : value).getBytes(UTF8);
+    this.writeInt(bytes.length);
+    this.ensure(bytes.length);
+    this.buffer.put(bytes);
+  }
+
+  /*
+   * Makes room in the buffer for the given number of bytes
+   */
+  private void ensure(int bytes) throws IOException {
+    if (this.buffer.remaining() >= bytes) {
+      return;
+    }
+    this.flush();
+    if (this.buffer.capacity() < bytes) {
+      this.buffer = ByteBuffer.allocateDirect(bytes).order(BYTE_ORDER);
+    }
+  }
+}
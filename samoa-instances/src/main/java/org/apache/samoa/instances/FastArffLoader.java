@@ -0,0 +1,657 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loader of ARFF files that scans the bytes of the file directly, instead of going through a Reader and a
+ * StreamTokenizer as {@link ArffLoader} does. The tokens are not turned into Strings: the numbers are parsed from the
+ * bytes and the nominal values are looked up in a hash table of the encoded labels built from the header. It splits the
+ * file into tokens the same way as ArffLoader, and reads both dense and sparse ({...}) instances.
+ *
+ * The file is expected to be in an encoding compatible with ASCII, by default UTF-8.
+ */
+public class FastArffLoader implements Loader {
+
+  private static final long serialVersionUID = -5234918316591729087L;
+
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  // token types
+  private static final int TT_EOF = -1;
+  private static final int TT_EOL = -2;
+  private static final int TT_WORD = -3;
+  private static final int TT_QUOTED = -4;
+
+  // classes of the bytes, as set up in the StreamTokenizer of ArffLoader
+  private static final byte WORD = 0;
+  private static final byte WHITESPACE = 1;
+  private static final byte LF = 2;
+  private static final byte CR = 3;
+  private static final byte COMMENT = 4;
+  private static final byte QUOTE = 5;
+  private static final byte ORDINARY = 6;
+
+  private static final byte[] BYTE_CLASSES = new byte[256];
+
+  static {
+    for (int c = 0; c <= ' '; c++) {
+      BYTE_CLASSES[c] = WHITESPACE;
+    }
+    BYTE_CLASSES[','] = WHITESPACE;
+    BYTE_CLASSES['\n'] = LF;
+    BYTE_CLASSES['\r'] = CR;
+    BYTE_CLASSES['%'] = COMMENT;
+    BYTE_CLASSES['"'] = QUOTE;
+    BYTE_CLASSES['\''] = QUOTE;
+    BYTE_CLASSES['{'] = ORDINARY;
+    BYTE_CLASSES['}'] = ORDINARY;
+  }
+
+  // powers of ten that are exact doubles
+  private static final double[] POWERS_OF_TEN = new double[23];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  /**
+   * The instance information.
+   */
+  protected InstanceInformation instanceInformation;
+
+  private final Charset charset;
+
+  private transient InputStream in;
+  private transient byte[] buffer;
+  private transient int position;
+  private transient int limit;
+  private transient boolean endOfStream;
+  // number of bytes of the stream before the buffer
+  private transient long bufferOffset;
+  // offset in the stream of the first byte after the @data keyword
+  private transient long dataOffset;
+
+  // the current token, a word or a quoted string
+  private transient int tokenType;
+  private transient byte[] token;
+  private transient int tokenStart;
+  private transient int tokenLength;
+  // the content of the quoted strings, after the escape sequences
+  private transient byte[] quoted;
+
+  private transient int numAttributes;
+  // the labels of the nominal attributes, null for the numeric ones
+  private transient NominalIndex[] nominalIndices;
+  private transient int[] sparseIndices;
+  private transient double[] sparseValues;
+
+  /**
+   * Instantiates a new loader of an UTF-8 ARFF file.
+   *
+   * @param in the stream of the file
+   * @param classAttribute the class attribute, starting from 1, -1 for the last one, 0 for none
+   */
+  public FastArffLoader(InputStream in, int classAttribute) {
+    this(in, classAttribute, Charset.forName("UTF-8"), DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Instantiates a new loader.
+   *
+   * @param in the stream of the file
+   * @param classAttribute the class attribute, starting from 1, -1 for the last one, 0 for none
+   * @param charset the encoding of the file, compatible with ASCII
+   * @param bufferSize the initial size of the buffer
+   */
+  public FastArffLoader(InputStream in, int classAttribute, Charset charset, int bufferSize) {
+    this.in = in;
+    this.charset = charset;
+    this.buffer = new byte[Math.max(bufferSize, 16)];
+    this.quoted = new byte[64];
+    this.instanceInformation = this.readHeader();
+    if (classAttribute < 0) {
+      this.instanceInformation.setClassIndex(this.instanceInformation.numAttributes() - 1);
+    } else if (classAttribute > 0) {
+      this.instanceInformation.setClassIndex(classAttribute - 1);
+    }
+    this.prepareAttributes();
+  }
+
+  /**
+   * Instantiates a new loader of the data section of an ARFF file, e.g. a part of the file read by another loader, with
+   * the structure of the file.
+   *
+   * @param in the stream of the instances, starting at the beginning of a line
+   * @param instanceInformation the structure of the file
+   * @param charset the encoding of the file, compatible with ASCII
+   * @param bufferSize the initial size of the buffer
+   */
+  public FastArffLoader(InputStream in, InstanceInformation instanceInformation, Charset charset, int bufferSize) {
+    this.in = in;
+    this.charset = charset;
+    this.buffer = new byte[Math.max(bufferSize, 16)];
+    this.quoted = new byte[64];
+    this.instanceInformation = instanceInformation;
+    this.prepareAttributes();
+  }
+
+  /**
+   * Gets the structure.
+   *
+   * @return the structure
+   */
+  @Override
+  public InstanceInformation getStructure() {
+    return this.instanceInformation;
+  }
+
+  /**
+   * Gets the offset in the stream of the data section, i.e. of the first byte after the @data keyword. It is 0 if the
+   * loader was given the structure of the file.
+   *
+   * @return the offset of the data section
+   */
+  public long getDataOffset() {
+    return this.dataOffset;
+  }
+
+  /**
+   * Reads an instance, dense or sparse.
+   *
+   * @return the instance, or null at the end of the file
+   */
+  @Override
+  public Instance readInstance() {
+    int type;
+    do {
+      type = this.nextToken();
+    } while (type == TT_EOL);
+    if (type == TT_EOF) {
+      return null;
+    }
+    return (type == '{') ? this.readSparseInstance() : this.readDenseInstance(type);
+  }
+
+  private Instance readDenseInstance(int type) {
+    Instance instance = new DenseInstance(this.numAttributes);
+    int numAttribute = 0;
+    for (; type != TT_EOL && type != TT_EOF; type = this.nextToken()) {
+      if (type == TT_WORD || type == TT_QUOTED) {
+        if (numAttribute == this.numAttributes) {
+          throw new IllegalArgumentException("More than " + this.numAttributes + " values in instance: "
+              + this.tokenToString());
+        }
+        instance.setValue(numAttribute, this.tokenValue(numAttribute));
+        ++numAttribute;
+      }
+    }
+    return instance;
+  }
+
+  private Instance readSparseInstance() {
+    Instance instance = new SparseInstance(1.0);
+    int numValues = 0;
+    int type = this.nextToken();
+    while (type != '}' && type != TT_EOL && type != TT_EOF) {
+      if (type == TT_WORD || type == TT_QUOTED) {
+        int index = this.tokenIndex();
+        type = this.nextToken();
+        if (type != TT_WORD && type != TT_QUOTED) {
+          throw new IllegalArgumentException("Missing value of attribute " + index + " in sparse instance");
+        }
+        if (numValues == this.sparseIndices.length) {
+          this.sparseIndices = Arrays.copyOf(this.sparseIndices, numValues << 1);
+          this.sparseValues = Arrays.copyOf(this.sparseValues, numValues << 1);
+        }
+        this.sparseIndices[numValues] = index;
+        this.sparseValues[numValues] = this.tokenValue(index);
+        numValues++;
+      }
+      type = this.nextToken();
+    }
+    // nothing is expected after the closing brace
+    while (type != TT_EOL && type != TT_EOF) {
+      type = this.nextToken();
+    }
+    instance.addSparseValues(Arrays.copyOf(this.sparseIndices, numValues), Arrays.copyOf(this.sparseValues, numValues),
+        this.numAttributes);
+    return instance;
+  }
+
+  /*
+   * The value of the current token for an attribute
+   */
+  private double tokenValue(int attribute) {
+    if (attribute < 0 || attribute >= this.numAttributes) {
+      throw new IllegalArgumentException("Invalid attribute index " + attribute);
+    }
+    if (this.tokenLength == 1 && this.token[this.tokenStart] == '?') {
+      return Double.NaN;
+    }
+    NominalIndex nominal = this.nominalIndices[attribute];
+    if (nominal != null) {
+      return nominal.indexOf(this.token, this.tokenStart, this.tokenLength);
+    }
+    return parseDouble(this.token, this.tokenStart, this.tokenLength);
+  }
+
+  /*
+   * The current token as the index of an attribute
+   */
+  private int tokenIndex() {
+    if (this.tokenLength == 0 || this.tokenLength > 9) {
+      return Integer.parseInt(this.tokenToString());
+    }
+    int index = 0;
+    for (int i = this.tokenStart; i < this.tokenStart + this.tokenLength; i++) {
+      int digit = this.token[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return Integer.parseInt(this.tokenToString());
+      }
+      index = index * 10 + digit;
+    }
+    return index;
+  }
+
+  /**
+   * Parses a double from its decimal representation in ASCII. The numbers that have at most 15 significant digits and
+   * an exponent within [-22, 22] are converted exactly with a single multiplication or division, the others with
+   * {@link Double#parseDouble(String)}, which also raises the same errors.
+   *
+   * @param bytes the bytes of the number
+   * @param offset the first byte
+   * @param length the number of bytes
+   * @return the value
+   */
+  static double parseDouble(byte[] bytes, int offset, int length) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = false;
+    if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+      negative = bytes[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int significantDigits = 0;
+    int exponent = 0;
+    boolean anyDigit = false;
+    for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+      anyDigit = true;
+      if (mantissa != 0 || bytes[i] != '0') {
+        mantissa = mantissa * 10 + (bytes[i] - '0');
+        significantDigits++;
+      }
+    }
+    if (i < end && bytes[i] == '.') {
+      for (i++; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+        anyDigit = true;
+        if (mantissa != 0 || bytes[i] != '0') {
+          mantissa = mantissa * 10 + (bytes[i] - '0');
+          significantDigits++;
+        }
+        exponent--;
+      }
+    }
+    if (anyDigit && i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+      i++;
+      boolean negativeExponent = false;
+      if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+        negativeExponent = bytes[i] == '-';
+        i++;
+      }
+      int explicitExponent = 0;
+      int exponentStart = i;
+      for (; i < end && bytes[i] >= '0' && bytes[i] <= '9' && explicitExponent < 10000; i++) {
+        explicitExponent = explicitExponent * 10 + (bytes[i] - '0');
+      }
+      if (i == exponentStart) {
+        anyDigit = false;
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+    if (!anyDigit || i < end || significantDigits > 15 || exponent < -22 || exponent > 22) {
+      // e.g. NaN, Infinity, hexadecimal, type suffix, too many digits
+      return Double.parseDouble(new String(bytes, offset, length, Charset.forName("ISO-8859-1")));
+    }
+    double value = mantissa;
+    if (exponent > 0) {
+      value *= POWERS_OF_TEN[exponent];
+    } else if (exponent < 0) {
+      value /= POWERS_OF_TEN[-exponent];
+    }
+    return negative ? -value : value;
+  }
+
+  private InstanceInformation readHeader() {
+    String relation = "file stream";
+    List<Attribute> attributes = new ArrayList<Attribute>();
+    for (int type = this.nextToken(); type != TT_EOF; type = this.nextToken()) {
+      if (type != TT_WORD || this.token[this.tokenStart] != '@') {
+        continue;
+      }
+      String keyword = this.tokenToString().toUpperCase();
+      if (keyword.startsWith("@RELATION")) {
+        if (this.nextToken() == TT_WORD || this.tokenType == TT_QUOTED) {
+          relation = this.tokenToString();
+        }
+      } else if (keyword.startsWith("@ATTRIBUTE")) {
+        this.nextToken();
+        String name = this.tokenToString();
+        if (this.nextToken() == '{') {
+          List<String> labels = new ArrayList<String>();
+          for (type = this.nextToken(); type != '}' && type != TT_EOF; type = this.nextToken()) {
+            if (type == TT_WORD || type == TT_QUOTED) {
+              labels.add(this.tokenToString());
+            }
+          }
+          attributes.add(new Attribute(name, labels));
+        } else {
+          attributes.add(new Attribute(name));
+        }
+      } else if (keyword.startsWith("@DATA")) {
+        this.dataOffset = this.bufferOffset + this.position;
+        break;
+      }
+    }
+    return new InstanceInformation(relation, attributes);
+  }
+
+  private void prepareAttributes() {
+    this.numAttributes = this.instanceInformation.numAttributes();
+    this.nominalIndices = new NominalIndex[this.numAttributes];
+    for (int i = 0; i < this.numAttributes; i++) {
+      Attribute attribute = this.instanceInformation.attribute(i);
+      if (attribute.isNominal()) {
+        this.nominalIndices[i] = new NominalIndex(attribute, this.charset);
+      }
+    }
+    this.sparseIndices = new int[16];
+    this.sparseValues = new double[16];
+  }
+
+  private String tokenToString() {
+    if (this.tokenType != TT_WORD && this.tokenType != TT_QUOTED) {
+      return null;
+    }
+    return new String(this.token, this.tokenStart, this.tokenLength, this.charset);
+  }
+
+  /*
+   * Reads the next token, with the syntax of the StreamTokenizer of ArffLoader
+   */
+  private int nextToken() {
+    while (true) {
+      if (this.position == this.limit && !this.refill()) {
+        return this.tokenType = TT_EOF;
+      }
+      int c = this.buffer[this.position] & 0xFF;
+      switch (BYTE_CLASSES[c]) {
+      case WHITESPACE:
+        this.position++;
+        break;
+      case LF:
+        this.position++;
+        return this.tokenType = TT_EOL;
+      case CR:
+        this.position++;
+        if (this.position < this.limit || this.refill()) {
+          if (this.buffer[this.position] == '\n') {
+            this.position++;
+          }
+        }
+        return this.tokenType = TT_EOL;
+      case COMMENT:
+        this.skipComment();
+        break;
+      case QUOTE:
+        this.position++;
+        this.readQuoted(c);
+        return this.tokenType = TT_QUOTED;
+      case ORDINARY:
+        this.position++;
+        return this.tokenType = c;
+      default:
+        this.readWord();
+        return this.tokenType = TT_WORD;
+      }
+    }
+  }
+
+  private void skipComment() {
+    while (this.position < this.limit || this.refill()) {
+      byte c = this.buffer[this.position];
+      if (c == '\n' || c == '\r') {
+        return;
+      }
+      this.position++;
+    }
+  }
+
+  private void readWord() {
+    int start = this.position;
+    while (true) {
+      while (this.position < this.limit && BYTE_CLASSES[this.buffer[this.position] & 0xFF] == WORD) {
+        this.position++;
+      }
+      if (this.position < this.limit) {
+        break;
+      }
+      // the word may go on in the next bytes of the stream
+      start = this.compact(start);
+      if (!this.fill()) {
+        break;
+      }
+    }
+    this.token = this.buffer;
+    this.tokenStart = start;
+    this.tokenLength = this.position - start;
+  }
+
+  /*
+   * Reads a quoted string, with the escape sequences of StreamTokenizer, up to
+   * the closing quote or the end of the line
+   */
+  private void readQuoted(int quote) {
+    int length = 0;
+    int c = this.read();
+    while (c >= 0 && c != quote && c != '\n' && c != '\r') {
+      int value;
+      if (c != '\\') {
+        value = c;
+        c = this.read();
+      } else {
+        c = this.read();
+        if (c >= '0' && c <= '7') {
+          int first = c;
+          value = c - '0';
+          c = this.read();
+          if (c >= '0' && c <= '7') {
+            value = (value << 3) + (c - '0');
+            c = this.read();
+            if (first <= '3' && c >= '0' && c <= '7') {
+              value = (value << 3) + (c - '0');
+              c = this.read();
+            }
+          }
+        } else if (c < 0) {
+          break;
+        } else {
+          value = unescape(c);
+          c = this.read();
+        }
+      }
+      if (length == this.quoted.length) {
+        this.quoted = Arrays.copyOf(this.quoted, length << 1);
+      }
+      this.quoted[length++] = (byte) value;
+    }
+    if (c == '\n' || c == '\r') {
+      // the end of the line is a token of its own
+      this.position--;
+    }
+    this.token = this.quoted;
+    this.tokenStart = 0;
+    this.tokenLength = length;
+  }
+
+  private static int unescape(int c) {
+    switch (c) {
+    case 'a':
+      return 0x7;
+    case 'b':
+      return '\b';
+    case 'f':
+      return 0xC;
+    case 'n':
+      return '\n';
+    case 'r':
+      return '\r';
+    case 't':
+      return '\t';
+    case 'v':
+      return 0xB;
+    default:
+      return c;
+    }
+  }
+
+  private int read() {
+    if (this.position == this.limit && !this.refill()) {
+      return -1;
+    }
+    return this.buffer[this.position++] & 0xFF;
+  }
+
+  /*
+   * Moves the bytes from start to the beginning of the buffer, growing it if
+   * they fill it, and returns their new start
+   */
+  private int compact(int start) {
+    int length = this.limit - start;
+    this.bufferOffset += start;
+    if (start > 0) {
+      System.arraycopy(this.buffer, start, this.buffer, 0, length);
+    } else if (length == this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, length << 1);
+    }
+    this.position -= start;
+    this.limit = length;
+    return 0;
+  }
+
+  private boolean refill() {
+    this.bufferOffset += this.limit;
+    this.position = 0;
+    this.limit = 0;
+    return this.fill();
+  }
+
+  private boolean fill() {
+    if (this.endOfStream) {
+      return false;
+    }
+    try {
+      int n = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+      if (n < 0) {
+        this.endOfStream = true;
+        return false;
+      }
+      this.limit += n;
+      return true;
+    } catch (IOException ex) {
+      Logger.getLogger(FastArffLoader.class.getName()).log(Level.SEVERE, null, ex);
+      this.endOfStream = true;
+      return false;
+    }
+  }
+
+  /**
+   * Open addressing hash table from the encoded labels of a nominal attribute to their indices. As with
+   * {@link Attribute#indexOfValue(String)}, the last of duplicate labels wins and an unknown label is -1.
+   */
+  static final class NominalIndex {
+
+    private final byte[][] labels;
+    private final int[] indices;
+    private final int mask;
+
+    NominalIndex(Attribute attribute, Charset charset) {
+      int numValues = attribute.numValues();
+      int capacity = Integer.highestOneBit(Math.max(numValues, 2) * 2 - 1) << 1;
+      this.labels = new byte[capacity][];
+      this.indices = new int[capacity];
+      this.mask = capacity - 1;
+      for (int i = 0; i < numValues; i++) {
+        byte[] label = attribute.value(i).getBytes(charset);
+        int slot = hash(label, 0, label.length) & this.mask;
+        while (this.labels[slot] != null && !equals(this.labels[slot], label, 0, label.length)) {
+          slot = (slot + 1) & this.mask;
+        }
+        this.labels[slot] = label;
+        this.indices[slot] = i;
+      }
+    }
+
+    int indexOf(byte[] bytes, int offset, int length) {
+      int slot = hash(bytes, offset, length) & this.mask;
+      byte[] label;
+      while ((label = this.labels[slot]) != null) {
+        if (equals(label, bytes, offset, length)) {
+          return this.indices[slot];
+        }
+        slot = (slot + 1) & this.mask;
+      }
+      return -1;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+      int h = 0;
+      for (int i = offset; i < offset + length; i++) {
+        h = 31 * h + bytes[i];
+      }
+      return h ^ (h >>> 16);
+    }
+
+    private static boolean equals(byte[] label, byte[] bytes, int offset, int length) {
+      if (label.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (label[i] != bytes[offset + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -39,6 +39,11 @@ public class InstanceImpl implements MultiLabelInstance {
    */
   protected InstancesHeader instanceHeader;
 
+  /**
+   * The class index, resolved from the header when the dataset is set.
+   */
+  protected int classIndex;
+
   /**
    * Instantiates a new instance.
    *
@@ -48,6 +53,7 @@ public class InstanceImpl implements MultiLabelInstance {
     this.weight = inst.weight;
     this.instanceData = inst.instanceData;
     this.instanceHeader = inst.instanceHeader;
+    this.classIndex = inst.classIndex;
   }
 
   //Dense
@@ -266,7 +272,7 @@ public class InstanceImpl implements MultiLabelInstance {
    */
   @Override
   public double classValue() {
-    return this.instanceData.value(classIndex());
+    return this.instanceData.value(this.classIndex);
   }
 
   /**
@@ -276,12 +282,23 @@ public class InstanceImpl implements MultiLabelInstance {
    */
   @Override
   public int classIndex() {
-    int classIndex = instanceHeader.classIndex();
+    return this.classIndex;
+  }
+
+  /**
+   * Resolves the class index of a header, i.e. the start of the range of the
+   * output attributes for a multi-label header.
+   *
+   * @param header the header
+   * @return the class index
+   */
+  private static int resolveClassIndex(InstancesHeader header) {
+    int classIndex = header.classIndex();
     //return classIndex != Integer.MAX_VALUE ? classIndex : 0;
     // return  ? classIndex : 0;
     if(classIndex == Integer.MAX_VALUE)
-      if(this.instanceHeader.instanceInformation.range!=null)
-        classIndex=instanceHeader.instanceInformation.range.getStart();
+      if(header.instanceInformation.range!=null)
+        classIndex=header.instanceInformation.range.getStart();
       else
         classIndex=0;
     return classIndex;
@@ -349,13 +366,15 @@ public class InstanceImpl implements MultiLabelInstance {
   }
 
   /**
-   * Sets the dataset.
+   * Sets the dataset. The instance references the header shared by all the
+   * instances of the dataset, so no header is created per instance.
    *
    * @param dataset the new dataset
    */
   @Override
   public void setDataset(Instances dataset) {
-    this.instanceHeader = new InstancesHeader(dataset);
+    this.instanceHeader = dataset.header();
+    this.classIndex = resolveClassIndex(this.instanceHeader);
   }
 
   /**
@@ -52,6 +52,11 @@ public class Instances implements Serializable {
    */
   protected List<Instance> instances;
 
+  /**
+   * The header shared by the instances of the dataset, created on demand.
+   */
+  private transient InstancesHeader header;
+
   protected static enum AVRO_ENCODING_FORMAT {
     JSON, BINARY
   }
@@ -106,6 +111,17 @@ public class Instances implements Serializable {
     this.instances = new ArrayList<Instance>();
   }
 
+  /**
+   * Instantiates a new instances that reads the instances with a loader.
+   *
+   * @param loader the loader
+   */
+  public Instances(Loader loader) {
+    this.loader = loader;
+    this.instanceInformation = loader.getStructure();
+    this.instances = new ArrayList<Instance>();
+  }
+
   public Instances(InputStream inputStream, int classAttribute, String encodingFormat) {
     this.classAttribute = classAttribute;
 
@@ -191,6 +207,22 @@ public class Instances implements Serializable {
     return this.instanceInformation.getRelationName();
   }
 
+  /**
+   * Gets the header of the dataset, i.e. its attributes without the instances.
+   * The header is created once and shared by all the instances whose dataset
+   * is set to this one.
+   *
+   * @return the header
+   */
+  InstancesHeader header() {
+    InstancesHeader header = this.header;
+    if (header == null || header.instanceInformation != this.instanceInformation) {
+      header = new InstancesHeader(this);
+      this.header = header;
+    }
+    return header;
+  }
+
   /**
    * Class index.
    *
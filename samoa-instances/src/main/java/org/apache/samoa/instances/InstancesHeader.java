@@ -32,6 +32,12 @@ public class InstancesHeader extends Instances {
     super();
   }
 
+  @Override
+  InstancesHeader header() {
+    // a header is its own header
+    return this;
+  }
+
   public static String getClassNameString(InstancesHeader context) {
     if (context == null) {
       return "[class]";
@@ -0,0 +1,151 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Test;
+
+public class AvroInstanceCodecTest {
+
+  // "?" is not a valid name of symbol, so it takes a schema that is not validated
+  private static final Schema DENSE = new Schema.Parser().setValidate(false).parse("{\"type\":\"record\",\"name\":\"dense\",\"fields\":["
+      + "{\"name\":\"x\",\"type\":\"double\"},"
+      + "{\"name\":\"n\",\"type\":\"int\"},"
+      + "{\"name\":\"text\",\"type\":\"string\",\"default\":\"\"},"
+      + "{\"name\":\"l\",\"type\":\"long\"},"
+      + "{\"name\":\"f\",\"type\":\"float\"},"
+      + "{\"name\":\"color\",\"type\":{\"type\":\"enum\",\"name\":\"Color\",\"symbols\":[\"red\",\"green\",\"?\"]}},"
+      + "{\"name\":\"class\",\"type\":{\"type\":\"enum\",\"name\":\"Class\",\"symbols\":[\"a\",\"b\"]}}]}");
+
+  private static final Schema SPARSE = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"sparse\",\"fields\":["
+      + "{\"name\":\"x\",\"type\":[\"null\",\"double\"]},"
+      + "{\"name\":\"n\",\"type\":[\"null\",\"int\"]},"
+      + "{\"name\":\"class\",\"type\":{\"type\":\"enum\",\"name\":\"Class\",\"symbols\":[\"a\",\"b\"]}}]}");
+
+  @Test
+  public void testBinaryDense() throws IOException {
+    DataFileWriter<GenericRecord> writer = new DataFileWriter<GenericRecord>(
+        new GenericDatumWriter<GenericRecord>(DENSE));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writer.create(DENSE, out);
+    writer.append(denseRecord(1.5, 2, 3, 4.5f, "green", "b"));
+    writer.append(denseRecord(-1, 0, 1L << 40, 0.25f, "?", "a"));
+    writer.close();
+
+    AvroBinaryLoader loader = new AvroBinaryLoader(new ByteArrayInputStream(out.toByteArray()), -1);
+    InstanceInformation header = loader.getStructure();
+    assertEquals(6, header.numAttributes());
+    assertEquals(5, header.classIndex());
+    assertEquals("l", header.attribute(2).name());
+
+    Instance first = loader.readInstance();
+    Instance second = loader.readInstance();
+    assertNull(loader.readInstance());
+    // the records are reused, not the instances
+    assertValues(first, 1.5, 2, 3, 4.5, 1, 1);
+    assertValues(second, -1, 0, 1L << 40, 0.25, Double.NaN, 0);
+  }
+
+  @Test
+  public void testJsonDense() {
+    String data = DENSE.toString().replace(",\"?\"", "") + "\n"
+        + "{\"x\":1.5,\"n\":2,\"text\":\"t\",\"l\":3,\"f\":4.5,\"color\":\"green\",\"class\":\"b\"}\n"
+        + "\n"
+        + "{\"x\":-1,\"n\":0,\"text\":\"t\",\"l\":5,\"f\":0.25,\"color\":\"red\",\"class\":\"a\"}\n";
+    AvroJsonLoader loader = new AvroJsonLoader(new ByteArrayInputStream(data.getBytes()), -1);
+    assertValues(loader.readInstance(), 1.5, 2, 3, 4.5, 1, 1);
+    assertValues(loader.readInstance(), -1, 0, 5, 0.25, 0, 0);
+    assertNull(loader.readInstance());
+  }
+
+  @Test
+  public void testSparse() {
+    AvroInstanceCodec codec = newCodec(SPARSE);
+    GenericRecord record = new GenericData.Record(SPARSE);
+    record.put("x", null);
+    record.put("n", 7);
+    record.put("class", new GenericData.EnumSymbol(SPARSE.getField("class").schema(), "b"));
+    Instance instance = codec.decode(record);
+    assertEquals(2, instance.numValues());
+    assertEquals(1, instance.index(0));
+    assertEquals(7, instance.valueSparse(0), 0);
+    // the class is a value like the others
+    assertEquals(2, instance.index(1));
+    assertEquals(1, instance.valueSparse(1), 0);
+    assertEquals(3, instance.numAttributes());
+  }
+
+  @Test
+  public void testEncodeDecode() throws IOException {
+    AvroInstanceCodec codec = newCodec(DENSE);
+    Instance instance = new DenseInstance(1.0, new double[] { 1.5, 2, 3, 4.5, Double.NaN, 1 });
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new AvroInstanceCodec.RecordWriter(DENSE).write(codec.encode(instance, null), encoder);
+    encoder.flush();
+    GenericRecord record = new AvroInstanceCodec.RecordReader(DENSE).read(null,
+        DecoderFactory.get().binaryDecoder(out.toByteArray(), null));
+
+    assertEquals(2, record.get("n"));
+    assertEquals(3L, record.get("l"));
+    assertEquals("?", record.get("color").toString());
+    assertValues(codec.decode(record), 1.5, 2, 3, 4.5, Double.NaN, 1);
+  }
+
+  private static AvroInstanceCodec newCodec(Schema schema) {
+    InstanceInformation header = new InstanceInformation(schema.getName(), AvroInstanceCodec.attributes(schema));
+    return new AvroInstanceCodec(schema, header, AvroInstanceCodec.isSparse(schema));
+  }
+
+  private static GenericRecord denseRecord(double x, int n, long l, float f, String color, String classLabel) {
+    GenericRecord record = new GenericData.Record(DENSE);
+    record.put("x", x);
+    record.put("n", n);
+    record.put("text", "t");
+    record.put("l", l);
+    record.put("f", f);
+    record.put("color", new GenericData.EnumSymbol(DENSE.getField("color").schema(), color));
+    record.put("class", new GenericData.EnumSymbol(DENSE.getField("class").schema(), classLabel));
+    return record;
+  }
+
+  private static void assertValues(Instance instance, double... values) {
+    assertNotNull(instance);
+    assertEquals(values.length, instance.numAttributes());
+    for (int i = 0; i < values.length; i++) {
+      assertEquals("Attribute " + i, values[i], instance.value(i), 0);
+    }
+  }
+}
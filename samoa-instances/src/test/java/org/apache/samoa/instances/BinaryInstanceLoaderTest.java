@@ -0,0 +1,125 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BinaryInstanceLoaderTest {
+
+  private static final String ARFF = "@relation 'test relation'\n"
+      + "@attribute x numeric\n"
+      + "@attribute color {red,'light blue',café}\n"
+      + "@attribute when date 'yyyy-MM-dd'\n"
+      + "@attribute class {a,b}\n"
+      + "@data\n"
+      + "1.5,red,?,a\n"
+      + "{0 -2,1 café,3 b}\n"
+      + "?,'light blue',?,b\n";
+
+  @Test
+  public void testHeader() throws IOException {
+    InstanceInformation expected = new ArffLoader(new StringReader(ARFF), 0, 2).getStructure();
+    BinaryInstanceLoader loader = new BinaryInstanceLoader(new ByteArrayInputStream(write(ARFF)));
+    InstanceInformation header = loader.getStructure();
+    assertEquals("test relation", header.getRelationName());
+    assertEquals(1, header.classIndex());
+    assertEquals(expected.numAttributes(), header.numAttributes());
+    for (int i = 0; i < expected.numAttributes(); i++) {
+      assertEquals(expected.attribute(i).toString(), header.attribute(i).toString());
+    }
+  }
+
+  @Test
+  public void testInstances() throws IOException {
+    byte[] data = write(ARFF);
+    // a small buffer, which grows to hold the header
+    BinaryInstanceLoader loader = new BinaryInstanceLoader(Channels.newChannel(new ByteArrayInputStream(data)), 16);
+    ArffLoader expectedLoader = new ArffLoader(new StringReader(ARFF), 0, 2);
+    Instance expected;
+    int count = 0;
+    while ((expected = expectedLoader.readInstance()) != null) {
+      Instance actual = loader.readInstance();
+      assertNotNull(actual);
+      assertEquals(expected.getClass(), actual.getClass());
+      assertEquals(expected.weight(), actual.weight(), 0);
+      assertEquals(expected.numAttributes(), actual.numAttributes());
+      assertEquals(expected.numValues(), actual.numValues());
+      for (int i = 0; i < expected.numValues(); i++) {
+        assertEquals(expected.index(i), actual.index(i));
+        assertEquals(expected.valueSparse(i), actual.valueSparse(i), 0);
+      }
+      count++;
+    }
+    assertNull(loader.readInstance());
+    assertEquals(3, count);
+  }
+
+  @Test
+  public void testWeight() throws IOException {
+    ArffLoader arffLoader = new ArffLoader(new StringReader(ARFF), 0, -1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryInstanceWriter writer = new BinaryInstanceWriter(out, arffLoader.getStructure());
+    Instance instance = arffLoader.readInstance();
+    instance.setWeight(0.25);
+    writer.write(instance);
+    writer.close();
+
+    BinaryInstanceLoader loader = new BinaryInstanceLoader(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(0.25, loader.readInstance().weight(), 0);
+  }
+
+  @Test
+  public void testTruncatedFile() throws IOException {
+    byte[] data = write(ARFF);
+    BinaryInstanceLoader loader = new BinaryInstanceLoader(new ByteArrayInputStream(Arrays.copyOf(data,
+        data.length - 1)));
+    assertNotNull(loader.readInstance());
+    assertNotNull(loader.readInstance());
+    assertNull(loader.readInstance());
+    assertNull(loader.readInstance());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotBinaryFile() {
+    new BinaryInstanceLoader(new ByteArrayInputStream(ARFF.getBytes()));
+  }
+
+  private static byte[] write(String arff) throws IOException {
+    ArffLoader arffLoader = new ArffLoader(new StringReader(arff), 0, 2);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryInstanceWriter writer = new BinaryInstanceWriter(out, arffLoader.getStructure());
+    Instance instance;
+    while ((instance = arffLoader.readInstance()) != null) {
+      writer.write(instance);
+    }
+    writer.close();
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,192 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FastArffLoaderTest {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final String HEADER = "% generated\n"
+      + "@relation 'test relation'\n"
+      + "\n"
+      + "@attribute x numeric\n"
+      + "@attribute 'quoted name' real\n"
+      + "@attribute color {red,'light blue',\"dark\\tgreen\",café}\n"
+      + "@ATTRIBUTE z NUMERIC % trailing comment\n"
+      + "@attribute class {a,b}\n"
+      + "\n"
+      + "@data\n";
+
+  @Test
+  public void testHeader() {
+    FastArffLoader loader = newLoader(HEADER, 16);
+    InstanceInformation header = loader.getStructure();
+    assertEquals("test relation", header.getRelationName());
+    assertEquals(5, header.numAttributes());
+    assertEquals(4, header.classIndex());
+    assertEquals("quoted name", header.attribute(1).name());
+    assertTrue(header.attribute(1).isNumeric());
+    assertEquals(4, header.attribute(2).numValues());
+    assertEquals("light blue", header.attribute(2).value(1));
+    assertEquals("dark\tgreen", header.attribute(2).value(2));
+    assertEquals("café", header.attribute(2).value(3));
+    assertTrue(header.attribute(3).isNumeric());
+    assertNull(loader.readInstance());
+  }
+
+  @Test
+  public void testDenseInstances() {
+    String data = HEADER
+        + "1.5,-2e3,red,?,a\n"
+        + "% a comment line\n"
+        + "\n"
+        + "  0.000001 , 12345678901234567890, 'light blue' , 7 , b % comment\r\n"
+        + "-0,3.25E-5,\"dark\\tgreen\",1e400,b\r"
+        + "NaN,.5,café,Infinity,a\n"
+        + "4,5,purple,6,'a'";
+    FastArffLoader loader = newLoader(data, 16);
+    assertInstance(loader.readInstance(), 1.5, -2000, 0, Double.NaN, 0);
+    assertInstance(loader.readInstance(), 0.000001, 12345678901234567890.0, 1, 7, 1);
+    assertInstance(loader.readInstance(), -0.0, 3.25E-5, 2, Double.POSITIVE_INFINITY, 1);
+    assertInstance(loader.readInstance(), Double.NaN, 0.5, 3, Double.POSITIVE_INFINITY, 0);
+    // unknown labels are -1, as with Attribute.indexOfValue()
+    assertInstance(loader.readInstance(), 4, 5, -1, 6, 0);
+    assertNull(loader.readInstance());
+  }
+
+  @Test
+  public void testSparseInstances() {
+    String data = HEADER
+        + "{0 1.5,2 'light blue',4 b}\n"
+        + "{}\n"
+        + "{3 -7.25}\n";
+    FastArffLoader loader = newLoader(data, 16);
+    assertInstance(loader.readInstance(), 1.5, 0, 1, 0, 1);
+    Instance empty = loader.readInstance();
+    assertEquals(0, empty.numValues());
+    assertEquals(5, empty.numAttributes());
+    Instance sparse = loader.readInstance();
+    assertEquals(1, sparse.numValues());
+    assertEquals(3, sparse.index(0));
+    assertInstance(sparse, 0, 0, 0, -7.25, 0);
+    assertNull(loader.readInstance());
+  }
+
+  @Test
+  public void testDataOffset() {
+    byte[] data = (HEADER + "1,2,red,3,a\n" + "4,5,café,6,b\n").getBytes(UTF8);
+    FastArffLoader loader = new FastArffLoader(new ByteArrayInputStream(data), -1, UTF8, 16);
+    assertEquals(HEADER.getBytes(UTF8).length - 1, loader.getDataOffset());
+
+    int offset = (int) loader.getDataOffset();
+    FastArffLoader dataLoader = new FastArffLoader(new ByteArrayInputStream(data, offset, data.length - offset),
+        loader.getStructure(), UTF8, 16);
+    assertEquals(0, dataLoader.getDataOffset());
+    assertInstance(dataLoader.readInstance(), 1, 2, 0, 3, 0);
+    assertInstance(dataLoader.readInstance(), 4, 5, 3, 6, 1);
+    assertNull(dataLoader.readInstance());
+  }
+
+  @Test
+  public void testSameAsArffLoader() {
+    Random random = new Random(1);
+    StringBuilder sb = new StringBuilder(HEADER);
+    String[] colors = { "red", "'light blue'", "\"dark\\tgreen\"", "café", "?" };
+    for (int i = 0; i < 2000; i++) {
+      if (random.nextInt(10) == 0) {
+        sb.append("{1 ").append(random.nextGaussian()).append(",4 b}\n");
+        continue;
+      }
+      sb.append(random.nextInt(1000) - 500).append(',');
+      sb.append(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20)).append(", ");
+      sb.append(colors[random.nextInt(colors.length)]).append(",");
+      sb.append(String.format("%.3f", random.nextGaussian())).append(',');
+      sb.append(random.nextBoolean() ? "a" : "b").append(random.nextBoolean() ? "\n" : "\r\n");
+    }
+    String data = sb.toString();
+    ArffLoader expectedLoader = new ArffLoader(new StringReader(data), 0, -1);
+    // a small buffer to cross its boundary in the middle of the tokens
+    FastArffLoader loader = newLoader(data, 32);
+    Instance expected;
+    int count = 0;
+    while ((expected = expectedLoader.readInstance()) != null) {
+      Instance actual = loader.readInstance();
+      assertNotNull(actual);
+      assertEquals(expected.numValues(), actual.numValues());
+      for (int i = 0; i < expected.numValues(); i++) {
+        assertEquals(expected.index(i), actual.index(i));
+        assertEquals(expected.valueSparse(i), actual.valueSparse(i), 0);
+      }
+      count++;
+    }
+    assertNull(loader.readInstance());
+    assertEquals(2000, count);
+  }
+
+  @Test
+  public void testParseDouble() {
+    Random random = new Random(2);
+    for (int i = 0; i < 100000; i++) {
+      String number;
+      switch (i % 4) {
+      case 0:
+        number = Double.toString(Double.longBitsToDouble(random.nextLong()));
+        break;
+      case 1:
+        number = Long.toString(random.nextLong() % 1000000000000L) + "." + random.nextInt(100000);
+        break;
+      case 2:
+        number = random.nextInt(1000) + "e" + (random.nextInt(60) - 30);
+        break;
+      default:
+        number = String.format("%." + random.nextInt(17) + "f", random.nextGaussian() * 1000);
+      }
+      byte[] bytes = ("," + number + ",").getBytes(UTF8);
+      assertEquals(number, Double.parseDouble(number), FastArffLoader.parseDouble(bytes, 1, bytes.length - 2), 0);
+    }
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParseInvalidDouble() {
+    byte[] bytes = "1.2.3".getBytes(UTF8);
+    FastArffLoader.parseDouble(bytes, 0, bytes.length);
+  }
+
+  private static FastArffLoader newLoader(String data, int bufferSize) {
+    return new FastArffLoader(new ByteArrayInputStream(data.getBytes(UTF8)), -1, UTF8, bufferSize);
+  }
+
+  private static void assertInstance(Instance instance, double... values) {
+    assertNotNull(instance);
+    for (int i = 0; i < values.length; i++) {
+      assertEquals("attribute " + i, values[i], instance.value(i), 0);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.apache.samoa.instances;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InstanceImplTest {
+
+  private Instances dataset;
+
+  @Before
+  public void setUp() {
+    List<Attribute> attributes = new ArrayList<Attribute>();
+    attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+    attributes.add(new Attribute("x"));
+    dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(0);
+  }
+
+  @Test
+  public void testInstancesShareHeader() {
+    Instance first = new DenseInstance(1.0, new double[] { 1, 0.5 });
+    Instance second = new DenseInstance(1.0, new double[] { 0, 1.5 });
+    first.setDataset(dataset);
+    second.setDataset(dataset);
+
+    assertSame(first.dataset(), second.dataset());
+    assertNotSame(dataset, first.dataset());
+    assertEquals(0, first.dataset().numInstances());
+
+    // setting the header itself as dataset keeps the same header
+    second.setDataset(first.dataset());
+    assertSame(first.dataset(), second.dataset());
+  }
+
+  @Test
+  public void testClassValue() {
+    Instance inst = new DenseInstance(1.0, new double[] { 1, 0.5 });
+    inst.setDataset(dataset);
+    assertEquals(0, inst.classIndex());
+    assertEquals(1.0, inst.classValue(), 0.0);
+    assertEquals(0, inst.copy().classIndex());
+
+    inst.setClassValue(0);
+    assertEquals(0.0, inst.classValue(), 0.0);
+  }
+}
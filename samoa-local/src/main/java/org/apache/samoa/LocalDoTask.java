@@ -44,6 +44,7 @@ public class LocalDoTask {
   private static final String SUPPRESS_STATUS_OUT_MSG = "Suppress the task status output. Normally it is sent to stderr.";
   private static final String SUPPRESS_RESULT_OUT_MSG = "Suppress the task result output. Normally it is sent to stdout.";
   private static final String STATUS_UPDATE_FREQ_MSG = "Wait time in milliseconds between status updates.";
+  private static final String EVENT_LOOP_MSG = "Dispatch the events in FIFO order from an event loop instead of recursively.";
   private static final Logger logger = LoggerFactory.getLogger(LocalDoTask.class);
 
   /**
@@ -65,7 +66,10 @@ public class LocalDoTask {
     IntOption statusUpdateFreqOpt = new IntOption("statusUpdateFrequency", 'F', STATUS_UPDATE_FREQ_MSG, 1000, 0,
         Integer.MAX_VALUE);
 
-    Option[] extraOptions = new Option[] { suppressStatusOutOpt, suppressResultOutOpt, statusUpdateFreqOpt };
+    FlagOption eventLoopOpt = new FlagOption("eventLoop", 'L', EVENT_LOOP_MSG);
+
+    Option[] extraOptions = new Option[] { suppressStatusOutOpt, suppressResultOutOpt, statusUpdateFreqOpt,
+        eventLoopOpt };
 
     StringBuilder cliString = new StringBuilder();
     for (String arg : args) {
@@ -85,6 +89,6 @@ public class LocalDoTask {
     }
     task.setFactory(new SimpleComponentFactory());
     task.init();
-    SimpleEngine.submitTopology(task.getTopology());
+    SimpleEngine.submitTopology(task.getTopology(), eventLoopOpt.isSet());
   }
 }
@@ -34,4 +34,10 @@ public class SimpleEngine {
     // runs until completion
   }
 
+  public static void submitTopology(Topology topology, boolean eventLoop) {
+    SimpleTopology simpleTopology = (SimpleTopology) topology;
+    simpleTopology.run(eventLoop);
+    // runs until completion
+  }
+
 }
@@ -0,0 +1,106 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.samoa.core.ContentEvent;
+
+/**
+ * Single-threaded event loop of the simple engine. Instead of calling the destination PI directly, the streams append
+ * their deliveries to a FIFO queue that is drained by the outermost put. The stack depth does not grow with the depth
+ * of the topology nor with its feedback loops (e.g. VHT's model aggregator and local statistics), and the events are
+ * delivered in the order they were emitted.
+ * 
+ * The queue is a ring of parallel arrays, so no object is created per delivery.
+ * 
+ */
+class SimpleEventLoop {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private SimpleProcessingItem[] pis = new SimpleProcessingItem[INITIAL_CAPACITY];
+  private ContentEvent[] events = new ContentEvent[INITIAL_CAPACITY];
+  private int[] indices = new int[INITIAL_CAPACITY];
+  private int head;
+  private int size;
+  private boolean draining;
+
+  /**
+   * Queue the delivery of an event to a replica of a PI. If the loop is not already running (i.e. the call comes from
+   * the entrance PI), the queue is drained before returning.
+   * 
+   * @param pi
+   *          the destination PI
+   * @param event
+   *          the event
+   * @param index
+   *          the index of the replica of the PI
+   */
+  void deliver(SimpleProcessingItem pi, ContentEvent event, int index) {
+    if (size == pis.length)
+      grow();
+    int tail = (head + size) & (pis.length - 1);
+    pis[tail] = pi;
+    events[tail] = event;
+    indices[tail] = index;
+    size++;
+    if (!draining)
+      drain();
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void drain() {
+    draining = true;
+    try {
+      while (size > 0) {
+        SimpleProcessingItem pi = pis[head];
+        ContentEvent event = events[head];
+        int index = indices[head];
+        pis[head] = null;
+        events[head] = null;
+        head = (head + 1) & (pis.length - 1);
+        size--;
+        pi.processEvent(event, index);
+      }
+    } finally {
+      draining = false;
+    }
+  }
+
+  private void grow() {
+    int capacity = pis.length;
+    SimpleProcessingItem[] newPis = new SimpleProcessingItem[capacity << 1];
+    ContentEvent[] newEvents = new ContentEvent[capacity << 1];
+    int[] newIndices = new int[capacity << 1];
+    for (int i = 0; i < size; i++) {
+      int j = (head + i) & (capacity - 1);
+      newPis[i] = pis[j];
+      newEvents[i] = events[j];
+      newIndices[i] = indices[j];
+    }
+    this.pis = newPis;
+    this.events = newEvents;
+    this.indices = newIndices;
+    this.head = 0;
+  }
+}
@@ -24,8 +24,10 @@ package org.apache.samoa.topology.impl;
  * #L%
  */
 
+import org.apache.samoa.core.BatchContentEvent;
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickContentEvent;
 import org.apache.samoa.topology.AbstractProcessingItem;
 import org.apache.samoa.topology.IProcessingItem;
 import org.apache.samoa.topology.ProcessingItem;
@@ -81,7 +83,18 @@ class SimpleProcessingItem extends AbstractProcessingItem {
       IProcessingItem pi = this.getProcessingItem(counter);
       Processor p = pi.getProcessor();
       // System.out.println("PI="+pi+", p="+p);
-      this.getProcessingItem(counter).getProcessor().process(event);
+      BatchContentEvent.process(this.getProcessingItem(counter).getProcessor(), event);
+    }
+  }
+
+  /*
+   * Tick the replicas of this PI, once they are created
+   */
+  void tick() {
+    if (this.arrayProcessingItem == null)
+      return;
+    for (IProcessingItem pi : this.arrayProcessingItem) {
+      BatchContentEvent.process(pi.getProcessor(), TickContentEvent.INSTANCE);
     }
   }
 }
@@ -41,6 +41,9 @@ class SimpleStream extends AbstractStream {
   private List<StreamDestination> destinations;
   private int maxCounter;
   private int eventCounter;
+  // When set, deliveries are queued on the event loop instead of being
+  // processed recursively
+  private SimpleEventLoop eventLoop;
 
   SimpleStream(IProcessingItem sourcePi) {
     super(sourcePi);
@@ -49,6 +52,10 @@ class SimpleStream extends AbstractStream {
     this.maxCounter = 1;
   }
 
+  void setEventLoop(SimpleEventLoop eventLoop) {
+    this.eventLoop = eventLoop;
+  }
+
   private int getNextCounter() {
     if (maxCounter > 0 && eventCounter >= maxCounter)
       eventCounter = 0;
@@ -57,7 +64,7 @@ class SimpleStream extends AbstractStream {
   }
 
   @Override
-  public void put(ContentEvent event) {
+  protected void send(ContentEvent event) {
     this.put(event, this.getNextCounter());
   }
 
@@ -69,23 +76,30 @@ class SimpleStream extends AbstractStream {
       parallelism = destination.getParallelism();
       switch (destination.getPartitioningScheme()) {
       case SHUFFLE:
-        pi.processEvent(event, counter % parallelism);
+        deliver(pi, event, counter % parallelism);
         break;
       case GROUP_BY_KEY:
         HashCodeBuilder hb = new HashCodeBuilder();
         hb.append(event.getKey());
         int key = hb.build() % parallelism;
-        pi.processEvent(event, key);
+        deliver(pi, event, key);
         break;
       case BROADCAST:
         for (int p = 0; p < parallelism; p++) {
-          pi.processEvent(event, p);
+          deliver(pi, event, p);
         }
         break;
       }
     }
   }
 
+  private void deliver(SimpleProcessingItem pi, ContentEvent event, int index) {
+    if (eventLoop != null)
+      eventLoop.deliver(pi, event, index);
+    else
+      pi.processEvent(event, index);
+  }
+
   public void addDestination(StreamDestination destination) {
     this.destinations.add(destination);
     if (maxCounter <= 0)
@@ -24,7 +24,13 @@ package org.apache.samoa.topology.impl;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.samoa.topology.AbstractStream;
 import org.apache.samoa.topology.AbstractTopology;
+import org.apache.samoa.topology.IProcessingItem;
+import org.apache.samoa.topology.Stream;
 
 public class SimpleTopology extends AbstractTopology {
   SimpleTopology(String name) {
@@ -32,6 +38,16 @@ public class SimpleTopology extends AbstractTopology {
   }
 
   public void run() {
+    this.run(false);
+  }
+
+  /**
+   * Run the topology until the entrance PI is finished.
+   * 
+   * @param eventLoop
+   *          if true, the events are dispatched by a {@link SimpleEventLoop} in FIFO order instead of recursively
+   */
+  public void run(boolean eventLoop) {
     if (this.getEntranceProcessingItems() == null)
       throw new IllegalStateException("You need to set entrance PI before running the topology.");
     if (this.getEntranceProcessingItems().size() != 1)
@@ -40,7 +56,42 @@ public class SimpleTopology extends AbstractTopology {
 
     SimpleEntranceProcessingItem entrancePi = (SimpleEntranceProcessingItem) this.getEntranceProcessingItems()
         .toArray()[0];
+    if (eventLoop) {
+      SimpleEventLoop loop = new SimpleEventLoop();
+      for (Stream stream : this.getStreams()) {
+        ((SimpleStream) stream).setEventLoop(loop);
+      }
+    }
+    long tickInterval = this.getTickInterval();
+    if (tickInterval > 0)
+      entrancePi.setTicker(this.newTicker(), tickInterval);
     entrancePi.getProcessor().onCreate(0); // id=0 as it is not used in simple mode
     entrancePi.startSendingEvents();
   }
+
+  /*
+   * The engine is single-threaded: the PIs are ticked by the entrance PI,
+   * between two events, and so are the expired batches of all the streams
+   * flushed
+   */
+  private Runnable newTicker() {
+    final List<SimpleProcessingItem> tickedPis = new ArrayList<>();
+    final List<AbstractStream> timedStreams = new ArrayList<>();
+    for (IProcessingItem pi : this.getProcessingItems()) {
+      if (pi instanceof SimpleProcessingItem && this.getTickInterval(pi) > 0)
+        tickedPis.add((SimpleProcessingItem) pi);
+      timedStreams.addAll(this.getTimedStreams(pi));
+    }
+    return new Runnable() {
+      @Override
+      public void run() {
+        for (SimpleProcessingItem pi : tickedPis) {
+          pi.tick();
+        }
+        for (AbstractStream stream : timedStreams) {
+          stream.flushExpired();
+        }
+      }
+    };
+  }
 }
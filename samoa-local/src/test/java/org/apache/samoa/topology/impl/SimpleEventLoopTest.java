@@ -0,0 +1,240 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.EntranceProcessor;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.topology.EntranceProcessingItem;
+import org.apache.samoa.topology.ProcessingItem;
+import org.apache.samoa.topology.Stream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimpleEventLoopTest {
+
+  // Deep enough to overflow the stack with recursive dispatch
+  private final int depth = 1_000_000;
+
+  private SimpleComponentFactory factory;
+  private SimpleTopology topology;
+  private List<String> received;
+
+  @Before
+  public void setUp() throws Exception {
+    factory = new SimpleComponentFactory();
+    topology = (SimpleTopology) factory.createTopology("TestTopology");
+    received = new ArrayList<>();
+
+    // entrance -> loop -> (loop, sink)
+    EntranceProcessingItem entrancePi = factory.createEntrancePi(new SingleEventEntranceProcessor(depth));
+    Stream entranceStream = factory.createStream(entrancePi);
+    entrancePi.setOutputStream(entranceStream);
+
+    LoopProcessor loop = new LoopProcessor();
+    ProcessingItem loopPi = factory.createPi(loop);
+    loopPi.connectInputShuffleStream(entranceStream);
+    Stream feedbackStream = factory.createStream(loopPi);
+    loopPi.connectInputShuffleStream(feedbackStream);
+    Stream sinkStream = factory.createStream(loopPi);
+    loop.feedbackStream = feedbackStream;
+    loop.sinkStream = sinkStream;
+
+    ProcessingItem sinkPi = factory.createPi(new RecordingProcessor(received));
+    sinkPi.connectInputShuffleStream(sinkStream);
+
+    topology.addEntranceProcessingItem(entrancePi);
+    topology.addProcessingItem(loopPi);
+    topology.addProcessingItem(sinkPi);
+    topology.addStream(entranceStream);
+    topology.addStream(feedbackStream);
+    topology.addStream(sinkStream);
+  }
+
+  @Test
+  public void testFeedbackLoopDoesNotGrowStack() {
+    SimpleEngine.submitTopology(topology, true);
+    assertEquals("Feedback loop was not fully processed.", depth + 1, received.size());
+  }
+
+  @Test
+  public void testDeliveriesInEmissionOrder() {
+    final List<String> order = new ArrayList<>();
+    final SimpleEventLoop eventLoop = new SimpleEventLoop();
+    final SimpleProcessingItem recorder = new SimpleProcessingItem(new RecordingProcessor(order));
+    SimpleProcessingItem emitter = new SimpleProcessingItem(new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        // both children are queued before either of them is processed
+        eventLoop.deliver(recorder, new CountdownEvent(event.getKey() + ".1", 0), 0);
+        eventLoop.deliver(recorder, new CountdownEvent(event.getKey() + ".2", 0), 0);
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor processor) {
+        return processor;
+      }
+    });
+    eventLoop.deliver(emitter, new CountdownEvent("a", 0), 0);
+    eventLoop.deliver(recorder, new CountdownEvent("b", 0), 0);
+    eventLoop.deliver(emitter, new CountdownEvent("c", 0), 0);
+
+    String[] expected = { "a.1", "a.2", "b", "c.1", "c.2" };
+    assertEquals("Wrong number of deliveries.", expected.length, order.size());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("Delivery " + i + " is out of order.", expected[i], order.get(i));
+    }
+    assertEquals("Event loop was not drained.", 0, eventLoop.size());
+  }
+
+  private static class CountdownEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private String key;
+    final int remaining;
+
+    CountdownEvent(String key, int remaining) {
+      this.key = key;
+      this.remaining = remaining;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+
+  private static class SingleEventEntranceProcessor implements EntranceProcessor {
+    private static final long serialVersionUID = 1L;
+    private final int remaining;
+    private boolean sent;
+
+    SingleEventEntranceProcessor(int remaining) {
+      this.remaining = remaining;
+    }
+
+    @Override
+    public boolean process(ContentEvent event) {
+      return false;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new SingleEventEntranceProcessor(remaining);
+    }
+
+    @Override
+    public boolean isFinished() {
+      return sent;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !sent;
+    }
+
+    @Override
+    public ContentEvent nextEvent() {
+      sent = true;
+      return new CountdownEvent("0", remaining);
+    }
+  }
+
+  /*
+   * Sends every event to the sink and, until its countdown reaches 0, back to
+   * itself
+   */
+  private static class LoopProcessor implements Processor {
+    private static final long serialVersionUID = 1L;
+    Stream feedbackStream;
+    Stream sinkStream;
+
+    @Override
+    public boolean process(ContentEvent event) {
+      CountdownEvent countdown = (CountdownEvent) event;
+      sinkStream.put(countdown);
+      if (countdown.remaining > 0)
+        feedbackStream.put(new CountdownEvent(countdown.getKey(), countdown.remaining - 1));
+      return true;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      LoopProcessor copy = new LoopProcessor();
+      copy.feedbackStream = ((LoopProcessor) processor).feedbackStream;
+      copy.sinkStream = ((LoopProcessor) processor).sinkStream;
+      return copy;
+    }
+  }
+
+  private static class RecordingProcessor implements Processor {
+    private static final long serialVersionUID = 1L;
+    private final List<String> received;
+
+    RecordingProcessor(List<String> received) {
+      this.received = received;
+    }
+
+    @Override
+    public boolean process(ContentEvent event) {
+      received.add(event.getKey());
+      return true;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new RecordingProcessor(((RecordingProcessor) processor).received);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.EntranceProcessor;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickingProcessor;
+import org.apache.samoa.topology.EntranceProcessingItem;
+import org.apache.samoa.topology.ProcessingItem;
+import org.apache.samoa.topology.Stream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimpleTopologyTicksTest {
+
+  private final int numEvents = 3;
+
+  private SimpleComponentFactory factory;
+  private SimpleTopology topology;
+  private TickCountingProcessor sink;
+  private StallingEntranceProcessor entrance;
+
+  @Before
+  public void setUp() throws Exception {
+    factory = new SimpleComponentFactory();
+    topology = (SimpleTopology) factory.createTopology("TestTopology");
+
+    // entrance -> (batched) -> sink
+    sink = new TickCountingProcessor();
+    entrance = new StallingEntranceProcessor(numEvents, sink);
+    EntranceProcessingItem entrancePi = factory.createEntrancePi(entrance);
+    Stream entranceStream = factory.createStream(entrancePi);
+    entranceStream.setBatchSize(100);
+    entranceStream.setBatchTimeout(2000);
+    entrancePi.setOutputStream(entranceStream);
+
+    ProcessingItem sinkPi = factory.createPi(sink);
+    sinkPi.connectInputShuffleStream(entranceStream);
+
+    topology.addEntranceProcessingItem(entrancePi);
+    topology.addProcessingItem(sinkPi);
+    topology.addStream(entranceStream);
+  }
+
+  @Test
+  public void testTickInterval() {
+    // half of the smallest of the batch timeout and of the processor interval
+    assertEquals(1000, topology.getTickInterval());
+  }
+
+  @Test(timeout = 60000)
+  public void testTicksWhileInputStalls() {
+    SimpleEngine.submitTopology(topology);
+    assertFalse("Entrance was not unblocked by the ticks.", entrance.timedOut);
+    assertEquals("Expired batch was not sent.", numEvents, sink.count);
+    assertTrue("Processor was not ticked.", sink.ticks > 0);
+  }
+
+  private static class TestEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private String key;
+
+    TestEvent(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+
+  /*
+   * Sends a few events, then waits until the sink received them and was
+   * ticked, without sending anything else
+   */
+  private static class StallingEntranceProcessor implements EntranceProcessor {
+    private static final long serialVersionUID = 1L;
+    private final int numEvents;
+    private final TickCountingProcessor sink;
+    private final long deadline = System.currentTimeMillis() + 10000;
+    private int sent;
+    boolean timedOut;
+
+    StallingEntranceProcessor(int numEvents, TickCountingProcessor sink) {
+      this.numEvents = numEvents;
+      this.sink = sink;
+    }
+
+    @Override
+    public boolean process(ContentEvent event) {
+      return false;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new StallingEntranceProcessor(numEvents, sink);
+    }
+
+    @Override
+    public boolean isFinished() {
+      if (sent < numEvents)
+        return false;
+      if (sink.count == numEvents && sink.ticks > 0)
+        return true;
+      timedOut = System.currentTimeMillis() > deadline;
+      return timedOut;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return sent < numEvents;
+    }
+
+    @Override
+    public ContentEvent nextEvent() {
+      return new TestEvent(Integer.toString(sent++));
+    }
+  }
+
+  private static class TickCountingProcessor implements TickingProcessor {
+    private static final long serialVersionUID = 1L;
+    // the simple engine is single-threaded, and its replicas are copies
+    TickCountingProcessor origin = this;
+    int count;
+    int ticks;
+
+    @Override
+    public boolean process(ContentEvent event) {
+      origin.count++;
+      return true;
+    }
+
+    @Override
+    public long getTickInterval() {
+      return 5000;
+    }
+
+    @Override
+    public void onTick() {
+      origin.ticks++;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      TickCountingProcessor copy = new TickCountingProcessor();
+      copy.origin = ((TickCountingProcessor) processor).origin;
+      return copy;
+    }
+  }
+}
@@ -26,6 +26,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.samoa.core.BatchContentEvent;
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
 import org.apache.samoa.topology.AbstractProcessingItem;
@@ -138,7 +139,7 @@ public class SamzaProcessingItem extends AbstractProcessingItem
     for (SamzaStream stream : this.outputStreams) {
       stream.setCollector(collector);
     }
-    this.getProcessor().process((ContentEvent) envelope.getMessage());
+    BatchContentEvent.process(this.getProcessor(), (ContentEvent) envelope.getMessage());
   }
 
   /*
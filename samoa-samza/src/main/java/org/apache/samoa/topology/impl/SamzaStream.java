@@ -125,7 +125,7 @@ public class SamzaStream extends AbstractStream implements Serializable {
    * Implement Stream interface
    */
   @Override
-  public void put(ContentEvent event) {
+  protected void send(ContentEvent event) {
     for (SamzaSystemStream stream : systemStreams) {
       stream.send(collector, event);
     }
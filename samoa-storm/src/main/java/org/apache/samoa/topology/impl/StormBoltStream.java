@@ -45,7 +45,7 @@ class StormBoltStream extends StormStream {
   }
 
   @Override
-  public void put(ContentEvent contentEvent) {
+  protected void send(ContentEvent contentEvent) {
     outputCollector.emit(this.outputStreamId, new Values(contentEvent, contentEvent.getKey()));
   }
 
@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
+import org.apache.samoa.core.BatchContentEvent;
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
 import org.apache.samoa.topology.AbstractProcessingItem;
@@ -70,6 +71,7 @@ class StormProcessingItem extends AbstractProcessingItem implements StormTopolog
   protected ProcessingItem addInputStream(Stream inputStream, PartitioningScheme scheme) {
     StormStream stormInputStream = (StormStream) inputStream;
     InputStreamId inputId = stormInputStream.getInputId();
+    stormInputStream.addDestinationScheme(scheme);
 
     switch (scheme) {
     case SHUFFLE:
@@ -148,7 +150,7 @@ class StormProcessingItem extends AbstractProcessingItem implements StormTopolog
     public void execute(Tuple input) {
       Object sentObject = input.getValue(0);
       ContentEvent sentEvent = (ContentEvent) sentObject;
-      processor.process(sentEvent);
+      BatchContentEvent.process(processor, sentEvent);
     }
 
     @Override
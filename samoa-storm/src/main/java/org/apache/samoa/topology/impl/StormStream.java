@@ -24,6 +24,8 @@ import java.util.UUID;
 
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.topology.Stream;
+import org.apache.samoa.topology.StreamBatcher;
+import org.apache.samoa.utils.PartitioningScheme;
 
 /**
  * Abstract class to implement Storm Stream
@@ -39,6 +41,11 @@ abstract class StormStream implements Stream, java.io.Serializable {
   private static final long serialVersionUID = 281835563756514852L;
   protected final String outputStreamId;
   protected final InputStreamId inputStreamId;
+  private int batchSize = 1;
+  private long batchTimeout;
+  private boolean groupByKey;
+  // Created on first use, i.e. in the bolt
+  private transient StreamBatcher batcher;
 
   public StormStream(String stormComponentId) {
     this.outputStreamId = UUID.randomUUID().toString();
@@ -46,7 +53,35 @@ abstract class StormStream implements Stream, java.io.Serializable {
   }
 
   @Override
-  public abstract void put(ContentEvent contentEvent);
+  public void put(ContentEvent contentEvent) {
+    if (batchSize <= 1) {
+      send(contentEvent);
+      return;
+    }
+    if (batcher == null) {
+      batcher = new StreamBatcher(batchSize, batchTimeout, groupByKey, new StreamBatcher.Sender() {
+        @Override
+        public void send(ContentEvent event) {
+          StormStream.this.send(event);
+        }
+      });
+    }
+    batcher.put(contentEvent);
+  }
+
+  /*
+   * Emit an event (possibly a batch) on the Storm stream
+   */
+  protected abstract void send(ContentEvent contentEvent);
+
+  /*
+   * Record the grouping of a bolt subscribed to this stream, the events are
+   * batched per key when it is a fields grouping
+   */
+  void addDestinationScheme(PartitioningScheme scheme) {
+    if (scheme == PartitioningScheme.GROUP_BY_KEY)
+      this.groupByKey = true;
+  }
 
   String getOutputId() {
     return this.outputStreamId;
@@ -81,6 +116,11 @@ abstract class StormStream implements Stream, java.io.Serializable {
 
   @Override
   public void setBatchSize(int batchSize) {
-    // Ignore batch size
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  public void setBatchTimeout(long timeoutMicros) {
+    this.batchTimeout = timeoutMicros;
   }
 }
@@ -30,12 +30,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.javacliparser.ClassOption;
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.Option;
 
 /**
  * @author Anh Thu Vu
  * 
  */
 public class LocalThreadsDoTask {
+  private static final String MAILBOX_CAPACITY_MSG = "Capacity of the mailbox of each PI instance, 0 for the unbounded queues of the threads.";
+  private static final String WORK_STEALING_MSG = "Schedule the PI instances on a work-stealing pool instead of pinned threads.";
+  private static final String UTILIZATION_MONITORING_MSG = "Account the busy time of the threads, reported when the topology stops.";
   private static final Logger logger = LoggerFactory.getLogger(LocalThreadsDoTask.class);
 
   /**
@@ -57,8 +63,7 @@ public class LocalThreadsDoTask {
           tmpArgs.remove(i + 1);
           tmpArgs.remove(i);
         } catch (NumberFormatException e) {
-          System.err.println("Invalid number of threads.");
-          System.err.println(e.getStackTrace());
+          logger.warn("Invalid number of threads.", e);
         }
       }
     }
@@ -73,9 +78,20 @@ public class LocalThreadsDoTask {
     logger.debug("Command line string = {}", cliString.toString());
     System.out.println("Command line string = " + cliString.toString());
 
+    // The engine switches are options of the task, so that the flags with
+    // the same name in a nested learner or stream are left alone
+    FlagOption workStealingOpt = new FlagOption("workStealing", 'W', WORK_STEALING_MSG);
+
+    FlagOption utilizationMonitoringOpt = new FlagOption("utilizationMonitoring", 'U', UTILIZATION_MONITORING_MSG);
+
+    IntOption mailboxCapacityOpt = new IntOption("mailboxCapacity", 'q', MAILBOX_CAPACITY_MSG, 0, 0,
+        Integer.MAX_VALUE);
+
+    Option[] extraOptions = new Option[] { workStealingOpt, utilizationMonitoringOpt, mailboxCapacityOpt };
+
     Task task = null;
     try {
-      task = (Task) ClassOption.cliStringToObject(cliString.toString(), Task.class, null);
+      task = (Task) ClassOption.cliStringToObject(cliString.toString(), Task.class, extraOptions);
       logger.info("Sucessfully instantiating {}", task.getClass().getCanonicalName());
     } catch (Exception e) {
       logger.error("Fail to initialize the task", e);
@@ -85,6 +101,11 @@ public class LocalThreadsDoTask {
     task.setFactory(new ThreadsComponentFactory());
     task.init();
 
-    ThreadsEngine.submitTopology(task.getTopology(), numThreads);
+    logger.info("Mailbox capacity:{}", mailboxCapacityOpt.getValue());
+    logger.info("Work stealing:{}", workStealingOpt.isSet());
+    logger.info("Utilization monitoring:{}", utilizationMonitoringOpt.isSet());
+    ThreadsEngine.setUtilizationMonitoring(utilizationMonitoringOpt.isSet());
+    ThreadsEngine.submitTopology(task.getTopology(), numThreads, mailboxCapacityOpt.getValue(),
+        workStealingOpt.isSet());
   }
 }
@@ -0,0 +1,120 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Busy time and number of processed events of one worker thread of the multithreaded engine, recorded when
+ * {@link ThreadsEngine#setUtilizationMonitoring(boolean)} is enabled. Each worker thread registers its own instance the
+ * first time it processes an event after a {@link #reset()} and is the only writer of it, so the counters are updated
+ * without synchronization.
+ * 
+ */
+public class ThreadUtilization {
+
+  private static final List<ThreadUtilization> registry = new CopyOnWriteArrayList<ThreadUtilization>();
+
+  private static final ThreadLocal<ThreadUtilization> current = new ThreadLocal<ThreadUtilization>();
+
+  // incremented by reset(), so that the pooled threads register a new record
+  // instead of updating the one of a previous run
+  private static volatile int generation;
+
+  private final int recordGeneration;
+  private final String threadName;
+  private final long startTime;
+  private volatile long busyTime;
+  private volatile long processedEvents;
+
+  private ThreadUtilization(int recordGeneration, String threadName) {
+    this.recordGeneration = recordGeneration;
+    this.threadName = threadName;
+    this.startTime = System.nanoTime();
+  }
+
+  /**
+   * Get the utilization record of the calling thread, registering it if needed
+   * 
+   * @return the record of the calling thread
+   */
+  static ThreadUtilization get() {
+    ThreadUtilization utilization = current.get();
+    if (utilization == null || utilization.recordGeneration != generation) {
+      utilization = register();
+      current.set(utilization);
+    }
+    return utilization;
+  }
+
+  private static synchronized ThreadUtilization register() {
+    ThreadUtilization utilization = new ThreadUtilization(generation, Thread.currentThread().getName());
+    registry.add(utilization);
+    return utilization;
+  }
+
+  /**
+   * Get the records of all the threads that have processed events since the last {@link #reset()}
+   * 
+   * @return the list of records
+   */
+  public static List<ThreadUtilization> getAll() {
+    return new ArrayList<ThreadUtilization>(registry);
+  }
+
+  static synchronized void reset() {
+    generation++;
+    registry.clear();
+  }
+
+  void addBusyTime(long nanos, int events) {
+    // single writer: the owner thread
+    this.busyTime += nanos;
+    this.processedEvents += events;
+  }
+
+  public String getThreadName() {
+    return this.threadName;
+  }
+
+  public long getProcessedEvents() {
+    return this.processedEvents;
+  }
+
+  /**
+   * Get the fraction of time the thread spent processing events since it processed its first event
+   * 
+   * @return the utilization, between 0 and 1
+   */
+  public double getUtilization() {
+    long elapsed = System.nanoTime() - this.startTime;
+    if (elapsed <= 0)
+      return 0;
+    return Math.min(1.0, (double) this.busyTime / elapsed);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %.1f%% busy, %d events", threadName, 100 * getUtilization(), processedEvents);
+  }
+}
@@ -24,9 +24,14 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.samoa.topology.Topology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Multithreaded engine.
@@ -36,8 +41,30 @@ import org.apache.samoa.topology.Topology;
  */
 public class ThreadsEngine {
 
+  private static final Logger logger = LoggerFactory.getLogger(ThreadsEngine.class);
+
   private static final List<ExecutorService> threadPool = new ArrayList<ExecutorService>();
 
+  // When work stealing is enabled, all the PI instances share
+  // this pool instead of being pinned to one of the threads
+  // of threadPool. Idle threads steal the mailboxes that are
+  // ready to run from the busy ones.
+  private static boolean workStealing = false;
+  private static ForkJoinPool workStealingPool;
+
+  // Capacity of the bounded mailbox of each PI instance.
+  // 0 means that events are submitted directly to the
+  // (unbounded) queues of the threads.
+  private static int mailboxCapacity = 0;
+
+  // Whether the worker threads account their busy time and
+  // processed events, reported when the pool is cleared.
+  // Off by default: it costs two clock reads per event.
+  private static boolean utilizationMonitoring = false;
+
+  // Daemon thread that ticks the PI instances, null when no PI needs ticks
+  private static ScheduledExecutorService ticker;
+
   /*
    * Create and manage threads
    */
@@ -45,6 +72,14 @@ public class ThreadsEngine {
     if (numThreads < 1)
       throw new IllegalStateException("Number of threads must be a positive integer.");
 
+    if (workStealing) {
+      if (workStealingPool == null)
+        workStealingPool = new ForkJoinPool(numThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+      else if (workStealingPool.getParallelism() != numThreads)
+        throw new IllegalStateException("You cannot change the numThreads of a work-stealing pool.");
+      return;
+    }
+
     if (threadPool.size() > numThreads)
       throw new IllegalStateException("You cannot set a numThreads smaller than the current size of the threads pool.");
 
@@ -56,16 +91,109 @@ public class ThreadsEngine {
   }
 
   public static int getNumberOfThreads() {
+    if (workStealingPool != null)
+      return workStealingPool.getParallelism();
     return threadPool.size();
   }
 
   public static ExecutorService getThreadWithIndex(int index) {
+    if (workStealingPool != null)
+      return workStealingPool;
     if (threadPool.size() <= 0)
       throw new IllegalStateException("Try to get ExecutorService from an empty pool.");
     index %= threadPool.size();
     return threadPool.get(index);
   }
 
+  /*
+   * Whether two thread indices are mapped to the same thread. The threads of
+   * the work-stealing pool are shared, so no index owns one.
+   */
+  static boolean isSameThread(int index, int otherIndex) {
+    if (workStealingPool != null || threadPool.isEmpty())
+      return false;
+    return index % threadPool.size() == otherIndex % threadPool.size();
+  }
+
+  /*
+   * Bounded mailboxes
+   */
+  public static void setMailboxCapacity(int capacity) {
+    if (capacity < 0)
+      throw new IllegalStateException("Mailbox capacity must be a non-negative integer.");
+    mailboxCapacity = capacity;
+  }
+
+  public static int getMailboxCapacity() {
+    return mailboxCapacity;
+  }
+
+  /*
+   * Work stealing
+   */
+  public static void setWorkStealing(boolean enabled) {
+    if (getNumberOfThreads() > 0)
+      throw new IllegalStateException("You cannot change the scheduler after the threads are created.");
+    workStealing = enabled;
+  }
+
+  public static boolean isWorkStealing() {
+    return workStealing;
+  }
+
+  /*
+   * Ticks
+   */
+  static void startTicker(final Runnable task, long intervalMicros) {
+    stopTicker();
+    ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "samoa-ticker");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    ticker.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        // an exception would cancel the next ticks
+        try {
+          task.run();
+        } catch (Exception e) {
+          logger.error("Error while ticking the processing items", e);
+        }
+      }
+    }, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+  }
+
+  private static void stopTicker() {
+    if (ticker == null)
+      return;
+    ticker.shutdownNow();
+    try {
+      ticker.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+    ticker = null;
+  }
+
+  /*
+   * Monitoring
+   */
+  public static void setUtilizationMonitoring(boolean enabled) {
+    utilizationMonitoring = enabled;
+  }
+
+  public static boolean isUtilizationMonitoring() {
+    return utilizationMonitoring;
+  }
+
+  public static List<ThreadUtilization> getThreadUtilization() {
+    return ThreadUtilization.getAll();
+  }
+
   /*
    * Submit topology and start
    */
@@ -79,10 +207,37 @@ public class ThreadsEngine {
     ThreadsEngine.submitTopology(topology);
   }
 
+  public static void submitTopology(Topology topology, int numThreads, int mailboxCapacity) {
+    ThreadsEngine.setMailboxCapacity(mailboxCapacity);
+    ThreadsEngine.submitTopology(topology, numThreads);
+  }
+
+  public static void submitTopology(Topology topology, int numThreads, int mailboxCapacity, boolean workStealing) {
+    ThreadsEngine.setWorkStealing(workStealing);
+    ThreadsEngine.submitTopology(topology, numThreads, mailboxCapacity);
+  }
+
   /*
    * Stop
    */
   public static void clearThreadPool() {
+    for (ThreadUtilization utilization : ThreadUtilization.getAll()) {
+      logger.info("Thread {}", utilization);
+    }
+    ThreadUtilization.reset();
+    // before the threads, so that no tick is submitted to a stopped thread
+    stopTicker();
+
+    if (workStealingPool != null) {
+      workStealingPool.shutdown();
+      try {
+        workStealingPool.awaitTermination(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      }
+      workStealingPool = null;
+    }
+
     for (ExecutorService pool : threadPool) {
       pool.shutdown();
     }
@@ -96,6 +251,9 @@ public class ThreadsEngine {
     }
 
     threadPool.clear();
+    mailboxCapacity = 0;
+    workStealing = false;
+    utilizationMonitoring = false;
   }
 
 }
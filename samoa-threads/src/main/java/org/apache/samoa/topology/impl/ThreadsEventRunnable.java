@@ -51,10 +51,15 @@ public class ThreadsEventRunnable implements Runnable {
 
   @Override
   public void run() {
+    boolean monitored = ThreadsEngine.isUtilizationMonitoring();
+    long start = monitored ? System.nanoTime() : 0;
     try {
       workerPi.processEvent(event);
     } catch (Exception e) {
       e.printStackTrace();
+    } finally {
+      if (monitored)
+        ThreadUtilization.get().addBusyTime(System.nanoTime() - start, 1);
     }
   }
 
@@ -0,0 +1,244 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.samoa.core.ContentEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded mailbox of a ThreadsProcessingItemInstance. Events are stored in a ring of pre-allocated slots, so no object
+ * is created per event. The mailbox itself is the Runnable that is submitted to the thread of its PI instance (or to
+ * the work-stealing pool of the engine): it is scheduled once when it becomes non-empty and drains a bounded number of
+ * events per run, so the events of one instance are always processed sequentially.
+ * 
+ * When the mailbox is full, a producer outside the engine (i.e. the entrance PI) blocks until a slot is freed. A worker
+ * thread cannot block indefinitely as the topology may contain cycles (e.g. VHT's feedback loop), so it waits for at
+ * most {@link #WORKER_PUT_TIMEOUT_MS} and then lets the mailbox overflow, without waiting again until the mailbox is
+ * drained below its capacity. The overflow is bounded by {@link #OVERFLOW_FACTOR} times the capacity: at that limit a
+ * worker blocks. The only exception is a worker whose own thread serves the mailbox, which cannot wait: the mailbox then
+ * grows past the limit, with a warning, by at most the events produced in one run of the worker, as the thread drains
+ * the mailbox before it runs the worker again.
+ * 
+ */
+public class ThreadsMailbox implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ThreadsMailbox.class);
+
+  // Maximum time a worker thread waits for a free slot before growing the
+  // mailbox
+  static final long WORKER_PUT_TIMEOUT_MS = 10;
+
+  // Hard limit on the number of events of a mailbox, as a multiple of its
+  // capacity
+  static final int OVERFLOW_FACTOR = 8;
+
+  // Slots are allocated lazily up to the capacity, starting from this size
+  private static final int INITIAL_SLOTS = 1024;
+
+  // Mailbox currently drained by the calling thread, null for threads
+  // outside the engine
+  private static final ThreadLocal<ThreadsMailbox> current = new ThreadLocal<ThreadsMailbox>();
+
+  private final ThreadsProcessingItemInstance workerPi;
+  private final int capacity;
+  private final int limit;
+  private final int throughput;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notFull = lock.newCondition();
+  private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+  private ContentEvent[] slots;
+  private int head;
+  private int size;
+
+  public ThreadsMailbox(ThreadsProcessingItemInstance workerPi, int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Mailbox capacity must be a positive integer.");
+    this.workerPi = workerPi;
+    this.capacity = capacity;
+    this.limit = (int) Math.min(Integer.MAX_VALUE - 8, (long) capacity * OVERFLOW_FACTOR);
+    this.throughput = Math.min(capacity, 64);
+    this.slots = new ContentEvent[Math.min(capacity, INITIAL_SLOTS)];
+  }
+
+  public ThreadsProcessingItemInstance getWorkerProcessingItem() {
+    return this.workerPi;
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return this.size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add an event to the mailbox, blocking while the mailbox is full, and schedule the mailbox on the thread of its PI
+   * instance if it is not scheduled yet.
+   * 
+   * @param event
+   *          the ContentEvent to be processed
+   */
+  public void put(ContentEvent event) {
+    lock.lock();
+    try {
+      if (size >= capacity)
+        awaitFreeSlot();
+      enqueue(event);
+    } finally {
+      lock.unlock();
+    }
+    schedule();
+  }
+
+  /**
+   * Add an event to the mailbox if it is not full, and schedule the mailbox on the thread of its PI instance if it is
+   * not scheduled yet.
+   * 
+   * @param event
+   *          the ContentEvent to be processed
+   * @return true if the event was added, false if the mailbox is full
+   */
+  public boolean offer(ContentEvent event) {
+    lock.lock();
+    try {
+      if (size >= capacity)
+        return false;
+      enqueue(event);
+    } finally {
+      lock.unlock();
+    }
+    schedule();
+    return true;
+  }
+
+  private void enqueue(ContentEvent event) {
+    if (size == slots.length)
+      grow();
+    slots[(head + size) % slots.length] = event;
+    size++;
+  }
+
+  private void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      ThreadsEngine.getThreadWithIndex(workerPi.getThreadIndex()).execute(this);
+    }
+  }
+
+  private void awaitFreeSlot() {
+    ThreadsMailbox producer = current.get();
+    try {
+      if (producer == null) {
+        while (size >= capacity)
+          notFull.await();
+      } else if (ThreadsEngine.isSameThread(producer.workerPi.getThreadIndex(), workerPi.getThreadIndex())) {
+        // A mailbox served by the same thread cannot be drained while we wait
+        if (size == limit)
+          logger.warn("Mailbox of {} reached its limit of {} events and is served by the producing thread",
+              workerPi.getProcessor(), limit);
+      } else {
+        // Wait once when the mailbox becomes full, not for every event of the
+        // overflow
+        long nanos = TimeUnit.MILLISECONDS.toNanos(WORKER_PUT_TIMEOUT_MS);
+        while (size == capacity && nanos > 0)
+          nanos = notFull.awaitNanos(nanos);
+        if (size >= limit) {
+          logger.warn("Mailbox of {} reached its limit of {} events, waiting for a free slot",
+              workerPi.getProcessor(), limit);
+          while (size >= limit)
+            notFull.await();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void grow() {
+    long length = slots.length < limit ? Math.min(limit, slots.length * 2L) : slots.length * 2L;
+    ContentEvent[] newSlots = new ContentEvent[(int) Math.min(Integer.MAX_VALUE - 8, length)];
+    for (int i = 0; i < size; i++) {
+      newSlots[i] = slots[(head + i) % slots.length];
+    }
+    if (slots.length >= capacity)
+      logger.debug("Mailbox of {} grown beyond its capacity to {} slots", workerPi.getProcessor(), newSlots.length);
+    this.slots = newSlots;
+    this.head = 0;
+  }
+
+  private ContentEvent poll() {
+    lock.lock();
+    try {
+      if (size == 0)
+        return null;
+      ContentEvent event = slots[head];
+      slots[head] = null;
+      head = (head + 1) % slots.length;
+      size--;
+      notFull.signal();
+      return event;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void run() {
+    current.set(this);
+    boolean monitored = ThreadsEngine.isUtilizationMonitoring();
+    long start = monitored ? System.nanoTime() : 0;
+    int processed = 0;
+    try {
+      ContentEvent event;
+      while (processed < throughput && (event = poll()) != null) {
+        processed++;
+        try {
+          workerPi.processEvent(event);
+        } catch (Exception e) {
+          e.printStackTrace();
+        }
+      }
+    } finally {
+      if (monitored)
+        ThreadUtilization.get().addBusyTime(System.nanoTime() - start, processed);
+      current.remove();
+      scheduled.set(false);
+    }
+    // Events may have arrived after the last poll: reschedule so that they are
+    // not left behind
+    if (size() > 0)
+      schedule();
+  }
+
+}
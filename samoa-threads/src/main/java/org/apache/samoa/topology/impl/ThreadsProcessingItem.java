@@ -25,6 +25,7 @@ import java.util.List;
 
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
+import org.apache.samoa.topology.AbstractStream;
 import org.apache.samoa.topology.AbstractProcessingItem;
 import org.apache.samoa.topology.ProcessingItem;
 import org.apache.samoa.topology.Stream;
@@ -82,10 +83,33 @@ public class ThreadsProcessingItem extends AbstractProcessingItem {
           "ThreadsWorkerProcessingItem(s) need to be setup before process any event (i.e. in ThreadsTopology.start()).");
 
     ThreadsProcessingItemInstance piInstance = this.piInstances.get(counter);
+    if (piInstance.getMailbox() != null) {
+      piInstance.getMailbox().put(event);
+      return;
+    }
     ThreadsEventRunnable runnable = new ThreadsEventRunnable(piInstance, event);
     ThreadsEngine.getThreadWithIndex(piInstance.getThreadIndex()).submit(runnable);
   }
 
+  /*
+   * Set the output streams whose expired batches are flushed by the ticks of
+   * the replicas
+   */
+  void setTimedStreams(List<AbstractStream> timedStreams) {
+    for (ThreadsProcessingItemInstance piInstance : this.piInstances) {
+      piInstance.setTimedStreams(timedStreams);
+    }
+  }
+
+  /*
+   * Tick all the replicas of this PI
+   */
+  public void tick() {
+    for (ThreadsProcessingItemInstance piInstance : this.piInstances) {
+      piInstance.tick();
+    }
+  }
+
   /*
    * Setup the replicas of this PI. This should be called after the topology is
    * set up (all Processors and PIs are setup and connected to the respective
@@ -93,10 +117,18 @@ public class ThreadsProcessingItem extends AbstractProcessingItem {
    */
   public void setupInstances() {
     this.piInstances = new ArrayList<ThreadsProcessingItemInstance>(this.getParallelism());
+    int mailboxCapacity = ThreadsEngine.getMailboxCapacity();
+    // Instances scheduled on the work-stealing pool need a mailbox to
+    // process their events sequentially, even an unbounded one
+    if (mailboxCapacity == 0 && ThreadsEngine.isWorkStealing())
+      mailboxCapacity = Integer.MAX_VALUE;
     for (int i = 0; i < this.getParallelism(); i++) {
       Processor newProcessor = this.getProcessor().newProcessor(this.getProcessor());
       newProcessor.onCreate(i + 1);
-      this.piInstances.add(new ThreadsProcessingItemInstance(newProcessor, this.offset + i));
+      if (mailboxCapacity > 0)
+        this.piInstances.add(new ThreadsProcessingItemInstance(newProcessor, this.offset + i, mailboxCapacity));
+      else
+        this.piInstances.add(new ThreadsProcessingItemInstance(newProcessor, this.offset + i));
     }
   }
 
@@ -20,8 +20,15 @@ package org.apache.samoa.topology.impl;
  * #L%
  */
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.samoa.core.BatchContentEvent;
 import org.apache.samoa.core.ContentEvent;
 import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickContentEvent;
+import org.apache.samoa.topology.AbstractStream;
 
 /**
  * Lightweight replicas of ThreadProcessingItem. ThreadsProcessingItem manages a list of these objects and assigns each
@@ -34,12 +41,23 @@ public class ThreadsProcessingItemInstance {
 
   private Processor processor;
   private int threadIndex;
+  private ThreadsMailbox mailbox;
+  // Whether a tick is waiting to be processed, so that the ticks do not pile
+  // up behind a busy instance
+  private final AtomicBoolean tickPending = new AtomicBoolean(false);
+  // Output streams of the PI whose expired batches are flushed on the ticks
+  private List<AbstractStream> timedStreams = Collections.emptyList();
 
   public ThreadsProcessingItemInstance(Processor processor, int threadIndex) {
     this.processor = processor;
     this.threadIndex = threadIndex;
   }
 
+  public ThreadsProcessingItemInstance(Processor processor, int threadIndex, int mailboxCapacity) {
+    this(processor, threadIndex);
+    this.mailbox = new ThreadsMailbox(this, mailboxCapacity);
+  }
+
   public int getThreadIndex() {
     return this.threadIndex;
   }
@@ -48,7 +66,46 @@ public class ThreadsProcessingItemInstance {
     return this.processor;
   }
 
+  /**
+   * Get the bounded mailbox of this instance
+   * 
+   * @return the mailbox, or null if events are submitted directly to the thread of this instance
+   */
+  public ThreadsMailbox getMailbox() {
+    return this.mailbox;
+  }
+
+  void setTimedStreams(List<AbstractStream> timedStreams) {
+    this.timedStreams = timedStreams;
+  }
+
   public void processEvent(ContentEvent event) {
-    this.processor.process(event);
+    if (event == TickContentEvent.INSTANCE) {
+      this.tickPending.set(false);
+      BatchContentEvent.process(this.processor, event);
+      // on the thread of the instance, so that an expired batch is not sent
+      // after the ones the instance fills later
+      for (AbstractStream stream : this.timedStreams) {
+        stream.flushExpired();
+      }
+    } else {
+      BatchContentEvent.process(this.processor, event);
+    }
+  }
+
+  /**
+   * Send a tick to this instance, unless one is already waiting. The ticker thread never blocks: the tick is dropped
+   * if the mailbox is full.
+   */
+  public void tick() {
+    if (!this.tickPending.compareAndSet(false, true))
+      return;
+    if (this.mailbox != null) {
+      if (!this.mailbox.offer(TickContentEvent.INSTANCE))
+        this.tickPending.set(false);
+    } else {
+      ThreadsEventRunnable runnable = new ThreadsEventRunnable(this, TickContentEvent.INSTANCE);
+      ThreadsEngine.getThreadWithIndex(this.threadIndex).submit(runnable);
+    }
   }
 }
@@ -20,14 +20,9 @@ package org.apache.samoa.topology.impl;
  * #L%
  */
 
-import java.util.LinkedList;
-import java.util.List;
-
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.samoa.core.ContentEvent;
-import org.apache.samoa.topology.AbstractStream;
 import org.apache.samoa.topology.IProcessingItem;
-import org.apache.samoa.utils.StreamDestination;
+import org.apache.samoa.topology.LocalStream;
 
 /**
  * Stream for multithreaded engine.
@@ -35,74 +30,14 @@ import org.apache.samoa.utils.StreamDestination;
  * @author Anh Thu Vu
  * 
  */
-public class ThreadsStream extends AbstractStream {
-
-  private List<StreamDestination> destinations;
-  private int counter = 0;
-  private int maxCounter = 1;
+public class ThreadsStream extends LocalStream {
 
   public ThreadsStream(IProcessingItem sourcePi) {
-    destinations = new LinkedList<StreamDestination>();
-  }
-
-  public void addDestination(StreamDestination destination) {
-    destinations.add(destination);
-    maxCounter *= destination.getParallelism();
-  }
-
-  public List<StreamDestination> getDestinations() {
-    return this.destinations;
-  }
-
-  private int getNextCounter() {
-    if (maxCounter > 0 && counter >= maxCounter)
-      counter = 0;
-    this.counter++;
-    return this.counter;
+    super(sourcePi);
   }
 
   @Override
-  public synchronized void put(ContentEvent event) {
-    this.put(event, this.getNextCounter());
-  }
-
-  private void put(ContentEvent event, int counter) {
-    ThreadsProcessingItem pi;
-    int parallelism;
-    for (StreamDestination destination : destinations) {
-      pi = (ThreadsProcessingItem) destination.getProcessingItem();
-      parallelism = destination.getParallelism();
-      switch (destination.getPartitioningScheme()) {
-      case SHUFFLE:
-        pi.processEvent(event, counter % parallelism);
-        break;
-      case GROUP_BY_KEY:
-        pi.processEvent(event, getPIIndexForKey(event.getKey(), parallelism));
-        break;
-      case BROADCAST:
-        for (int p = 0; p < parallelism; p++) {
-          pi.processEvent(event, p);
-        }
-        break;
-      }
-    }
+  protected void deliver(IProcessingItem pi, ContentEvent event, int index) {
+    ((ThreadsProcessingItem) pi).processEvent(event, index);
   }
-
-  private static int getPIIndexForKey(String key, int parallelism) {
-    // If key is null, return a default index: 0
-    if (key == null)
-      return 0;
-
-    // HashCodeBuilder object does not have reset() method
-    // So all objects that get appended will be included in the
-    // computation of the hashcode.
-    // To avoid initialize a HashCodeBuilder for each event,
-    // here I use the static method with reflection on the event's key
-    int index = HashCodeBuilder.reflectionHashCode(key, true) % parallelism;
-    if (index < 0) {
-      index += parallelism;
-    }
-    return index;
-  }
-
 }
@@ -20,6 +20,10 @@ package org.apache.samoa.topology.impl;
  * #L%
  */
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.samoa.topology.AbstractStream;
 import org.apache.samoa.topology.AbstractTopology;
 import org.apache.samoa.topology.IProcessingItem;
 
@@ -46,6 +50,7 @@ public class ThreadsTopology extends AbstractTopology {
         .toArray()[0];
     if (entrancePi == null)
       throw new IllegalStateException("You need to set entrance PI before running the topology.");
+    this.startTicker(entrancePi);
     entrancePi.getProcessor().onCreate(0); // id=0 as it is not used in simple mode
     entrancePi.startSendingEvents();
   }
@@ -62,4 +67,44 @@ public class ThreadsTopology extends AbstractTopology {
       }
     }
   }
+
+  /*
+   * Tick the PIs that need it from a background thread of the engine. The
+   * expired batches of the output stream of the entrance PI are flushed by
+   * the entrance PI itself.
+   */
+  private void startTicker(ThreadsEntranceProcessingItem entrancePi) {
+    long tickInterval = this.getTickInterval();
+    if (tickInterval <= 0)
+      return;
+    final List<AbstractStream> entranceStreams = this.getTimedStreams(entrancePi);
+    if (!entranceStreams.isEmpty()) {
+      entrancePi.setTicker(new Runnable() {
+        @Override
+        public void run() {
+          for (AbstractStream stream : entranceStreams) {
+            stream.flushExpired();
+          }
+        }
+      }, tickInterval);
+    }
+    final List<ThreadsProcessingItem> tickedPis = new ArrayList<ThreadsProcessingItem>();
+    for (IProcessingItem pi : this.getProcessingItems()) {
+      if (pi instanceof ThreadsProcessingItem && this.getTickInterval(pi) > 0) {
+        ThreadsProcessingItem tpi = (ThreadsProcessingItem) pi;
+        tpi.setTimedStreams(this.getTimedStreams(tpi));
+        tickedPis.add(tpi);
+      }
+    }
+    if (tickedPis.isEmpty())
+      return;
+    ThreadsEngine.startTicker(new Runnable() {
+      @Override
+      public void run() {
+        for (ThreadsProcessingItem pi : tickedPis) {
+          pi.tick();
+        }
+      }
+    }, tickInterval);
+  }
 }
@@ -48,6 +48,27 @@ public class AlgosTest {
 
   }
 
+  @Test(timeout = 60000)
+  public void testVHTWithWorkStealingThreads() throws Exception {
+
+    TestParams vhtConfig = new TestParams.Builder()
+        .inputInstances(200_000)
+        .samplingSize(20_000)
+        .evaluationInstances(200_000)
+        .classifiedInstances(200_000)
+        .labelSamplingSize(10l)
+        .classificationsCorrect(55f)
+        .kappaStat(-0.1f)
+        .kappaTempStat(-0.1f)
+        .cliStringTemplate(TestParams.Templates.PREQEVAL_VHT_RANDOMTREE + " -t 2 -W")
+        .resultFilePollTimeout(10)
+        .prePollWait(10)
+        .taskClassName(LocalThreadsDoTask.class.getName())
+        .build();
+    TestUtils.test(vhtConfig);
+
+  }
+
   @Test(timeout = 180000)
   public void testBaggingWithThreads() throws Exception {
     TestParams baggingConfig = new TestParams.Builder()
@@ -69,4 +90,24 @@ public class AlgosTest {
 
   }
 
+  @Test(timeout = 180000)
+  public void testBaggingWithThreadsAndBoundedMailboxes() throws Exception {
+    TestParams baggingConfig = new TestParams.Builder()
+        .inputInstances(100_000)
+        .samplingSize(10_000)
+        .evaluationInstances(90_000)
+        .classifiedInstances(100_000)
+        .labelSamplingSize(10l)
+        .classificationsCorrect(55f)
+        .kappaStat(0f)
+        .kappaTempStat(0f)
+        .cliStringTemplate(TestParams.Templates.PREQEVAL_BAGGING_RANDOMTREE + " -t 2 -q 1000")
+        .prePollWait(10)
+        .resultFilePollTimeout(30)
+        .taskClassName(LocalThreadsDoTask.class.getName())
+        .build();
+    TestUtils.test(baggingConfig);
+
+  }
+
 }
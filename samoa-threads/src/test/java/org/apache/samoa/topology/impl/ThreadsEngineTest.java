@@ -21,6 +21,9 @@ package org.apache.samoa.topology.impl;
  */
 
 import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+
 import mockit.Mocked;
 import mockit.Verifications;
 
@@ -41,6 +44,7 @@ public class ThreadsEngineTest {
   private final int numThreads = 4;
   private final int numThreadsSmaller = 3;
   private final int numThreadsLarger = 5;
+  private final int mailboxCapacity = 100;
 
   @After
   public void cleanup() {
@@ -119,6 +123,52 @@ public class ThreadsEngineTest {
     }
   }
 
+  @Test
+  public void testSetMailboxCapacity() {
+    ThreadsEngine.setMailboxCapacity(mailboxCapacity);
+    assertEquals("Mailbox capacity is not set correctly.", mailboxCapacity, ThreadsEngine.getMailboxCapacity());
+    ThreadsEngine.clearThreadPool();
+    assertEquals("Mailbox capacity was not reset.", 0, ThreadsEngine.getMailboxCapacity());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSetMailboxCapacityNegative() {
+    ThreadsEngine.setMailboxCapacity(-1);
+    // Exception expected
+  }
+
+  @Test
+  public void testSetWorkStealing() {
+    ThreadsEngine.setWorkStealing(true);
+    ThreadsEngine.setNumberOfThreads(numThreads);
+    assertTrue("Work stealing is not enabled.", ThreadsEngine.isWorkStealing());
+    assertEquals("Number of threads is not set correctly.", numThreads, ThreadsEngine.getNumberOfThreads());
+    assertTrue("ExecutorService is not a work-stealing pool.",
+        ThreadsEngine.getThreadWithIndex(0) instanceof ForkJoinPool);
+    for (int i = 1; i < numThreads + 3; i++) {
+      assertSame("PI instances do not share the work-stealing pool.", ThreadsEngine.getThreadWithIndex(0),
+          ThreadsEngine.getThreadWithIndex(i));
+    }
+    ThreadsEngine.clearThreadPool();
+    assertFalse("Work stealing was not reset.", ThreadsEngine.isWorkStealing());
+    assertEquals("ThreadsEngine was not shutdown properly.", 0, ThreadsEngine.getNumberOfThreads());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSetWorkStealingAfterThreadsCreated() {
+    ThreadsEngine.setNumberOfThreads(numThreads);
+    ThreadsEngine.setWorkStealing(true);
+    // Exception expected
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSetNumberOfThreadsWorkStealingResize() {
+    ThreadsEngine.setWorkStealing(true);
+    ThreadsEngine.setNumberOfThreads(numThreads);
+    ThreadsEngine.setNumberOfThreads(numThreadsLarger);
+    // Exception expected
+  }
+
   @Test
   public void testSubmitTopology() {
     ThreadsEngine.submitTopology(topology, numThreads);
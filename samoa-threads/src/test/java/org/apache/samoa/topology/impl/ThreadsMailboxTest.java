@@ -0,0 +1,393 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreadsMailboxTest {
+
+  private final int numThreads = 2;
+  private final int capacity = 4;
+
+  private RecordingProcessor processor;
+  private ThreadsProcessingItemInstance instance;
+  private ThreadsMailbox mailbox;
+
+  @Before
+  public void setUp() throws Exception {
+    ThreadsEngine.setNumberOfThreads(numThreads);
+    processor = new RecordingProcessor();
+    instance = new ThreadsProcessingItemInstance(processor, 1, capacity);
+    mailbox = instance.getMailbox();
+  }
+
+  @After
+  public void cleanup() {
+    processor.release.countDown();
+    ThreadsEngine.clearThreadPool();
+  }
+
+  @Test
+  public void testConstructor() {
+    assertNotNull("Mailbox was not created.", mailbox);
+    assertSame("WorkerProcessingItem is not set correctly.", instance, mailbox.getWorkerProcessingItem());
+    assertEquals("Capacity is not set correctly.", capacity, mailbox.getCapacity());
+    assertEquals("Mailbox is not empty.", 0, mailbox.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorZeroCapacity() {
+    new ThreadsMailbox(instance, 0);
+  }
+
+  @Test
+  public void testEventsProcessedInOrder() throws Exception {
+    processor.release.countDown();
+    int numEvents = 1000;
+    for (int i = 0; i < numEvents; i++) {
+      mailbox.put(new IndexedEvent(i));
+    }
+    assertTrue("Events were not processed.", processor.processed.await(numEvents, 10, TimeUnit.SECONDS));
+    for (int i = 0; i < numEvents; i++) {
+      assertEquals("Event " + i + " was processed out of order.", i, processor.indices.get(i).intValue());
+    }
+  }
+
+  @Test
+  public void testPutBlocksWhenFull() throws Exception {
+    // the first event is held by the worker, the others fill the mailbox
+    for (int i = 0; i <= capacity; i++) {
+      mailbox.put(new IndexedEvent(i));
+    }
+    final CountDownLatch putDone = new CountDownLatch(1);
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        mailbox.put(new IndexedEvent(capacity + 1));
+        putDone.countDown();
+      }
+    });
+    producer.start();
+    assertFalse("Put did not block on a full mailbox.", putDone.await(200, TimeUnit.MILLISECONDS));
+    assertEquals("Mailbox exceeded its capacity.", capacity, mailbox.size());
+
+    processor.release.countDown();
+    assertTrue("Put was not unblocked.", putDone.await(10, TimeUnit.SECONDS));
+    assertTrue("Events were not processed.", processor.processed.await(capacity + 2, 10, TimeUnit.SECONDS));
+    producer.join();
+  }
+
+  @Test
+  public void testWorkerDoesNotWaitForItsOwnThread() throws Exception {
+    int overflow = 3;
+    final int numPuts = capacity + overflow;
+    final long[] elapsed = new long[1];
+    final CountDownLatch done = new CountDownLatch(1);
+    // index 1 + numThreads is mapped to the thread of the instance, which
+    // cannot drain the mailbox while the producer is running
+    ThreadsProcessingItemInstance producer = new ThreadsProcessingItemInstance(new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        long start = System.nanoTime();
+        for (int i = 0; i < numPuts; i++) {
+          mailbox.put(new IndexedEvent(i));
+        }
+        elapsed[0] = System.nanoTime() - start;
+        done.countDown();
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor processor) {
+        return processor;
+      }
+    }, 1 + numThreads, capacity);
+    processor.release.countDown();
+    producer.getMailbox().put(new IndexedEvent(0));
+    assertTrue("Producer did not run.", done.await(10, TimeUnit.SECONDS));
+    assertTrue("Producer waited for a mailbox served by its own thread.",
+        elapsed[0] < TimeUnit.MILLISECONDS.toNanos(overflow * ThreadsMailbox.WORKER_PUT_TIMEOUT_MS));
+    assertTrue("Events were not processed.", processor.processed.await(numPuts, 10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testWorkerOverflowIsBounded() throws Exception {
+    final int limit = capacity * ThreadsMailbox.OVERFLOW_FACTOR;
+    final long[] fillTime = new long[1];
+    final CountDownLatch done = new CountDownLatch(1);
+    // index 0 is mapped to another thread than the one of the instance
+    ThreadsProcessingItemInstance producer = new ThreadsProcessingItemInstance(new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        long start = System.nanoTime();
+        for (int i = 1; i <= limit + 1; i++) {
+          if (i == limit + 1)
+            fillTime[0] = System.nanoTime() - start;
+          mailbox.put(new IndexedEvent(i));
+        }
+        done.countDown();
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor processor) {
+        return processor;
+      }
+    }, 0, capacity);
+    // the worker is held by the first event
+    mailbox.put(new IndexedEvent(0));
+    long deadline = System.currentTimeMillis() + 10000;
+    while (mailbox.size() > 0 && System.currentTimeMillis() < deadline)
+      Thread.sleep(1);
+    producer.getMailbox().put(new IndexedEvent(0));
+    assertFalse("Put did not block at the limit of the mailbox.", done.await(200, TimeUnit.MILLISECONDS));
+    assertEquals("Mailbox exceeded its limit.", limit, mailbox.size());
+    assertTrue("Producer waited for every event of the overflow.",
+        fillTime[0] < TimeUnit.MILLISECONDS.toNanos((limit - capacity) * ThreadsMailbox.WORKER_PUT_TIMEOUT_MS / 2));
+
+    processor.release.countDown();
+    assertTrue("Put was not unblocked.", done.await(10, TimeUnit.SECONDS));
+    assertTrue("Events were not processed.", processor.processed.await(limit + 2, 10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testWorkerOverflowsTheLimitOfItsOwnThread() throws Exception {
+    final int numPuts = capacity * ThreadsMailbox.OVERFLOW_FACTOR + 1;
+    final int[] maxSize = new int[1];
+    final CountDownLatch done = new CountDownLatch(1);
+    // index 1 + numThreads is mapped to the thread of the instance, which
+    // cannot drain the mailbox while the producer is running
+    ThreadsProcessingItemInstance producer = new ThreadsProcessingItemInstance(new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        for (int i = 0; i < numPuts; i++) {
+          mailbox.put(new IndexedEvent(i));
+        }
+        maxSize[0] = mailbox.size();
+        done.countDown();
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor processor) {
+        return processor;
+      }
+    }, 1 + numThreads, capacity);
+    processor.release.countDown();
+    producer.getMailbox().put(new IndexedEvent(0));
+    assertTrue("Producer blocked on a mailbox served by its own thread.", done.await(10, TimeUnit.SECONDS));
+    assertEquals("Mailbox did not overflow its limit.", numPuts, maxSize[0]);
+    assertTrue("Events were not processed.", processor.processed.await(numPuts, 10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testOfferDoesNotBlockWhenFull() throws Exception {
+    for (int i = 0; i <= capacity; i++) {
+      mailbox.put(new IndexedEvent(i));
+    }
+    assertFalse("Offer accepted an event in a full mailbox.", mailbox.offer(new IndexedEvent(capacity + 1)));
+    assertEquals("Mailbox exceeded its capacity.", capacity, mailbox.size());
+    processor.release.countDown();
+    assertTrue("Events were not processed.", processor.processed.await(capacity + 1, 10, TimeUnit.SECONDS));
+    assertTrue("Offer did not accept an event in an empty mailbox.", mailbox.offer(new IndexedEvent(capacity + 1)));
+  }
+
+  @Test
+  public void testTicksDoNotPileUp() throws Exception {
+    // the worker is held by the first event
+    mailbox.put(new IndexedEvent(0));
+    long deadline = System.currentTimeMillis() + 10000;
+    while (mailbox.size() > 0 && System.currentTimeMillis() < deadline)
+      Thread.sleep(1);
+    instance.tick();
+    instance.tick();
+    assertEquals("More than one tick is waiting.", 1, mailbox.size());
+  }
+
+  @Test
+  public void testWorkStealingKeepsOrderPerInstance() throws Exception {
+    ThreadsEngine.clearThreadPool();
+    ThreadsEngine.setWorkStealing(true);
+    ThreadsEngine.setUtilizationMonitoring(true);
+    ThreadsEngine.setNumberOfThreads(numThreads);
+
+    int numInstances = 8;
+    int numEvents = 1000;
+    RecordingProcessor[] processors = new RecordingProcessor[numInstances];
+    ThreadsMailbox[] mailboxes = new ThreadsMailbox[numInstances];
+    for (int p = 0; p < numInstances; p++) {
+      processors[p] = new RecordingProcessor();
+      processors[p].release.countDown();
+      mailboxes[p] = new ThreadsProcessingItemInstance(processors[p], p, capacity).getMailbox();
+    }
+    for (int i = 0; i < numEvents; i++) {
+      for (int p = 0; p < numInstances; p++) {
+        mailboxes[p].put(new IndexedEvent(i));
+      }
+    }
+    for (int p = 0; p < numInstances; p++) {
+      assertTrue("Events were not processed.", processors[p].processed.await(numEvents, 10, TimeUnit.SECONDS));
+      for (int i = 0; i < numEvents; i++) {
+        assertEquals("Event " + i + " was processed out of order.", i, processors[p].indices.get(i).intValue());
+      }
+    }
+    assertEquals("Processed events are not accounted to the threads.", numInstances * numEvents,
+        awaitAccountedEvents(numInstances * numEvents));
+  }
+
+  @Test
+  public void testUtilizationNotMonitoredByDefault() throws Exception {
+    processor.release.countDown();
+    mailbox.put(new IndexedEvent(0));
+    assertTrue("Event was not processed.", processor.processed.await(1, 10, TimeUnit.SECONDS));
+    assertTrue("Utilization was monitored.", ThreadsEngine.getThreadUtilization().isEmpty());
+  }
+
+  @Test
+  public void testUtilizationReportedAfterReset() throws Exception {
+    ThreadsEngine.setUtilizationMonitoring(true);
+    processor.release.countDown();
+    mailbox.put(new IndexedEvent(0));
+    assertEquals("Processed event is not accounted.", 1, awaitAccountedEvents(1));
+
+    // the same pooled thread must register a new record
+    ThreadUtilization.reset();
+    mailbox.put(new IndexedEvent(1));
+    mailbox.put(new IndexedEvent(2));
+    assertEquals("Processed events are not accounted after the reset.", 2, awaitAccountedEvents(2));
+  }
+
+  // the last batch of each mailbox is accounted right after it is processed
+  private static long awaitAccountedEvents(long expected) {
+    long processedEvents;
+    long deadline = System.currentTimeMillis() + 10000;
+    do {
+      processedEvents = 0;
+      for (ThreadUtilization utilization : ThreadsEngine.getThreadUtilization()) {
+        processedEvents += utilization.getProcessedEvents();
+        assertTrue("Utilization is out of range.", utilization.getUtilization() >= 0
+            && utilization.getUtilization() <= 1);
+      }
+    } while (processedEvents < expected && System.currentTimeMillis() < deadline);
+    return processedEvents;
+  }
+
+  private static class IndexedEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private final int index;
+
+    IndexedEvent(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public String getKey() {
+      return null;
+    }
+
+    @Override
+    public void setKey(String key) {
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+
+  private static class RecordingProcessor implements Processor {
+    private static final long serialVersionUID = 1L;
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> indices = Collections.synchronizedList(new ArrayList<Integer>());
+    final EventCounter processed = new EventCounter();
+
+    @Override
+    public boolean process(ContentEvent event) {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      indices.add(((IndexedEvent) event).index);
+      processed.increment();
+      return true;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new RecordingProcessor();
+    }
+  }
+
+  private static class EventCounter {
+    private int count;
+
+    synchronized void increment() {
+      count++;
+      notifyAll();
+    }
+
+    synchronized boolean await(int expected, long timeout, TimeUnit unit) throws InterruptedException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      while (count < expected) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0)
+          return false;
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+      }
+      return true;
+    }
+  }
+}
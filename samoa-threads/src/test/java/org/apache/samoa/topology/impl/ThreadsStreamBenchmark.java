@@ -0,0 +1,196 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.utils.PartitioningScheme;
+import org.apache.samoa.utils.StreamDestination;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark comparing the lock-free {@link ThreadsStream#put(ContentEvent)} with the previous synchronized
+ * implementation that used reflection to hash the keys. The destination PI only records the routing decision, so the
+ * benchmark measures the cost of routing itself.
+ * 
+ * Run {@link #main(String[])} from the test classpath to measure both paths with 1 to 32 producer threads.
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadsStreamBenchmark {
+
+  private static final int NUM_KEYS = 1024;
+  private static final int[] PRODUCER_THREADS = { 1, 2, 4, 8, 16, 32 };
+
+  @Param({ "SHUFFLE", "GROUP_BY_KEY" })
+  public PartitioningScheme scheme;
+
+  @Param({ "8" })
+  public int parallelism;
+
+  private ThreadsStream stream;
+  private SynchronizedStream synchronizedStream;
+  private ContentEvent[] events;
+
+  @Setup
+  public void setUp() {
+    RoutingProcessingItem pi = new RoutingProcessingItem(parallelism);
+    StreamDestination destination = new StreamDestination(pi, parallelism, scheme);
+    stream = new ThreadsStream(null);
+    stream.addDestination(destination);
+    synchronizedStream = new SynchronizedStream();
+    synchronizedStream.addDestination(destination);
+
+    events = new ContentEvent[NUM_KEYS];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      events[i] = new KeyedEvent("attribute" + i);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Producer {
+    int next;
+  }
+
+  @Benchmark
+  public void putLockFree(Producer producer) {
+    stream.put(events[producer.next++ & (NUM_KEYS - 1)]);
+  }
+
+  @Benchmark
+  public void putSynchronized(Producer producer) {
+    synchronizedStream.put(events[producer.next++ & (NUM_KEYS - 1)]);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : PRODUCER_THREADS) {
+      Options options = new OptionsBuilder()
+          .include(ThreadsStreamBenchmark.class.getSimpleName())
+          .threads(threads)
+          .build();
+      new Runner(options).run();
+    }
+  }
+
+  /*
+   * Copy of ThreadsStream routing before it was made lock-free
+   */
+  private static class SynchronizedStream {
+    private StreamDestination destination;
+    private int counter = 0;
+    private int maxCounter = 1;
+
+    void addDestination(StreamDestination destination) {
+      this.destination = destination;
+      maxCounter *= destination.getParallelism();
+    }
+
+    private int getNextCounter() {
+      if (maxCounter > 0 && counter >= maxCounter)
+        counter = 0;
+      this.counter++;
+      return this.counter;
+    }
+
+    synchronized void put(ContentEvent event) {
+      int counter = this.getNextCounter();
+      ThreadsProcessingItem pi = (ThreadsProcessingItem) destination.getProcessingItem();
+      int parallelism = destination.getParallelism();
+      switch (destination.getPartitioningScheme()) {
+      case SHUFFLE:
+        pi.processEvent(event, counter % parallelism);
+        break;
+      case GROUP_BY_KEY:
+        int index = HashCodeBuilder.reflectionHashCode(event.getKey(), true) % parallelism;
+        if (index < 0) {
+          index += parallelism;
+        }
+        pi.processEvent(event, index);
+        break;
+      case BROADCAST:
+        for (int p = 0; p < parallelism; p++) {
+          pi.processEvent(event, p);
+        }
+        break;
+      }
+    }
+  }
+
+  private static class RoutingProcessingItem extends ThreadsProcessingItem {
+    // Racy on purpose: only keeps the routing result alive
+    int lastIndex;
+
+    RoutingProcessingItem(int parallelism) {
+      super((Processor) null, parallelism);
+    }
+
+    @Override
+    public void processEvent(ContentEvent event, int counter) {
+      lastIndex = counter;
+    }
+  }
+
+  private static class KeyedEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private String key;
+
+    KeyedEvent(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+}
@@ -133,4 +133,13 @@ public class ThreadsStreamTest {
     stream.put(event);
   }
 
+  @Test
+  public void testGetPIIndexForKey() {
+    int index = ThreadsStream.getPIIndexForKey(eventKey, parallelism);
+    assertTrue("PI index is out of range.", index >= 0 && index < parallelism);
+    assertEquals("PI index is not stable for the same key.", index,
+        ThreadsStream.getPIIndexForKey(new String(eventKey), parallelism));
+    assertEquals("Null key is not routed to the default PI.", 0, ThreadsStream.getPIIndexForKey(null, parallelism));
+  }
+
 }
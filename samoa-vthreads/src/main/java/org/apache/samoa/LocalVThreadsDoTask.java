@@ -0,0 +1,79 @@
+package org.apache.samoa;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.samoa.tasks.Task;
+import org.apache.samoa.topology.impl.VThreadsComponentFactory;
+import org.apache.samoa.topology.impl.VThreadsEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.javacliparser.ClassOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.Option;
+
+/**
+ * Run a task on the virtual threads engine.
+ * 
+ */
+public class LocalVThreadsDoTask {
+  private static final String MAILBOX_CAPACITY_MSG = "Capacity of the mailbox of each PI.";
+  private static final Logger logger = LoggerFactory.getLogger(LocalVThreadsDoTask.class);
+
+  /**
+   * The main method.
+   * 
+   * @param args
+   *          the arguments
+   */
+  public static void main(String[] args) {
+
+    StringBuilder cliString = new StringBuilder();
+    for (String arg : args) {
+      cliString.append(" ").append(arg);
+    }
+    logger.debug("Command line string = {}", cliString.toString());
+    System.out.println("Command line string = " + cliString.toString());
+
+    // The capacity is an option of the task, so that a -q flag in a nested
+    // learner or stream is left alone
+    IntOption mailboxCapacityOpt = new IntOption("mailboxCapacity", 'q', MAILBOX_CAPACITY_MSG,
+        VThreadsEngine.DEFAULT_MAILBOX_CAPACITY, 1, Integer.MAX_VALUE);
+
+    Option[] extraOptions = new Option[] { mailboxCapacityOpt };
+
+    Task task = null;
+    try {
+      task = (Task) ClassOption.cliStringToObject(cliString.toString(), Task.class, extraOptions);
+      logger.info("Sucessfully instantiating {}", task.getClass().getCanonicalName());
+    } catch (Exception e) {
+      logger.error("Fail to initialize the task", e);
+      System.out.println("Fail to initialize the task" + e);
+      return;
+    }
+    task.setFactory(new VThreadsComponentFactory());
+    task.init();
+
+    logger.info("Mailbox capacity:{}", mailboxCapacityOpt.getValue());
+    logger.info("Virtual threads:{}", VThreadsEngine.isVirtual());
+    VThreadsEngine.submitTopology(task.getTopology(), mailboxCapacityOpt.getValue());
+  }
+}
@@ -0,0 +1,291 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.samoa.core.BatchContentEvent;
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickContentEvent;
+import org.apache.samoa.topology.AbstractStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A PI instance of the virtual threads engine: a Processor, its bounded mailbox and the thread that takes the events
+ * from the mailbox and processes them one at a time. Events are stored in a ring of slots, so no object is created per
+ * event.
+ * 
+ * When the mailbox is full, a producer outside the engine (i.e. the entrance PI) blocks until a slot is freed. An actor
+ * cannot block indefinitely as the topology may contain cycles (e.g. VHT's feedback loop), so it waits for at most
+ * {@link #ACTOR_PUT_TIMEOUT_MS} and then lets the mailbox overflow, without waiting again until the mailbox is drained
+ * below its capacity. The overflow is bounded by {@link #OVERFLOW_FACTOR} times the capacity: at that limit an actor
+ * blocks. The only exception is an actor sending to itself, which cannot wait: its mailbox then grows past the limit,
+ * with a warning, by at most the events it sends while processing one event.
+ * 
+ */
+public class VThreadsActor implements Runnable {
+
+  private static final Logger logger = LoggerFactory.getLogger(VThreadsActor.class);
+
+  // Maximum time an actor waits for a free slot in the mailbox of another
+  // actor before growing it
+  static final long ACTOR_PUT_TIMEOUT_MS = 10;
+
+  // Hard limit on the number of events of a mailbox, as a multiple of its
+  // capacity
+  static final int OVERFLOW_FACTOR = 8;
+
+  // Slots are allocated lazily up to the capacity, starting from this size
+  private static final int INITIAL_SLOTS = 1024;
+
+  // Actor running on the calling thread, null for threads outside the engine
+  private static final ThreadLocal<VThreadsActor> current = new ThreadLocal<VThreadsActor>();
+
+  private final Processor processor;
+  private final VThreadsTopology topology;
+  private final int capacity;
+  private final int limit;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  // Whether a tick is waiting in the mailbox, so that the ticks do not pile
+  // up behind a busy actor
+  private final AtomicBoolean tickPending = new AtomicBoolean(false);
+  // Output streams of the PI whose expired batches are flushed on the ticks
+  private List<AbstractStream> timedStreams = Collections.emptyList();
+
+  private ContentEvent[] slots;
+  private int head;
+  private int size;
+  private boolean stopped;
+  private Thread thread;
+
+  public VThreadsActor(Processor processor, VThreadsTopology topology, int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Mailbox capacity must be a positive integer.");
+    this.processor = processor;
+    this.topology = topology;
+    this.capacity = capacity;
+    this.limit = (int) Math.min(Integer.MAX_VALUE - 8, (long) capacity * OVERFLOW_FACTOR);
+    this.slots = new ContentEvent[Math.min(capacity, INITIAL_SLOTS)];
+  }
+
+  public Processor getProcessor() {
+    return this.processor;
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return this.size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void setTimedStreams(List<AbstractStream> timedStreams) {
+    this.timedStreams = timedStreams;
+  }
+
+  Thread getThread() {
+    return this.thread;
+  }
+
+  /*
+   * Start the thread of the actor
+   */
+  void start() {
+    this.thread = VThreadsEngine.newThread(this);
+    this.thread.start();
+  }
+
+  /*
+   * Stop the thread of the actor once its mailbox is empty
+   */
+  void stop() {
+    lock.lock();
+    try {
+      stopped = true;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add an event to the mailbox, blocking while the mailbox is full.
+   * 
+   * @param event
+   *          the ContentEvent to be processed
+   */
+  public void send(ContentEvent event) {
+    // Counted before it is visible to the actor, so that the topology cannot
+    // be seen as idle while the event is in flight
+    topology.eventSent();
+    lock.lock();
+    try {
+      if (size >= capacity)
+        awaitFreeSlot();
+      enqueue(event);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Send a tick to the actor, unless one is already waiting. The caller never blocks: the tick is dropped if the
+   * mailbox is full.
+   */
+  public void tick() {
+    if (!tickPending.compareAndSet(false, true))
+      return;
+    lock.lock();
+    try {
+      if (size < capacity) {
+        topology.eventSent();
+        enqueue(TickContentEvent.INSTANCE);
+        return;
+      }
+    } finally {
+      lock.unlock();
+    }
+    tickPending.set(false);
+  }
+
+  private void enqueue(ContentEvent event) {
+    if (size == slots.length)
+      grow();
+    slots[(head + size) % slots.length] = event;
+    if (size++ == 0)
+      notEmpty.signal();
+  }
+
+  private void awaitFreeSlot() {
+    VThreadsActor producer = current.get();
+    try {
+      if (producer == null) {
+        while (size >= capacity)
+          notFull.await();
+      } else if (producer == this) {
+        // An actor sending to itself cannot drain its mailbox while it waits
+        if (size == limit)
+          logger.warn("Mailbox of {} reached its limit of {} events and is drained by the sending actor", processor,
+              limit);
+      } else {
+        // Wait once when the mailbox becomes full, not for every event of the
+        // overflow
+        long nanos = TimeUnit.MILLISECONDS.toNanos(ACTOR_PUT_TIMEOUT_MS);
+        while (size == capacity && nanos > 0)
+          nanos = notFull.awaitNanos(nanos);
+        if (size >= limit) {
+          logger.warn("Mailbox of {} reached its limit of {} events, waiting for a free slot", processor, limit);
+          while (size >= limit)
+            notFull.await();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void grow() {
+    long length = slots.length < limit ? Math.min(limit, slots.length * 2L) : slots.length * 2L;
+    ContentEvent[] newSlots = new ContentEvent[(int) Math.min(Integer.MAX_VALUE - 8, length)];
+    for (int i = 0; i < size; i++) {
+      newSlots[i] = slots[(head + i) % slots.length];
+    }
+    if (slots.length >= capacity)
+      logger.debug("Mailbox of {} grown beyond its capacity to {} slots", processor, newSlots.length);
+    this.slots = newSlots;
+    this.head = 0;
+  }
+
+  /*
+   * Take the next event, waiting while the mailbox is empty. Returns null when
+   * the actor is stopped.
+   */
+  private ContentEvent take() throws InterruptedException {
+    lock.lock();
+    try {
+      while (size == 0) {
+        if (stopped)
+          return null;
+        notEmpty.await();
+      }
+      ContentEvent event = slots[head];
+      slots[head] = null;
+      head = (head + 1) % slots.length;
+      size--;
+      if (size < limit)
+        notFull.signal();
+      return event;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void flushTimedStreams() {
+    for (AbstractStream stream : timedStreams) {
+      stream.flushExpired();
+    }
+  }
+
+  @Override
+  public void run() {
+    current.set(this);
+    try {
+      ContentEvent event;
+      while ((event = take()) != null) {
+        boolean tick = event == TickContentEvent.INSTANCE;
+        if (tick)
+          tickPending.set(false);
+        try {
+          BatchContentEvent.process(processor, event);
+          // on the thread of the actor, so that an expired batch is not sent
+          // after the ones the actor fills later
+          if (tick)
+            flushTimedStreams();
+        } catch (Exception e) {
+          logger.error("Error while processing event " + event + " in " + processor, e);
+        } finally {
+          topology.eventProcessed();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      current.remove();
+    }
+  }
+
+}
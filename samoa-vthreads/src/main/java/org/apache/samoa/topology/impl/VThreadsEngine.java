@@ -0,0 +1,89 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.samoa.topology.Topology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Virtual threads engine. Each PI instance is an actor running on its own thread, with a bounded mailbox. On a JVM that
+ * provides virtual threads (Java 21+) the actors run on virtual threads, so a topology can have thousands of PI
+ * instances without tuning a thread pool. On older JVMs they fall back to daemon platform threads.
+ * 
+ */
+public class VThreadsEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(VThreadsEngine.class);
+
+  public static final int DEFAULT_MAILBOX_CAPACITY = 1000;
+
+  private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+  private static final AtomicInteger platformThreadCounter = new AtomicInteger();
+
+  /*
+   * Thread.ofVirtual() is looked up reflectively as the engine is built for
+   * Java 7
+   */
+  private static ThreadFactory createVirtualThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "samoa-vthread-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      logger.warn("Virtual threads are not available on this JVM, PI instances will run on platform threads.");
+      return null;
+    }
+  }
+
+  public static boolean isVirtual() {
+    return virtualThreadFactory != null;
+  }
+
+  /*
+   * Create the (unstarted) thread of an actor
+   */
+  static Thread newThread(Runnable runnable) {
+    if (virtualThreadFactory != null)
+      return virtualThreadFactory.newThread(runnable);
+    Thread thread = new Thread(runnable, "samoa-thread-" + platformThreadCounter.getAndIncrement());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /*
+   * Submit topology and start
+   */
+  public static void submitTopology(Topology topology) {
+    submitTopology(topology, DEFAULT_MAILBOX_CAPACITY);
+  }
+
+  public static void submitTopology(Topology topology, int mailboxCapacity) {
+    if (mailboxCapacity < 1)
+      throw new IllegalStateException("Mailbox capacity must be a positive integer.");
+    VThreadsTopology vtopology = (VThreadsTopology) topology;
+    vtopology.run(mailboxCapacity);
+  }
+}
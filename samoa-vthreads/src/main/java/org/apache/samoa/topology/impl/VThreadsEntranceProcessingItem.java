@@ -0,0 +1,72 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.samoa.core.EntranceProcessor;
+import org.apache.samoa.topology.LocalEntranceProcessingItem;
+
+/**
+ * EntranceProcessingItem for virtual threads engine. Instead of sleeping for a fixed 100ms when no event is available,
+ * it parks for an exponentially growing time, starting from {@link #MIN_BACKOFF_NANOS} and capped at
+ * {@link #MAX_BACKOFF_NANOS} (or the tick interval of the entrance PI), and goes back to the minimum as soon as an event
+ * is sent.
+ * 
+ */
+public class VThreadsEntranceProcessingItem extends LocalEntranceProcessingItem {
+
+  static final long MIN_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private long backoffNanos = MIN_BACKOFF_NANOS;
+
+  public VThreadsEntranceProcessingItem(EntranceProcessor processor) {
+    super(processor);
+  }
+
+  long getBackoffNanos() {
+    return this.backoffNanos;
+  }
+
+  @Override
+  public boolean injectNextEvent() {
+    if (super.injectNextEvent()) {
+      this.backoffNanos = MIN_BACKOFF_NANOS;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  protected void waitForNewEvents() throws Exception {
+    LockSupport.parkNanos(this.backoffNanos);
+    // parkNanos returns immediately when interrupted
+    if (Thread.interrupted())
+      throw new InterruptedException();
+    long maxBackoffNanos = MAX_BACKOFF_NANOS;
+    if (getTickIntervalNanos() > 0)
+      maxBackoffNanos = Math.min(maxBackoffNanos, getTickIntervalNanos());
+    this.backoffNanos = Math.min(this.backoffNanos * 2, maxBackoffNanos);
+  }
+
+}
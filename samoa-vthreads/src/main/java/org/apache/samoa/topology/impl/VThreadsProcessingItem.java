@@ -0,0 +1,120 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.topology.AbstractStream;
+import org.apache.samoa.topology.AbstractProcessingItem;
+import org.apache.samoa.topology.ProcessingItem;
+import org.apache.samoa.topology.Stream;
+import org.apache.samoa.utils.PartitioningScheme;
+import org.apache.samoa.utils.StreamDestination;
+
+/**
+ * ProcessingItem for virtual threads engine. Each replica of the PI is an actor with its own thread and mailbox.
+ * 
+ */
+public class VThreadsProcessingItem extends AbstractProcessingItem {
+
+  private List<VThreadsActor> actors;
+
+  /*
+   * Constructor
+   */
+  public VThreadsProcessingItem(Processor processor, int parallelismHint) {
+    super(processor, parallelismHint);
+  }
+
+  public List<VThreadsActor> getActors() {
+    return this.actors;
+  }
+
+  /*
+   * Connects to streams
+   */
+  @Override
+  protected ProcessingItem addInputStream(Stream inputStream, PartitioningScheme scheme) {
+    StreamDestination destination = new StreamDestination(this, this.getParallelism(), scheme);
+    ((VThreadsStream) inputStream).addDestination(destination);
+    return this;
+  }
+
+  /*
+   * Send the received event to the mailbox of one of the replicas.
+   */
+  public void processEvent(ContentEvent event, int index) {
+    if (this.actors == null || this.actors.size() < this.getParallelism())
+      throw new IllegalStateException(
+          "VThreadsActor(s) need to be setup before process any event (i.e. in VThreadsTopology.run()).");
+    this.actors.get(index).send(event);
+  }
+
+  /*
+   * Create and start the replicas of this PI. This should be called after the
+   * topology is set up (all Processors and PIs are setup and connected to the
+   * respective streams) and before events are sent.
+   */
+  public void setupInstances(VThreadsTopology topology, int mailboxCapacity) {
+    this.actors = new ArrayList<VThreadsActor>(this.getParallelism());
+    for (int i = 0; i < this.getParallelism(); i++) {
+      Processor newProcessor = this.getProcessor().newProcessor(this.getProcessor());
+      newProcessor.onCreate(i + 1);
+      this.actors.add(new VThreadsActor(newProcessor, topology, mailboxCapacity));
+    }
+    // Start only once all the replicas exist, as they may send events to
+    // each other
+    for (VThreadsActor actor : this.actors) {
+      actor.start();
+    }
+  }
+
+  /*
+   * Set the output streams whose expired batches are flushed by the ticks of
+   * the replicas
+   */
+  void setTimedStreams(List<AbstractStream> timedStreams) {
+    for (VThreadsActor actor : this.actors) {
+      actor.setTimedStreams(timedStreams);
+    }
+  }
+
+  /*
+   * Tick all the replicas of this PI
+   */
+  public void tick() {
+    for (VThreadsActor actor : this.actors) {
+      actor.tick();
+    }
+  }
+
+  public void stopInstances() {
+    if (this.actors == null)
+      return;
+    for (VThreadsActor actor : this.actors) {
+      actor.stop();
+    }
+  }
+
+}
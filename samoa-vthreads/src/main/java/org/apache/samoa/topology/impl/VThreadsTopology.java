@@ -0,0 +1,201 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.samoa.topology.AbstractStream;
+import org.apache.samoa.topology.AbstractTopology;
+import org.apache.samoa.topology.IProcessingItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Topology for virtual threads engine. It keeps count of the events that have been sent and not processed yet, so that
+ * {@link #run(int)} returns once the entrance PI is finished and all the events it generated have been processed.
+ * 
+ */
+public class VThreadsTopology extends AbstractTopology {
+
+  private static final Logger logger = LoggerFactory.getLogger(VThreadsTopology.class);
+
+  private final AtomicLong pendingEvents = new AtomicLong();
+  private final Object idle = new Object();
+  // Thread that ticks the actors, null when no PI needs ticks
+  private ScheduledExecutorService ticker;
+
+  VThreadsTopology(String name) {
+    super(name);
+  }
+
+  public void run() {
+    this.run(VThreadsEngine.DEFAULT_MAILBOX_CAPACITY);
+  }
+
+  public void run(int mailboxCapacity) {
+    if (this.getEntranceProcessingItems() == null)
+      throw new IllegalStateException("You need to set entrance PI before running the topology.");
+    if (this.getEntranceProcessingItems().size() != 1)
+      throw new IllegalStateException("VThreadsTopology supports 1 entrance PI only. Number of entrance PIs is "
+          + this.getEntranceProcessingItems().size());
+
+    VThreadsEntranceProcessingItem entrancePi = (VThreadsEntranceProcessingItem) this.getEntranceProcessingItems()
+        .toArray()[0];
+    if (entrancePi == null)
+      throw new IllegalStateException("You need to set entrance PI before running the topology.");
+
+    this.setupProcessingItemInstances(mailboxCapacity);
+    try {
+      this.startTicker(entrancePi);
+      entrancePi.getProcessor().onCreate(0); // id=0 as it is not used in simple mode
+      entrancePi.startSendingEvents();
+      // The last event flushes what is waiting for a tick, and the ticks would
+      // delay the detection of the end of the cascade
+      this.stopTicker();
+      this.awaitIdle();
+    } finally {
+      this.stopTicker();
+      this.stopProcessingItemInstances();
+    }
+  }
+
+  /*
+   * Tell all the VThreadsProcessingItems to create & start their actors
+   */
+  private void setupProcessingItemInstances(int mailboxCapacity) {
+    for (IProcessingItem pi : this.getProcessingItems()) {
+      if (pi instanceof VThreadsProcessingItem) {
+        ((VThreadsProcessingItem) pi).setupInstances(this, mailboxCapacity);
+      }
+    }
+  }
+
+  private void stopProcessingItemInstances() {
+    for (IProcessingItem pi : this.getProcessingItems()) {
+      if (pi instanceof VThreadsProcessingItem) {
+        ((VThreadsProcessingItem) pi).stopInstances();
+      }
+    }
+  }
+
+  /*
+   * Tick the actors of the PIs that need it from a background thread. The
+   * expired batches of the output stream of the entrance PI are flushed by
+   * the entrance PI itself.
+   */
+  private void startTicker(VThreadsEntranceProcessingItem entrancePi) {
+    long tickInterval = this.getTickInterval();
+    if (tickInterval <= 0)
+      return;
+    final List<AbstractStream> entranceStreams = this.getTimedStreams(entrancePi);
+    if (!entranceStreams.isEmpty()) {
+      entrancePi.setTicker(new Runnable() {
+        @Override
+        public void run() {
+          for (AbstractStream stream : entranceStreams) {
+            stream.flushExpired();
+          }
+        }
+      }, tickInterval);
+    }
+    final List<VThreadsProcessingItem> tickedPis = new ArrayList<VThreadsProcessingItem>();
+    for (IProcessingItem pi : this.getProcessingItems()) {
+      if (pi instanceof VThreadsProcessingItem && this.getTickInterval(pi) > 0) {
+        VThreadsProcessingItem vpi = (VThreadsProcessingItem) pi;
+        vpi.setTimedStreams(this.getTimedStreams(vpi));
+        tickedPis.add(vpi);
+      }
+    }
+    if (tickedPis.isEmpty())
+      return;
+    this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "samoa-ticker");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.ticker.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        // an exception would cancel the next ticks
+        try {
+          for (VThreadsProcessingItem pi : tickedPis) {
+            pi.tick();
+          }
+        } catch (Exception e) {
+          logger.error("Error while ticking the processing items", e);
+        }
+      }
+    }, tickInterval, tickInterval, TimeUnit.MICROSECONDS);
+  }
+
+  private void stopTicker() {
+    if (this.ticker == null)
+      return;
+    this.ticker.shutdownNow();
+    try {
+      this.ticker.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.ticker = null;
+  }
+
+  long getPendingEvents() {
+    return pendingEvents.get();
+  }
+
+  void eventSent() {
+    pendingEvents.incrementAndGet();
+  }
+
+  void eventProcessed() {
+    if (pendingEvents.decrementAndGet() == 0) {
+      synchronized (idle) {
+        idle.notifyAll();
+      }
+    }
+  }
+
+  /*
+   * Wait until all the events sent so far are processed. An actor sends the
+   * events it generates before its own event is accounted as processed, so the
+   * count only drops to zero when the whole cascade is done.
+   */
+  void awaitIdle() {
+    synchronized (idle) {
+      try {
+        while (pendingEvents.get() > 0)
+          idle.wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.Processor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VThreadsActorTest {
+
+  private final int capacity = 4;
+
+  private VThreadsTopology topology;
+  private RecordingProcessor processor;
+  private VThreadsActor actor;
+
+  @Before
+  public void setUp() throws Exception {
+    topology = new VThreadsTopology("TestTopology");
+    processor = new RecordingProcessor();
+    actor = new VThreadsActor(processor, topology, capacity);
+  }
+
+  @After
+  public void cleanup() {
+    processor.release.countDown();
+    actor.stop();
+  }
+
+  @Test
+  public void testConstructor() {
+    assertSame("Processor is not set correctly.", processor, actor.getProcessor());
+    assertEquals("Capacity is not set correctly.", capacity, actor.getCapacity());
+    assertEquals("Mailbox is not empty.", 0, actor.size());
+    assertNull("Actor was started by the constructor.", actor.getThread());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructorZeroCapacity() {
+    new VThreadsActor(processor, topology, 0);
+  }
+
+  @Test
+  public void testEventsProcessedInOrder() throws Exception {
+    processor.release.countDown();
+    actor.start();
+    int numEvents = 1000;
+    for (int i = 0; i < numEvents; i++) {
+      actor.send(new IndexedEvent(i));
+    }
+    topology.awaitIdle();
+    assertEquals("Events were not processed.", numEvents, processor.indices.size());
+    for (int i = 0; i < numEvents; i++) {
+      assertEquals("Event " + i + " was processed out of order.", i, processor.indices.get(i).intValue());
+    }
+    assertEquals("Pending events were not accounted.", 0, topology.getPendingEvents());
+  }
+
+  @Test
+  public void testSendBlocksWhenFull() throws Exception {
+    actor.start();
+    // the first event is held by the actor, the others fill the mailbox
+    actor.send(new IndexedEvent(0));
+    assertTrue("First event was not taken.", processor.started.await(10, TimeUnit.SECONDS));
+    for (int i = 1; i <= capacity; i++) {
+      actor.send(new IndexedEvent(i));
+    }
+    final CountDownLatch sendDone = new CountDownLatch(1);
+    Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        actor.send(new IndexedEvent(capacity + 1));
+        sendDone.countDown();
+      }
+    });
+    producer.start();
+    assertFalse("Send did not block on a full mailbox.", sendDone.await(200, TimeUnit.MILLISECONDS));
+    assertEquals("Mailbox exceeded its capacity.", capacity, actor.size());
+
+    processor.release.countDown();
+    assertTrue("Send was not unblocked.", sendDone.await(10, TimeUnit.SECONDS));
+    producer.join();
+    topology.awaitIdle();
+    assertEquals("Events were not processed.", capacity + 2, processor.indices.size());
+  }
+
+  @Test
+  public void testActorOverflowIsBounded() throws Exception {
+    final int limit = capacity * VThreadsActor.OVERFLOW_FACTOR;
+    final long[] fillTime = new long[1];
+    final CountDownLatch done = new CountDownLatch(1);
+    VThreadsActor producer = new VThreadsActor(new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        long start = System.nanoTime();
+        for (int i = 1; i <= limit + 1; i++) {
+          if (i == limit + 1)
+            fillTime[0] = System.nanoTime() - start;
+          actor.send(new IndexedEvent(i));
+        }
+        done.countDown();
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor processor) {
+        return processor;
+      }
+    }, topology, capacity);
+    actor.start();
+    producer.start();
+    // the first event is held by the actor
+    actor.send(new IndexedEvent(0));
+    assertTrue("First event was not taken.", processor.started.await(10, TimeUnit.SECONDS));
+    producer.send(new IndexedEvent(0));
+    assertFalse("Send did not block at the limit of the mailbox.", done.await(200, TimeUnit.MILLISECONDS));
+    assertEquals("Mailbox exceeded its limit.", limit, actor.size());
+    assertTrue("Producer waited for every event of the overflow.",
+        fillTime[0] < TimeUnit.MILLISECONDS.toNanos((limit - capacity) * VThreadsActor.ACTOR_PUT_TIMEOUT_MS / 2));
+
+    processor.release.countDown();
+    assertTrue("Send was not unblocked.", done.await(10, TimeUnit.SECONDS));
+    topology.awaitIdle();
+    assertEquals("Events were not processed.", limit + 2, processor.indices.size());
+    producer.stop();
+  }
+
+  @Test
+  public void testSendToItselfOverflowsTheLimit() throws Exception {
+    final int numSends = capacity * VThreadsActor.OVERFLOW_FACTOR + 1;
+    final int[] maxSize = new int[1];
+    final List<Integer> indices = Collections.synchronizedList(new ArrayList<Integer>());
+    final VThreadsActor[] self = new VThreadsActor[1];
+    self[0] = new VThreadsActor(new Processor() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public boolean process(ContentEvent event) {
+        indices.add(((IndexedEvent) event).index);
+        if (((IndexedEvent) event).index > 0)
+          return true;
+        for (int i = 1; i <= numSends; i++) {
+          self[0].send(new IndexedEvent(i));
+        }
+        maxSize[0] = self[0].size();
+        return true;
+      }
+
+      @Override
+      public void onCreate(int id) {
+      }
+
+      @Override
+      public Processor newProcessor(Processor processor) {
+        return processor;
+      }
+    }, topology, capacity);
+    self[0].start();
+    self[0].send(new IndexedEvent(0));
+    topology.awaitIdle();
+    self[0].stop();
+    assertEquals("Mailbox did not overflow its limit.", numSends, maxSize[0]);
+    assertEquals("Events were not processed.", numSends + 1, indices.size());
+  }
+
+  @Test
+  public void testStopEndsThread() throws Exception {
+    processor.release.countDown();
+    actor.start();
+    actor.send(new IndexedEvent(0));
+    topology.awaitIdle();
+    actor.stop();
+    actor.getThread().join(10000);
+    assertFalse("Actor thread is still alive.", actor.getThread().isAlive());
+  }
+
+  private static class IndexedEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private final int index;
+
+    IndexedEvent(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public String getKey() {
+      return null;
+    }
+
+    @Override
+    public void setKey(String key) {
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+
+  private static class RecordingProcessor implements Processor {
+    private static final long serialVersionUID = 1L;
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> indices = Collections.synchronizedList(new ArrayList<Integer>());
+
+    @Override
+    public boolean process(ContentEvent event) {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      indices.add(((IndexedEvent) event).index);
+      return true;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new RecordingProcessor();
+    }
+  }
+}
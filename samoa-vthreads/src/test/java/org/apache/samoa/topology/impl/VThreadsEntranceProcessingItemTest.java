@@ -0,0 +1,121 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.EntranceProcessor;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.topology.AbstractStream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VThreadsEntranceProcessingItemTest {
+
+  private ToggleEntranceProcessor processor;
+  private VThreadsEntranceProcessingItem entrancePi;
+  private CountingStream stream;
+
+  @Before
+  public void setUp() throws Exception {
+    processor = new ToggleEntranceProcessor();
+    entrancePi = new VThreadsEntranceProcessingItem(processor);
+    stream = new CountingStream();
+    entrancePi.setOutputStream(stream);
+  }
+
+  @Test
+  public void testBackoffGrowsUpToMaximum() throws Exception {
+    assertEquals("Initial back off is not the minimum.", VThreadsEntranceProcessingItem.MIN_BACKOFF_NANOS,
+        entrancePi.getBackoffNanos());
+    assertFalse(entrancePi.injectNextEvent());
+    entrancePi.waitForNewEvents();
+    assertEquals("Back off did not double.", 2 * VThreadsEntranceProcessingItem.MIN_BACKOFF_NANOS,
+        entrancePi.getBackoffNanos());
+    for (int i = 0; i < 20; i++) {
+      entrancePi.waitForNewEvents();
+    }
+    assertEquals("Back off is not capped.", VThreadsEntranceProcessingItem.MAX_BACKOFF_NANOS,
+        entrancePi.getBackoffNanos());
+  }
+
+  @Test
+  public void testBackoffResetOnEvent() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      entrancePi.waitForNewEvents();
+    }
+    processor.available = true;
+    assertTrue(entrancePi.injectNextEvent());
+    assertEquals("Event was not sent.", 1, stream.count);
+    assertEquals("Back off was not reset.", VThreadsEntranceProcessingItem.MIN_BACKOFF_NANOS,
+        entrancePi.getBackoffNanos());
+  }
+
+  @Test(expected = InterruptedException.class)
+  public void testWaitInterrupted() throws Exception {
+    Thread.currentThread().interrupt();
+    entrancePi.waitForNewEvents();
+  }
+
+  private static class CountingStream extends AbstractStream {
+    int count;
+
+    @Override
+    protected void send(ContentEvent event) {
+      count++;
+    }
+  }
+
+  private static class ToggleEntranceProcessor implements EntranceProcessor {
+    private static final long serialVersionUID = 1L;
+    boolean available;
+
+    @Override
+    public boolean process(ContentEvent event) {
+      return false;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new ToggleEntranceProcessor();
+    }
+
+    @Override
+    public boolean isFinished() {
+      return false;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return available;
+    }
+
+    @Override
+    public ContentEvent nextEvent() {
+      return null;
+    }
+  }
+}
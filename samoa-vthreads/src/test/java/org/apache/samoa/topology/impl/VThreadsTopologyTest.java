@@ -0,0 +1,299 @@
+package org.apache.samoa.topology.impl;
+
+/*
+ * #%L
+ * SAMOA
+ * %%
+ * Copyright (C) 2014 - 2015 Apache Software Foundation
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.samoa.core.ContentEvent;
+import org.apache.samoa.core.EntranceProcessor;
+import org.apache.samoa.core.Processor;
+import org.apache.samoa.core.TickingProcessor;
+import org.apache.samoa.topology.EntranceProcessingItem;
+import org.apache.samoa.topology.IProcessingItem;
+import org.apache.samoa.topology.ProcessingItem;
+import org.apache.samoa.topology.Stream;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VThreadsTopologyTest {
+
+  private final int numEvents = 10000;
+  private final int parallelism = 4;
+
+  private VThreadsComponentFactory factory;
+  private VThreadsTopology topology;
+  private CountingProcessor counter;
+
+  @Before
+  public void setUp() throws Exception {
+    factory = new VThreadsComponentFactory();
+    topology = (VThreadsTopology) factory.createTopology("TestTopology");
+
+    // entrance -> forwarders (shuffle) -> counter (key)
+    EntranceProcessingItem entrancePi = factory.createEntrancePi(new CountingEntranceProcessor(numEvents));
+    Stream entranceStream = factory.createStream(entrancePi);
+    entrancePi.setOutputStream(entranceStream);
+
+    ForwardingProcessor forwarder = new ForwardingProcessor();
+    ProcessingItem forwarderPi = factory.createPi(forwarder, parallelism);
+    forwarderPi.connectInputShuffleStream(entranceStream);
+    Stream forwarderStream = factory.createStream(forwarderPi);
+    forwarder.outputStream = forwarderStream;
+
+    counter = new CountingProcessor();
+    ProcessingItem counterPi = factory.createPi(counter, parallelism);
+    counterPi.connectInputKeyStream(forwarderStream);
+
+    topology.addEntranceProcessingItem(entrancePi);
+    topology.addProcessingItem(forwarderPi);
+    topology.addProcessingItem(counterPi);
+    topology.addStream(entranceStream);
+    topology.addStream(forwarderStream);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRunWithoutEntrancePi() {
+    ((VThreadsTopology) factory.createTopology("EmptyTopology")).run();
+  }
+
+  @Test(timeout = 60000)
+  public void testRunProcessesAllEvents() {
+    VThreadsEngine.submitTopology(topology, 16);
+    assertEquals("Run returned before all the events were processed.", numEvents, counter.count.get());
+    assertEquals("Pending events were not accounted.", 0, topology.getPendingEvents());
+    for (IProcessingItem pi : topology.getProcessingItems()) {
+      if (pi instanceof VThreadsProcessingItem) {
+        for (VThreadsActor actor : ((VThreadsProcessingItem) pi).getActors()) {
+          assertEquals("Mailbox is not empty.", 0, actor.size());
+        }
+      }
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSubmitZeroMailboxCapacity() {
+    VThreadsEngine.submitTopology(topology, 0);
+  }
+
+  @Test(timeout = 60000)
+  public void testTicksWhileInputStalls() {
+    VThreadsTopology tickedTopology = (VThreadsTopology) factory.createTopology("TickedTopology");
+    TickCountingProcessor ticked = new TickCountingProcessor();
+    // the entrance stalls until the processor is ticked
+    EntranceProcessingItem entrancePi = factory.createEntrancePi(new StallingEntranceProcessor(ticked.ticks));
+    Stream entranceStream = factory.createStream(entrancePi);
+    entrancePi.setOutputStream(entranceStream);
+    ProcessingItem tickedPi = factory.createPi(ticked, parallelism);
+    tickedPi.connectInputShuffleStream(entranceStream);
+    tickedTopology.addEntranceProcessingItem(entrancePi);
+    tickedTopology.addProcessingItem(tickedPi);
+    tickedTopology.addStream(entranceStream);
+
+    VThreadsEngine.submitTopology(tickedTopology, 16);
+    assertTrue("Processors were not ticked.", ticked.ticks.get() > 0);
+    assertEquals("Ticks were processed as events.", 1, ticked.count.get());
+  }
+
+  private static class KeyedEvent implements ContentEvent {
+    private static final long serialVersionUID = 1L;
+    private String key;
+
+    KeyedEvent(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String getKey() {
+      return key;
+    }
+
+    @Override
+    public void setKey(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public boolean isLastEvent() {
+      return false;
+    }
+  }
+
+  private static class CountingEntranceProcessor implements EntranceProcessor {
+    private static final long serialVersionUID = 1L;
+    private final int numEvents;
+    private int sent;
+
+    CountingEntranceProcessor(int numEvents) {
+      this.numEvents = numEvents;
+    }
+
+    @Override
+    public boolean process(ContentEvent event) {
+      return false;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new CountingEntranceProcessor(numEvents);
+    }
+
+    @Override
+    public boolean isFinished() {
+      return sent >= numEvents;
+    }
+
+    @Override
+    public boolean hasNext() {
+      // Events are not available every other call, to exercise the back off
+      return sent < numEvents && (System.nanoTime() & 1) == 0;
+    }
+
+    @Override
+    public ContentEvent nextEvent() {
+      return new KeyedEvent(Integer.toString(sent++));
+    }
+  }
+
+  private static class ForwardingProcessor implements Processor {
+    private static final long serialVersionUID = 1L;
+    Stream outputStream;
+
+    @Override
+    public boolean process(ContentEvent event) {
+      outputStream.put(event);
+      return true;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      ForwardingProcessor copy = new ForwardingProcessor();
+      copy.outputStream = ((ForwardingProcessor) processor).outputStream;
+      return copy;
+    }
+  }
+
+  private static class CountingProcessor implements Processor {
+    private static final long serialVersionUID = 1L;
+    AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public boolean process(ContentEvent event) {
+      count.incrementAndGet();
+      return true;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      CountingProcessor copy = new CountingProcessor();
+      copy.count = ((CountingProcessor) processor).count;
+      return copy;
+    }
+  }
+
+  private static class StallingEntranceProcessor implements EntranceProcessor {
+    private static final long serialVersionUID = 1L;
+    private final AtomicInteger ticks;
+    private final long deadline = System.currentTimeMillis() + 10000;
+    private boolean sent;
+
+    StallingEntranceProcessor(AtomicInteger ticks) {
+      this.ticks = ticks;
+    }
+
+    @Override
+    public boolean process(ContentEvent event) {
+      return false;
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      return new StallingEntranceProcessor(ticks);
+    }
+
+    @Override
+    public boolean isFinished() {
+      return sent && (ticks.get() > 0 || System.currentTimeMillis() > deadline);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !sent;
+    }
+
+    @Override
+    public ContentEvent nextEvent() {
+      sent = true;
+      return new KeyedEvent("0");
+    }
+  }
+
+  private static class TickCountingProcessor implements TickingProcessor {
+    private static final long serialVersionUID = 1L;
+    AtomicInteger count = new AtomicInteger();
+    AtomicInteger ticks = new AtomicInteger();
+
+    @Override
+    public boolean process(ContentEvent event) {
+      count.incrementAndGet();
+      return true;
+    }
+
+    @Override
+    public long getTickInterval() {
+      return 2000;
+    }
+
+    @Override
+    public void onTick() {
+      ticks.incrementAndGet();
+    }
+
+    @Override
+    public void onCreate(int id) {
+    }
+
+    @Override
+    public Processor newProcessor(Processor processor) {
+      TickCountingProcessor copy = new TickCountingProcessor();
+      copy.count = ((TickCountingProcessor) processor).count;
+      copy.ticks = ((TickCountingProcessor) processor).ticks;
+      return copy;
+    }
+  }
+}